@@ -0,0 +1,59 @@
+package src;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Operaciones de AreaAtencion con 'profundidad' pacientes y capacidad de sobra,
+// para que ninguna se rechace por saturación. Como en BenchmarkHospital, ingresar
+// y atender se miden junto con su inversa para mantener la profundidad.
+//
+//   java -jar target/benchmarks.jar BenchmarkArea -prof gc
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class BenchmarkArea {
+    @Param({"10", "1000", "100000", "1000000"})
+    int profundidad;
+
+    AreaAtencion area;
+    FabricaPacientes fabrica;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        fabrica = new FabricaPacientes();
+        area = new AreaAtencion("urgencia_adulto", 2 * profundidad + 1);
+        for (int i = 0; i < profundidad; i++) {
+            area.ingresarPaciente(fabrica.nuevo());
+        }
+    }
+
+    @Benchmark
+    public boolean ingresarYRetirar() {
+        Paciente p = fabrica.nuevo();
+        area.ingresarPaciente(p);
+        return area.retirarPaciente(p);
+    }
+
+    @Benchmark
+    public Paciente atenderEIngresar() {
+        Paciente atendido = area.atenderPaciente();
+        area.ingresarPaciente(fabrica.nuevo());
+        return atendido;
+    }
+
+    // Recorre toda el área: el costo crece con la profundidad
+    @Benchmark
+    public void obtenerPacientesPorHeapSort(Blackhole bh) {
+        bh.consume(area.obtenerPacientesPorHeapSort());
+    }
+
+    // Lo que consulta un tablero: los diez próximos, sin copiar la cola
+    @Benchmark
+    public void primeros10(Blackhole bh) {
+        bh.consume(area.primeros(10));
+    }
+}
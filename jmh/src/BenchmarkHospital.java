@@ -0,0 +1,98 @@
+package src;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Operaciones de Hospital con 'profundidad' pacientes en espera. Para que la
+// profundidad no cambie en toda la medición, las que agregan o sacan pacientes
+// se miden junto con la inversa: registrar y retirar al mismo paciente, o
+// atender al siguiente y registrar uno nuevo.
+//
+//   java -jar target/benchmarks.jar BenchmarkHospital -prof gc
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+public class BenchmarkHospital {
+
+    // Hospital con prioridad dinámica que no guarda a los atendidos
+    @State(Scope.Thread)
+    public static class Cola {
+        @Param({"10", "1000", "100000", "1000000"})
+        int profundidad;
+
+        Hospital hospital;
+        FabricaPacientes fabrica;
+        String[] ids;
+        int siguiente = 0;
+
+        @Setup(Level.Trial)
+        public void preparar() {
+            hospital = llenar(true, profundidad, fabrica = new FabricaPacientes());
+            ids = new String[profundidad];
+            int i = 0;
+            for (Paciente p : hospital.getColaAtencion()) {
+                ids[i++] = p.getId();
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ColaConPrioridad {
+        @Param({"10", "1000", "100000", "1000000"})
+        int profundidad;
+
+        @Param({"dinamica", "estatica"})
+        String prioridad;
+
+        Hospital hospital;
+        FabricaPacientes fabrica;
+        long tiempo = 0;
+
+        @Setup(Level.Trial)
+        public void preparar() {
+            hospital = llenar(prioridad.equals("dinamica"), profundidad, fabrica = new FabricaPacientes());
+        }
+    }
+
+    static Hospital llenar(boolean prioridadDinamica, int profundidad, FabricaPacientes fabrica) {
+        Hospital hospital = new Hospital(prioridadDinamica);
+        hospital.setConservarAtendidos(false);
+        hospital.setCapacidadAreas(Integer.MAX_VALUE); // todos a la cola, sin control de admisión
+        for (int i = 0; i < profundidad; i++) {
+            hospital.registrarPaciente(fabrica.nuevo());
+        }
+        return hospital;
+    }
+
+    @Benchmark
+    public boolean registrarYRetirar(Cola c) {
+        Paciente p = c.fabrica.nuevo();
+        c.hospital.registrarPaciente(p);
+        return c.hospital.eliminarDeCola(p);
+    }
+
+    @Benchmark
+    public Paciente atenderYRegistrar(ColaConPrioridad c) {
+        c.tiempo += 900;
+        Paciente atendido = c.hospital.atenderSiguiente(c.tiempo);
+        c.hospital.registrarPaciente(c.fabrica.nuevo());
+        return atendido;
+    }
+
+    @Benchmark
+    public void reasignarCategoria(Cola c) {
+        c.hospital.reasignarCategoria(c.ids[c.fabrica.enteroAlAzar(c.ids.length)], c.fabrica.categoriaAlAzar());
+    }
+
+    // Los de categoría 1 (la menos frecuente) y el conteo de cada categoría
+    @Benchmark
+    public void porCategoria(Cola c, Blackhole bh) {
+        bh.consume(c.hospital.obtenerPacientesPorCategoria(1));
+        for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) {
+            bh.consume(c.hospital.contarPorCategoria(cat));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package src;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Un día completo con 'profundidad' llegadas de Poisson: la cola termina con casi
+// todos ellos, porque en un día se atienden 96. Generar los pacientes es parte de
+// lo medido, porque el flujo es perezoso; armar el simulador no. Cada invocación
+// dura al menos decenas de microsegundos, así que el Level.Invocation no pesa.
+//
+//   java -jar target/benchmarks.jar BenchmarkSimulacion -prof gc
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class BenchmarkSimulacion {
+    @Param({"10", "1000", "100000", "1000000"})
+    int profundidad;
+
+    private final SplittableRandom rand = new SplittableRandom(42);
+    private SimuladorUrgencia simulador;
+
+    @Setup(Level.Invocation)
+    public void preparar() {
+        FlujoPacientes flujo = FlujoPacientes.poisson(rand.split(), 0, profundidad / 24.0,
+            profundidad, SimuladorUrgencia.HORIZONTE_DIA);
+        simulador = new SimuladorUrgencia(flujo);
+        simulador.setIntervaloLlegada(0);
+        simulador.setSilencioso(true);
+        simulador.setCapacidadAreas(Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public int simularDia() {
+        simulador.simular(Integer.MAX_VALUE, SimuladorUrgencia.HORIZONTE_DIA);
+        return simulador.getCantidadAtendidos(1);
+    }
+}
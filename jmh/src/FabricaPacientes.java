@@ -0,0 +1,38 @@
+package src;
+
+import java.util.SplittableRandom;
+
+// Pacientes nuevos para los benchmarks de JMH, con llegadas crecientes cada 10 min
+// y los textos ya convertidos a códigos: crear uno dentro de lo medido cuesta solo
+// la vista (y 1/256 de un segmento de AlmacenPacientes), sin formatear el id.
+final class FabricaPacientes {
+    private static final String[] AREAS = {"sapu", "urgencia_adulto", "infantil"};
+
+    private final SplittableRandom rand = new SplittableRandom(42);
+    private final int nombre = AlmacenPacientes.NOMBRES.codigo("Ana");
+    private final int apellido = AlmacenPacientes.APELLIDOS.codigo("Soto");
+    private final int[] areas = new int[AREAS.length];
+    private int clave = 0;
+    private long llegada = 0;
+
+    FabricaPacientes() {
+        for (int a = 0; a < AREAS.length; a++) {
+            areas[a] = AlmacenPacientes.AREAS.codigo(AREAS[a]);
+        }
+    }
+
+    Paciente nuevo() {
+        clave = clave == Integer.MAX_VALUE ? 0 : clave + 1;
+        llegada += 600;
+        return new Paciente(clave, nombre, apellido, 1 + rand.nextInt(ColaEnvejecimiento.MAX_CATEGORIA), llegada,
+            areas[rand.nextInt(areas.length)]);
+    }
+
+    int categoriaAlAzar() {
+        return 1 + rand.nextInt(ColaEnvejecimiento.MAX_CATEGORIA);
+    }
+
+    int enteroAlAzar(int limite) {
+        return rand.nextInt(limite);
+    }
+}
@@ -0,0 +1,72 @@
+package src;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+// Generador SplitMix64 con el estado a la vista, para guardarlo en una
+// instantánea (ver InstantaneaSimulacion) y seguir la misma secuencia al
+// restaurar: SplittableRandom no deja leer su estado. Con la misma semilla da
+// exactamente los mismos valores que new SplittableRandom(semilla), así que
+// usarlo en su lugar no cambia ninguna corrida.
+public final class AleatorioRestaurable implements RandomGenerator {
+    private static final long GAMMA = 0x9e3779b97f4a7c15L; // la de SplittableRandom
+
+    private long estado;
+
+    public AleatorioRestaurable(long semilla) {
+        this.estado = semilla;
+    }
+
+    // Todo el estado del generador: con setEstado(getEstado()) se repite la secuencia
+    public long getEstado() {
+        return estado;
+    }
+
+    public void setEstado(long estado) {
+        this.estado = estado;
+    }
+
+    @Override
+    public long nextLong() {
+        long z = estado += GAMMA;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public int nextInt() {
+        long z = estado += GAMMA;
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    // Test de funcionamiento: misma secuencia que SplittableRandom y que sí misma tras restaurar
+    public static void main(String[] args) {
+        int diferencias = 0;
+        for (long semilla : new long[] {0, 15, 2024, -7}) {
+            SplittableRandom referencia = new SplittableRandom(semilla);
+            AleatorioRestaurable rand = new AleatorioRestaurable(semilla);
+            for (int i = 0; i < 100_000; i++) {
+                switch (i % 5) {
+                    case 0: if (referencia.nextLong() != rand.nextLong()) diferencias++; break;
+                    case 1: if (referencia.nextInt() != rand.nextInt()) diferencias++; break;
+                    case 2: if (referencia.nextDouble() != rand.nextDouble()) diferencias++; break;
+                    case 3: if (referencia.nextGaussian() != rand.nextGaussian()) diferencias++; break;
+                    default: if (referencia.nextInt(37) != rand.nextInt(37)) diferencias++;
+                }
+            }
+        }
+        System.out.println("Diferencias con SplittableRandom: " + diferencias);
+
+        AleatorioRestaurable rand = new AleatorioRestaurable(3);
+        rand.nextGaussian();
+        AleatorioRestaurable copia = new AleatorioRestaurable(0);
+        copia.setEstado(rand.getEstado());
+        int distintos = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (rand.nextGaussian() != copia.nextGaussian()) distintos++;
+        }
+        System.out.println("Diferencias tras restaurar el estado: " + distintos);
+    }
+}
@@ -0,0 +1,198 @@
+package src;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Almacén compacto de pacientes en columnas de arreglos primitivos (struct of
+// arrays). Cada Paciente es solo una vista (segmento + posición) sobre estas
+// columnas: los textos repetidos se guardan como códigos de diccionario, la
+// categoría y el estado en un byte, el área en dos, y del historial solo se guarda la
+// secuencia del último evento en la BitacoraEventos del hilo que lo creó. Un
+// paciente en espera ocupa unos 70 bytes en vez de varios cientos.
+//
+// Las columnas se reservan en segmentos de tamaño fijo. Cada hilo llena su
+// propio segmento (sin bloqueos, como un TLAB) y al llenarse lo suelta: un
+// segmento lo mantienen vivo solo las vistas que apuntan a él (el hilo lo
+// referencia débilmente), así que el recolector lo libera, y con el último la
+// bitácora del hilo, cuando ya no queda ninguno de sus pacientes, sin necesidad
+// de devolver posiciones a mano.
+//
+// Los diccionarios son del proceso y solo guardan textos que se repiten entre
+// pacientes (nombres, apellidos, áreas, estados). Los ids fuera del formato
+// P%04d no pasan por un diccionario: su texto va en una columna del propio
+// segmento y se libera con él.
+public final class AlmacenPacientes {
+    static final int TAMANO_SEGMENTO = 256;
+
+    static final DiccionarioCadenas NOMBRES = new DiccionarioCadenas(Integer.MAX_VALUE);
+    static final DiccionarioCadenas APELLIDOS = new DiccionarioCadenas(Integer.MAX_VALUE);
+    static final DiccionarioCadenas AREAS = new DiccionarioCadenas(1 << 16);
+    static final DiccionarioCadenas ESTADOS = new DiccionarioCadenas(256);
+
+    // Próxima clave para un id fuera del formato P%04d: negativa y distinta para cada paciente
+    private static final AtomicInteger CLAVE_SUELTA = new AtomicInteger(-1);
+
+    static final int EN_ESPERA = ESTADOS.codigo("en_espera");
+
+    private static final int BANDERA_EXCEDIDO = 1;
+
+    private static final ThreadLocal<WeakReference<Segmento>> ACTUAL = new ThreadLocal<>();
+
+    private AlmacenPacientes() {
+    }
+
+    static final class Segmento {
+        final BitacoraEventos bitacora = BitacoraEventos.global(); // la del hilo que llena el segmento
+        final long[] llegada = new long[TAMANO_SEGMENTO];
+        final long[] atencion = new long[TAMANO_SEGMENTO];
+        final long[] ultimoEvento = new long[TAMANO_SEGMENTO]; // en 'bitacora', -1 si no hay
+        final int[] clave = new int[TAMANO_SEGMENTO];
+        final int[] nombre = new int[TAMANO_SEGMENTO];
+        final int[] apellido = new int[TAMANO_SEGMENTO];
+        final int[] indiceHeap = new int[TAMANO_SEGMENTO];   // en la cola general del hospital
+        final int[] indiceArea = new int[TAMANO_SEGMENTO];   // en la cola de su área de atención
+        final byte[] categoria = new byte[TAMANO_SEGMENTO];
+        final char[] area = new char[TAMANO_SEGMENTO];
+        final byte[] estado = new byte[TAMANO_SEGMENTO];
+        final byte[] banderas = new byte[TAMANO_SEGMENTO];
+        String[] idTexto; // id de los pacientes con clave negativa; se crea con el primero
+        private int usados = 0;
+
+        int agregar(String nombre, String apellido, String id, int categoria, long tiempoLlegada, String area) {
+            return agregar(id, NOMBRES.codigo(nombre), APELLIDOS.codigo(apellido), categoria,
+                tiempoLlegada, AREAS.codigo(area));
+        }
+
+        // Con los textos ya convertidos a códigos de los diccionarios (lectores de archivos)
+        int agregar(String id, int nombre, int apellido, int categoria, long tiempoLlegada, int area) {
+            int numero = numeroCanonico(id);
+            if (numero >= 0) return agregar(numero, nombre, apellido, categoria, tiempoLlegada, area);
+            int i = agregar(claveSuelta(), nombre, apellido, categoria, tiempoLlegada, area);
+            if (idTexto == null) idTexto = new String[TAMANO_SEGMENTO];
+            idTexto[i] = id;
+            return i;
+        }
+
+        // 'clave' es el número de un id P%04d (o una de claveSuelta(), con el id aparte)
+        int agregar(int clave, int nombre, int apellido, int categoria, long tiempoLlegada, int area) {
+            if (area < 0 || area > Character.MAX_VALUE) {
+                throw new IllegalArgumentException("Código de área fuera de rango: " + area);
+            }
+            int i = usados++;
+            this.clave[i] = clave;
+            this.nombre[i] = nombre;
+            this.apellido[i] = apellido;
+            this.categoria[i] = aByte(categoria);
+            this.llegada[i] = tiempoLlegada;
+            this.atencion[i] = -1;
+            this.area[i] = (char) area;
+            this.estado[i] = (byte) EN_ESPERA;
+            this.indiceHeap[i] = -1;
+            this.indiceArea[i] = -1;
+            this.ultimoEvento[i] = -1;
+            return i;
+        }
+
+        String id(int i) {
+            int c = clave[i];
+            return c >= 0 ? GeneradorPacientes.formatearId(c) : idTexto[i];
+        }
+
+        boolean isExcedido(int i) {
+            return (banderas[i] & BANDERA_EXCEDIDO) != 0;
+        }
+
+        void setExcedido(int i, boolean excedido) {
+            banderas[i] = (byte) (excedido ? banderas[i] | BANDERA_EXCEDIDO : banderas[i] & ~BANDERA_EXCEDIDO);
+        }
+    }
+
+    // Segmento del hilo actual con al menos una posición libre
+    static Segmento segmentoConEspacio() {
+        WeakReference<Segmento> ref = ACTUAL.get();
+        Segmento s = ref == null ? null : ref.get();
+        if (s == null || s.usados == TAMANO_SEGMENTO) {
+            s = new Segmento();
+            ACTUAL.set(new WeakReference<>(s));
+        }
+        return s;
+    }
+
+    static byte aByte(int categoria) {
+        if (categoria < Byte.MIN_VALUE || categoria > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Categoría fuera de rango: " + categoria);
+        }
+        return (byte) categoria;
+    }
+
+    // Clave de un paciente cuyo id no tiene el formato P%04d: un número negativo que
+    // no se repite (al dar la vuelta, tras 2^31 pacientes así, vuelve a -1). No dice
+    // nada del id, así que dos pacientes con el mismo id tienen claves distintas;
+    // quien necesite buscarlos por id guarda su propio índice (ver Hospital).
+    static int claveSuelta() {
+        return CLAVE_SUELTA.getAndUpdate(c -> c == Integer.MIN_VALUE ? -1 : c - 1);
+    }
+
+    // n si id es exactamente GeneradorPacientes.formatearId(n) y n cabe en un int; si no, -1
+    static int numeroCanonico(String id) {
+        if (id == null || id.length() < 5 || id.length() > 11 || id.charAt(0) != 'P') return -1;
+        if (id.length() > 5 && id.charAt(1) == '0') return -1; // solo se rellena hasta 4 dígitos
+        long numero = 0;
+        for (int i = 1; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            numero = numero * 10 + (c - '0');
+        }
+        return numero <= Integer.MAX_VALUE ? (int) numero : -1;
+    }
+
+    // Test de funcionamiento: memoria por paciente en espera dentro de un Hospital, y
+    // que los ids fuera de formato y las áreas nuevas no dejen nada en los diccionarios
+    // (java -Xmx2g -cp bin src.AlmacenPacientes 10000000 para probar con 10 millones)
+    public static void main(String[] args) {
+        int cantidad = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        Runtime rt = Runtime.getRuntime();
+        System.gc();
+        long antes = rt.totalMemory() - rt.freeMemory();
+
+        java.util.SplittableRandom rand = new java.util.SplittableRandom(5);
+        Hospital hospital = new Hospital(true);
+        hospital.setCapacidadAreas(Integer.MAX_VALUE);
+        for (int i = 1; i <= cantidad; i++) {
+            hospital.registrarPaciente(
+                GeneradorPacientes.generarPaciente(rand, GeneradorPacientes.formatearId(i), i * 600L));
+        }
+        System.gc();
+        long despues = rt.totalMemory() - rt.freeMemory();
+        System.out.printf("%d pacientes en espera: %.1f MB de heap, %.1f bytes por paciente\n",
+            cantidad, (despues - antes) / 1e6, (double) (despues - antes) / cantidad);
+
+        Paciente p = hospital.getColaAtencion().iterator().next();
+        p.registrarCambio("Prueba de historial");
+        System.out.println("Primero en la cola: " + p.getId() + " " + p.getNombre() + " " + p.getApellido()
+            + ", cat " + p.getCategoria() + ", área " + p.getArea() + ", " + p.getEstado()
+            + ", último cambio: " + p.obtenerUltimoCambio());
+        System.out.println("Textos distintos: " + NOMBRES.size() + " nombres, " + APELLIDOS.size()
+            + " apellidos, " + AREAS.size() + " áreas");
+
+        hospital = null;
+        p = null;
+        System.gc();
+        long sinPacientes = rt.totalMemory() - rt.freeMemory();
+        Hospital otro = new Hospital(true);
+        otro.setCapacidadAreas(Integer.MAX_VALUE);
+        for (int i = 0; i < 200_000; i++) {
+            otro.registrarPaciente(new Paciente("Ana", "Soto", "G" + i, 3, i, "sapu"));
+        }
+        boolean encontrado = otro.buscarPaciente("G199999") != null && "G199999".equals(otro.buscarPaciente("G199999").getId());
+        otro = null;
+        System.gc();
+        long trasOtro = rt.totalMemory() - rt.freeMemory();
+        System.out.printf("200000 ids fuera de formato: encontrados por id: %b, memoria retenida al soltarlos: %.1f MB\n",
+            encontrado, (trasOtro - sinPacientes) / 1e6);
+
+        int areas = AREAS.size();
+        for (int i = 0; i < 1000; i++) new Paciente("Ana", "Soto", "P0001", 3, 0, "area " + i);
+        System.out.println("Áreas distintas tras 1000 áreas nuevas: " + AREAS.size() + " (antes " + areas + ")");
+    }
+}
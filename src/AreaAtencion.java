@@ -1,11 +1,33 @@
 package src;
 
+import java.io.IOException;
 import java.util.*;
 
+// Área de atención modelada como una estación de c servidores: 'medicos' médicos
+// atienden en paralelo a los pacientes de su cola, cada uno durante un tiempo
+// que sale de la distribución de servicio del área. La cola es un HeapIndexado
+// por el canal de área, así que un paciente atendido desde la cola general del
+// hospital se retira también de aquí en O(log n).
 public class AreaAtencion {
     private String nombre;
-    private PriorityQueue<Paciente> pacientesHeap; // Cola de prioridad, primero por categoría, luego por tiempo de llegada
+    private HeapIndexado pacientesHeap; // Cola de prioridad, primero por categoría, luego por tiempo de llegada
+    private Comparator<Paciente> orden;
     private int capacidadMaxima;
+    private final EstadisticaEspera estadisticaEspera = new EstadisticaEspera(); // esperas de los atendidos del área
+    private final int[] cantidadPorCategoria = new int[ColaEnvejecimiento.MAX_CATEGORIA + 1]; // de los que esperan
+
+    // Servidores
+    private int medicos = 1;
+    private int ocupados = 0;
+    private DistribucionServicio servicio = DistribucionServicio.constante(15 * 60);
+    private long tiempoOcupado = 0; // suma de los tiempos de atención, para la utilización
+    private long atenciones = 0;    // atenciones terminadas
+
+    // Grupo de áreas compatibles y enlaces en el balde de lugares libres (ver GrupoAreas)
+    GrupoAreas grupo;
+    AreaAtencion anteriorEnBalde;
+    AreaAtencion siguienteEnBalde;
+    int balde = -1;
 
     // Comparador para orden prioritario
     private static class PacienteComparator implements Comparator<Paciente> {
@@ -21,9 +43,36 @@ public class AreaAtencion {
 
     // Constructor
     public AreaAtencion(String nombre, int capacidadMaxima) {
+        this(nombre, capacidadMaxima, false);
+    }
+
+    // Con envejecimiento la cola del área usa el mismo orden que ColaEnvejecimiento
+    public AreaAtencion(String nombre, int capacidadMaxima, boolean envejecimiento) {
         this.nombre = nombre.toLowerCase(); // homogeniza el formato
         this.capacidadMaxima = capacidadMaxima;
-        this.pacientesHeap = new PriorityQueue<>(new PacienteComparator());
+        this.orden = envejecimiento
+            ? Comparator.comparingLong(ColaEnvejecimiento::clave)
+            : new PacienteComparator();
+        this.pacientesHeap = new HeapIndexado(orden, HeapIndexado.CANAL_AREA);
+    }
+
+    // La cola del área sigue el orden de la política, como la cola general del hospital
+    public AreaAtencion(String nombre, int capacidadMaxima, PoliticaAtencion politica) {
+        this(nombre, capacidadMaxima, false);
+        setPolitica(politica);
+    }
+
+    // Solo con el área vacía
+    final void setPolitica(PoliticaAtencion politica) {
+        if (pacientesHeap.size() != 0) {
+            throw new IllegalStateException("No se puede cambiar la política con pacientes en espera en " + nombre);
+        }
+        long[] desfases = new long[ColaEnvejecimiento.MAX_CATEGORIA + 1];
+        for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) {
+            desfases[cat] = politica.desfase(cat);
+        }
+        this.orden = Comparator.comparingLong(p -> desfases[p.getCategoria()] + p.getTiempoLlegada());
+        this.pacientesHeap = new HeapIndexado(orden, HeapIndexado.CANAL_AREA);
     }
 
     // Getters
@@ -39,24 +88,182 @@ public class AreaAtencion {
         return pacientesHeap.size();
     }
 
+    public void setCapacidadMaxima(int capacidadMaxima) {
+        this.capacidadMaxima = capacidadMaxima;
+        cambioOcupacion();
+    }
+
+    // Cuántos de los que esperan en el área son de esa categoría, en O(1)
+    public int getCantidadPorCategoria(int categoria) {
+        return categoria < 1 || categoria > ColaEnvejecimiento.MAX_CATEGORIA ? 0 : cantidadPorCategoria[categoria];
+    }
+
+    public int getLugaresLibres() {
+        return capacidadMaxima - pacientesHeap.size();
+    }
+
+    public int getMedicos() {
+        return medicos;
+    }
+
+    public void setMedicos(int medicos) {
+        if (medicos < 1) throw new IllegalArgumentException("Un área necesita al menos un médico: " + medicos);
+        this.medicos = medicos;
+    }
+
+    public int getMedicosOcupados() {
+        return ocupados;
+    }
+
+    public DistribucionServicio getServicio() {
+        return servicio;
+    }
+
+    public void setServicio(DistribucionServicio servicio) {
+        this.servicio = servicio;
+    }
+
+    public long getAtenciones() {
+        return atenciones;
+    }
+
+    // Fracción del tiempo disponible (médicos × duración) que los médicos pasaron atendiendo
+    public double getUtilizacion(long duracion) {
+        return duracion > 0 ? (double) tiempoOcupado / ((double) medicos * duracion) : 0;
+    }
+
+    public EstadisticaEspera getEstadisticaEspera() {
+        return estadisticaEspera;
+    }
+
+    public void registrarEspera(long espera) {
+        estadisticaEspera.registrar(espera);
+    }
+
     // Métodos principales
-    public void ingresarPaciente(Paciente p) {
+    // Devuelve false si el área está saturada y el paciente no quedó en su cola
+    public boolean ingresarPaciente(Paciente p) {
         if (p != null && !estaSaturada()) {
             pacientesHeap.offer(p);
+            contar(p.getCategoria(), 1);
+            cambioOcupacion();
+            return true;
         }
+        return false;
     }
 
     public Paciente atenderPaciente() {
-        return pacientesHeap.poll();
+        Paciente p = pacientesHeap.poll();
+        if (p != null) {
+            contar(p.getCategoria(), -1);
+            cambioOcupacion();
+        }
+        return p;
+    }
+
+    public Paciente siguientePaciente() {
+        return pacientesHeap.peek();
+    }
+
+    // Saca de la cola a un paciente atendido por otra vía (cola general, emergencia)
+    public boolean retirarPaciente(Paciente p) {
+        if (!pacientesHeap.remove(p)) return false;
+        contar(p.getCategoria(), -1);
+        cambioOcupacion();
+        return true;
+    }
+
+    private void cambioOcupacion() {
+        if (grupo != null) grupo.actualizar(this);
+    }
+
+    // Reubica al paciente tras un cambio de categoría (la que tenía antes, para los conteos)
+    public void actualizarPaciente(Paciente p, int categoriaAnterior) {
+        if (!pacientesHeap.contiene(p)) return;
+        contar(categoriaAnterior, -1);
+        contar(p.getCategoria(), 1);
+        pacientesHeap.actualizar(p);
+    }
+
+    private void contar(int categoria, int delta) {
+        if (categoria >= 1 && categoria <= ColaEnvejecimiento.MAX_CATEGORIA) cantidadPorCategoria[categoria] += delta;
+    }
+
+    // Vacía la cola y las estadísticas para otra corrida; conserva médicos, servicio y capacidad
+    public void reiniciar() {
+        pacientesHeap.clear();
+        Arrays.fill(cantidadPorCategoria, 0);
+        estadisticaEspera.reiniciar();
+        ocupados = 0;
+        tiempoOcupado = 0;
+        atenciones = 0;
+        cambioOcupacion();
+    }
+
+    // Médicos ocupados, acumulados y cola en el orden del heap, para una instantánea
+    void escribirEstado(InstantaneaSimulacion.Salida out) throws IOException {
+        out.writeInt(ocupados);
+        out.writeLong(tiempoOcupado);
+        out.writeLong(atenciones);
+        estadisticaEspera.escribirEstado(out);
+        out.writeInt(pacientesHeap.size());
+        for (Paciente p : pacientesHeap) {
+            out.escribirPaciente(p);
+        }
+    }
+
+    // Reponer en el orden del arreglo deja el heap idéntico al guardado. No se mira la
+    // capacidad: si la nueva configuración tiene menos lugares, el área queda saturada.
+    void leerEstado(InstantaneaSimulacion.Entrada in) throws IOException {
+        reiniciar();
+        ocupados = in.readInt();
+        tiempoOcupado = in.readLong();
+        atenciones = in.readLong();
+        estadisticaEspera.leerEstado(in);
+        for (int k = in.readInt(); k > 0; k--) {
+            Paciente p = in.leerPaciente();
+            pacientesHeap.offer(p);
+            contar(p.getCategoria(), 1);
+        }
+        cambioOcupacion();
+    }
+
+    public boolean hayMedicoLibre() {
+        return ocupados < medicos;
+    }
+
+    // Un médico empieza a atender durante 'duracion' segundos (dentro del horizonte simulado)
+    public void ocuparMedico(long duracion) {
+        if (ocupados >= medicos) throw new IllegalStateException("No hay médicos libres en " + nombre);
+        ocupados++;
+        tiempoOcupado += duracion;
+    }
+
+    public void liberarMedico() {
+        if (ocupados == 0) throw new IllegalStateException("No hay médicos ocupados en " + nombre);
+        ocupados--;
+        atenciones++;
     }
 
     public boolean estaSaturada() {
         return pacientesHeap.size() >= capacidadMaxima;
     }
 
+    // Los que esperan en el orden en que el área los atendería, recorriendo el heap
+    // perezosamente (ver HeapIndexado.enOrden): no se copia ni se ordena la cola
+    public Iterator<Paciente> enOrden() {
+        return pacientesHeap.enOrden();
+    }
+
+    // Los primeros k en espera, en O(k log k)
+    public List<Paciente> primeros(int k) {
+        return HeapIndexado.primeros(pacientesHeap.enOrden(), k);
+    }
+
+    // La lista completa sale más barata copiando y ordenando que con el recorrido perezoso
     public List<Paciente> obtenerPacientesPorHeapSort() {
         List<Paciente> copia = new ArrayList<>(pacientesHeap);
-        copia.sort(new PacienteComparator()); // mantiene orden por prioridad
+        copia.sort(orden); // el mismo orden en que el área los atiende
         return copia;
     }
 
@@ -85,5 +292,21 @@ public class AreaAtencion {
         for (Paciente p : area.obtenerPacientesPorHeapSort()) {
             System.out.println(p.getNombre() + " - Categoría: " + p.getCategoria());
         }
+
+        System.out.println("Primeros 2: " + area.primeros(2).get(0).getNombre() + ", " + area.primeros(2).get(1).getNombre());
+        System.out.println("En espera con categoría 2: " + area.getCantidadPorCategoria(2));
+
+        // Un paciente atendido por otra vía deja lugar en el área
+        area.retirarPaciente(p3);
+        System.out.println("¿Área saturada tras retirar a Maria?: " + area.estaSaturada());
+
+        // Dos médicos: el tercer paciente espera a que uno se libere
+        area.setMedicos(2);
+        area.ocuparMedico(600);
+        area.ocuparMedico(900);
+        System.out.println("¿Médico libre con 2 de 2 ocupados?: " + area.hayMedicoLibre());
+        area.liberarMedico();
+        System.out.println("¿Médico libre tras terminar una atención?: " + area.hayMedicoLibre());
+        System.out.printf("Utilización en 1 hora: %.1f%%\n", 100 * area.getUtilizacion(3600));
     }
 }
@@ -0,0 +1,500 @@
+package src;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Barrido de parámetros para planificar capacidad: responde preguntas como
+// "¿cuántos médicos mantienen el p90 de espera de C2 bajo 20 minutos con una
+// llegada cada 5 minutos?" corriendo cada celda de una grilla de parámetros
+// (pacientes, intervalo medio entre llegadas, tiempo de atención, médicos por
+// área y capacidad de las áreas) con varias réplicas, en paralelo.
+//
+// Con médicos = 0 el hospital atiende a un paciente cada 'atencion' segundos (la
+// cadencia clásica); con médicos > 0 cada área es una estación con esa cantidad
+// de médicos y servicio exponencial de media 'atencion'.
+//
+// Cada hilo reutiliza su SimuladorUrgencia entre celdas (reiniciar), así que una
+// celda no vuelve a reservar hospital, colas, calendario ni estadísticas.
+//
+// Poda por dominancia: más médicos, llegadas más espaciadas o atención más corta
+// no empeoran la espera en promedio, así que una celda al menos tan holgada como
+// una factible se da por factible, y una al menos tan exigente como una no factible
+// por no factible (siempre con los mismos pacientes y capacidad). No vale réplica a
+// réplica (cambiar la dotación reordena los tiempos de servicio) ni con capacidad
+// finita (más holgura cambia a quién se rechaza o redirige), así que solo se deduce
+// con capacidad >= pacientes y cuando la celda terminada cumple, o no cumple, el
+// objetivo por más que el semiancho del IC 95% de la métrica entre sus réplicas;
+// con una sola réplica no se deduce nada. Los mínimos que dependen de una celda
+// deducida se marcan como no verificados (--verificar corre la grilla completa).
+//
+// Las celdas se toman en orden de médicos creciente y, antes de decidir si una se
+// deduce, se espera a que terminen las anteriores comparables con ella: así se
+// podan las mismas celdas con cualquier cantidad de hilos, y las que se corren dan
+// siempre lo mismo, porque la réplica i usa la semilla + i en todas las celdas
+// (números aleatorios comunes).
+public class BarridoParametros {
+    private static final com.sun.management.ThreadMXBean HILOS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final String[] AREAS = {"sapu", "urgencia_adulto", "infantil"};
+
+    public static final int PENDIENTE = 0;
+    public static final int FACTIBLE = 1;
+    public static final int NO_FACTIBLE = 2;
+    public static final int FACTIBLE_POR_DOMINANCIA = 3;
+    public static final int NO_FACTIBLE_POR_DOMINANCIA = 4;
+    private static final String[] ESTADOS = {"pendiente", "sí", "no", "sí*", "no*"};
+
+    public static final class Celda {
+        private final int pacientes;
+        private final long llegada;
+        private final long atencion;
+        private final int medicos;
+        private final int capacidad;
+
+        private volatile int estado = PENDIENTE;
+        private final EstadisticaEspera[] esperas = new EstadisticaEspera[ColaEnvejecimiento.MAX_CATEGORIA + 1];
+        private double valor;
+        private double margen; // semiancho del IC 95% de la métrica entre réplicas (NaN con una sola)
+        private long atendidos;
+        private long enEspera;
+        private long rechazados;
+        private double utilizacion;
+        private long nanos;
+        private long bytes;
+
+        private Celda(int pacientes, long llegada, long atencion, int medicos, int capacidad) {
+            this.pacientes = pacientes;
+            this.llegada = llegada;
+            this.atencion = atencion;
+            this.medicos = medicos;
+            this.capacidad = capacidad;
+        }
+
+        public int getEstado() {
+            return estado;
+        }
+
+        public int getMedicos() {
+            return medicos;
+        }
+
+        public double getValor() {
+            return valor;
+        }
+
+        boolean esFactible() {
+            return estado == FACTIBLE || estado == FACTIBLE_POR_DOMINANCIA;
+        }
+
+        // La cadencia clásica (0 médicos) no se compara con las estaciones
+        boolean mismaCarga(Celda otra) {
+            return pacientes == otra.pacientes && capacidad == otra.capacidad && (medicos == 0) == (otra.medicos == 0);
+        }
+
+        // Al menos tan holgada como 'otra' en todas las dimensiones monótonas
+        boolean almenosTanHolgada(Celda otra) {
+            return mismaCarga(otra) && medicos >= otra.medicos && llegada >= otra.llegada && atencion <= otra.atencion;
+        }
+
+        boolean comparable(Celda otra) {
+            return almenosTanHolgada(otra) || otra.almenosTanHolgada(this);
+        }
+
+        // Sin capacidad que se llene nadie se rechaza ni se redirige, y la dominancia se sostiene
+        boolean sinLimite() {
+            return capacidad >= pacientes;
+        }
+
+        boolean corrida() {
+            return estado == FACTIBLE || estado == NO_FACTIBLE;
+        }
+
+        String clave() {
+            return pacientes + "/" + llegada + "/" + atencion + "/" + capacidad;
+        }
+    }
+
+    // Grilla
+    private int[] pacientes = {400};
+    private long[] llegadas = {600};
+    private long[] atenciones = {900};
+    private int[] medicos = {1, 2, 3, 4};
+    private int[] capacidades = {100};
+    private long horizonte = SimuladorUrgencia.HORIZONTE_DIA;
+    private boolean llegadasPoisson = true;
+
+    // Objetivo: percentil (0 = media) de la espera de la categoría <= objetivo segundos
+    private int categoria = 2;
+    private double percentil = 90;
+    private long objetivo = SimuladorUrgencia.tiempoMaximo(2);
+
+    private int replicas = 3;
+    private long semilla = 2024;
+    private int hilos = Runtime.getRuntime().availableProcessors();
+    private boolean poda = true;
+    private boolean reutilizar = true;
+
+    private List<Celda> celdas;
+    private long nanosTotales;
+
+    public void setPacientes(int... pacientes) { this.pacientes = pacientes; }
+    public void setLlegadas(long... llegadas) { this.llegadas = llegadas; }
+    public void setAtenciones(long... atenciones) { this.atenciones = atenciones; }
+    public void setMedicos(int... medicos) { this.medicos = medicos; }
+    public void setCapacidades(int... capacidades) { this.capacidades = capacidades; }
+    public void setHorizonte(long horizonte) { this.horizonte = horizonte; }
+    public void setLlegadasPoisson(boolean llegadasPoisson) { this.llegadasPoisson = llegadasPoisson; }
+    public void setReplicas(int replicas) { this.replicas = replicas; }
+    public void setSemilla(long semilla) { this.semilla = semilla; }
+    public void setHilos(int hilos) { this.hilos = hilos; }
+    public void setPoda(boolean poda) { this.poda = poda; }
+    public void setReutilizar(boolean reutilizar) { this.reutilizar = reutilizar; }
+
+    public void setObjetivo(int categoria, double percentil, long segundos) {
+        this.categoria = categoria;
+        this.percentil = percentil;
+        this.objetivo = segundos;
+    }
+
+    public List<Celda> getCeldas() {
+        return celdas;
+    }
+
+    public List<Celda> ejecutar() throws InterruptedException {
+        celdas = new ArrayList<>();
+        int[] medicosOrdenados = medicos.clone();
+        Arrays.sort(medicosOrdenados);
+        long[] llegadasOrdenadas = llegadas.clone();
+        Arrays.sort(llegadasOrdenadas);
+        long[] atencionesOrdenadas = atenciones.clone();
+        Arrays.sort(atencionesOrdenadas);
+        // Orden de ejecución: menos médicos primero y, con los mismos, lo más holgado primero,
+        // para que cada resultado pueda podar a lo que viene
+        for (int m : medicosOrdenados) {
+            for (int i = llegadasOrdenadas.length - 1; i >= 0; i--) {
+                for (long a : atencionesOrdenadas) {
+                    for (int n : pacientes) {
+                        for (int c : capacidades) {
+                            celdas.add(new Celda(n, llegadasOrdenadas[i], a, m, c));
+                        }
+                    }
+                }
+            }
+        }
+
+        Object monitor = new Object();
+        int[] siguiente = {0};
+        ThreadLocal<SimuladorUrgencia> simuladores = new ThreadLocal<>();
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        long inicio = System.nanoTime();
+        List<Future<?>> trabajos = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            trabajos.add(ejecutor.submit(() -> {
+                while (true) {
+                    Celda celda;
+                    synchronized (monitor) {
+                        celda = tomarSiguiente(siguiente, monitor);
+                    }
+                    if (celda == null) return null;
+                    correr(celda, simuladores);
+                    synchronized (monitor) {
+                        monitor.notifyAll();
+                    }
+                }
+            }));
+        }
+        ejecutor.shutdown();
+        for (Future<?> trabajo : trabajos) {
+            try {
+                trabajo.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Falló una celda del barrido", e.getCause());
+            }
+        }
+        nanosTotales = System.nanoTime() - inicio;
+        return celdas;
+    }
+
+    // Con el monitor tomado: la próxima celda que no se pueda deducir de las anteriores.
+    // Antes de decidir se espera a las anteriores comparables que sigan corriendo (las
+    // anteriores ya se tomaron y ninguna espera a una posterior, así que siempre avanza).
+    private Celda tomarSiguiente(int[] siguiente, Object monitor) throws InterruptedException {
+        while (siguiente[0] < celdas.size()) {
+            int indice = siguiente[0]++;
+            Celda celda = celdas.get(indice);
+            if (poda && celda.sinLimite()) {
+                while (hayComparablePendiente(celda, indice)) monitor.wait();
+                if (deducir(celda, indice)) {
+                    monitor.notifyAll();
+                    continue;
+                }
+            }
+            return celda;
+        }
+        return null;
+    }
+
+    private boolean hayComparablePendiente(Celda celda, int indice) {
+        for (int i = 0; i < indice; i++) {
+            Celda anterior = celdas.get(i);
+            if (anterior.estado == PENDIENTE && celda.comparable(anterior)) return true;
+        }
+        return false;
+    }
+
+    // Solo con celdas corridas que cumplen, o no cumplen, el objetivo por más que su margen
+    private boolean deducir(Celda celda, int indice) {
+        for (int i = 0; i < indice; i++) {
+            Celda hecha = celdas.get(i);
+            if (hecha.estado == FACTIBLE && hecha.valor + hecha.margen <= objetivo && celda.almenosTanHolgada(hecha)) {
+                celda.estado = FACTIBLE_POR_DOMINANCIA;
+                return true;
+            }
+            if (hecha.estado == NO_FACTIBLE && hecha.valor - hecha.margen > objetivo && hecha.almenosTanHolgada(celda)) {
+                celda.estado = NO_FACTIBLE_POR_DOMINANCIA;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void correr(Celda celda, ThreadLocal<SimuladorUrgencia> simuladores) {
+        long bytesAntes = HILOS.getCurrentThreadAllocatedBytes();
+        long inicio = System.nanoTime();
+        for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) {
+            celda.esperas[cat] = new EstadisticaEspera();
+        }
+        double utilizacion = 0;
+        double suma = 0;
+        double sumaCuadrados = 0;
+        for (int r = 0; r < replicas; r++) {
+            SplittableRandom rand = new SplittableRandom(semilla + r);
+            FlujoPacientes flujo = llegadasPoisson
+                ? FlujoPacientes.poisson(rand, 0, 3600.0 / celda.llegada, celda.pacientes, horizonte)
+                : FlujoPacientes.periodico(rand, 0, celda.llegada, celda.pacientes, horizonte);
+            SimuladorUrgencia simulador = reutilizar ? simuladores.get() : null;
+            if (simulador == null) {
+                simulador = new SimuladorUrgencia(flujo);
+                simulador.setSilencioso(true);
+                simulador.setMemoriaAcotada(true); // no se guarda a los atendidos
+                simulador.setIntervaloLlegada(0);  // cada paciente en su propio tiempo de llegada
+                if (reutilizar) simuladores.set(simulador);
+            } else {
+                simulador.reiniciar(flujo);
+            }
+            simulador.setCapacidadAreas(celda.capacidad);
+            if (celda.medicos > 0) {
+                for (String area : AREAS) {
+                    simulador.configurarArea(area, celda.medicos, DistribucionServicio.exponencial(celda.atencion));
+                }
+                simulador.setSemillaServicio(semilla + 1_000_003L * (r + 1));
+            } else {
+                simulador.setModoEstaciones(false);
+                simulador.setIntervaloAtencion(celda.atencion);
+            }
+            simulador.simular(celda.pacientes, horizonte);
+
+            for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) {
+                celda.esperas[cat].combinar(simulador.getEsperaConPendientes(cat));
+                celda.atendidos += simulador.getCantidadAtendidos(cat);
+            }
+            EstadisticaEspera replica = simulador.getEsperaConPendientes(categoria);
+            double metrica = replica.getCantidad() == 0 ? Double.NaN
+                : percentil <= 0 ? replica.getMedia() : replica.percentil(percentil);
+            suma += metrica;
+            sumaCuadrados += metrica * metrica;
+            celda.enEspera += simulador.getCantidadEnEspera();
+            celda.rechazados += simulador.getAdmisiones(Hospital.RECHAZADO);
+            if (celda.medicos > 0) {
+                for (AreaAtencion area : simulador.getAreas()) {
+                    utilizacion += area.getUtilizacion(horizonte) / simulador.getAreas().size();
+                }
+            }
+        }
+        celda.utilizacion = utilizacion / replicas;
+        double varianza = replicas > 1 ? Math.max(0, (sumaCuadrados - suma * suma / replicas) / (replicas - 1)) : Double.NaN;
+        celda.margen = ReplicadorSimulaciones.cuantilT(0.95, replicas - 1) * Math.sqrt(varianza / replicas);
+        EstadisticaEspera objetivoCategoria = celda.esperas[categoria];
+        celda.valor = percentil <= 0 ? objetivoCategoria.getMedia() : objetivoCategoria.percentil(percentil);
+        celda.estado = objetivoCategoria.getCantidad() > 0 && celda.valor <= objetivo ? FACTIBLE : NO_FACTIBLE;
+        celda.nanos = System.nanoTime() - inicio;
+        celda.bytes = HILOS.getCurrentThreadAllocatedBytes() - bytesAntes;
+    }
+
+    private String nombreMetrica() {
+        return "C" + categoria + (percentil <= 0 ? " media" : " p" + (int) percentil);
+    }
+
+    public void mostrarResultados() {
+        System.out.printf("Objetivo: espera %s <= %d s; %d réplicas por celda, %s\n", nombreMetrica(), objetivo, replicas,
+            llegadasPoisson ? "llegadas de Poisson" : "llegadas a intervalo fijo");
+        System.out.printf("%9s %8s %8s %7s %9s %12s %10s %10s %9s %10s %6s %8s\n", "Pacientes", "Llegada", "Atención",
+            "Médicos", "Capacidad", nombreMetrica() + " (s)", "Media (s)", "Atendidos", "En espera", "Rechazados",
+            "Util.", "Factible");
+        for (Celda c : celdas) {
+            if (c.corrida()) {
+                System.out.printf("%9d %8d %8d %7d %9d %12.0f %10.1f %10d %9d %10d %5.0f%% %8s\n", c.pacientes, c.llegada,
+                    c.atencion, c.medicos, c.capacidad, c.valor, c.esperas[categoria].getMedia(), c.atendidos / replicas,
+                    c.enEspera / replicas, c.rechazados / replicas, 100 * c.utilizacion, ESTADOS[c.estado]);
+            } else {
+                System.out.printf("%9d %8d %8d %7d %9d %12s %10s %10s %9s %10s %6s %8s\n", c.pacientes, c.llegada,
+                    c.atencion, c.medicos, c.capacidad, "-", "-", "-", "-", "-", "-", ESTADOS[c.estado]);
+            }
+        }
+        System.out.println("(* deducida por dominancia, sin correrla)");
+
+        System.out.println("\nMínimo de médicos por área que cumple el objetivo:");
+        for (Map.Entry<String, Integer> e : minimos().entrySet()) {
+            String[] partes = e.getKey().split("/");
+            System.out.printf("  %s pacientes, llegada cada %s s, atención %s s, capacidad %s: %s%s\n", partes[0], partes[1],
+                partes[2], partes[3], e.getValue() == null ? "ninguno de los probados" : e.getValue(),
+                verificado(e.getKey(), e.getValue()) ? "" : " (no verificado: depende de celdas deducidas)");
+        }
+
+        long corridas = 0;
+        long nanosCeldas = 0;
+        long bytes = 0;
+        for (Celda c : celdas) {
+            if (c.corrida()) {
+                corridas++;
+                nanosCeldas += c.nanos;
+                bytes += c.bytes;
+            }
+        }
+        System.out.printf("\n%d celdas: %d corridas, %d deducidas. %.2f s de reloj con %d hilos (%.1f s sumando las celdas);"
+                + " %.1f MB reservados por celda corrida\n", celdas.size(), corridas, celdas.size() - corridas,
+            nanosTotales / 1e9, hilos, nanosCeldas / 1e9, corridas == 0 ? 0 : bytes / 1e6 / corridas);
+    }
+
+    // Para cada combinación de pacientes, llegada, atención y capacidad: el mínimo de médicos factible (o null)
+    public Map<String, Integer> minimos() {
+        Map<String, Integer> minimos = new LinkedHashMap<>();
+        for (Celda c : celdas) {
+            minimos.putIfAbsent(c.clave(), null);
+            if (c.esFactible()) {
+                Integer actual = minimos.get(c.clave());
+                if (actual == null || c.medicos < actual) minimos.put(c.clave(), c.medicos);
+            }
+        }
+        return minimos;
+    }
+
+    // Un mínimo está verificado si se corrieron su celda y todas las de menos médicos
+    private boolean verificado(String clave, Integer minimo) {
+        for (Celda c : celdas) {
+            if (c.clave().equals(clave) && (minimo == null || c.medicos <= minimo) && !c.corrida()) return false;
+        }
+        return true;
+    }
+
+    public void exportarCsv(String archivo) throws IOException {
+        try (PrintWriter salida = new PrintWriter(new BufferedWriter(new FileWriter(archivo)))) {
+            StringBuilder encabezado = new StringBuilder("pacientes,llegada,atencion,medicos,capacidad,estado,valor,atendidos,en_espera,rechazados,utilizacion");
+            for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) {
+                encabezado.append(",media_c").append(cat).append(",p90_c").append(cat);
+            }
+            salida.println(encabezado);
+            for (Celda c : celdas) {
+                boolean corrida = c.corrida();
+                StringBuilder fila = new StringBuilder();
+                fila.append(c.pacientes).append(',').append(c.llegada).append(',').append(c.atencion).append(',')
+                    .append(c.medicos).append(',').append(c.capacidad).append(',').append(ESTADOS[c.estado]);
+                if (corrida) {
+                    fila.append(',').append(Math.round(c.valor)).append(',').append(c.atendidos / replicas)
+                        .append(',').append(c.enEspera / replicas).append(',').append(c.rechazados / replicas)
+                        .append(',').append(String.format(Locale.ROOT, "%.3f", c.utilizacion));
+                    for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) {
+                        fila.append(',').append(String.format(Locale.ROOT, "%.1f", c.esperas[cat].getMedia()))
+                            .append(',').append(c.esperas[cat].percentil(90));
+                    }
+                }
+                salida.println(fila);
+            }
+        }
+    }
+
+    private static int[] enteros(String lista) {
+        return Arrays.stream(lista.split(",")).mapToInt(t -> Integer.parseInt(t.trim())).toArray();
+    }
+
+    private static long[] largos(String lista) {
+        return Arrays.stream(lista.split(",")).mapToLong(t -> Long.parseLong(t.trim())).toArray();
+    }
+
+    //   java -cp bin src.BarridoParametros [--pacientes 400] [--llegada 300,450,600] [--atencion 900]
+    //        [--medicos 1,2,3,4,5] [--capacidad 100] [--categoria 2] [--percentil 90] [--objetivo 1200]
+    //        [--replicas 3] [--semilla 2024] [--hilos N] [--horizonte 86400] [--periodicas]
+    //        [--sin-poda] [--sin-reutilizar] [--verificar] [--csv archivo]
+    //
+    // --medicos 0 usa la cadencia clásica (un paciente cada --atencion segundos en todo el hospital).
+    // La poda solo actúa en las celdas con --capacidad >= --pacientes y más de una réplica.
+    // --verificar corre además la grilla completa sin poda y compara los mínimos.
+    public static void main(String[] args) throws Exception {
+        BarridoParametros barrido = new BarridoParametros();
+        barrido.setLlegadas(300, 450, 600);
+        barrido.setMedicos(1, 2, 3, 4, 5);
+        boolean verificar = false;
+        String csv = null;
+        int categoria = 2;
+        double percentil = 90;
+        long objetivo = -1;
+        for (int i = 0; i < args.length; i++) {
+            String opcion = args[i].toLowerCase();
+            switch (opcion) {
+                case "--periodicas": barrido.setLlegadasPoisson(false); continue;
+                case "--sin-poda": barrido.setPoda(false); continue;
+                case "--sin-reutilizar": barrido.setReutilizar(false); continue;
+                case "--verificar": verificar = true; continue;
+                default: break;
+            }
+            if (i + 1 >= args.length) break;
+            String valor = args[++i];
+            switch (opcion) {
+                case "--pacientes": barrido.setPacientes(enteros(valor)); break;
+                case "--llegada": barrido.setLlegadas(largos(valor)); break;
+                case "--atencion": barrido.setAtenciones(largos(valor)); break;
+                case "--medicos": barrido.setMedicos(enteros(valor)); break;
+                case "--capacidad": barrido.setCapacidades(enteros(valor)); break;
+                case "--categoria": categoria = Integer.parseInt(valor); break;
+                case "--percentil": percentil = Double.parseDouble(valor); break;
+                case "--objetivo": objetivo = Long.parseLong(valor); break;
+                case "--replicas": barrido.setReplicas(Integer.parseInt(valor)); break;
+                case "--semilla": barrido.setSemilla(Long.parseLong(valor)); break;
+                case "--hilos": barrido.setHilos(Integer.parseInt(valor)); break;
+                case "--horizonte": barrido.setHorizonte(Long.parseLong(valor)); break;
+                case "--csv": csv = valor; break;
+                default: System.err.println("Opción desconocida: " + args[i - 1]);
+            }
+        }
+        barrido.setObjetivo(categoria, percentil, objetivo >= 0 ? objetivo : SimuladorUrgencia.tiempoMaximo(categoria));
+
+        barrido.ejecutar();
+        barrido.mostrarResultados();
+        if (csv != null) {
+            barrido.exportarCsv(csv);
+            System.out.println("Resultados guardados en " + csv);
+        }
+
+        if (verificar) {
+            List<Celda> conPoda = barrido.getCeldas();
+            Map<String, Integer> minimosConPoda = barrido.minimos();
+            barrido.setPoda(false);
+            List<Celda> completas = barrido.ejecutar();
+            // Cada celda deducida tiene que dar lo mismo al correrla (las dos listas van en el mismo orden)
+            int deducidas = 0;
+            int errores = 0;
+            for (int i = 0; i < conPoda.size(); i++) {
+                Celda c = conPoda.get(i);
+                if (c.corrida()) continue;
+                deducidas++;
+                if (c.esFactible() != completas.get(i).esFactible()) errores++;
+            }
+            Map<String, Integer> minimosSinPoda = barrido.minimos();
+            System.out.printf("\nVerificación sin poda (%.2f s): %d de %d deducciones equivocadas; mínimos %s\n",
+                barrido.nanosTotales / 1e9, errores, deducidas, minimosConPoda.equals(minimosSinPoda)
+                    ? "iguales" : "DISTINTOS: " + minimosConPoda + " vs " + minimosSinPoda);
+        }
+    }
+}
@@ -0,0 +1,545 @@
+package src;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+// Prueba rápida de los caminos calientes de las colas, sin dependencias; las
+// mediciones de verdad son las de JMH en jmh/src (BenchmarkHospital, BenchmarkArea
+// y BenchmarkSimulacion), con bifurcación de la JVM y -prof gc para las reservas.
+// Aquí cada caso se prepara para una profundidad de cola, se calienta
+// unas iteraciones y luego se mide. Se informa rendimiento (ops/s), tiempo
+// medio por operación, bytes reservados por operación (contador de reservas
+// del hilo) y las recolecciones de basura ocurridas durante las iteraciones.
+//
+// Las operaciones se miden en lotes de a lo más 'profundidad' operaciones y
+// entre lotes se restaura la cola sin medir, así la profundidad se mantiene
+// entre d y 2d durante todo el caso.
+//
+//   java -cp bin src.BenchmarkColas [--casos atender,simular] [--profundidades 10,1000]
+//                                   [--calentamiento 3] [--iteraciones 5]
+public class BenchmarkColas {
+    private static final int[] PROFUNDIDADES = {10, 1_000, 100_000, 1_000_000};
+    private static final int OPERACIONES_POR_ITERACION = 100_000;
+    private static final int LOTE_MAXIMO = 10_000;
+
+    private static final com.sun.management.ThreadMXBean HILOS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Evita que el JIT descarte el trabajo medido
+    private static long sumidero = 0;
+
+    private abstract static class Caso {
+        private final String nombre;
+        protected final SplittableRandom rand = new SplittableRandom(42);
+        protected int profundidad;
+        private long siguienteId = 0;
+
+        Caso(String nombre) {
+            this.nombre = nombre;
+        }
+
+        // Sin medir: deja la estructura con 'profundidad' pacientes
+        abstract void prepararProfundidad();
+
+        // Sin medir: se llama antes de cada lote
+        void prepararLote(int n) {
+        }
+
+        // Medido: n operaciones
+        abstract void ejecutarLote(int n);
+
+        // Operaciones que hizo el último lote, si no son las n pedidas
+        long operacionesDeLote(int n) {
+            return n;
+        }
+
+        int operacionesPorIteracion() {
+            return OPERACIONES_POR_ITERACION;
+        }
+
+        int tamanoLote() {
+            return Math.max(1, Math.min(profundidad, LOTE_MAXIMO));
+        }
+
+        // Pacientes nuevos con llegadas crecientes, como los del generador
+        Paciente nuevoPaciente() {
+            long n = ++siguienteId;
+            return GeneradorPacientes.generarPaciente(rand, GeneradorPacientes.formatearId(n), n * 600);
+        }
+
+        Paciente[] nuevosPacientes(int n) {
+            Paciente[] pacientes = new Paciente[n];
+            for (int i = 0; i < n; i++) {
+                pacientes[i] = nuevoPaciente();
+            }
+            return pacientes;
+        }
+    }
+
+    // Hospital con 'profundidad' pacientes en espera que no guarda a los atendidos
+    private abstract static class CasoHospital extends Caso {
+        private final boolean prioridadDinamica;
+        protected Hospital hospital;
+        protected Paciente[] lote = new Paciente[0];
+
+        CasoHospital(String nombre, boolean prioridadDinamica) {
+            super(nombre);
+            this.prioridadDinamica = prioridadDinamica;
+        }
+
+        @Override
+        void prepararProfundidad() {
+            hospital = new Hospital(prioridadDinamica);
+            hospital.setConservarAtendidos(false);
+            hospital.setCapacidadAreas(Integer.MAX_VALUE); // todos a la cola, sin control de admisión
+            for (int i = 0; i < profundidad; i++) {
+                hospital.registrarPaciente(nuevoPaciente());
+            }
+        }
+    }
+
+    private static class CasoRegistrar extends CasoHospital {
+        CasoRegistrar() {
+            super("Hospital.registrarPaciente", true);
+        }
+
+        @Override
+        void prepararLote(int n) {
+            for (Paciente p : lote) {
+                hospital.eliminarDeCola(p);
+            }
+            lote = nuevosPacientes(n);
+        }
+
+        @Override
+        void ejecutarLote(int n) {
+            for (int i = 0; i < n; i++) {
+                hospital.registrarPaciente(lote[i]);
+            }
+        }
+    }
+
+    private static class CasoAtender extends CasoHospital {
+        private long tiempo = 0;
+
+        CasoAtender(boolean prioridadDinamica) {
+            super("Hospital.atenderSiguiente (" + (prioridadDinamica ? "dinámica" : "estática") + ")", prioridadDinamica);
+        }
+
+        @Override
+        void prepararLote(int n) {
+            for (Paciente p : nuevosPacientes(n)) {
+                hospital.registrarPaciente(p);
+            }
+        }
+
+        @Override
+        void ejecutarLote(int n) {
+            for (int i = 0; i < n; i++) {
+                tiempo += 900;
+                sumidero += hospital.atenderSiguiente(tiempo).getCategoria();
+            }
+        }
+    }
+
+    private static class CasoReasignar extends CasoHospital {
+        private String[] ids;
+        private String[] objetivos = new String[0];
+        private int[] categorias = new int[0];
+
+        CasoReasignar() {
+            super("Hospital.reasignarCategoria", true);
+        }
+
+        @Override
+        void prepararProfundidad() {
+            super.prepararProfundidad();
+            ids = new String[profundidad];
+            int i = 0;
+            for (Paciente p : hospital.getColaAtencion()) {
+                ids[i++] = p.getId();
+            }
+        }
+
+        @Override
+        int tamanoLote() {
+            return LOTE_MAXIMO; // la profundidad no cambia
+        }
+
+        @Override
+        void prepararLote(int n) {
+            if (objetivos.length < n) {
+                objetivos = new String[n];
+                categorias = new int[n];
+            }
+            for (int i = 0; i < n; i++) {
+                objetivos[i] = ids[rand.nextInt(ids.length)];
+                categorias[i] = 1 + rand.nextInt(ColaEnvejecimiento.MAX_CATEGORIA);
+            }
+        }
+
+        @Override
+        void ejecutarLote(int n) {
+            for (int i = 0; i < n; i++) {
+                hospital.reasignarCategoria(objetivos[i], categorias[i]);
+            }
+        }
+    }
+
+    // Área con capacidad de sobra para que ninguna operación se rechace por saturación
+    private abstract static class CasoArea extends Caso {
+        protected AreaAtencion area;
+        protected Paciente[] lote = new Paciente[0];
+
+        CasoArea(String nombre) {
+            super(nombre);
+        }
+
+        @Override
+        void prepararProfundidad() {
+            area = new AreaAtencion("urgencia_adulto", 2 * profundidad + LOTE_MAXIMO);
+            for (int i = 0; i < profundidad; i++) {
+                area.ingresarPaciente(nuevoPaciente());
+            }
+        }
+    }
+
+    private static class CasoIngresarArea extends CasoArea {
+        CasoIngresarArea() {
+            super("AreaAtencion.ingresarPaciente");
+        }
+
+        @Override
+        void prepararLote(int n) {
+            while (area.getCantidadPacientes() > profundidad) {
+                area.atenderPaciente();
+            }
+            lote = nuevosPacientes(n);
+        }
+
+        @Override
+        void ejecutarLote(int n) {
+            for (int i = 0; i < n; i++) {
+                area.ingresarPaciente(lote[i]);
+            }
+        }
+    }
+
+    private static class CasoAtenderArea extends CasoArea {
+        CasoAtenderArea() {
+            super("AreaAtencion.atenderPaciente");
+        }
+
+        @Override
+        void prepararLote(int n) {
+            for (Paciente p : nuevosPacientes(n)) {
+                area.ingresarPaciente(p);
+            }
+        }
+
+        @Override
+        void ejecutarLote(int n) {
+            for (int i = 0; i < n; i++) {
+                sumidero += area.atenderPaciente().getCategoria();
+            }
+        }
+    }
+
+    private static class CasoHeapSort extends CasoArea {
+        CasoHeapSort() {
+            super("AreaAtencion.obtenerPacientesPorHeapSort");
+        }
+
+        @Override
+        int operacionesPorIteracion() {
+            return Math.max(3, 2_000_000 / profundidad); // cada operación recorre toda el área
+        }
+
+        @Override
+        int tamanoLote() {
+            return 1;
+        }
+
+        @Override
+        void ejecutarLote(int n) {
+            for (int i = 0; i < n; i++) {
+                sumidero += area.obtenerPacientesPorHeapSort().size();
+            }
+        }
+    }
+
+    // Lo que consulta un tablero: los diez próximos del área, sin copiar la cola
+    private static class CasoPrimerosArea extends CasoArea {
+        CasoPrimerosArea() {
+            super("AreaAtencion.primeros(10)");
+        }
+
+        @Override
+        void ejecutarLote(int n) {
+            for (int i = 0; i < n; i++) {
+                sumidero += area.primeros(10).size();
+            }
+        }
+    }
+
+    // Pacientes de la categoría 1 (la menos frecuente) y el conteo de cada categoría
+    private static class CasoPorCategoria extends CasoHospital {
+        CasoPorCategoria() {
+            super("Hospital.obtenerPacientesPorCategoria(1)", true);
+        }
+
+        @Override
+        int operacionesPorIteracion() {
+            return Math.max(3, 2_000_000 / profundidad); // devuelve una fracción fija de la cola
+        }
+
+        @Override
+        int tamanoLote() {
+            return 1;
+        }
+
+        @Override
+        void ejecutarLote(int n) {
+            for (int i = 0; i < n; i++) {
+                sumidero += hospital.obtenerPacientesPorCategoria(1).size();
+                for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) {
+                    sumidero += hospital.contarPorCategoria(cat);
+                }
+            }
+        }
+    }
+
+    // Un día completo con 'profundidad' llegadas de Poisson: la cola termina con
+    // casi todos ellos, porque en un día se atienden 96. Generar los pacientes es
+    // parte de lo medido, porque el flujo es perezoso.
+    private static class CasoSimular extends Caso {
+        private SimuladorUrgencia simulador;
+
+        CasoSimular() {
+            super("SimuladorUrgencia.simular (1 día)");
+        }
+
+        @Override
+        void prepararProfundidad() {
+        }
+
+        @Override
+        int operacionesPorIteracion() {
+            return Math.max(1, 20_000 / profundidad);
+        }
+
+        @Override
+        int tamanoLote() {
+            return 1;
+        }
+
+        @Override
+        void prepararLote(int n) {
+            FlujoPacientes flujo = FlujoPacientes.poisson(rand.split(), 0, profundidad / 24.0,
+                profundidad, SimuladorUrgencia.HORIZONTE_DIA);
+            simulador = new SimuladorUrgencia(flujo);
+            simulador.setIntervaloLlegada(0);
+            simulador.setSilencioso(true);
+            simulador.setCapacidadAreas(Integer.MAX_VALUE);
+        }
+
+        @Override
+        void ejecutarLote(int n) {
+            simulador.simular(Integer.MAX_VALUE, SimuladorUrgencia.HORIZONTE_DIA);
+            sumidero += simulador.getCantidadAtendidos(1);
+        }
+    }
+
+    // El bucle de eventos en régimen: tres áreas con un médico cada una (servicio
+    // exponencial de 25 min) y una llegada cada 10 min, con memoria acotada y sin
+    // salidas. Los pacientes se crean antes del lote, así que lo medido es solo
+    // calendario, plazos, colas y estadísticas; la operación es un evento. Con
+    // telemetría se suman sus contadores e histogramas de latencia (sin JFR grabando).
+    private static class CasoEventos extends Caso {
+        private static final long SEPARACION = 600;
+
+        private final SimuladorUrgencia simulador;
+        private final List<Paciente> llegadas = new ArrayList<>();
+        private long siguienteId = 0;
+        private long eventosAntes;
+
+        CasoEventos(boolean conTelemetria) {
+            super(conTelemetria ? "SimuladorUrgencia eventos (telemetría)" : "SimuladorUrgencia eventos (régimen)");
+            simulador = new SimuladorUrgencia(Collections.emptyIterator());
+            for (String area : new String[] {"urgencia_adulto", "infantil", "sapu"}) {
+                simulador.configurarArea(area, 1, DistribucionServicio.exponencial(1500));
+            }
+            simulador.setMemoriaAcotada(true);
+            simulador.setSilencioso(true);
+            simulador.setIntervaloLlegada(0);
+            simulador.setCapacidadAreas(Integer.MAX_VALUE);
+            if (conTelemetria) simulador.setTelemetria(new Telemetria());
+        }
+
+        @Override
+        void prepararProfundidad() {
+        }
+
+        @Override
+        int tamanoLote() {
+            return Math.max(1, Math.min(profundidad, LOTE_MAXIMO));
+        }
+
+        // Un lote de n llegadas; cada una genera dos eventos (llegada y fin de atención)
+        @Override
+        void prepararLote(int n) {
+            llegadas.clear();
+            for (int i = 0; i < n; i++) {
+                long id = ++siguienteId;
+                llegadas.add(GeneradorPacientes.generarPaciente(rand, GeneradorPacientes.formatearId(id), i * SEPARACION));
+            }
+            simulador.reiniciar(llegadas.iterator());
+            eventosAntes = simulador.getEventosProcesados();
+        }
+
+        @Override
+        void ejecutarLote(int n) {
+            simulador.simular(Integer.MAX_VALUE, n * SEPARACION + SimuladorUrgencia.HORIZONTE_DIA);
+            sumidero += simulador.getCantidadAtendidos(1);
+        }
+
+        @Override
+        long operacionesDeLote(int n) {
+            return simulador.getEventosProcesados() - eventosAntes;
+        }
+    }
+
+    private static final class Medicion {
+        long operaciones;
+        long nanos;
+        long bytes;
+    }
+
+    private static void medirIteracion(Caso caso, Medicion m, long costoLecturaNanos, long costoLecturaBytes) {
+        int restantes = caso.operacionesPorIteracion();
+        while (restantes > 0) {
+            int n = Math.min(restantes, caso.tamanoLote());
+            caso.prepararLote(n);
+            long bytesAntes = HILOS.getCurrentThreadAllocatedBytes();
+            long inicio = System.nanoTime();
+            caso.ejecutarLote(n);
+            long nanos = System.nanoTime() - inicio;
+            long bytes = HILOS.getCurrentThreadAllocatedBytes() - bytesAntes;
+            m.nanos += Math.max(0, nanos - costoLecturaNanos);
+            m.bytes += Math.max(0, bytes - costoLecturaBytes);
+            m.operaciones += caso.operacionesDeLote(n);
+            restantes -= n;
+        }
+    }
+
+    private static long recolecciones() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long tiempoRecoleccion() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static void ejecutar(Caso caso, int profundidad, int calentamiento, int iteraciones,
+                                 long costoLecturaNanos, long costoLecturaBytes) {
+        caso.profundidad = profundidad;
+        caso.prepararProfundidad();
+        for (int i = 0; i < calentamiento; i++) {
+            medirIteracion(caso, new Medicion(), costoLecturaNanos, costoLecturaBytes);
+        }
+
+        double[] nanosPorOp = new double[iteraciones];
+        long bytes = 0;
+        long operaciones = 0;
+        long gcAntes = recolecciones();
+        long gcTiempoAntes = tiempoRecoleccion();
+        for (int i = 0; i < iteraciones; i++) {
+            Medicion m = new Medicion();
+            medirIteracion(caso, m, costoLecturaNanos, costoLecturaBytes);
+            nanosPorOp[i] = (double) m.nanos / m.operaciones;
+            bytes += m.bytes;
+            operaciones += m.operaciones;
+        }
+        long gc = recolecciones() - gcAntes;
+        long gcMs = tiempoRecoleccion() - gcTiempoAntes;
+
+        double media = 0;
+        for (double x : nanosPorOp) media += x;
+        media /= iteraciones;
+        double varianza = 0;
+        for (double x : nanosPorOp) varianza += (x - media) * (x - media);
+        double desviacion = iteraciones > 1 ? Math.sqrt(varianza / (iteraciones - 1)) : 0;
+
+        System.out.printf("%-42s %9d %14.1f %14.1f ± %-9.1f %10.1f %5d %7d\n", caso.nombre, profundidad,
+            1e9 / media, media, desviacion, (double) bytes / operaciones, gc, gcMs);
+    }
+
+    private static List<Caso> casos() {
+        return List.of(
+            new CasoRegistrar(),
+            new CasoAtender(false),
+            new CasoAtender(true),
+            new CasoReasignar(),
+            new CasoIngresarArea(),
+            new CasoAtenderArea(),
+            new CasoHeapSort(),
+            new CasoPrimerosArea(),
+            new CasoPorCategoria(),
+            new CasoSimular(),
+            new CasoEventos(false),
+            new CasoEventos(true));
+    }
+
+    public static void main(String[] args) {
+        int[] profundidades = PROFUNDIDADES;
+        String[] filtros = null;
+        int calentamiento = 3;
+        int iteraciones = 5;
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equalsIgnoreCase("--profundidades")) {
+                profundidades = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+            } else if (args[i].equalsIgnoreCase("--casos")) {
+                filtros = args[++i].toLowerCase().split(",");
+            } else if (args[i].equalsIgnoreCase("--calentamiento")) {
+                calentamiento = Integer.parseInt(args[++i]);
+            } else if (args[i].equalsIgnoreCase("--iteraciones")) {
+                iteraciones = Integer.parseInt(args[++i]);
+            }
+        }
+
+        // Costo de las propias lecturas del reloj y del contador de reservas
+        long costoNanos = Long.MAX_VALUE;
+        long costoBytes = Long.MAX_VALUE;
+        for (int i = 0; i < 10_000; i++) {
+            long bytesAntes = HILOS.getCurrentThreadAllocatedBytes();
+            long inicio = System.nanoTime();
+            long nanos = System.nanoTime() - inicio;
+            long bytes = HILOS.getCurrentThreadAllocatedBytes() - bytesAntes;
+            costoNanos = Math.min(costoNanos, nanos);
+            costoBytes = Math.min(costoBytes, bytes);
+        }
+
+        System.out.printf("%-42s %9s %14s %14s   %-9s %10s %5s %7s\n",
+            "Caso", "Prof.", "ops/s", "ns/op", "(desv.)", "B/op", "GC", "GC ms");
+        for (Caso plantilla : casos()) {
+            if (filtros != null && Arrays.stream(filtros).noneMatch(plantilla.nombre.toLowerCase()::contains)) {
+                continue;
+            }
+            for (int profundidad : profundidades) {
+                // Un caso nuevo por profundidad para no arrastrar estado
+                Caso caso = casos().stream().filter(c -> c.nombre.equals(plantilla.nombre)).findFirst().get();
+                ejecutar(caso, profundidad, calentamiento, iteraciones, costoNanos, costoBytes);
+            }
+        }
+        if (sumidero == 42) System.out.println();
+    }
+}
@@ -0,0 +1,311 @@
+package src;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Bitácora de eventos de pacientes, solo de agregado, en un anillo de arreglos
+// primitivos. Cada evento guarda su tipo, la clave del paciente, el
+// tiempo de simulación, la categoría anterior y la nueva, y la secuencia del
+// evento anterior del mismo paciente: el paciente guarda solo la secuencia de su
+// último evento y su historial se recorre por esa cadena. El anillo se reserva
+// por bloques de TAMANO_BLOQUE eventos a medida que se llena, así que ocupa
+// memoria según lo que se registró y no según su capacidad; una vez reservados
+// todos los bloques registrar no reserva memoria. Cuando el anillo da la vuelta
+// se pisan los eventos más viejos y los historiales quedan truncados a lo que
+// siga en él.
+//
+// global() es la bitácora del hilo actual: cada hilo tiene la suya, y un paciente
+// registra siempre en la del hilo que lo creó (la guarda su segmento de
+// AlmacenPacientes). Así las réplicas, celdas de un barrido y hospitales de una
+// red que corren en hilos distintos no compiten por la secuencia ni se pisan los
+// historiales. El hilo la referencia débilmente: la mantienen viva solo los
+// segmentos de sus pacientes, y un hilo de un pool que ya no tiene pacientes
+// vivos no retiene su anillo (el siguiente paciente empieza uno nuevo).
+//
+// Otro hilo puede registrar en el anillo a la vez (p. ej. el que atiende en
+// HospitalConcurrente a pacientes creados por quien los ingresa): la secuencia se
+// reserva con un AtomicLong y se publica al final, y al leer se comprueba antes y
+// después que la posición no se haya reutilizado mientras tanto.
+public class BitacoraEventos {
+    public static final int REGISTRADO = 0;
+    public static final int REASIGNADO = 1;
+    public static final int ATENDIDO = 2;
+    public static final int EXCEDIDO = 3;
+    public static final int NOTA = 4; // texto libre de Paciente.registrarCambio
+    public static final int REDIRIGIDO = 5; // admisión en otra área: anterior y nueva son códigos de área
+    public static final int DIFERIDO = 6;
+    public static final int RECHAZADO = 7;
+    public static final int TRASLADADO = 8; // a otro hospital de la red: anterior y nueva son los hospitales
+
+    public static final int CAPACIDAD_POR_DEFECTO = 1 << 18;
+    // Los hilos virtuales suelen ser muchos y cortos (una conexión, un médico)
+    public static final int CAPACIDAD_HILO_VIRTUAL = 1 << 12;
+    // 36 KB por bloque (8 + 8 + 8 + 4 + 8 bytes por evento)
+    public static final int TAMANO_BLOQUE = 1 << 10;
+
+    private static final int MAX_NOTAS = 1 << 12; // el código de nota ocupa 12 bits
+    private static final String NOTA_DESCARTADA = "(nota no guardada: demasiadas notas distintas)";
+
+    private static final ThreadLocal<WeakReference<BitacoraEventos>> DEL_HILO = new ThreadLocal<>();
+    private static final VarHandle SECUENCIAS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final String[] MENSAJES_REASIGNACION = new String[ColaEnvejecimiento.MAX_CATEGORIA + 1];
+    static {
+        for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) {
+            MENSAJES_REASIGNACION[cat] = "Reasignado a categoría " + cat;
+        }
+    }
+
+    // Se llama del evento más nuevo al más viejo
+    public interface VisitaEvento {
+        void visitar(int tipo, long tiempo, int categoriaAnterior, int categoriaNueva, String nota);
+    }
+
+    private static final class Bloque {
+        final long[] secuencia;  // -1 mientras la posición se está escribiendo
+        final long[] tiempo;
+        final long[] anterior;   // secuencia del evento anterior del mismo paciente, -1 si no hay
+        final int[] clave;
+        final long[] datos;      // tipo (4 bits) | anterior (16) | nueva (16) | código de nota (12)
+
+        Bloque(int tamano) {
+            secuencia = new long[tamano];
+            Arrays.fill(secuencia, -1);
+            tiempo = new long[tamano];
+            anterior = new long[tamano];
+            clave = new int[tamano];
+            datos = new long[tamano];
+        }
+    }
+
+    private final int mascara;
+    private final int bitsBloque;
+    private final int mascaraBloque;
+    private final AtomicReferenceArray<Bloque> bloques; // null hasta que se escribe en el bloque
+    private final AtomicLong escritos = new AtomicLong();
+    // Textos de las notas libres de este anillo, que se repiten mucho
+    private final DiccionarioCadenas notas = new DiccionarioCadenas(MAX_NOTAS);
+    private final int notaDescartada = notas.codigo(NOTA_DESCARTADA);
+
+    public BitacoraEventos(int capacidad) {
+        if (Integer.bitCount(capacidad) != 1) {
+            throw new IllegalArgumentException("La capacidad debe ser potencia de 2: " + capacidad);
+        }
+        mascara = capacidad - 1;
+        int tamanoBloque = Math.min(capacidad, TAMANO_BLOQUE);
+        bitsBloque = Integer.numberOfTrailingZeros(tamanoBloque);
+        mascaraBloque = tamanoBloque - 1;
+        bloques = new AtomicReferenceArray<>(capacidad / tamanoBloque);
+    }
+
+    // La bitácora del hilo actual (se crea con el primer paciente del hilo, o de nuevo
+    // si ya no quedaba ningún paciente que la usara)
+    public static BitacoraEventos global() {
+        WeakReference<BitacoraEventos> ref = DEL_HILO.get();
+        BitacoraEventos bitacora = ref == null ? null : ref.get();
+        if (bitacora == null) {
+            bitacora = new BitacoraEventos(
+                Thread.currentThread().isVirtual() ? CAPACIDAD_HILO_VIRTUAL : CAPACIDAD_POR_DEFECTO);
+            DEL_HILO.set(new WeakReference<>(bitacora));
+        }
+        return bitacora;
+    }
+
+    // El bloque de la posición i, reservándolo si es la primera escritura en él
+    private Bloque bloqueParaEscribir(int i) {
+        int k = i >>> bitsBloque;
+        Bloque b = bloques.getAcquire(k);
+        if (b == null) {
+            Bloque nuevo = new Bloque(mascaraBloque + 1);
+            b = bloques.compareAndExchangeRelease(k, null, nuevo);
+            if (b == null) b = nuevo;
+        }
+        return b;
+    }
+
+    // Agrega un evento y devuelve su secuencia, que pasa a ser el último evento del paciente
+    public long registrar(int tipo, int clavePaciente, long ultimoEvento, long tiempoSimulacion,
+                          int categoriaAnterior, int categoriaNueva, int nota) {
+        long s = escritos.getAndIncrement();
+        int i = (int) (s & mascara);
+        Bloque b = bloqueParaEscribir(i);
+        int j = i & mascaraBloque;
+        SECUENCIAS.setVolatile(b.secuencia, j, -1L);
+        // Sin la barrera los datos nuevos podrían verse antes que la invalidación, y un
+        // lector que aún ve la secuencia vieja los tomaría por los del evento anterior
+        VarHandle.storeStoreFence();
+        b.tiempo[j] = tiempoSimulacion;
+        b.anterior[j] = ultimoEvento;
+        b.clave[j] = clavePaciente;
+        b.datos[j] = tipo | (categoriaAnterior & 0xFFFFL) << 4 | (categoriaNueva & 0xFFFFL) << 20 | (long) nota << 36;
+        SECUENCIAS.setRelease(b.secuencia, j, s);
+        return s;
+    }
+
+    // Con el diccionario de notas lleno, los textos nuevos quedan como NOTA_DESCARTADA
+    int codigoNota(String texto) {
+        int codigo = notas.buscar(texto);
+        if (codigo >= 0) return codigo;
+        try {
+            return notas.codigo(texto);
+        } catch (IllegalStateException e) {
+            return notaDescartada;
+        }
+    }
+
+    // Recorre la cadena de un paciente desde su último evento hacia atrás
+    public void recorrer(long ultimoEvento, VisitaEvento visita) {
+        long s = ultimoEvento;
+        while (s >= 0) {
+            int i = (int) (s & mascara);
+            Bloque b = bloques.getAcquire(i >>> bitsBloque);
+            if (b == null) return;
+            int j = i & mascaraBloque;
+            if ((long) SECUENCIAS.getAcquire(b.secuencia, j) != s) return; // ya se pisó
+            long t = b.tiempo[j];
+            long previo = b.anterior[j];
+            long d = b.datos[j];
+            VarHandle.loadLoadFence();
+            if ((long) SECUENCIAS.getVolatile(b.secuencia, j) != s) return;
+            visita.visitar((int) d & 0xF, t, (short) (d >>> 4), (short) (d >>> 20), notas.texto((int) (d >>> 36)));
+            s = previo;
+        }
+    }
+
+    public long getEscritos() {
+        return escritos.get();
+    }
+
+    public int getCapacidad() {
+        return mascara + 1;
+    }
+
+    // Eventos para los que ya hay memoria reservada
+    public int getReservados() {
+        int reservados = 0;
+        for (int k = 0; k < bloques.length(); k++) {
+            if (bloques.get(k) != null) reservados += mascaraBloque + 1;
+        }
+        return reservados;
+    }
+
+    // Texto con que se muestra un evento en los historiales de Paciente
+    static String describir(int tipo, long tiempo, int categoriaAnterior, int categoriaNueva, String nota) {
+        switch (tipo) {
+            case REGISTRADO:
+                return "Paciente registrado";
+            case REASIGNADO:
+                return categoriaNueva >= 1 && categoriaNueva <= ColaEnvejecimiento.MAX_CATEGORIA
+                    ? MENSAJES_REASIGNACION[categoriaNueva]
+                    : "Reasignado a categoría " + categoriaNueva;
+            case ATENDIDO:
+                return "Paciente atendido";
+            case EXCEDIDO:
+                return "Tiempo máximo de espera excedido";
+            case REDIRIGIDO:
+                return "Redirigido de " + AlmacenPacientes.AREAS.texto(categoriaAnterior & 0xFFFF)
+                    + " a " + AlmacenPacientes.AREAS.texto(categoriaNueva & 0xFFFF);
+            case DIFERIDO:
+                return "Sin lugar en su área: en espera de admisión";
+            case RECHAZADO:
+                return "Rechazado: áreas y desborde llenos";
+            case TRASLADADO:
+                return "Trasladado del hospital " + (categoriaAnterior & 0xFFFF) + " al " + (categoriaNueva & 0xFFFF);
+            default:
+                return nota;
+        }
+    }
+
+    // Test de funcionamiento: registrar no reserva memoria, las cadenas por paciente
+    // sobreviven intercaladas con las de otros y se truncan al dar la vuelta el anillo
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean hilos =
+            (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        int pacientes = 100;
+        int eventos = 3_000;
+
+        BitacoraEventos bitacora = new BitacoraEventos(1 << 12);
+        long[] ultimo = new long[pacientes];
+        Arrays.fill(ultimo, -1);
+        for (int i = 0; i < eventos; i++) {
+            int p = i % pacientes;
+            int nota = i % 2 == 0 ? 0 : bitacora.codigoNota("nota " + (i % 7));
+            ultimo[p] = bitacora.registrar(i % 2 == 0 ? REASIGNADO : NOTA, p, ultimo[p], i, 3, 1 + i % 5, nota);
+        }
+        int[] leidos = {0};
+        int[] errores = {0};
+        for (int p = 0; p < pacientes; p++) {
+            final int paciente = p;
+            long[] previo = {Long.MAX_VALUE};
+            bitacora.recorrer(ultimo[p], (tipo, t, anterior, nueva, nota) -> {
+                if (t >= previo[0] || t % pacientes != paciente || nueva != 1 + t % 5) errores[0]++;
+                previo[0] = t;
+                leidos[0]++;
+            });
+        }
+        System.out.println("Eventos leídos por paciente: " + leidos[0] + " de " + eventos + ", erróneos: " + errores[0]);
+
+        long[] otros = new long[pacientes];
+        Arrays.fill(otros, -1);
+        for (int i = 0; i < 200_000; i++) { // calentamiento
+            otros[i % pacientes] = bitacora.registrar(ATENDIDO, i, otros[i % pacientes], i, 1, 1, 0);
+        }
+        long bytesAntes = hilos.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 1_000_000; i++) {
+            otros[i % pacientes] = bitacora.registrar(ATENDIDO, i, otros[i % pacientes], i, 1, 1, 0);
+        }
+        long bytes = hilos.getCurrentThreadAllocatedBytes() - bytesAntes;
+        System.out.println("Bytes reservados en 1.000.000 de registros: " + bytes);
+
+        int[] restantes = {0};
+        bitacora.recorrer(ultimo[0], (tipo, t, anterior, nueva, nota) -> restantes[0]++);
+        System.out.println("Eventos del paciente 0 que siguen tras la vuelta del anillo: " + restantes[0]);
+
+        // Las notas de un anillo están acotadas: pasado el máximo se guardan como descartadas
+        for (int i = 0; i < MAX_NOTAS + 10; i++) bitacora.codigoNota("nota distinta " + i);
+        long s = bitacora.registrar(NOTA, 0, -1, 0, 1, 1, bitacora.codigoNota("una más"));
+        String[] texto = {null};
+        bitacora.recorrer(s, (tipo, t, anterior, nueva, nota) -> texto[0] = nota);
+        System.out.println("Nota con el diccionario lleno: " + texto[0]);
+
+        // Cada hilo registra en su propia bitácora
+        BitacoraEventos[] deOtroHilo = {null};
+        Thread hilo = new Thread(() -> deOtroHilo[0] = global());
+        hilo.start();
+        try {
+            hilo.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Bitácora propia por hilo: " + (deOtroHilo[0] != global()));
+
+        // La memoria crece con los eventos registrados, no con la capacidad
+        BitacoraEventos grande = new BitacoraEventos(CAPACIDAD_POR_DEFECTO);
+        for (int i = 0; i < 3_000; i++) grande.registrar(ATENDIDO, i, -1, i, 1, 1, 0);
+        System.out.println("Eventos reservados tras 3.000 registros: " + grande.getReservados()
+            + " de " + grande.getCapacidad());
+
+        // Sin pacientes que la usen, la bitácora de un hilo que sigue vivo se libera
+        WeakReference<BitacoraEventos> bitacoraDelPool = new WeakReference<>(null);
+        java.util.concurrent.ExecutorService pool = java.util.concurrent.Executors.newSingleThreadExecutor();
+        try {
+            bitacoraDelPool = pool.submit(() -> {
+                new Paciente("Ana", "Soto", "P0001", 3, 0, "sapu");
+                return new WeakReference<>(global());
+            }).get();
+            for (int i = 0; i < 50 && bitacoraDelPool.get() != null; i++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            pool.shutdown();
+        }
+        System.out.println("Bitácora liberada con el hilo del pool aún vivo: " + (bitacoraDelPool.get() == null));
+    }
+}
@@ -0,0 +1,155 @@
+package src;
+
+import java.io.IOException;
+import java.util.*;
+
+// Calendario de eventos discretos: devuelve siempre el evento más próximo.
+// A igual tiempo se respeta el orden de la simulación por minutos: primero
+// llegadas y luego la atención regular (los plazos los lleva RuedaTemporizadores).
+// Los fines de atención de las estaciones van al último, cuando ya están en
+// cola todos los que llegaron en ese instante. Los traslados desde otro hospital
+// de la red entran después de todo lo demás del instante.
+public class CalendarioEventos {
+    public static final int LLEGADA = 0;
+    public static final int ATENCION = 1;
+    public static final int FIN_ATENCION = 2;
+    public static final int TRASLADO = 3;
+
+    // El evento que devuelve siguiente(): se reutiliza, vale hasta la próxima llamada
+    public static class Evento {
+        private long tiempo;
+        private int tipo;
+        private Paciente paciente;
+
+        private Evento() {
+        }
+
+        public long getTiempo() {
+            return tiempo;
+        }
+
+        public int getTipo() {
+            return tipo;
+        }
+
+        public Paciente getPaciente() {
+            return paciente;
+        }
+    }
+
+    // Heap binario en arreglos paralelos, sin un objeto por evento: programar y sacar
+    // no reservan memoria salvo al crecer. El orden es tiempo, tipo y secuencia de
+    // programación (tipo y secuencia van juntos en un long).
+    private static final int BITS_SECUENCIA = 58;
+
+    private long[] tiempos = new long[64];
+    private long[] ordenes = new long[64];
+    private Paciente[] pacientes = new Paciente[64];
+    private int cantidad = 0;
+    private long secuencia = 0;
+    private final Evento actual = new Evento();
+
+    public void programar(long tiempo, int tipo, Paciente paciente) {
+        if (cantidad == tiempos.length) crecer();
+        long orden = (long) tipo << BITS_SECUENCIA | secuencia++;
+        int i = cantidad++;
+        while (i > 0) {
+            int padre = (i - 1) >>> 1;
+            if (!antes(tiempo, orden, tiempos[padre], ordenes[padre])) break;
+            mover(padre, i);
+            i = padre;
+        }
+        tiempos[i] = tiempo;
+        ordenes[i] = orden;
+        pacientes[i] = paciente;
+    }
+
+    public Evento siguiente() {
+        if (cantidad == 0) return null;
+        actual.tiempo = tiempos[0];
+        actual.tipo = (int) (ordenes[0] >>> BITS_SECUENCIA);
+        actual.paciente = pacientes[0];
+        int ultimo = --cantidad;
+        long tiempo = tiempos[ultimo];
+        long orden = ordenes[ultimo];
+        Paciente paciente = pacientes[ultimo];
+        pacientes[ultimo] = null;
+        if (ultimo > 0) {
+            int i = 0;
+            while (true) {
+                int hijo = 2 * i + 1;
+                if (hijo >= ultimo) break;
+                if (hijo + 1 < ultimo && antes(tiempos[hijo + 1], ordenes[hijo + 1], tiempos[hijo], ordenes[hijo])) hijo++;
+                if (!antes(tiempos[hijo], ordenes[hijo], tiempo, orden)) break;
+                mover(hijo, i);
+                i = hijo;
+            }
+            tiempos[i] = tiempo;
+            ordenes[i] = orden;
+            pacientes[i] = paciente;
+        }
+        return actual;
+    }
+
+    private static boolean antes(long tiempoA, long ordenA, long tiempoB, long ordenB) {
+        return tiempoA != tiempoB ? tiempoA < tiempoB : ordenA < ordenB;
+    }
+
+    private void mover(int desde, int hasta) {
+        tiempos[hasta] = tiempos[desde];
+        ordenes[hasta] = ordenes[desde];
+        pacientes[hasta] = pacientes[desde];
+    }
+
+    private void crecer() {
+        int capacidad = tiempos.length * 2;
+        tiempos = Arrays.copyOf(tiempos, capacidad);
+        ordenes = Arrays.copyOf(ordenes, capacidad);
+        pacientes = Arrays.copyOf(pacientes, capacidad);
+    }
+
+    // Tiempo del próximo evento, o Long.MAX_VALUE si no queda ninguno
+    public long tiempoSiguiente() {
+        return cantidad == 0 ? Long.MAX_VALUE : tiempos[0];
+    }
+
+    // Descarta los eventos pendientes para reutilizar el calendario en otra corrida
+    public void vaciar() {
+        Arrays.fill(pacientes, 0, cantidad, null);
+        cantidad = 0;
+        secuencia = 0;
+        actual.paciente = null;
+    }
+
+    // Copia exacta del heap, con las secuencias, para una instantánea
+    void escribirEstado(InstantaneaSimulacion.Salida out) throws IOException {
+        out.writeLong(secuencia);
+        out.writeInt(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            out.writeLong(tiempos[i]);
+            out.writeLong(ordenes[i]);
+            out.escribirPaciente(pacientes[i]);
+        }
+    }
+
+    void leerEstado(InstantaneaSimulacion.Entrada in) throws IOException {
+        vaciar();
+        secuencia = in.readLong();
+        int n = in.readInt();
+        while (tiempos.length < n) crecer();
+        for (int i = 0; i < n; i++) {
+            tiempos[i] = in.readLong();
+            ordenes[i] = in.readLong();
+            pacientes[i] = in.leerPaciente();
+        }
+        cantidad = n;
+    }
+
+    public boolean estaVacio() {
+        return cantidad == 0;
+    }
+
+    public int size() {
+        return cantidad;
+    }
+}
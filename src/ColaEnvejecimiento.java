@@ -0,0 +1,304 @@
+package src;
+
+import java.util.*;
+
+// Cola de prioridad con envejecimiento (prioridad = categoria - espera / 30 min).
+// Como todos los pacientes envejecen a la misma velocidad, el orden entre dos
+// pacientes no depende del instante en que se consulta: equivale a comparar la
+// clave fija categoria * 1800 + tiempoLlegada. Por eso basta con una cola por
+// categoría (ordenada por llegada) y elegir, al atender, la cabeza con menor clave.
+// Sin envejecimiento se atiende siempre la categoría más baja con pacientes.
+// Sirve igual para cualquier PoliticaAtencion de clave fija (desfase por
+// categoría + llegada), como el plazo más cercano.
+// Cada cola por categoría es un HeapIndexado, de modo que reasignar o retirar
+// un paciente cuesta O(log n).
+public class ColaEnvejecimiento extends AbstractQueue<Paciente> {
+    public static final int MAX_CATEGORIA = 5;
+    public static final long SEGUNDOS_POR_NIVEL = 30 * 60; // cada 30 min baja 1 punto
+
+    private static final Comparator<Paciente> POR_LLEGADA =
+        (a, b) -> Long.compare(a.getTiempoLlegada(), b.getTiempoLlegada());
+
+    private final HeapIndexado[] colasPorCategoria;
+    private final HeapIndexado[] colasActivas; // las de 1..MAX_CATEGORIA, para mezclarlas
+    private final long[] desfases = new long[MAX_CATEGORIA + 1]; // de la política, por categoría
+    private final Comparator<Paciente> porClave; // orden de atención completo, el de colaSiguiente()
+    private final boolean desempateOriginal; // envejecimiento: los empates se deciden como antes (ver antes)
+    private int cantidad = 0;
+
+    private static final long SIN_INSTANTE = Long.MIN_VALUE;
+
+    public ColaEnvejecimiento() {
+        this(true);
+    }
+
+    public ColaEnvejecimiento(boolean envejecimiento) {
+        this(envejecimiento ? PoliticaAtencion.envejecimiento() : PoliticaAtencion.estatica());
+    }
+
+    public ColaEnvejecimiento(PoliticaAtencion politica) {
+        boolean envejecimiento = true;
+        for (int cat = 1; cat <= MAX_CATEGORIA; cat++) {
+            desfases[cat] = politica.desfase(cat);
+            envejecimiento &= desfases[cat] == cat * SEGUNDOS_POR_NIVEL;
+        }
+        desempateOriginal = envejecimiento;
+        porClave = (a, b) -> {
+            int c = Long.compare(claveDe(a), claveDe(b));
+            return c != 0 ? c : Long.compare(a.getTiempoLlegada(), b.getTiempoLlegada());
+        };
+        colasPorCategoria = new HeapIndexado[MAX_CATEGORIA + 1];
+        for (int cat = 1; cat <= MAX_CATEGORIA; cat++) {
+            colasPorCategoria[cat] = new HeapIndexado(POR_LLEGADA);
+        }
+        colasActivas = Arrays.copyOfRange(colasPorCategoria, 1, MAX_CATEGORIA + 1);
+    }
+
+    // Clave invariante en el tiempo: menor clave = se atiende antes
+    public static long clave(Paciente p) {
+        return p.getCategoria() * SEGUNDOS_POR_NIVEL + p.getTiempoLlegada();
+    }
+
+    // La clave con la política de esta cola
+    private long claveDe(Paciente p) {
+        return desfases[p.getCategoria()] + p.getTiempoLlegada();
+    }
+
+    @Override
+    public boolean offer(Paciente p) {
+        colaDe(p.getCategoria()).offer(p); // O(1) si los pacientes llegan en orden
+        cantidad++;
+        return true;
+    }
+
+    @Override
+    public Paciente poll() {
+        return poll(SIN_INSTANTE);
+    }
+
+    // El primero en atenderse en el instante 'ahora'. Solo cambia algo en un empate
+    // exacto de clave entre categorías, que se decide como en la versión original
+    // (ver antes); poll() sin instante lo decide por llegada.
+    public Paciente poll(long ahora) {
+        HeapIndexado cola = colaSiguiente(ahora);
+        if (cola == null) return null;
+        cantidad--;
+        return cola.poll();
+    }
+
+    @Override
+    public Paciente peek() {
+        HeapIndexado cola = colaSiguiente(SIN_INSTANTE);
+        return cola == null ? null : cola.peek();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Paciente && colaQueContiene((Paciente) o) != null;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Paciente)) return false;
+        HeapIndexado cola = colaQueContiene((Paciente) o);
+        if (cola == null) return false;
+        cola.remove(o);
+        cantidad--;
+        return true;
+    }
+
+    // Cambia la categoría de un paciente en espera y lo mueve a la cola que corresponde.
+    // Devuelve false si el paciente no estaba en esta cola (solo se cambia la categoría).
+    public boolean reasignar(Paciente p, int nuevaCategoria) {
+        HeapIndexado origen = colaQueContiene(p);
+        if (origen == null) {
+            p.setCategoria(nuevaCategoria);
+            return false;
+        }
+        HeapIndexado destino = colaDe(nuevaCategoria);
+        origen.remove(p);
+        p.setCategoria(nuevaCategoria);
+        destino.offer(p);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return cantidad;
+    }
+
+    @Override
+    public void clear() {
+        for (int cat = 1; cat <= MAX_CATEGORIA; cat++) {
+            colasPorCategoria[cat].clear();
+        }
+        cantidad = 0;
+    }
+
+    @Override
+    public Iterator<Paciente> iterator() {
+        return new Iterator<Paciente>() {
+            private int cat = 1;
+            private Iterator<Paciente> actual = colasPorCategoria[1].iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!actual.hasNext() && cat < MAX_CATEGORIA) {
+                    actual = colasPorCategoria[++cat].iterator();
+                }
+                return actual.hasNext();
+            }
+
+            @Override
+            public Paciente next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return actual.next();
+            }
+
+            @Override
+            public void remove() {
+                actual.remove();
+                cantidad--;
+            }
+        };
+    }
+
+    // Pacientes en espera en el orden en que se atenderían, sin copiar la cola:
+    // se mezclan perezosamente las colas por categoría (ver HeapIndexado.enOrden)
+    public Iterator<Paciente> enOrden() {
+        return HeapIndexado.enOrden(colasActivas, porClave);
+    }
+
+    // Los de una categoría, en orden de llegada; O(k) para k pacientes de esa categoría
+    public Iterator<Paciente> enOrden(int categoria) {
+        return colaDe(categoria).enOrden();
+    }
+
+    // Los de una categoría sin orden particular (más barato que enOrden si no importa)
+    public Iterator<Paciente> deCategoria(int categoria) {
+        return colaDe(categoria).iterator();
+    }
+
+    public int cantidadPorCategoria(int categoria) {
+        return categoria < 1 || categoria > MAX_CATEGORIA ? 0 : colasPorCategoria[categoria].size();
+    }
+
+    // Cabeza con mayor prioridad entre las colas de cada categoría (5 comparaciones)
+    private HeapIndexado colaSiguiente(long ahora) {
+        HeapIndexado mejor = null;
+        Paciente mejorCabeza = null;
+        long mejorClave = 0;
+        for (int cat = 1; cat <= MAX_CATEGORIA; cat++) {
+            Paciente cabeza = colasPorCategoria[cat].peek();
+            if (cabeza == null) continue;
+            long k = desfases[cat] + cabeza.getTiempoLlegada();
+            if (mejor == null || k < mejorClave || (k == mejorClave && antes(cabeza, mejorCabeza, ahora))) {
+                mejor = colasPorCategoria[cat];
+                mejorCabeza = cabeza;
+                mejorClave = k;
+            }
+        }
+        return mejor;
+    }
+
+    // Desempate entre dos cabezas con la misma clave. La versión original comparaba
+    // categoria - espera / 60.0 / 30.0 en double en el instante de la atención, y en
+    // un empate exacto de clave (llegadas separadas por múltiplos de 30 min) el
+    // redondeo de esas restas decidía. Con envejecimiento y un instante se repite ese
+    // cálculo para atender en el mismo orden; si también empatan, gana el que llegó antes.
+    private boolean antes(Paciente a, Paciente b, long ahora) {
+        if (desempateOriginal && ahora != SIN_INSTANTE) {
+            double prioridadA = a.getCategoria() - ((ahora - a.getTiempoLlegada()) / 60.0 / 30.0);
+            double prioridadB = b.getCategoria() - ((ahora - b.getTiempoLlegada()) / 60.0 / 30.0);
+            int c = Double.compare(prioridadA, prioridadB);
+            if (c != 0) return c < 0;
+        }
+        return a.getTiempoLlegada() < b.getTiempoLlegada();
+    }
+
+    private HeapIndexado colaQueContiene(Paciente p) {
+        int cat = p.getCategoria();
+        if (cat >= 1 && cat <= MAX_CATEGORIA && colasPorCategoria[cat].contiene(p)) {
+            return colasPorCategoria[cat];
+        }
+        // Si la categoría cambió mientras estaba en la cola, se busca en las demás
+        for (int c = 1; c <= MAX_CATEGORIA; c++) {
+            if (colasPorCategoria[c].contiene(p)) return colasPorCategoria[c];
+        }
+        return null;
+    }
+
+    private HeapIndexado colaDe(int categoria) {
+        if (categoria < 1 || categoria > MAX_CATEGORIA) {
+            throw new IllegalArgumentException("Categoría fuera de rango: " + categoria);
+        }
+        return colasPorCategoria[categoria];
+    }
+
+    // Test de funcionamiento: compara el orden de atención con la implementación
+    // anterior (PriorityQueue reconstruida con el comparador dinámico en cada atención).
+    public static void main(String[] args) {
+        Random rand = new Random(42);
+        int errores = 0;
+        int empatesPorLlegada = 0;
+        for (int ronda = 0; ronda < 200; ronda++) {
+            final long[] ahora = {0};
+            Comparator<Paciente> dinamico = (a, b) -> {
+                double prioridad1 = a.getCategoria() - ((ahora[0] - a.getTiempoLlegada()) / 60.0 / 30.0);
+                double prioridad2 = b.getCategoria() - ((ahora[0] - b.getTiempoLlegada()) / 60.0 / 30.0);
+                if (prioridad1 != prioridad2) return Double.compare(prioridad1, prioridad2);
+                return Long.compare(a.getTiempoLlegada(), b.getTiempoLlegada());
+            };
+            PriorityQueue<Paciente> referencia = new PriorityQueue<>(dinamico);
+            ColaEnvejecimiento cola = new ColaEnvejecimiento();
+
+            long llegada = 0;
+            for (int paso = 0; paso < 300; paso++) {
+                ahora[0] += rand.nextInt(900);
+                if (rand.nextInt(3) > 0) {
+                    llegada = Math.max(llegada, ahora[0]) + 60 * rand.nextInt(7);
+                    Paciente p = new Paciente("N", "A", "P" + paso, 1 + rand.nextInt(5), llegada, "sapu");
+                    referencia.add(p);
+                    cola.add(p);
+                } else {
+                    List<Paciente> enEspera = new ArrayList<>(referencia);
+                    referencia.clear();
+                    referencia.addAll(enEspera);
+                    Paciente esperado = referencia.poll();
+                    Paciente siguientePorLlegada = cola.peek();
+                    Paciente obtenido = cola.poll(ahora[0]);
+                    if (obtenido != siguientePorLlegada) empatesPorLlegada++;
+                    if (esperado != obtenido) {
+                        // Misma categoría y llegada: la original tampoco los distingue
+                        if (dinamico.compare(esperado, obtenido) != 0) errores++;
+                        // Se igualan los contenidos para seguir comparando el resto del orden
+                        referencia.remove(obtenido);
+                        referencia.add(esperado);
+                    }
+                }
+            }
+        }
+        System.out.println("Diferencias de orden respecto a la cola dinámica original: " + errores);
+        System.out.println("Empates exactos que el redondeo decide distinto que la llegada: " + empatesPorLlegada);
+
+        // El recorrido en orden tiene que coincidir con atender uno por uno
+        int erroresRecorrido = 0;
+        for (boolean conEnvejecimiento : new boolean[] {true, false}) {
+            ColaEnvejecimiento cola = new ColaEnvejecimiento(conEnvejecimiento);
+            for (int i = 0; i < 2000; i++) {
+                cola.add(new Paciente("N", "A", "P" + i, 1 + rand.nextInt(5), i * 120L + rand.nextInt(60), "sapu"));
+            }
+            List<Paciente> recorridos = HeapIndexado.primeros(cola.enOrden(), Integer.MAX_VALUE);
+            int[] porCategoria = new int[MAX_CATEGORIA + 1];
+            for (Paciente p : cola) porCategoria[p.getCategoria()]++;
+            for (int cat = 1; cat <= MAX_CATEGORIA; cat++) {
+                if (porCategoria[cat] != cola.cantidadPorCategoria(cat)) erroresRecorrido++;
+            }
+            for (Paciente p : recorridos) {
+                if (cola.poll() != p) erroresRecorrido++;
+            }
+            if (!cola.isEmpty()) erroresRecorrido++;
+        }
+        System.out.println("Diferencias del recorrido en orden y los conteos por categoría: " + erroresRecorrido);
+    }
+}
@@ -0,0 +1,300 @@
+package src;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Compara políticas de atención con exactamente las mismas llegadas: la corriente
+// de pacientes se graba una vez como traza (TrazaPacientes) y cada política la
+// vuelve a leer en su propio hilo, con su propio hospital y la misma semilla de
+// servicio. Informa por política los percentiles de espera por categoría (contando
+// a los que siguen esperando al final), la fracción que excedió su tiempo máximo
+// y, aparte y sin otros hilos compitiendo, el costo del planificador por decisión
+// a distintas profundidades de cola.
+//
+// El reparto entre áreas solo existe con la cadencia clásica: en modo estaciones
+// cada área atiende con sus propios médicos, así que una política que elige área
+// (reparto) se comportaría igual que su base y no se acepta en ese modo.
+//
+//   java -cp bin src.ComparadorPoliticas [--politicas estatica,envejecimiento,plazo,reparto]
+//                                        [--traza archivo.trz] [--pacientes-por-hora 7]
+//                                        [--dias 7] [--modo clasico|estaciones]
+//                                        [--atencion 480] [--medicos 2] [--servicio exp:1500]
+//                                        [--profundidades 1000,100000] [--semilla 42]
+public class ComparadorPoliticas {
+    private static final int CATEGORIAS = ColaEnvejecimiento.MAX_CATEGORIA;
+    private static final String[] AREAS = {"sapu", "urgencia_adulto", "infantil"};
+
+    // Evita que el JIT descarte el trabajo medido
+    private static long sumidero = 0;
+
+    // Resultado de reproducir la traza con una política
+    static final class Resultado {
+        final String politica;
+        final String complejidad;
+        final EstadisticaEspera[] esperas = new EstadisticaEspera[CATEGORIAS + 1];
+        final long[] excedidos = new long[CATEGORIAS + 1]; // con espera mayor que su tiempo máximo
+        long enEspera;
+        double ms;
+        final Map<Integer, Double> nanosPorDecision = new LinkedHashMap<>(); // por profundidad
+
+        Resultado(String politica, String complejidad) {
+            this.politica = politica;
+            this.complejidad = complejidad;
+        }
+    }
+
+    private final String archivoTraza;
+    private long horizonte = 7 * SimuladorUrgencia.HORIZONTE_DIA;
+    private boolean estaciones = false;
+    private long intervaloAtencion = 8 * 60;
+    private int medicos = 2;
+    private DistribucionServicio servicio = DistribucionServicio.exponencial(25 * 60);
+    private long semilla = 42;
+
+    public ComparadorPoliticas(String archivoTraza) {
+        this.archivoTraza = archivoTraza;
+    }
+
+    // Graba llegadas de Poisson en una traza para compararlas después
+    public static void grabarTraza(String archivo, double pacientesPorHora, long horizonte, long semilla) throws IOException {
+        TrazaPacientes.escribir(FlujoPacientes.poisson(new SplittableRandom(semilla), 0, pacientesPorHora,
+            Long.MAX_VALUE, horizonte), archivo);
+    }
+
+    public void setHorizonte(long segundos) {
+        this.horizonte = segundos;
+    }
+
+    // Cadencia clásica: un paciente de todo el hospital cada 'intervaloAtencion' segundos
+    public void setCadencia(long intervaloAtencion) {
+        this.estaciones = false;
+        this.intervaloAtencion = intervaloAtencion;
+    }
+
+    // Estaciones: 'medicos' médicos por área con el servicio indicado
+    public void setEstaciones(int medicos, DistribucionServicio servicio) {
+        this.estaciones = true;
+        this.medicos = medicos;
+        this.servicio = servicio;
+    }
+
+    public void setSemilla(long semilla) {
+        this.semilla = semilla;
+    }
+
+    // Reproduce la traza con cada política, todas a la vez
+    public List<Resultado> comparar(List<String> politicas) throws InterruptedException {
+        if (estaciones) {
+            for (String politica : politicas) {
+                if (PoliticaAtencion.parsear(politica).eligeArea()) {
+                    throw new IllegalArgumentException("La política " + politica + " reparte entre áreas y no tiene"
+                        + " efecto en modo estaciones (cada área atiende con sus médicos)");
+                }
+            }
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(politicas.size());
+        try {
+            List<Future<Resultado>> futuros = new ArrayList<>();
+            for (String politica : politicas) {
+                futuros.add(pool.submit(() -> reproducir(politica)));
+            }
+            List<Resultado> resultados = new ArrayList<>();
+            for (Future<Resultado> f : futuros) {
+                resultados.add(f.get());
+            }
+            return resultados;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falló la reproducción de una política", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private Resultado reproducir(String nombre) throws IOException {
+        PoliticaAtencion politica = PoliticaAtencion.parsear(nombre);
+        Resultado r = new Resultado(politica.getNombre(), politica.getComplejidad());
+        long inicio = System.nanoTime();
+        try (TrazaPacientes traza = TrazaPacientes.leer(archivoTraza)) {
+            SimuladorUrgencia simulador = new SimuladorUrgencia(traza);
+            simulador.setSilencioso(true);
+            simulador.setMemoriaAcotada(true);
+            simulador.setIntervaloLlegada(0);
+            simulador.setCapacidadAreas(Integer.MAX_VALUE);
+            simulador.setPolitica(politica);
+            if (estaciones) {
+                for (String area : AREAS) {
+                    simulador.configurarArea(area, medicos, servicio);
+                }
+                simulador.setSemillaServicio(semilla);
+            } else {
+                simulador.setIntervaloAtencion(intervaloAtencion);
+            }
+            simulador.simular(Integer.MAX_VALUE, horizonte);
+            for (int cat = 1; cat <= CATEGORIAS; cat++) {
+                r.esperas[cat] = simulador.getEsperaConPendientes(cat);
+                r.excedidos[cat] = contarMayores(r.esperas[cat], SimuladorUrgencia.tiempoMaximo(cat));
+            }
+            r.enEspera = simulador.getCantidadEnEspera();
+        }
+        r.ms = (System.nanoTime() - inicio) / 1e6;
+        return r;
+    }
+
+    // Esperas mayores que 'limite' según el histograma (las casillas que lo contienen
+    // se reparten en proporción, como en los percentiles)
+    private static long contarMayores(EstadisticaEspera e, long limite) {
+        double[] mayores = {0};
+        e.getHistograma().recorrer((desde, hasta, cantidad) -> {
+            if (desde > limite) {
+                mayores[0] += cantidad;
+            } else if (hasta > limite) {
+                mayores[0] += cantidad * (double) (hasta - limite) / (hasta - desde + 1);
+            }
+        });
+        return Math.round(mayores[0]);
+    }
+
+    // Costo del planificador: con 'profundidad' pacientes en espera, atender al
+    // siguiente y admitir a uno nuevo (la cola no cambia de tamaño). Se toman los
+    // pacientes de la traza, en su orden, con las llegadas corridas para que no se
+    // acaben; devuelve nanosegundos por decisión.
+    public double medirDecision(String nombre, int profundidad, int decisiones) throws IOException {
+        Hospital hospital = new Hospital(PoliticaAtencion.parsear(nombre));
+        hospital.setCapacidadAreas(Integer.MAX_VALUE);
+        hospital.setConservarAtendidos(false);
+        Paciente[] pacientes = new Paciente[profundidad + decisiones];
+        try (TrazaPacientes traza = TrazaPacientes.leer(archivoTraza)) {
+            long desplazamiento = 0;
+            long ultima = 0;
+            TrazaPacientes actual = traza;
+            for (int i = 0; i < pacientes.length; i++) {
+                if (!actual.hasNext()) {
+                    if (actual != traza) actual.close();
+                    desplazamiento += ultima + 1;
+                    actual = TrazaPacientes.leer(archivoTraza);
+                }
+                Paciente p = actual.next();
+                ultima = p.getTiempoLlegada();
+                pacientes[i] = new Paciente("N", "A", GeneradorPacientes.formatearId(i + 1), p.getCategoria(),
+                    desplazamiento + p.getTiempoLlegada(), p.getArea());
+            }
+            if (actual != traza) actual.close();
+        }
+        for (int i = 0; i < profundidad; i++) {
+            hospital.registrarPaciente(pacientes[i]);
+        }
+        long inicio = System.nanoTime();
+        for (int i = 0; i < decisiones; i++) {
+            Paciente p = pacientes[profundidad + i];
+            Paciente atendido = hospital.atenderSiguiente(p.getTiempoLlegada());
+            sumidero += atendido.getTiempoLlegada();
+            hospital.registrarPaciente(p);
+        }
+        long nanos = System.nanoTime() - inicio;
+        return (double) nanos / decisiones;
+    }
+
+    public static void mostrar(List<Resultado> resultados, int[] profundidades) {
+        System.out.println("Espera por categoría en segundos (p50 / p90 / p99) y fracción sobre el tiempo máximo:");
+        System.out.printf("%-15s", "Política");
+        for (int cat = 1; cat <= CATEGORIAS; cat++) {
+            System.out.printf(" %25s", "C" + cat + " (máx " + SimuladorUrgencia.tiempoMaximo(cat) / 60 + " min)");
+        }
+        System.out.printf(" %9s %9s\n", "En espera", "ms");
+        for (Resultado r : resultados) {
+            System.out.printf("%-15s", r.politica);
+            for (int cat = 1; cat <= CATEGORIAS; cat++) {
+                EstadisticaEspera e = r.esperas[cat];
+                double fraccion = e.getCantidad() == 0 ? 0 : (double) r.excedidos[cat] / e.getCantidad();
+                System.out.printf(" %17s %6.1f%%", e.percentil(50) + "/" + e.percentil(90) + "/" + e.percentil(99),
+                    100 * fraccion);
+            }
+            System.out.printf(" %9d %9.0f\n", r.enEspera, r.ms);
+        }
+
+        System.out.println("\nCosto del planificador por decisión (atender uno y admitir otro):");
+        System.out.printf("%-15s", "Política");
+        for (int d : profundidades) System.out.printf(" %14s", "n = " + d);
+        System.out.printf("   %s\n", "Complejidad declarada");
+        for (Resultado r : resultados) {
+            System.out.printf("%-15s", r.politica);
+            for (int d : profundidades) System.out.printf(" %11.0f ns", r.nanosPorDecision.get(d));
+            System.out.printf("   %s\n", r.complejidad);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> politicas = null;
+        String archivo = null;
+        double pacientesPorHora = 7;
+        int dias = 7;
+        boolean estaciones = false;
+        long atencion = 8 * 60;
+        int medicos = 2;
+        String servicio = "exp:1500";
+        int[] profundidades = {1_000, 100_000};
+        long semilla = 42;
+        for (int i = 0; i + 1 < args.length; i++) {
+            switch (args[i].toLowerCase()) {
+                // Separadas por comas, salvo las de los pesos: "plazo,reparto:sapu=2,infantil=1"
+                case "--politicas": politicas = Arrays.asList(args[++i].split(",(?![^:,]*=)")); break;
+                case "--traza": archivo = args[++i]; break;
+                case "--pacientes-por-hora": pacientesPorHora = Double.parseDouble(args[++i]); break;
+                case "--dias": dias = Integer.parseInt(args[++i]); break;
+                case "--modo": estaciones = args[++i].equalsIgnoreCase("estaciones"); break;
+                case "--atencion": atencion = Long.parseLong(args[++i]); break;
+                case "--medicos": medicos = Integer.parseInt(args[++i]); break;
+                case "--servicio": servicio = args[++i]; break;
+                case "--profundidades":
+                    profundidades = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--semilla": semilla = Long.parseLong(args[++i]); break;
+                default: System.err.println("Opción desconocida: " + args[i]);
+            }
+        }
+        if (politicas == null) {
+            // Sin elegirlas, en modo estaciones se omite el reparto (ahí no cambia nada)
+            politicas = estaciones ? List.of("estatica", "envejecimiento", "plazo")
+                : List.of("estatica", "envejecimiento", "plazo", "reparto");
+        }
+        for (String politica : politicas) {
+            if (estaciones && PoliticaAtencion.parsear(politica).eligeArea()) {
+                System.err.println("La política " + politica + " reparte entre áreas y no tiene efecto en modo estaciones"
+                    + " (cada área atiende con sus médicos); use la cadencia clásica para compararla");
+                return;
+            }
+        }
+        long horizonte = dias * SimuladorUrgencia.HORIZONTE_DIA;
+        if (archivo == null) {
+            File temporal = File.createTempFile("llegadas", ".trz");
+            temporal.deleteOnExit();
+            archivo = temporal.getPath();
+            grabarTraza(archivo, pacientesPorHora, horizonte, semilla);
+            System.out.printf("Traza grabada: %.1f pacientes por hora durante %d días\n", pacientesPorHora, dias);
+        }
+
+        ComparadorPoliticas comparador = new ComparadorPoliticas(archivo);
+        comparador.setHorizonte(horizonte);
+        comparador.setSemilla(semilla);
+        if (estaciones) {
+            comparador.setEstaciones(medicos, DistribucionServicio.parsear(servicio));
+            System.out.println("Estaciones: " + medicos + " médicos por área, servicio " + servicio);
+        } else {
+            comparador.setCadencia(atencion);
+            System.out.println("Cadencia clásica: un paciente cada " + atencion + " s");
+        }
+        List<Resultado> resultados = comparador.comparar(politicas);
+
+        // Sin otros hilos: primero una vuelta para calentar el JIT
+        for (String politica : politicas) {
+            comparador.medirDecision(politica, 1_000, 200_000);
+        }
+        for (int k = 0; k < resultados.size(); k++) {
+            for (int d : profundidades) {
+                resultados.get(k).nanosPorDecision.put(d, comparador.medirDecision(politicas.get(k), d, 200_000));
+            }
+        }
+        mostrar(resultados, profundidades);
+    }
+}
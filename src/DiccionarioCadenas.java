@@ -0,0 +1,56 @@
+package src;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// Diccionario de cadenas repetidas (nombres, apellidos, áreas, estados): cada
+// texto distinto se guarda una vez y los pacientes guardan solo su código.
+// El código 0 representa null. Leer es libre de bloqueos; agregar un texto
+// nuevo se sincroniza, y pasa pocas veces porque los textos se repiten.
+public class DiccionarioCadenas {
+    private final ConcurrentHashMap<String, Integer> codigos = new ConcurrentHashMap<>();
+    private volatile String[] textos = new String[16];
+    private int cantidad = 1; // el 0 queda reservado para null
+    private final int maximo;
+
+    // 'maximo' acota la cantidad de códigos (p. ej. 256 si se guardan en un byte)
+    public DiccionarioCadenas(int maximo) {
+        this.maximo = maximo;
+    }
+
+    public int codigo(String texto) {
+        if (texto == null) return 0;
+        Integer codigo = codigos.get(texto);
+        return codigo != null ? codigo : agregar(texto);
+    }
+
+    // Código de un texto ya conocido, o -1 si nunca se agregó
+    public int buscar(String texto) {
+        if (texto == null) return 0;
+        Integer codigo = codigos.get(texto);
+        return codigo != null ? codigo : -1;
+    }
+
+    public String texto(int codigo) {
+        return textos[codigo];
+    }
+
+    public synchronized int size() {
+        return cantidad - 1;
+    }
+
+    private synchronized int agregar(String texto) {
+        Integer existente = codigos.get(texto);
+        if (existente != null) return existente;
+        if (cantidad >= maximo) {
+            throw new IllegalStateException("Demasiados valores distintos en el diccionario (máximo " + (maximo - 1) + ")");
+        }
+        String[] actuales = textos;
+        if (cantidad == actuales.length) {
+            actuales = java.util.Arrays.copyOf(actuales, actuales.length * 2);
+        }
+        actuales[cantidad] = texto;
+        textos = actuales; // se publica el arreglo antes que el código
+        codigos.put(texto, cantidad);
+        return cantidad++;
+    }
+}
@@ -0,0 +1,95 @@
+package src;
+
+import java.util.random.RandomGenerator;
+
+// Distribución del tiempo que un médico tarda en atender a un paciente (en
+// segundos, siempre al menos 1). Las muestras salen del generador que se pasa,
+// así que con un generador sembrado la simulación es reproducible.
+public interface DistribucionServicio {
+    long muestrear(RandomGenerator rand);
+
+    double getMedia();
+
+    static DistribucionServicio constante(long segundos) {
+        return new DistribucionServicio() {
+            @Override
+            public long muestrear(RandomGenerator rand) {
+                return Math.max(1, segundos);
+            }
+
+            @Override
+            public double getMedia() {
+                return segundos;
+            }
+
+            @Override
+            public String toString() {
+                return "const:" + segundos;
+            }
+        };
+    }
+
+    static DistribucionServicio exponencial(double media) {
+        return new DistribucionServicio() {
+            @Override
+            public long muestrear(RandomGenerator rand) {
+                return Math.max(1, Math.round(-media * Math.log(1.0 - rand.nextDouble())));
+            }
+
+            @Override
+            public double getMedia() {
+                return media;
+            }
+
+            @Override
+            public String toString() {
+                return "exp:" + (long) media;
+            }
+        };
+    }
+
+    // Lognormal con la media y el coeficiente de variación (desviación / media) indicados:
+    // la forma habitual de los tiempos de atención, con una cola larga a la derecha
+    static DistribucionServicio lognormal(double media, double coeficienteVariacion) {
+        double sigma2 = Math.log(1 + coeficienteVariacion * coeficienteVariacion);
+        double mu = Math.log(media) - sigma2 / 2;
+        double sigma = Math.sqrt(sigma2);
+        return new DistribucionServicio() {
+            @Override
+            public long muestrear(RandomGenerator rand) {
+                return Math.max(1, Math.round(Math.exp(mu + sigma * rand.nextGaussian())));
+            }
+
+            @Override
+            public double getMedia() {
+                return media;
+            }
+
+            @Override
+            public String toString() {
+                return "lognormal:" + (long) media + ":" + coeficienteVariacion;
+            }
+        };
+    }
+
+    // "const:900", "exp:1800" o "lognormal:1800:0.5" (segundos)
+    static DistribucionServicio parsear(String texto) {
+        String[] partes = texto.split(":");
+        try {
+            switch (partes[0]) {
+                case "const":
+                    return constante(Long.parseLong(partes[1]));
+                case "exp":
+                    return exponencial(Double.parseDouble(partes[1]));
+                case "lognormal":
+                    return lognormal(Double.parseDouble(partes[1]), Double.parseDouble(partes[2]));
+                default:
+                    break;
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            // cae al error de abajo
+        }
+        throw new IllegalArgumentException("Distribución de servicio inválida: " + texto
+            + " (se espera const:S, exp:MEDIA o lognormal:MEDIA:CV)");
+    }
+}
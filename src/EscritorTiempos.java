@@ -0,0 +1,468 @@
+package src;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.text.DecimalFormatSymbols;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+
+// Escritor de las filas de tiempos_atencion. Codifica cada fila directamente en
+// un arreglo de bytes reutilizable (los números a mano y los textos desde una
+// caché de bytes por código de diccionario) y lo escribe por un FileChannel en
+// lotes grandes. El CSV sale idéntico byte a byte al de String.format en el
+// charset por defecto.
+//
+// En modo asíncrono los lotes llenos pasan a un hilo que los escribe mientras
+// se sigue llenando otro, así que la simulación solo espera al disco si este
+// queda atrás por más de LOTES lotes.
+//
+// Formato BINARIO (little endian): "TAT1" (int) y luego registros que empiezan
+// con un byte de tipo:
+//   FILA:     int clave, int nombre, int apellido, byte categoría, long llegada, long espera
+//   NOMBRE / APELLIDO: int código, texto (la primera vez que aparece cada código)
+//   ID:       int código negativo, texto (ids fuera del formato P%04d, la primera vez;
+//             en FILA la clave es ese código)
+//   texto:    int largo (-1 = null) + bytes UTF-8
+public class EscritorTiempos implements Closeable {
+    public static final int CSV = 0;
+    public static final int BINARIO = 1;
+
+    static final String ENCABEZADO = "ID,Nombre,Apellido,Categoría,TiempoLlegada,TiempoEsperaSegundos\n";
+
+    private static final int MAGICO = 0x31544154; // "TAT1" en little endian
+    private static final byte FILA = 0;
+    private static final byte NOMBRE = 1;
+    private static final byte APELLIDO = 2;
+    private static final byte ID = 3;
+
+    private static final int TAMANO_LOTE = 1 << 20;
+    private static final int LOTES = 3; // en modo asíncrono: uno llenándose, uno escribiéndose y uno de reserva
+    private static final Lote FIN = new Lote(0);
+
+    private final FileChannel canal;
+    private final int formato;
+    private final Charset charset = Charset.defaultCharset();
+    // Con dígitos no ASCII en el locale, String.format no escribe 0-9: se usa él mismo
+    private final boolean digitosAscii =
+        DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT)).getZeroDigit() == '0';
+
+    private Lote lote = new Lote(TAMANO_LOTE);
+    private long escritos = 0;
+    private boolean cerrado = false;
+
+    // Bytes de cada texto por su código de diccionario (CSV) o si ya se declaró (binario)
+    private byte[][] nombres = new byte[64][];
+    private byte[][] apellidos = new byte[64][];
+    private final BitSet nombresDeclarados = new BitSet();
+    private final BitSet apellidosDeclarados = new BitSet();
+    // Ids fuera del formato P%04d ya declarados (binario), con su código en este archivo
+    private final Map<String, Integer> idsDeclarados = new HashMap<>();
+
+    // Modo asíncrono
+    private final ArrayBlockingQueue<Lote> llenos;
+    private final ArrayBlockingQueue<Lote> libres;
+    private final Thread hilo;
+    private volatile IOException error;
+
+    private static final class Lote {
+        byte[] datos;
+        int largo = 0;
+
+        Lote(int capacidad) {
+            datos = new byte[capacidad];
+        }
+    }
+
+    public EscritorTiempos(String archivo, int formato, boolean asincrono) throws IOException {
+        if (formato != CSV && formato != BINARIO) throw new IllegalArgumentException("Formato desconocido: " + formato);
+        this.formato = formato;
+        this.canal = FileChannel.open(Paths.get(archivo),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        if (asincrono) {
+            llenos = new ArrayBlockingQueue<>(LOTES);
+            libres = new ArrayBlockingQueue<>(LOTES);
+            for (int k = 1; k < LOTES; k++) libres.add(new Lote(TAMANO_LOTE));
+            hilo = new Thread(this::escribirLotes, "escritor-tiempos");
+            hilo.setDaemon(true);
+            hilo.start();
+        } else {
+            llenos = null;
+            libres = null;
+            hilo = null;
+        }
+        if (formato == CSV) {
+            agregar(ENCABEZADO.getBytes(charset));
+        } else {
+            reservar(4);
+            ponerInt(MAGICO);
+        }
+    }
+
+    public void escribir(Paciente p, long espera) throws IOException {
+        int clave = p.getClave();
+        escribirFila(clave, clave >= 0 ? null : p.getId(), p.getCodigoNombre(), p.getCodigoApellido(),
+            p.getCategoria(), p.getTiempoLlegada(), espera);
+    }
+
+    // Con la clave y los códigos de AlmacenPacientes (ver Paciente.getClave); 'id' solo
+    // se usa con clave negativa
+    void escribirFila(int clave, String id, int nombre, int apellido, int categoria, long llegada, long espera)
+            throws IOException {
+        if (formato == BINARIO) {
+            escribirBinario(clave, id, nombre, apellido, categoria, llegada, espera);
+        } else if (digitosAscii) {
+            escribirCsv(clave, id, nombre, apellido, categoria, llegada, espera);
+        } else {
+            agregar(String.format("%s,%s,%s,%d,%d,%d\n", clave >= 0 ? GeneradorPacientes.formatearId(clave) : id,
+                AlmacenPacientes.NOMBRES.texto(nombre), AlmacenPacientes.APELLIDOS.texto(apellido),
+                categoria, llegada, espera).getBytes(charset));
+        }
+        escritos++;
+    }
+
+    public long getFilasEscritas() {
+        return escritos;
+    }
+
+    private void escribirCsv(int clave, String id, int nombre, int apellido, int categoria, long llegada, long espera)
+            throws IOException {
+        byte[] textoNombre = nombres.length > nombre && nombres[nombre] != null ? nombres[nombre]
+            : (nombres = cachear(nombres, nombre, AlmacenPacientes.NOMBRES.texto(nombre)))[nombre];
+        byte[] textoApellido = apellidos.length > apellido && apellidos[apellido] != null ? apellidos[apellido]
+            : (apellidos = cachear(apellidos, apellido, AlmacenPacientes.APELLIDOS.texto(apellido)))[apellido];
+        // Los ids fuera de formato no se repiten entre pacientes: no vale la pena cachearlos
+        byte[] textoId = clave < 0 ? String.valueOf(id).getBytes(charset) : null;
+        // id, 2 textos, 3 números de hasta 20 caracteres y separadores
+        reservar((textoId != null ? textoId.length : 11) + textoNombre.length + textoApellido.length + 66);
+        byte[] b = lote.datos;
+        int n = lote.largo;
+        if (textoId != null) {
+            System.arraycopy(textoId, 0, b, n, textoId.length);
+            n += textoId.length;
+        } else {
+            b[n++] = 'P';
+            n = ponerDigitos(b, n, clave, 4);
+        }
+        b[n++] = ',';
+        System.arraycopy(textoNombre, 0, b, n, textoNombre.length);
+        n += textoNombre.length;
+        b[n++] = ',';
+        System.arraycopy(textoApellido, 0, b, n, textoApellido.length);
+        n += textoApellido.length;
+        b[n++] = ',';
+        n = ponerNumero(b, n, categoria);
+        b[n++] = ',';
+        n = ponerNumero(b, n, llegada);
+        b[n++] = ',';
+        n = ponerNumero(b, n, espera);
+        b[n++] = '\n';
+        lote.largo = n;
+    }
+
+    private byte[][] cachear(byte[][] cache, int codigo, String texto) {
+        if (codigo >= cache.length) cache = Arrays.copyOf(cache, Math.max(codigo + 1, cache.length * 2));
+        cache[codigo] = String.valueOf(texto).getBytes(charset); // null se escribe "null", como en String.format
+        return cache;
+    }
+
+    private static int ponerNumero(byte[] b, int n, long valor) {
+        if (valor < 0) {
+            if (valor == Long.MIN_VALUE) {
+                for (char c : Long.toString(valor).toCharArray()) b[n++] = (byte) c;
+                return n;
+            }
+            b[n++] = '-';
+            valor = -valor;
+        }
+        return ponerDigitos(b, n, valor, 1);
+    }
+
+    // Dígitos de un valor no negativo, rellenando con ceros hasta 'minimo'
+    private static int ponerDigitos(byte[] b, int n, long valor, int minimo) {
+        int largo = 1;
+        for (long resto = valor / 10; resto > 0; resto /= 10) largo++;
+        largo = Math.max(largo, minimo);
+        for (int k = n + largo - 1; k >= n; k--) {
+            b[k] = (byte) ('0' + valor % 10);
+            valor /= 10;
+        }
+        return n + largo;
+    }
+
+    private void escribirBinario(int clave, String id, int nombre, int apellido, int categoria, long llegada, long espera)
+            throws IOException {
+        if (!nombresDeclarados.get(nombre)) {
+            nombresDeclarados.set(nombre);
+            declarar(NOMBRE, nombre, AlmacenPacientes.NOMBRES.texto(nombre));
+        }
+        if (!apellidosDeclarados.get(apellido)) {
+            apellidosDeclarados.set(apellido);
+            declarar(APELLIDO, apellido, AlmacenPacientes.APELLIDOS.texto(apellido));
+        }
+        if (clave < 0) {
+            Integer codigo = idsDeclarados.get(id);
+            if (codigo == null) {
+                codigo = -idsDeclarados.size() - 1;
+                idsDeclarados.put(id, codigo);
+                declarar(ID, codigo, id);
+            }
+            clave = codigo;
+        }
+        reservar(30);
+        lote.datos[lote.largo++] = FILA;
+        ponerInt(clave);
+        ponerInt(nombre);
+        ponerInt(apellido);
+        lote.datos[lote.largo++] = AlmacenPacientes.aByte(categoria);
+        ponerLong(llegada);
+        ponerLong(espera);
+    }
+
+    private void declarar(byte tipo, int codigo, String texto) throws IOException {
+        byte[] bytes = texto != null ? texto.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        reservar(9 + bytes.length);
+        lote.datos[lote.largo++] = tipo;
+        ponerInt(codigo);
+        ponerInt(texto != null ? bytes.length : -1);
+        System.arraycopy(bytes, 0, lote.datos, lote.largo, bytes.length);
+        lote.largo += bytes.length;
+    }
+
+    private void ponerInt(int v) {
+        byte[] b = lote.datos;
+        int n = lote.largo;
+        b[n] = (byte) v;
+        b[n + 1] = (byte) (v >>> 8);
+        b[n + 2] = (byte) (v >>> 16);
+        b[n + 3] = (byte) (v >>> 24);
+        lote.largo = n + 4;
+    }
+
+    private void ponerLong(long v) {
+        ponerInt((int) v);
+        ponerInt((int) (v >>> 32));
+    }
+
+    private void agregar(byte[] bytes) throws IOException {
+        reservar(bytes.length);
+        System.arraycopy(bytes, 0, lote.datos, lote.largo, bytes.length);
+        lote.largo += bytes.length;
+    }
+
+    // Deja espacio para 'bytes' bytes más en el lote actual, entregando el lote si hace falta
+    private void reservar(int bytes) throws IOException {
+        if (lote.datos.length - lote.largo >= bytes) return;
+        entregar();
+        if (lote.datos.length < bytes) lote.datos = new byte[Integer.highestOneBit(bytes) << 1];
+    }
+
+    private void entregar() throws IOException {
+        if (cerrado) throw new IOException("El escritor de tiempos está cerrado");
+        if (hilo == null) {
+            escribirLote(lote);
+            lote.largo = 0;
+            return;
+        }
+        if (error != null) throw error;
+        try {
+            llenos.put(lote);
+            lote = libres.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Escritura de tiempos interrumpida");
+        }
+    }
+
+    private void escribirLote(Lote l) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(l.datos, 0, l.largo);
+        while (buffer.hasRemaining()) canal.write(buffer);
+    }
+
+    // Hilo de escritura: devuelve cada lote a 'libres' aunque haya fallado, para no bloquear al productor
+    private void escribirLotes() {
+        try {
+            while (true) {
+                Lote l = llenos.take();
+                if (l == FIN) return;
+                if (error == null) {
+                    try {
+                        escribirLote(l);
+                    } catch (IOException e) {
+                        error = e;
+                    }
+                }
+                l.largo = 0;
+                libres.put(l);
+            }
+        } catch (InterruptedException e) {
+            error = new InterruptedIOException("Escritura de tiempos interrumpida");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (cerrado) return;
+        IOException falla = null;
+        try {
+            entregar();
+        } catch (IOException e) {
+            falla = e;
+        }
+        cerrado = true;
+        try {
+            if (hilo != null) {
+                llenos.put(FIN);
+                hilo.join();
+                if (falla == null) falla = error;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            falla = new InterruptedIOException("Escritura de tiempos interrumpida");
+        } finally {
+            canal.close();
+        }
+        if (falla != null) throw falla;
+    }
+
+    // Convierte un archivo BINARIO al CSV de siempre
+    public static void binarioACsv(String binario, String csv) throws IOException {
+        try (FileChannel entrada = FileChannel.open(Paths.get(binario), StandardOpenOption.READ);
+             EscritorTiempos salida = new EscritorTiempos(csv, CSV, false)) {
+            ByteBuffer buffer = ByteBuffer.allocate(TAMANO_LOTE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.limit(0);
+            buffer = asegurar(entrada, buffer, 4, false);
+            if (buffer.getInt() != MAGICO) throw new IOException("No es un archivo binario de tiempos: " + binario);
+            int[] nombres = new int[64];
+            int[] apellidos = new int[64];
+            Map<Integer, String> ids = new HashMap<>();
+            while ((buffer = asegurar(entrada, buffer, 1, true)).hasRemaining()) {
+                byte tipo = buffer.get();
+                if (tipo == FILA) {
+                    buffer = asegurar(entrada, buffer, 29, false);
+                    int clave = buffer.getInt();
+                    int nombre = buffer.getInt();
+                    int apellido = buffer.getInt();
+                    int categoria = buffer.get();
+                    long llegada = buffer.getLong();
+                    long espera = buffer.getLong();
+                    salida.escribirFila(clave, clave >= 0 ? null : ids.get(clave), nombres[nombre], apellidos[apellido],
+                        categoria, llegada, espera);
+                    continue;
+                }
+                buffer = asegurar(entrada, buffer, 8, false);
+                int codigo = buffer.getInt();
+                int largo = buffer.getInt();
+                String texto = null;
+                if (largo >= 0) {
+                    buffer = asegurar(entrada, buffer, largo, false);
+                    byte[] bytes = new byte[largo];
+                    buffer.get(bytes);
+                    texto = new String(bytes, StandardCharsets.UTF_8);
+                }
+                if (tipo == NOMBRE) {
+                    if (codigo >= nombres.length) nombres = Arrays.copyOf(nombres, Math.max(codigo + 1, nombres.length * 2));
+                    nombres[codigo] = AlmacenPacientes.NOMBRES.codigo(texto);
+                } else if (tipo == APELLIDO) {
+                    if (codigo >= apellidos.length) apellidos = Arrays.copyOf(apellidos, Math.max(codigo + 1, apellidos.length * 2));
+                    apellidos[codigo] = AlmacenPacientes.APELLIDOS.codigo(texto);
+                } else if (tipo == ID) {
+                    ids.put(codigo, texto);
+                } else {
+                    throw new IOException("Registro desconocido en " + binario + ": " + tipo);
+                }
+            }
+        }
+    }
+
+    // Deja al menos 'bytes' bytes sin leer; con finPermitido puede quedar vacío al final del archivo
+    private static ByteBuffer asegurar(FileChannel canal, ByteBuffer buffer, int bytes, boolean finPermitido)
+            throws IOException {
+        if (buffer.remaining() >= bytes) return buffer;
+        if (bytes > buffer.capacity()) {
+            buffer = ByteBuffer.allocate(Integer.highestOneBit(bytes) << 1).order(ByteOrder.LITTLE_ENDIAN).put(buffer);
+        } else {
+            buffer.compact();
+        }
+        boolean fin = false;
+        while (buffer.position() < bytes && !fin) fin = canal.read(buffer) < 0;
+        buffer.flip();
+        if (buffer.remaining() < bytes && !(finPermitido && !buffer.hasRemaining())) {
+            throw new EOFException("El archivo de tiempos terminó a mitad de un registro");
+        }
+        return buffer;
+    }
+
+    // Test de funcionamiento: mismo CSV que con String.format, ida y vuelta por el
+    // formato binario y tiempos de cada forma de escribir
+    // (java -cp bin src.EscritorTiempos --a-csv tiempos.bin tiempos.txt convierte un binario)
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("--a-csv")) {
+            binarioACsv(args[1], args[2]);
+            return;
+        }
+        int cantidad = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        java.util.SplittableRandom rand = new java.util.SplittableRandom(14);
+        List<Paciente> pacientes = new ArrayList<>(cantidad + 2);
+        long[] esperas = new long[cantidad + 2];
+        for (int i = 0; i < cantidad; i++) {
+            pacientes.add(GeneradorPacientes.generarPaciente(rand, GeneradorPacientes.formatearId(i + 1), i * 600L));
+            esperas[i] = rand.nextLong(-5, 200_000);
+        }
+        pacientes.add(new Paciente(null, "Ñandú", "paciente-prueba", 3, -7, "SAPU"));
+        esperas[cantidad] = Long.MIN_VALUE;
+        pacientes.add(new Paciente("José", "Pérez", "P123456789012", 5, Long.MAX_VALUE, "SAPU"));
+        esperas[cantidad + 1] = 42;
+
+        Path dir = Files.createTempDirectory("tiempos");
+        Path referencia = dir.resolve("referencia.txt");
+        Path csv = dir.resolve("tiempos.txt");
+        Path asincrono = dir.resolve("asincrono.txt");
+        Path binario = dir.resolve("tiempos.bin");
+        Path convertido = dir.resolve("convertido.txt");
+        try {
+            for (int vuelta = 0; vuelta < 3; vuelta++) {
+                long t0 = System.nanoTime();
+                try (BufferedWriter writer = new BufferedWriter(new FileWriter(referencia.toFile()))) {
+                    writer.write(ENCABEZADO);
+                    for (int i = 0; i < pacientes.size(); i++) {
+                        Paciente p = pacientes.get(i);
+                        writer.write(String.format("%s,%s,%s,%d,%d,%d\n",
+                            p.getId(), p.getNombre(), p.getApellido(), p.getCategoria(), p.getTiempoLlegada(), esperas[i]));
+                    }
+                }
+                long t1 = System.nanoTime();
+                escribirTodos(pacientes, esperas, csv, CSV, false);
+                long t2 = System.nanoTime();
+                escribirTodos(pacientes, esperas, asincrono, CSV, true);
+                long t3 = System.nanoTime();
+                escribirTodos(pacientes, esperas, binario, BINARIO, true);
+                long t4 = System.nanoTime();
+                System.out.printf("String.format: %.2f s  CSV: %.2f s  CSV asíncrono: %.2f s  binario: %.2f s\n",
+                    (t1 - t0) / 1e9, (t2 - t1) / 1e9, (t3 - t2) / 1e9, (t4 - t3) / 1e9);
+            }
+            binarioACsv(binario.toString(), convertido.toString());
+            System.out.printf("%d filas, CSV %.1f MB, binario %.1f MB\n", pacientes.size(),
+                Files.size(csv) / 1e6, Files.size(binario) / 1e6);
+            System.out.println("CSV igual al de String.format: " + (Files.mismatch(referencia, csv) < 0));
+            System.out.println("CSV asíncrono igual: " + (Files.mismatch(referencia, asincrono) < 0));
+            System.out.println("Binario convertido a CSV igual: " + (Files.mismatch(referencia, convertido) < 0));
+        } finally {
+            for (Path p : List.of(referencia, csv, asincrono, binario, convertido)) Files.deleteIfExists(p);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static void escribirTodos(List<Paciente> pacientes, long[] esperas, Path archivo, int formato,
+                                      boolean asincrono) throws IOException {
+        try (EscritorTiempos escritor = new EscritorTiempos(archivo.toString(), formato, asincrono)) {
+            for (int i = 0; i < pacientes.size(); i++) {
+                escritor.escribir(pacientes.get(i), esperas[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package src;
+
+import java.io.*;
+
+// Agregados de memoria constante para los tiempos de espera de un grupo de
+// pacientes (una categoría, un área): cantidad, media y varianza (Welford),
+// mínimo, máximo y un histograma para los percentiles. Se pueden combinar,
+// por ejemplo para juntar réplicas.
+public class EstadisticaEspera {
+    private long cantidad = 0;
+    private double media = 0;
+    private double m2 = 0;
+    private final HistogramaLatencia histograma = new HistogramaLatencia();
+
+    public void registrar(long espera) {
+        cantidad++;
+        double delta = espera - media;
+        media += delta / cantidad;
+        m2 += delta * (espera - media);
+        histograma.registrar(espera);
+    }
+
+    // Fórmula de Chan et al. para combinar medias y varianzas parciales
+    public void combinar(EstadisticaEspera otra) {
+        if (otra.cantidad == 0) return;
+        long n = cantidad + otra.cantidad;
+        double delta = otra.media - media;
+        m2 += otra.m2 + delta * delta * cantidad * otra.cantidad / n;
+        media += delta * otra.cantidad / n;
+        cantidad = n;
+        histograma.combinar(otra.histograma);
+    }
+
+    public void reiniciar() {
+        cantidad = 0;
+        media = 0;
+        m2 = 0;
+        histograma.reiniciar();
+    }
+
+    void escribirEstado(DataOutput out) throws IOException {
+        out.writeLong(cantidad);
+        out.writeDouble(media);
+        out.writeDouble(m2);
+        histograma.escribirEstado(out);
+    }
+
+    void leerEstado(DataInput in) throws IOException {
+        cantidad = in.readLong();
+        media = in.readDouble();
+        m2 = in.readDouble();
+        histograma.leerEstado(in);
+    }
+
+    public long getCantidad() {
+        return cantidad;
+    }
+
+    public double getMedia() {
+        return media;
+    }
+
+    public double getVarianza() {
+        return cantidad > 1 ? m2 / (cantidad - 1) : 0;
+    }
+
+    public long getMinimo() {
+        return histograma.getMinimo();
+    }
+
+    public long getMaximo() {
+        return histograma.getMaximo();
+    }
+
+    public long percentil(double porcentaje) {
+        return histograma.percentil(porcentaje);
+    }
+
+    public HistogramaLatencia getHistograma() {
+        return histograma;
+    }
+
+    // Test de funcionamiento: un año de llegadas con memoria acotada; el heap usado
+    // debe mantenerse estable aunque el horizonte crezca
+    public static void main(String[] args) {
+        long dia = SimuladorUrgencia.HORIZONTE_DIA;
+        long anio = 365 * dia;
+        SimuladorUrgencia simulador = new SimuladorUrgencia(
+            FlujoPacientes.poisson(new java.util.SplittableRandom(9), 0, 3.5, Long.MAX_VALUE, anio));
+        simulador.setIntervaloLlegada(0);
+        simulador.setMemoriaAcotada(true);
+        simulador.setSilencioso(true);
+        simulador.iniciar(Integer.MAX_VALUE, anio);
+
+        Runtime rt = Runtime.getRuntime();
+        for (long t = 60 * dia; t <= anio; t += 60 * dia) {
+            simulador.avanzarHasta(t);
+            System.gc();
+            System.out.printf("Día %3d: heap usado %6.1f MB\n", t / dia, (rt.totalMemory() - rt.freeMemory()) / 1e6);
+        }
+        simulador.avanzarHasta(anio);
+
+        System.out.println("Cat  Atendidos   Media(s)  Desv.(s)  Mín  p50    p99    Máx");
+        for (int cat = 1; cat <= 5; cat++) {
+            EstadisticaEspera e = simulador.getEstadistica(cat);
+            System.out.printf("C%d  %9d  %9.1f  %8.1f  %3d  %5d  %5d  %5d\n", cat, e.getCantidad(), e.getMedia(),
+                Math.sqrt(e.getVarianza()), e.getMinimo(), e.percentil(50), e.percentil(99), e.getMaximo());
+        }
+    }
+}
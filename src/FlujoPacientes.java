@@ -0,0 +1,183 @@
+package src;
+
+import java.io.*;
+import java.util.*;
+import java.util.random.RandomGenerator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Generador perezoso de pacientes: produce cada paciente recién cuando se le
+// pide, así que la memoria no crece con el horizonte simulado. Las llegadas
+// pueden ser cada intervalo fijo (como GeneradorPacientes), un proceso de
+// Poisson o un proceso no homogéneo con una tasa distinta para cada hora del día
+// (muestreado por adelgazamiento).
+public class FlujoPacientes implements Iterator<Paciente> {
+    private static final long SEGUNDOS_HORA = 60 * 60;
+
+    private final RandomGenerator rand;
+    private final double[] tasasPorHora; // pacientes por hora; null = intervalo fijo
+    private final double tasaMaxima;
+    private final long intervaloFijo;
+    private final long maximoPacientes;
+    private final long horizonte;
+
+    private long generados = 0;
+    private long primerId = 1; // número del id del primer paciente (P0001)
+    private long tiempo;
+    private long siguienteLlegada;
+
+    private FlujoPacientes(RandomGenerator rand, long timestampInicio, long intervaloFijo, double[] tasasPorHora,
+                           long maximoPacientes, long horizonte) {
+        this.rand = rand;
+        this.intervaloFijo = intervaloFijo;
+        this.tasasPorHora = tasasPorHora;
+        this.maximoPacientes = maximoPacientes;
+        this.horizonte = horizonte;
+        this.tiempo = timestampInicio;
+        double max = 0;
+        if (tasasPorHora != null) {
+            for (double tasa : tasasPorHora) max = Math.max(max, tasa);
+            if (max <= 0) throw new IllegalArgumentException("Se necesita al menos una tasa positiva");
+        }
+        this.tasaMaxima = max;
+        this.siguienteLlegada = tasasPorHora == null ? timestampInicio : proximaLlegada();
+    }
+
+    // Un paciente cada 'intervalo' segundos (GeneradorPacientes usa 600)
+    public static FlujoPacientes periodico(RandomGenerator rand, long timestampInicio, long intervalo,
+                                           long maximoPacientes, long horizonte) {
+        return new FlujoPacientes(rand, timestampInicio, intervalo, null, maximoPacientes, horizonte);
+    }
+
+    // Llegadas de Poisson con la tasa indicada (pacientes por hora)
+    public static FlujoPacientes poisson(RandomGenerator rand, long timestampInicio, double pacientesPorHora,
+                                         long maximoPacientes, long horizonte) {
+        double[] tasas = new double[24];
+        Arrays.fill(tasas, pacientesPorHora);
+        return new FlujoPacientes(rand, timestampInicio, 0, tasas, maximoPacientes, horizonte);
+    }
+
+    // Llegadas de Poisson no homogéneas: tasasPorHora[h] es la tasa entre las h y las h+1 (24 valores)
+    public static FlujoPacientes porHoraDelDia(RandomGenerator rand, long timestampInicio, double[] tasasPorHora,
+                                               long maximoPacientes, long horizonte) {
+        if (tasasPorHora.length != 24) {
+            throw new IllegalArgumentException("Se esperaban 24 tasas, una por hora");
+        }
+        return new FlujoPacientes(rand, timestampInicio, 0, tasasPorHora.clone(), maximoPacientes, horizonte);
+    }
+
+    // Para que los ids de varios flujos no se repitan (p. ej. un flujo por hospital de una red)
+    public void setPrimerId(long numero) {
+        this.primerId = numero;
+    }
+
+    // Si el flujo se puede guardar en una instantánea: su generador es un AleatorioRestaurable
+    public boolean esRestaurable() {
+        return rand instanceof AleatorioRestaurable;
+    }
+
+    void escribirEstado(DataOutput out) throws IOException {
+        if (!esRestaurable()) {
+            throw new IllegalStateException("El flujo no se puede guardar: su generador no expone el estado"
+                + " (crearlo con un AleatorioRestaurable)");
+        }
+        out.writeInt(tasasPorHora == null ? -1 : tasasPorHora.length);
+        if (tasasPorHora != null) {
+            for (double tasa : tasasPorHora) out.writeDouble(tasa);
+        }
+        out.writeLong(intervaloFijo);
+        out.writeLong(maximoPacientes);
+        out.writeLong(horizonte);
+        out.writeLong(((AleatorioRestaurable) rand).getEstado());
+        out.writeLong(generados);
+        out.writeLong(primerId);
+        out.writeLong(tiempo);
+        out.writeLong(siguienteLlegada);
+    }
+
+    static FlujoPacientes leerEstado(DataInput in) throws IOException {
+        int horas = in.readInt();
+        double[] tasas = horas < 0 ? null : new double[horas];
+        for (int h = 0; h < horas; h++) {
+            tasas[h] = in.readDouble();
+        }
+        long intervalo = in.readLong();
+        long maximo = in.readLong();
+        long horizonte = in.readLong();
+        AleatorioRestaurable rand = new AleatorioRestaurable(0);
+        FlujoPacientes flujo = new FlujoPacientes(rand, 0, intervalo, tasas, maximo, horizonte);
+        rand.setEstado(in.readLong()); // después del constructor, que ya sorteó una llegada
+        flujo.generados = in.readLong();
+        flujo.primerId = in.readLong();
+        flujo.tiempo = in.readLong();
+        flujo.siguienteLlegada = in.readLong();
+        return flujo;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return generados < maximoPacientes && siguienteLlegada < horizonte;
+    }
+
+    @Override
+    public Paciente next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        long llegada = siguienteLlegada;
+        generados++;
+        siguienteLlegada = tasasPorHora == null ? llegada + intervaloFijo : proximaLlegada();
+        return GeneradorPacientes.generarPaciente(rand, GeneradorPacientes.formatearId(primerId + generados - 1), llegada);
+    }
+
+    public Stream<Paciente> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+            Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    // Adelgazamiento (Lewis-Shedler): candidatos con la tasa máxima, aceptados con tasa(h) / máxima
+    private long proximaLlegada() {
+        double t = tiempo;
+        while (true) {
+            t += -Math.log(1.0 - rand.nextDouble()) / tasaMaxima * SEGUNDOS_HORA;
+            if (t >= horizonte) break;
+            int hora = (int) Math.floorMod((long) t / SEGUNDOS_HORA, 24L);
+            if (rand.nextDouble() * tasaMaxima < tasasPorHora[hora]) break;
+        }
+        tiempo = (long) Math.min(t, Long.MAX_VALUE);
+        return tiempo;
+    }
+
+    // Test de funcionamiento: un mes de llegadas con perfil horario, sin guardar la lista
+    public static void main(String[] args) {
+        double[] perfil = {
+            3, 2, 2, 1, 1, 2, 3, 5, 8, 10, 11, 11,
+            10, 9, 9, 9, 10, 11, 12, 11, 9, 7, 5, 4
+        };
+        long mes = 30 * 24 * SEGUNDOS_HORA;
+        com.sun.management.ThreadMXBean hilos =
+            (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+
+        long[] porHora = new long[24];
+        FlujoPacientes flujo = porHoraDelDia(new SplittableRandom(1), 0, perfil, Long.MAX_VALUE, mes);
+        long bytesAntes = hilos.getCurrentThreadAllocatedBytes();
+        long total = 0;
+        while (flujo.hasNext()) {
+            Paciente p = flujo.next();
+            porHora[(int) (p.getTiempoLlegada() / SEGUNDOS_HORA % 24)]++;
+            total++;
+        }
+        long bytes = hilos.getCurrentThreadAllocatedBytes() - bytesAntes;
+        System.out.println("Pacientes generados en 30 días: " + total + " (" + bytes / Math.max(1, total) + " bytes por paciente)");
+        for (int h = 0; h < 24; h++) {
+            System.out.printf("  %02d:00  tasa esperada %5.1f/h  observada %5.1f/h\n", h, perfil[h], porHora[h] / 30.0);
+        }
+
+        // La simulación consume el flujo directamente
+        SimuladorUrgencia simulador = new SimuladorUrgencia(poisson(new SplittableRandom(2), 0, 4, Long.MAX_VALUE, mes));
+        simulador.setIntervaloLlegada(0); // cada paciente entra en su propio tiempo de llegada
+        simulador.setSilencioso(true);
+        simulador.simular(Integer.MAX_VALUE, mes);
+        for (int cat = 1; cat <= 5; cat++) {
+            System.out.println("  Categoría " + cat + ": " + simulador.getCantidadAtendidos(cat) + " atendidos");
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package src;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Generador de carga para SimuladorTiempoReal: abre varias conexiones y envía
+// pacientes al azar (los de GeneradorPacientes) a una tasa fija. Cada conexión
+// calcula cada milisegundo cuántos pacientes ya debería haber enviado y manda la
+// diferencia de una vez, así un atraso momentáneo se recupera sin cambiar la tasa.
+public class GeneradorCarga {
+    private static final long PASO_NANOS = 1_000_000;
+
+    // Envía 'tasa' pacientes por segundo durante 'segundos', repartidos en 'conexiones';
+    // devuelve cuántos envió. Los ids no se repiten entre conexiones.
+    public static long enviar(String host, int puerto, double tasa, int segundos, int conexiones, long semilla)
+            throws IOException, InterruptedException {
+        AtomicLong enviados = new AtomicLong();
+        List<Thread> hilos = new ArrayList<>();
+        List<IOException> errores = Collections.synchronizedList(new ArrayList<>());
+        long inicio = System.nanoTime();
+        long fin = inicio + segundos * 1_000_000_000L;
+        double tasaPorConexion = tasa / conexiones;
+        for (int c = 0; c < conexiones; c++) {
+            final int conexion = c;
+            hilos.add(Thread.ofPlatform().name("carga-" + c).start(() -> {
+                SplittableRandom rand = new SplittableRandom(semilla + conexion);
+                StringBuilder lote = new StringBuilder(1 << 16);
+                long propios = 0;
+                try (Socket s = new Socket(host, puerto);
+                     OutputStream salida = new BufferedOutputStream(s.getOutputStream(), 1 << 16)) {
+                    s.setTcpNoDelay(true);
+                    long ahora;
+                    while ((ahora = System.nanoTime()) < fin) {
+                        long debidos = (long) ((ahora - inicio) / 1e9 * tasaPorConexion);
+                        for (; propios < debidos; propios++) {
+                            GeneradorPacientes.escribirLinea(rand, 1 + propios * conexiones + conexion, lote);
+                        }
+                        if (lote.length() > 0) {
+                            salida.write(lote.toString().getBytes(StandardCharsets.UTF_8));
+                            salida.flush();
+                            lote.setLength(0);
+                        }
+                        LockSupport.parkNanos(PASO_NANOS);
+                    }
+                    salida.write("FIN\n".getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    errores.add(e);
+                }
+                enviados.addAndGet(propios);
+            }));
+        }
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+        if (!errores.isEmpty()) throw errores.get(0);
+        return enviados.get();
+    }
+
+    // Muestra las líneas ESTADO y EXCEDIDO del servidor hasta que se cierre la conexión
+    private static Thread suscribir(String host, int puerto) throws IOException {
+        Socket s = new Socket(host, puerto);
+        s.getOutputStream().write("SUSCRIBIR\n".getBytes(StandardCharsets.UTF_8));
+        return Thread.ofVirtual().start(() -> {
+            try (s; BufferedReader entrada = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8))) {
+                String linea;
+                while ((linea = entrada.readLine()) != null) {
+                    if (linea.startsWith("ESTADO")) System.out.println(linea);
+                }
+            } catch (IOException e) {
+                // el servidor cerró
+            }
+        });
+    }
+
+    //   java -cp bin src.GeneradorCarga [--host localhost] [--puerto 7070] [--tasa 20000]
+    //                                   [--segundos 10] [--conexiones 4] [--semilla 42]
+    public static void main(String[] args) throws Exception {
+        String host = "localhost";
+        int puerto = SimuladorTiempoReal.PUERTO_POR_DEFECTO;
+        double tasa = 20_000;
+        int segundos = 10;
+        int conexiones = 4;
+        long semilla = 42;
+        for (int i = 0; i + 1 < args.length; i++) {
+            switch (args[i].toLowerCase()) {
+                case "--host": host = args[++i]; break;
+                case "--puerto": puerto = Integer.parseInt(args[++i]); break;
+                case "--tasa": tasa = Double.parseDouble(args[++i]); break;
+                case "--segundos": segundos = Integer.parseInt(args[++i]); break;
+                case "--conexiones": conexiones = Integer.parseInt(args[++i]); break;
+                case "--semilla": semilla = Long.parseLong(args[++i]); break;
+                default: System.err.println("Opción desconocida: " + args[i]);
+            }
+        }
+        suscribir(host, puerto);
+        long inicio = System.nanoTime();
+        long enviados = enviar(host, puerto, tasa, segundos, conexiones, semilla);
+        double duracion = (System.nanoTime() - inicio) / 1e9;
+        System.out.printf("Enviados %d pacientes en %.1f s: %.0f por segundo (objetivo %.0f)\n",
+            enviados, duracion, enviados / duracion, tasa);
+    }
+}
@@ -1,6 +1,7 @@
 package src;
 
 import java.util.*;
+import java.util.random.RandomGenerator;
 import java.io.*;
 
 public class GeneradorPacientes {
@@ -20,25 +21,79 @@ public class GeneradorPacientes {
     };
 
     public static List<Paciente> generarPacientes(int n, long timestampInicio) {
+        return generarPacientes(n, timestampInicio, new Random());
+    }
+
+    // Con un generador sembrado (p. ej. un SplittableRandom por réplica) la lista es reproducible
+    public static List<Paciente> generarPacientes(int n, long timestampInicio, RandomGenerator rand) {
         List<Paciente> pacientes = new ArrayList<>();
-        Random rand = new Random();
         int idCounter = 1;
 
         for (int i = 0; i < n; i++) {
-            String nombre = Nombres[rand.nextInt(Nombres.length)];
-            String apellido = Apellidos[rand.nextInt(Apellidos.length)];
-            String id = String.format("P%04d", idCounter++);
-            int categoria = generarCategoria(rand.nextInt(100) + 1);
             long tiempoLlegada = timestampInicio + (i * 600); // cada 10 minutos
-            String area = Areas[rand.nextInt(Areas.length)];
-
-            Paciente p = new Paciente(nombre, apellido, id, categoria, tiempoLlegada, area);
-            pacientes.add(p);
+            pacientes.add(generarPaciente(rand, formatearId(idCounter++), tiempoLlegada));
         }
 
         return pacientes;
     }
 
+    // Llegadas de Poisson, en promedio una cada 'intervaloMedio' segundos. Los datos de
+    // cada paciente salen de 'rand' y los intervalos entre llegadas de 'tiempos'. Con
+    // antitetico = true cada intervalo usa 1 - u en vez de u: dos listas con las mismas
+    // semillas, una normal y otra antitética, tienen los mismos pacientes con llegadas
+    // espejadas. Solo se espejan los intervalos, que mueven la espera siempre en el
+    // mismo sentido; espejar también la categoría cambiaría C1 por C5 y el par ya no
+    // quedaría correlacionado negativamente.
+    public static List<Paciente> generarPacientes(int n, long timestampInicio, long intervaloMedio,
+                                                  RandomGenerator rand, RandomGenerator tiempos, boolean antitetico) {
+        List<Paciente> pacientes = new ArrayList<>(n);
+        double tiempo = timestampInicio;
+        for (int i = 1; i <= n; i++) {
+            double u = tiempos.nextDouble();
+            if (antitetico) u = 1.0 - u;
+            tiempo += -intervaloMedio * Math.log(Math.max(1.0 - u, Double.MIN_VALUE));
+            pacientes.add(generarPaciente(rand, formatearId(i), (long) tiempo));
+        }
+        return pacientes;
+    }
+
+    // Un paciente al azar; los nombres, apellidos y áreas salen de tablas fijas (no se copian)
+    static Paciente generarPaciente(RandomGenerator rand, String id, long tiempoLlegada) {
+        String nombre = Nombres[indice(rand.nextDouble(), Nombres.length)];
+        String apellido = Apellidos[indice(rand.nextDouble(), Apellidos.length)];
+        int categoria = generarCategoria(indice(rand.nextDouble(), 100) + 1);
+        String area = Areas[indice(rand.nextDouble(), Areas.length)];
+        return new Paciente(nombre, apellido, id, categoria, tiempoLlegada, area);
+    }
+
+    // Los mismos datos al azar que generarPaciente, como línea id,nombre,apellido,categoria,area
+    // (el formato de guardarPacientes sin la llegada), sin crear el paciente
+    static void escribirLinea(RandomGenerator rand, long numero, StringBuilder linea) {
+        linea.append(formatearId(numero))
+            .append(',').append(Nombres[indice(rand.nextDouble(), Nombres.length)])
+            .append(',').append(Apellidos[indice(rand.nextDouble(), Apellidos.length)])
+            .append(',').append(generarCategoria(indice(rand.nextDouble(), 100) + 1))
+            .append(',').append(Areas[indice(rand.nextDouble(), Areas.length)])
+            .append('\n');
+    }
+
+    // Igual que String.format("P%04d", n) pero sin pasar por Formatter
+    static String formatearId(long n) {
+        int largo = 1;
+        for (long resto = n / 10; resto > 0; resto /= 10) largo++;
+        char[] id = new char[1 + Math.max(4, largo)];
+        id[0] = 'P';
+        for (int i = id.length - 1; i > 0; i--) {
+            id[i] = (char) ('0' + n % 10);
+            n /= 10;
+        }
+        return new String(id);
+    }
+
+    private static int indice(double u, int n) {
+        return Math.min((int) (u * n), n - 1);
+    }
+
     private static int generarCategoria(int probabilidad) {
         if (probabilidad <= 10) return 1;
         else if (probabilidad <= 25) return 2;
@@ -48,8 +103,14 @@ public class GeneradorPacientes {
     }
 
 public static void guardarPacientes(List<Paciente> pacientes, String archivo) {
+    guardarPacientes(pacientes.iterator(), archivo);
+}
+
+// Versión para flujos (p. ej. FlujoPacientes): no necesita tener la lista en memoria
+public static void guardarPacientes(Iterator<Paciente> pacientes, String archivo) {
     try (BufferedWriter writer = new BufferedWriter(new FileWriter(archivo))) {
-        for (Paciente p : pacientes) {
+        while (pacientes.hasNext()) {
+            Paciente p = pacientes.next();
             writer.write(
                 p.getId() + "," +
                 p.getNombre() + "," +
@@ -0,0 +1,137 @@
+package src;
+
+import java.util.*;
+
+// Grupo de áreas compatibles: cuando una se satura, sus pacientes pueden ir a
+// otra del grupo. Las áreas se reparten en baldes según sus lugares libres (una
+// lista doblemente enlazada por balde, con los enlaces en cada AreaAtencion) y
+// se lleva el balde más alto no vacío, así que la de más espacio se encuentra en
+// O(1) sin importar cuántas áreas haya. Como cada ingreso o salida cambia los
+// lugares libres en 1, mover el área de balde y corregir el máximo también es O(1).
+//
+// Los pacientes que no caben en ninguna área esperan en el desborde, una cola
+// FIFO acotada; con el desborde lleno el grupo ya no acepta a nadie más.
+final class GrupoAreas {
+    // Las áreas con más lugares libres que esto comparten el último balde
+    private static final int MAX_BALDE = 1024;
+
+    private final AreaAtencion[] cabezas = new AreaAtencion[MAX_BALDE + 1];
+    private int maximo = -1; // balde más alto con alguna área, -1 si no hay áreas
+    private int areas = 0;
+
+    private final ArrayDeque<Paciente> desborde = new ArrayDeque<>();
+    private int capacidadDesborde;
+
+    GrupoAreas(int capacidadDesborde) {
+        this.capacidadDesborde = capacidadDesborde;
+    }
+
+    void agregar(AreaAtencion area) {
+        area.grupo = this;
+        area.balde = -1;
+        areas++;
+        actualizar(area);
+    }
+
+    void quitar(AreaAtencion area) {
+        desenlazar(area);
+        while (maximo >= 0 && cabezas[maximo] == null) maximo--;
+        area.grupo = null;
+        area.balde = -1;
+        areas--;
+    }
+
+    // Reubica el área tras un cambio en sus lugares libres
+    void actualizar(AreaAtencion area) {
+        int balde = Math.min(Math.max(area.getLugaresLibres(), 0), MAX_BALDE);
+        if (balde == area.balde) return;
+        int anterior = area.balde;
+        if (anterior >= 0) desenlazar(area);
+        area.siguienteEnBalde = cabezas[balde];
+        if (cabezas[balde] != null) cabezas[balde].anteriorEnBalde = area;
+        area.anteriorEnBalde = null;
+        cabezas[balde] = area;
+        area.balde = balde;
+        if (balde > maximo) {
+            maximo = balde;
+        } else {
+            // Solo baja si se vació el máximo; con pasos de 1 el área quedó justo debajo
+            while (maximo >= 0 && cabezas[maximo] == null) maximo--;
+        }
+    }
+
+    private void desenlazar(AreaAtencion area) {
+        if (area.anteriorEnBalde != null) {
+            area.anteriorEnBalde.siguienteEnBalde = area.siguienteEnBalde;
+        } else if (area.balde >= 0) {
+            cabezas[area.balde] = area.siguienteEnBalde;
+        }
+        if (area.siguienteEnBalde != null) area.siguienteEnBalde.anteriorEnBalde = area.anteriorEnBalde;
+        area.anteriorEnBalde = null;
+        area.siguienteEnBalde = null;
+    }
+
+    // El área con más lugares libres del grupo, o null si todas están saturadas
+    AreaAtencion masLibre() {
+        return maximo > 0 ? cabezas[maximo] : null;
+    }
+
+    int getAreas() {
+        return areas;
+    }
+
+    // Deja al paciente esperando un lugar; false si el desborde está lleno
+    boolean diferir(Paciente p) {
+        if (desborde.size() >= capacidadDesborde) return false;
+        desborde.add(p);
+        return true;
+    }
+
+    Paciente siguienteDiferido() {
+        return desborde.poll();
+    }
+
+    boolean retirarDiferido(Paciente p) {
+        return desborde.remove(p);
+    }
+
+    boolean contieneDiferido(Paciente p) {
+        return desborde.contains(p);
+    }
+
+    boolean hayDiferidos() {
+        return !desborde.isEmpty();
+    }
+
+    int getDiferidos() {
+        return desborde.size();
+    }
+
+    boolean aceptaPacientes() {
+        return maximo > 0 || desborde.size() < capacidadDesborde;
+    }
+
+    // Los diferidos en el orden en que saldrán del desborde
+    Iterable<Paciente> diferidos() {
+        return desborde;
+    }
+
+    // Al restaurar una instantánea: sin mirar la capacidad del desborde
+    void reponerDiferido(Paciente p) {
+        desborde.add(p);
+    }
+
+    void vaciarDesborde() {
+        desborde.clear();
+    }
+
+    void setCapacidadDesborde(int capacidadDesborde) {
+        this.capacidadDesborde = capacidadDesborde;
+    }
+
+    // Pasa los diferidos de este grupo a otro (al unir grupos)
+    void moverDiferidos(GrupoAreas destino) {
+        destino.desborde.addAll(desborde);
+        desborde.clear();
+    }
+}
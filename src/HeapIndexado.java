@@ -0,0 +1,355 @@
+package src;
+
+import java.util.*;
+
+// Heap binario mínimo de pacientes que guarda en cada paciente su posición dentro
+// del arreglo. Así eliminar un paciente cualquiera o reordenarlo tras cambiar su
+// prioridad (subir o bajar la clave) cuesta O(log n), sin recorrer la cola.
+// El paciente tiene una posición por canal, así que puede estar a la vez en un
+// heap de cada canal (la cola general y la de su área), pero no en dos del mismo.
+public class HeapIndexado extends AbstractQueue<Paciente> {
+    public static final int CANAL_COLA = 0;
+    public static final int CANAL_AREA = 1;
+
+    private static final int CAPACIDAD_INICIAL = 16;
+
+    private final Comparator<Paciente> comparador;
+    private final int canal;
+    private Paciente[] heap = new Paciente[CAPACIDAD_INICIAL];
+    private int cantidad = 0;
+    private int modificaciones = 0;
+
+    public HeapIndexado(Comparator<Paciente> comparador) {
+        this(comparador, CANAL_COLA);
+    }
+
+    public HeapIndexado(Comparator<Paciente> comparador, int canal) {
+        this.comparador = comparador;
+        this.canal = canal;
+    }
+
+    @Override
+    public boolean offer(Paciente p) {
+        if (p == null) throw new NullPointerException();
+        if (cantidad == heap.length) {
+            heap = Arrays.copyOf(heap, heap.length * 2);
+        }
+        modificaciones++;
+        subir(cantidad++, p);
+        return true;
+    }
+
+    @Override
+    public Paciente poll() {
+        if (cantidad == 0) return null;
+        Paciente primero = heap[0];
+        eliminarEn(0);
+        return primero;
+    }
+
+    @Override
+    public Paciente peek() {
+        return cantidad == 0 ? null : heap[0];
+    }
+
+    public boolean contiene(Paciente p) {
+        int i = p.getIndiceHeap(canal);
+        return i >= 0 && i < cantidad && heap[i] == p;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Paciente && contiene((Paciente) o);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!contains(o)) return false;
+        eliminarEn(((Paciente) o).getIndiceHeap(canal));
+        return true;
+    }
+
+    // Reubica al paciente tras un cambio en su clave (sirve tanto si sube como si baja)
+    public void actualizar(Paciente p) {
+        if (!contiene(p)) return;
+        int i = p.getIndiceHeap(canal);
+        subir(i, p);
+        if (heap[i] == p) {
+            bajar(i, p);
+        }
+    }
+
+    @Override
+    public int size() {
+        return cantidad;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < cantidad; i++) {
+            heap[i].setIndiceHeap(canal, -1);
+            heap[i] = null;
+        }
+        cantidad = 0;
+        modificaciones++;
+    }
+
+    // Recorre el arreglo del heap (sin orden de prioridad). Si remove() trae un
+    // elemento desde el final a una posición ya visitada, se guarda aparte para
+    // no saltárselo, igual que hace PriorityQueue.
+    @Override
+    public Iterator<Paciente> iterator() {
+        return new Iterator<Paciente>() {
+            private int cursor = 0;
+            private int ultimo = -1;
+            private Paciente ultimoPendiente = null;
+            private ArrayDeque<Paciente> pendientes = null;
+            private int modificacionesEsperadas = modificaciones;
+
+            @Override
+            public boolean hasNext() {
+                return cursor < cantidad || (pendientes != null && !pendientes.isEmpty());
+            }
+
+            @Override
+            public Paciente next() {
+                if (modificacionesEsperadas != modificaciones) throw new ConcurrentModificationException();
+                if (cursor < cantidad) {
+                    ultimo = cursor;
+                    return heap[cursor++];
+                }
+                if (pendientes != null && !pendientes.isEmpty()) {
+                    ultimo = -1;
+                    ultimoPendiente = pendientes.poll();
+                    return ultimoPendiente;
+                }
+                throw new NoSuchElementException();
+            }
+
+            @Override
+            public void remove() {
+                if (modificacionesEsperadas != modificaciones) throw new ConcurrentModificationException();
+                if (ultimo >= 0) {
+                    Paciente movido = eliminarEn(ultimo);
+                    ultimo = -1;
+                    if (movido == null) {
+                        cursor--;
+                    } else {
+                        if (pendientes == null) pendientes = new ArrayDeque<>();
+                        pendientes.add(movido);
+                    }
+                } else if (ultimoPendiente != null) {
+                    HeapIndexado.this.remove(ultimoPendiente);
+                    ultimoPendiente = null;
+                } else {
+                    throw new IllegalStateException();
+                }
+                modificacionesEsperadas = modificaciones;
+            }
+        };
+    }
+
+    // Recorre los pacientes en orden de prioridad sin copiar ni modificar el heap.
+    // Se mantiene una frontera de posiciones candidatas (al principio, la raíz): al
+    // sacar la menor se agregan sus dos hijos, así que obtener los primeros k cuesta
+    // O(k log k) sin importar cuántos pacientes haya en espera.
+    public Iterator<Paciente> enOrden() {
+        return enOrden(new HeapIndexado[] {this}, comparador);
+    }
+
+    // Lo mismo sobre varios heaps a la vez, mezclándolos. El orden dado tiene que
+    // ser compatible con el de cada heap (ningún hijo puede quedar antes que su padre).
+    static Iterator<Paciente> enOrden(HeapIndexado[] heaps, Comparator<Paciente> orden) {
+        return new RecorridoOrdenado(heaps, orden);
+    }
+
+    // Primeros k pacientes de un recorrido (o todos, si hay menos)
+    static List<Paciente> primeros(Iterator<Paciente> recorrido, int k) {
+        List<Paciente> resultado = new ArrayList<>(Math.max(0, Math.min(k, 64)));
+        while (resultado.size() < k && recorrido.hasNext()) {
+            resultado.add(recorrido.next());
+        }
+        return resultado;
+    }
+
+    // Cada entrada de la frontera es (número de heap << 32 | posición) en un heap
+    // binario de longs, para no crear un objeto por candidato
+    private static final class RecorridoOrdenado implements Iterator<Paciente> {
+        private final HeapIndexado[] heaps;
+        private final Comparator<Paciente> orden;
+        private final int[] modificacionesEsperadas;
+        private long[] frontera = new long[16];
+        private int tamano = 0;
+
+        RecorridoOrdenado(HeapIndexado[] heaps, Comparator<Paciente> orden) {
+            this.heaps = heaps;
+            this.orden = orden;
+            this.modificacionesEsperadas = new int[heaps.length];
+            for (int h = 0; h < heaps.length; h++) {
+                modificacionesEsperadas[h] = heaps[h].modificaciones;
+                if (heaps[h].cantidad > 0) agregar(h, 0);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return tamano > 0;
+        }
+
+        @Override
+        public Paciente next() {
+            for (int h = 0; h < heaps.length; h++) {
+                if (heaps[h].modificaciones != modificacionesEsperadas[h]) throw new ConcurrentModificationException();
+            }
+            if (tamano == 0) throw new NoSuchElementException();
+            long menor = frontera[0];
+            long ultimo = frontera[--tamano];
+            if (tamano > 0) hundir(ultimo);
+            int h = (int) (menor >>> 32);
+            int i = (int) menor;
+            HeapIndexado heap = heaps[h];
+            if (2 * i + 1 < heap.cantidad) agregar(h, 2 * i + 1);
+            if (2 * i + 2 < heap.cantidad) agregar(h, 2 * i + 2);
+            return heap.heap[i];
+        }
+
+        private Paciente paciente(long entrada) {
+            return heaps[(int) (entrada >>> 32)].heap[(int) entrada];
+        }
+
+        private void agregar(int h, int i) {
+            if (tamano == frontera.length) frontera = Arrays.copyOf(frontera, tamano * 2);
+            long entrada = ((long) h << 32) | i;
+            Paciente p = paciente(entrada);
+            int j = tamano++;
+            while (j > 0) {
+                int padre = (j - 1) >>> 1;
+                if (orden.compare(p, paciente(frontera[padre])) >= 0) break;
+                frontera[j] = frontera[padre];
+                j = padre;
+            }
+            frontera[j] = entrada;
+        }
+
+        private void hundir(long entrada) {
+            Paciente p = paciente(entrada);
+            int j = 0;
+            int mitad = tamano >>> 1;
+            while (j < mitad) {
+                int hijo = 2 * j + 1;
+                if (hijo + 1 < tamano && orden.compare(paciente(frontera[hijo + 1]), paciente(frontera[hijo])) < 0) {
+                    hijo++;
+                }
+                if (orden.compare(p, paciente(frontera[hijo])) <= 0) break;
+                frontera[j] = frontera[hijo];
+                j = hijo;
+            }
+            frontera[j] = entrada;
+        }
+    }
+
+    // Elimina la posición i. Devuelve el último elemento si terminó antes de i
+    // (solo le interesa al iterador), o null en otro caso.
+    private Paciente eliminarEn(int i) {
+        modificaciones++;
+        Paciente eliminado = heap[i];
+        eliminado.setIndiceHeap(canal, -1);
+        int ultimo = --cantidad;
+        Paciente movido = heap[ultimo];
+        heap[ultimo] = null;
+        if (ultimo == i) return null;
+        bajar(i, movido);
+        if (heap[i] == movido) {
+            subir(i, movido);
+            if (heap[i] != movido) return movido;
+        }
+        return null;
+    }
+
+    private void subir(int i, Paciente p) {
+        while (i > 0) {
+            int padre = (i - 1) >>> 1;
+            Paciente q = heap[padre];
+            if (comparador.compare(p, q) >= 0) break;
+            colocar(i, q);
+            i = padre;
+        }
+        colocar(i, p);
+    }
+
+    private void bajar(int i, Paciente p) {
+        int mitad = cantidad >>> 1;
+        while (i < mitad) {
+            int hijo = 2 * i + 1;
+            int derecho = hijo + 1;
+            if (derecho < cantidad && comparador.compare(heap[derecho], heap[hijo]) < 0) {
+                hijo = derecho;
+            }
+            if (comparador.compare(p, heap[hijo]) <= 0) break;
+            colocar(i, heap[hijo]);
+            i = hijo;
+        }
+        colocar(i, p);
+    }
+
+    private void colocar(int i, Paciente p) {
+        heap[i] = p;
+        p.setIndiceHeap(canal, i);
+    }
+
+    // Test de funcionamiento: operaciones al azar comparadas con una PriorityQueue
+    public static void main(String[] args) {
+        Random rand = new Random(7);
+        Comparator<Paciente> porCategoria = (a, b) -> a.getCategoria() != b.getCategoria()
+            ? Integer.compare(a.getCategoria(), b.getCategoria())
+            : Long.compare(a.getTiempoLlegada(), b.getTiempoLlegada());
+        HeapIndexado heap = new HeapIndexado(porCategoria);
+        PriorityQueue<Paciente> referencia = new PriorityQueue<>(porCategoria);
+        List<Paciente> presentes = new ArrayList<>();
+        int errores = 0;
+        int erroresRecorrido = 0;
+        int maximo = 0;
+
+        for (int i = 0; i < 20000; i++) {
+            if (i % 500 == 0) {
+                // El recorrido perezoso tiene que dar el mismo orden que ordenar una copia
+                List<Paciente> ordenados = new ArrayList<>(heap);
+                ordenados.sort(porCategoria);
+                if (!ordenados.equals(primeros(heap.enOrden(), Integer.MAX_VALUE))) erroresRecorrido++;
+                if (!primeros(heap.enOrden(), 10).equals(ordenados.subList(0, Math.min(10, ordenados.size())))) {
+                    erroresRecorrido++;
+                }
+                maximo = Math.max(maximo, ordenados.size());
+            }
+            // Más ingresos que salidas, para que el heap crezca
+            int op = rand.nextInt(5);
+            if (op == 4) op = 0;
+            if (op == 0 || presentes.isEmpty()) {
+                Paciente p = new Paciente("N", "A", "P" + i, 1 + rand.nextInt(5), i, "sapu");
+                heap.add(p);
+                referencia.add(p);
+                presentes.add(p);
+            } else if (op == 1) {
+                Paciente esperado = referencia.poll();
+                if (heap.poll() != esperado) errores++;
+                presentes.remove(esperado);
+            } else if (op == 2) {
+                Paciente p = presentes.remove(rand.nextInt(presentes.size()));
+                referencia.remove(p);
+                if (!heap.remove(p)) errores++;
+            } else {
+                // Reasignación: sube o baja la prioridad de un paciente en espera
+                Paciente p = presentes.get(rand.nextInt(presentes.size()));
+                referencia.remove(p);
+                p.setCategoria(1 + rand.nextInt(5));
+                referencia.add(p);
+                heap.actualizar(p);
+            }
+        }
+        while (!referencia.isEmpty()) {
+            if (heap.poll() != referencia.poll()) errores++;
+        }
+        System.out.println("Diferencias respecto a PriorityQueue: " + errores + " (vacío al final: " + heap.isEmpty() + ")");
+        System.out.println("Diferencias del recorrido en orden (hasta " + maximo + " pacientes): " + erroresRecorrido);
+    }
+}
@@ -0,0 +1,222 @@
+package src;
+
+import java.io.*;
+import java.util.*;
+
+// Histograma log-lineal de tiempos (en segundos) al estilo HdrHistogram: memoria
+// fija, registrar no reserva memoria y dos histogramas se combinan sumando sus
+// contadores. Los valores menores que 128 se guardan exactos; desde ahí cada
+// potencia de dos se divide en 64 casillas, con un error relativo menor a 1/64.
+public class HistogramaLatencia {
+    private static final int BITS_PRECISION = 7;
+    private static final int EXACTOS = 1 << BITS_PRECISION;          // 128
+    private static final int CASILLAS_POR_OCTAVA = EXACTOS >> 1;      // 64
+    private static final int MAX_DESPLAZAMIENTO = 40;                 // valores hasta ~2^47 s
+    private static final int CASILLAS = (MAX_DESPLAZAMIENTO + 2) * CASILLAS_POR_OCTAVA;
+
+    private final long[] contadores = new long[CASILLAS];
+    private long total = 0;
+    private long minimo = Long.MAX_VALUE;
+    private long maximo = Long.MIN_VALUE;
+
+    public void registrar(long valor) {
+        if (valor < 0) valor = 0;
+        contadores[indice(valor)]++;
+        total++;
+        if (valor < minimo) minimo = valor;
+        if (valor > maximo) maximo = valor;
+    }
+
+    public void combinar(HistogramaLatencia otro) {
+        for (int i = 0; i < CASILLAS; i++) {
+            contadores[i] += otro.contadores[i];
+        }
+        total += otro.total;
+        minimo = Math.min(minimo, otro.minimo);
+        maximo = Math.max(maximo, otro.maximo);
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getMinimo() {
+        return total == 0 ? 0 : minimo;
+    }
+
+    public long getMaximo() {
+        return total == 0 ? 0 : maximo;
+    }
+
+    // Valor bajo el cual queda el porcentaje indicado de las observaciones (0-100).
+    // Devuelve el mayor valor equivalente de la casilla, acotado por el máximo observado.
+    public long percentil(double porcentaje) {
+        if (total == 0) return 0;
+        long rango = Math.max(1, (long) Math.ceil(porcentaje / 100.0 * total));
+        long acumulado = 0;
+        for (int i = 0; i < CASILLAS; i++) {
+            acumulado += contadores[i];
+            if (acumulado >= rango) {
+                return Math.min(Math.max(limiteSuperior(i), minimo), maximo);
+            }
+        }
+        return maximo;
+    }
+
+    public void reiniciar() {
+        java.util.Arrays.fill(contadores, 0);
+        total = 0;
+        minimo = Long.MAX_VALUE;
+        maximo = Long.MIN_VALUE;
+    }
+
+    // Recorre las casillas no vacías: (límite inferior, límite superior, cantidad)
+    public interface VisitaCasilla {
+        void visitar(long desde, long hasta, long cantidad);
+    }
+
+    public void recorrer(VisitaCasilla visita) {
+        for (int i = 0; i < CASILLAS; i++) {
+            if (contadores[i] != 0) {
+                visita.visitar(limiteInferior(i), limiteSuperior(i), contadores[i]);
+            }
+        }
+    }
+
+    // Suma observaciones en la casilla que contiene al valor (para releer una exportación)
+    public void registrarCasilla(long valor, long cantidad) {
+        if (cantidad <= 0) return;
+        if (valor < 0) valor = 0;
+        contadores[indice(valor)] += cantidad;
+        total += cantidad;
+        minimo = Math.min(minimo, valor);
+        maximo = Math.max(maximo, valor);
+    }
+
+    // Estado exacto para una instantánea: solo las casillas no vacías
+    void escribirEstado(DataOutput out) throws IOException {
+        out.writeLong(total);
+        out.writeLong(minimo);
+        out.writeLong(maximo);
+        int ocupadas = 0;
+        for (long c : contadores) if (c != 0) ocupadas++;
+        out.writeInt(ocupadas);
+        for (int i = 0; i < CASILLAS; i++) {
+            if (contadores[i] != 0) {
+                out.writeShort(i);
+                out.writeLong(contadores[i]);
+            }
+        }
+    }
+
+    void leerEstado(DataInput in) throws IOException {
+        reiniciar();
+        total = in.readLong();
+        minimo = in.readLong();
+        maximo = in.readLong();
+        for (int k = in.readInt(); k > 0; k--) {
+            int i = in.readUnsignedShort();
+            contadores[i] = in.readLong();
+        }
+    }
+
+    // Exporta varios histogramas con nombre como CSV: grupo,desde,hasta,cantidad.
+    // El mínimo y el máximo exactos van en filas propias para conservarlos al releer.
+    public static void exportar(Map<String, HistogramaLatencia> histogramas, String archivo) {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(archivo))) {
+            writer.write("Grupo,Desde,Hasta,Cantidad\n");
+            for (Map.Entry<String, HistogramaLatencia> e : histogramas.entrySet()) {
+                String grupo = e.getKey();
+                HistogramaLatencia h = e.getValue();
+                if (h.total == 0) continue;
+                writer.write(grupo + ",min," + h.minimo + ",0\n");
+                writer.write(grupo + ",max," + h.maximo + ",0\n");
+                h.recorrer((desde, hasta, cantidad) -> {
+                    try {
+                        writer.write(grupo + "," + desde + "," + hasta + "," + cantidad + "\n");
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error al exportar los histogramas: " + e.getMessage());
+        }
+    }
+
+    public static Map<String, HistogramaLatencia> importar(String archivo) throws IOException {
+        Map<String, HistogramaLatencia> histogramas = new LinkedHashMap<>();
+        Map<String, long[]> extremos = new HashMap<>();
+        try (BufferedReader lector = new BufferedReader(new FileReader(archivo))) {
+            String linea = lector.readLine(); // encabezado
+            while ((linea = lector.readLine()) != null) {
+                String[] campos = linea.split(",");
+                HistogramaLatencia h = histogramas.computeIfAbsent(campos[0], g -> new HistogramaLatencia());
+                long[] minMax = extremos.computeIfAbsent(campos[0], g -> new long[] {-1, -1});
+                if (campos[1].equals("min")) {
+                    minMax[0] = Long.parseLong(campos[2]);
+                } else if (campos[1].equals("max")) {
+                    minMax[1] = Long.parseLong(campos[2]);
+                } else {
+                    h.registrarCasilla(Long.parseLong(campos[1]), Long.parseLong(campos[3]));
+                }
+            }
+        }
+        for (Map.Entry<String, long[]> e : extremos.entrySet()) {
+            HistogramaLatencia h = histogramas.get(e.getKey());
+            if (e.getValue()[0] >= 0) h.minimo = e.getValue()[0];
+            if (e.getValue()[1] >= 0) h.maximo = e.getValue()[1];
+        }
+        return histogramas;
+    }
+
+    private static int indice(long valor) {
+        if (valor < EXACTOS) return (int) valor;
+        int desplazamiento = 64 - Long.numberOfLeadingZeros(valor) - BITS_PRECISION;
+        if (desplazamiento > MAX_DESPLAZAMIENTO) return CASILLAS - 1;
+        return desplazamiento * CASILLAS_POR_OCTAVA + (int) (valor >>> desplazamiento);
+    }
+
+    private static long limiteInferior(int i) {
+        if (i < EXACTOS) return i;
+        int desplazamiento = i / CASILLAS_POR_OCTAVA - 1;
+        long base = CASILLAS_POR_OCTAVA + i % CASILLAS_POR_OCTAVA;
+        return base << desplazamiento;
+    }
+
+    private static long limiteSuperior(int i) {
+        if (i < EXACTOS) return i;
+        int desplazamiento = i / CASILLAS_POR_OCTAVA - 1;
+        long base = CASILLAS_POR_OCTAVA + i % CASILLAS_POR_OCTAVA;
+        return ((base + 1) << desplazamiento) - 1;
+    }
+
+    // Test de funcionamiento: percentiles contra los valores exactos ordenados,
+    // combinación de dos mitades y viaje de ida y vuelta por el CSV
+    public static void main(String[] args) throws IOException {
+        Random rand = new Random(4);
+        long[] valores = new long[200000];
+        HistogramaLatencia a = new HistogramaLatencia();
+        HistogramaLatencia b = new HistogramaLatencia();
+        for (int i = 0; i < valores.length; i++) {
+            valores[i] = (long) (-Math.log(1 - rand.nextDouble()) * 900); // exponencial, media 15 min
+            (i % 2 == 0 ? a : b).registrar(valores[i]);
+        }
+        a.combinar(b);
+        Arrays.sort(valores);
+        System.out.println("Percentil  exacto  histograma  error");
+        for (double p : new double[] {50, 90, 99, 99.9, 100}) {
+            long exacto = valores[(int) Math.ceil(p / 100 * valores.length) - 1];
+            long aprox = a.percentil(p);
+            System.out.printf("  p%-6s %7d  %10d  %5.2f%%\n", p, exacto, aprox, 100.0 * (aprox - exacto) / Math.max(1, exacto));
+        }
+
+        File archivo = File.createTempFile("histograma", ".csv");
+        archivo.deleteOnExit();
+        exportar(Map.of("prueba", a), archivo.getPath());
+        HistogramaLatencia leido = importar(archivo.getPath()).get("prueba");
+        boolean iguales = leido.total == a.total && leido.minimo == a.minimo && leido.maximo == a.maximo
+            && Arrays.equals(leido.contadores, a.contadores);
+        System.out.println("Exportado y releído sin cambios: " + iguales);
+    }
+}
@@ -1,114 +1,366 @@
 package src;
 
+import java.io.IOException;
 import java.util.*;
 
 public class Hospital {
-    private Map<String, Paciente> pacientesTotales;
-    private PriorityQueue<Paciente> colaAtencion;
+    // Resultados de la admisión de un paciente (registrarPaciente)
+    public static final int ACEPTADO = 0;   // entró a la cola de su área
+    public static final int REDIRIGIDO = 1; // su área estaba saturada: entró a la área compatible con más lugar
+    public static final int DIFERIDO = 2;   // todas las compatibles saturadas: espera en el desborde
+    public static final int RECHAZADO = 3;  // además el desborde estaba lleno: no se registró
+
+    public static final int CAPACIDAD_DESBORDE_POR_DEFECTO = 50;
+
+    private MapaEnteros<Paciente> pacientesTotales; // por clave numérica del id (formato P%04d)
+    private Map<String, Paciente> pacientesPorId; // los de id fuera de ese formato
+    private ColaEnvejecimiento colaAtencion;
     private Map<String, AreaAtencion> areasAtencion;
     private List<Paciente> pacientesAtendidos;
     private long tiempoActual = 0;
+    private boolean conservarAtendidos = true; // false: memoria acotada en simulaciones largas
+    private PoliticaAtencion politica;
+    private Telemetria telemetria; // null: sin medir latencias (ver Telemetria)
+
+    // Control de admisión
+    private int capacidadAreas = 100;
+    private int capacidadDesborde = CAPACIDAD_DESBORDE_POR_DEFECTO;
+    private final long[] admisiones = new long[RECHAZADO + 1];
+    private long admitidosDesdeDesborde = 0;
+    private int maximoDiferidos = 0;
+    private int diferidos = 0;
+
+    // Constructor
+    public Hospital(boolean prioridadDinamica) {
+        // Prioridad dinámica (aumenta con la espera) sin reconstruir el heap en cada atención;
+        // la estática ordena por categoría y luego por llegada
+        this(prioridadDinamica ? PoliticaAtencion.envejecimiento() : PoliticaAtencion.estatica());
+    }
+
+    public Hospital(PoliticaAtencion politica) {
+        this.politica = politica;
+        this.pacientesTotales = new MapaEnteros<>();
+        this.pacientesPorId = new HashMap<>();
+        this.colaAtencion = new ColaEnvejecimiento(politica);
+        this.areasAtencion = new HashMap<>();
+        this.pacientesAtendidos = new ArrayList<>();
+
+        // Crear áreas por defecto; los adultos del SAPU y de urgencia pueden atenderse en cualquiera de las dos
+        obtenerOCrearArea("sapu");
+        obtenerOCrearArea("urgencia_adulto");
+        obtenerOCrearArea("infantil");
+        definirCompatibles("sapu", "urgencia_adulto");
+    }
 
-    // Comparador para la cola general
-    private static class PacienteComparator implements Comparator<Paciente> {
-        @Override
-        public int compare(Paciente p1, Paciente p2) {
-            if (p1.getCategoria() != p2.getCategoria()) {
-                return Integer.compare(p1.getCategoria(), p2.getCategoria());
+    // Admisión: el paciente entra a la cola de su área; si está saturada, a la área
+    // compatible con más lugares libres (O(1), ver GrupoAreas); si todas lo están,
+    // espera en el desborde del grupo hasta que se libere un lugar, y si también el
+    // desborde está lleno se rechaza. Devuelve ACEPTADO, REDIRIGIDO, DIFERIDO o RECHAZADO.
+    public int registrarPaciente(Paciente p) {
+        if (telemetria == null) return admitir(p);
+        long inicio = System.nanoTime();
+        int resultado = admitir(p);
+        telemetria.medirIngreso(p, resultado, System.nanoTime() - inicio, colaAtencion.size());
+        return resultado;
+    }
+
+    private int admitir(Paciente p) {
+        AreaAtencion area = obtenerOCrearArea(p.getArea());
+        int resultado;
+        if (area.ingresarPaciente(p)) {
+            resultado = ACEPTADO;
+        } else {
+            AreaAtencion alternativa = area.grupo.masLibre();
+            if (alternativa != null && alternativa.ingresarPaciente(p)) {
+                resultado = REDIRIGIDO;
+                redirigir(p, alternativa, p.getTiempoLlegada());
+            } else if (area.grupo.diferir(p)) {
+                resultado = DIFERIDO;
+                diferidos++;
+                maximoDiferidos = Math.max(maximoDiferidos, diferidos);
+            } else {
+                resultado = RECHAZADO;
             }
-            return Long.compare(p1.getTiempoLlegada(), p2.getTiempoLlegada());
         }
+        admisiones[resultado]++;
+
+        if (resultado == RECHAZADO) {
+            p.registrarEvento(BitacoraEventos.RECHAZADO, p.getTiempoLlegada(), p.getCategoria(), p.getCategoria(), 0);
+            return resultado;
+        }
+        recordar(p);
+        if (resultado == DIFERIDO) {
+            p.registrarEvento(BitacoraEventos.DIFERIDO, p.getTiempoLlegada(), p.getCategoria(), p.getCategoria(), 0);
+        } else {
+            colaAtencion.add(p);
+            p.registrarEvento(BitacoraEventos.REGISTRADO, p.getTiempoLlegada(), p.getCategoria(), p.getCategoria(), 0);
+        }
+        return resultado;
     }
 
-    // Comparador dinámico (prioridad aumenta con espera)
-    private class ComparadorDinamico implements Comparator<Paciente> {
-        @Override
-        public int compare(Paciente a, Paciente b) {
-            long espera1 = tiempoActual - a.getTiempoLlegada();
-            long espera2 = tiempoActual - b.getTiempoLlegada();
-            double prioridad1 = a.getCategoria() - (espera1 / 60.0 / 30.0); // cada 30 min baja 1 punto
-            double prioridad2 = b.getCategoria() - (espera2 / 60.0 / 30.0);
-            if (prioridad1 != prioridad2)
-                return Double.compare(prioridad1, prioridad2);
-            return Long.compare(a.getTiempoLlegada(), b.getTiempoLlegada());
+    // Un id con el formato P%04d se busca por su número; el resto, por texto
+    private void recordar(Paciente p) {
+        if (p.getClave() >= 0) {
+            pacientesTotales.put(p.getClave(), p);
+        } else {
+            pacientesPorId.put(p.getId(), p);
         }
     }
 
-    // Constructor
-    public Hospital(boolean prioridadDinamica) {
-        this.pacientesTotales = new HashMap<>();
-        if (prioridadDinamica) {
-            this.colaAtencion = new PriorityQueue<>(new ComparadorDinamico());
+    private void olvidar(Paciente p) {
+        if (p.getClave() >= 0) {
+            pacientesTotales.remove(p.getClave());
         } else {
-            this.colaAtencion = new PriorityQueue<>(new PacienteComparator());
+            pacientesPorId.remove(p.getId(), p);
         }
-        this.areasAtencion = new HashMap<>();
-        this.pacientesAtendidos = new ArrayList<>();
+    }
 
-        // Crear áreas por defecto
-        areasAtencion.put("sapu", new AreaAtencion("sapu", 100));
-        areasAtencion.put("urgencia_adulto", new AreaAtencion("urgencia_adulto", 100));
-        areasAtencion.put("infantil", new AreaAtencion("infantil", 100));
+    // El último paciente registrado con ese id, o null si el hospital no lo tiene
+    Paciente buscarPaciente(String id) {
+        int numero = AlmacenPacientes.numeroCanonico(id);
+        return numero >= 0 ? pacientesTotales.get(numero) : pacientesPorId.get(id);
     }
 
-    public void registrarPaciente(Paciente p) {
-        pacientesTotales.put(p.getId(), p);
-        colaAtencion.add(p);
-        String area = p.getArea().toLowerCase();
+    // El evento guarda los códigos de las áreas en lugar de las categorías (ver BitacoraEventos.describir)
+    private void redirigir(Paciente p, AreaAtencion destino, long tiempo) {
+        int origen = p.getCodigoArea();
+        p.setArea(destino.getNombre());
+        p.registrarEvento(BitacoraEventos.REDIRIGIDO, tiempo, origen, p.getCodigoArea(), 0);
+    }
 
-        if (!areasAtencion.containsKey(area)) {
-            areasAtencion.put(area, new AreaAtencion(area, 100)); // valor por defecto
+    // Con un lugar libre en el área, entra el primero del desborde de su grupo
+    private void admitirDiferidos(AreaAtencion area) {
+        GrupoAreas grupo = area.grupo;
+        while (grupo.hayDiferidos() && !area.estaSaturada()) {
+            Paciente p = grupo.siguienteDiferido();
+            diferidos--;
+            admitidosDesdeDesborde++;
+            area.ingresarPaciente(p);
+            if (!area.getNombre().equalsIgnoreCase(p.getArea())) {
+                redirigir(p, area, tiempoActual);
+            }
+            colaAtencion.add(p);
+            p.registrarEvento(BitacoraEventos.REGISTRADO, tiempoActual, p.getCategoria(), p.getCategoria(), 0);
         }
+    }
 
-        areasAtencion.get(area).ingresarPaciente(p);
+    // Las áreas indicadas pasan a formar un grupo: se reciben los pacientes que no
+    // caben en las otras y comparten el desborde
+    public final void definirCompatibles(String... nombres) {
+        GrupoAreas nuevo = new GrupoAreas(capacidadDesborde);
+        for (String nombre : nombres) {
+            AreaAtencion area = obtenerOCrearArea(nombre);
+            GrupoAreas anterior = area.grupo;
+            if (anterior == nuevo) continue;
+            anterior.quitar(area);
+            if (anterior.getAreas() == 0) anterior.moverDiferidos(nuevo);
+            nuevo.agregar(area);
+        }
+    }
+
+    // Capacidad de la cola de cada área (100 por defecto), para las existentes y las que se creen
+    public void setCapacidadAreas(int capacidad) {
+        this.capacidadAreas = capacidad;
+        for (AreaAtencion area : areasAtencion.values()) {
+            area.setCapacidadMaxima(capacidad);
+        }
+    }
+
+    // Cuántos pacientes pueden esperar un lugar en cada grupo de áreas
+    public void setCapacidadDesborde(int capacidadDesborde) {
+        this.capacidadDesborde = capacidadDesborde;
+        for (AreaAtencion area : areasAtencion.values()) {
+            area.grupo.setCapacidadDesborde(capacidadDesborde);
+        }
+    }
+
+    // Contrapresión: false si un paciente de esa área sería rechazado ahora
+    public boolean aceptaPacientes(String area) {
+        AreaAtencion a = obtenerArea(area);
+        return a == null || a.grupo.aceptaPacientes();
+    }
+
+    public long getAdmisiones(int resultado) {
+        return admisiones[resultado];
+    }
+
+    public long getAdmitidosDesdeDesborde() {
+        return admitidosDesdeDesborde;
+    }
+
+    public int getDiferidos() {
+        return diferidos;
+    }
+
+    public int getMaximoDiferidos() {
+        return maximoDiferidos;
     }
 
     public void reasignarCategoria(String id, int nuevaCategoria) {
-        Paciente p = pacientesTotales.get(id);
+        Paciente p = buscarPaciente(id);
         if (p != null) {
-            p.setCategoria(nuevaCategoria);
-            p.registrarCambio("Reasignado a categoría " + nuevaCategoria);
-            // Reordenar en la cola
-            colaAtencion.remove(p);
-            colaAtencion.add(p);
+            long inicio = telemetria != null ? System.nanoTime() : 0;
+            int anterior = p.getCategoria();
+            // Reordenar en la cola en O(log n)
+            colaAtencion.reasignar(p, nuevaCategoria);
+            AreaAtencion area = obtenerArea(p.getArea());
+            if (area != null) area.actualizarPaciente(p, anterior);
+            p.registrarEvento(BitacoraEventos.REASIGNADO, tiempoActual, anterior, nuevaCategoria, 0);
+            if (telemetria != null) {
+                telemetria.medirReasignacion(p, anterior, System.nanoTime() - inicio, colaAtencion.size());
+            }
         }
     }
 
     public Paciente atenderSiguiente(long tiempoSimulacion) {
+        if (telemetria == null) return atenderPrimero(tiempoSimulacion);
+        long inicio = System.nanoTime();
+        Paciente p = atenderPrimero(tiempoSimulacion);
+        if (p != null) telemetria.medirAtencion(p, System.nanoTime() - inicio, colaAtencion.size());
+        return p;
+    }
+
+    private Paciente atenderPrimero(long tiempoSimulacion) {
         this.tiempoActual = tiempoSimulacion;
 
         if (colaAtencion.isEmpty()) {
             return null;
         }
 
-        List<Paciente> pacientesEnEspera = new ArrayList<>(colaAtencion);
-        colaAtencion.clear();
-        colaAtencion.addAll(pacientesEnEspera);
+        // La política puede elegir primero el área (reparto entre áreas)
+        AreaAtencion elegida = politica.elegirArea(areasAtencion.values());
+        if (elegida != null) {
+            return tomarDeArea(elegida, tiempoSimulacion);
+        }
 
-        Paciente siguiente = colaAtencion.poll();
+        Paciente siguiente = colaAtencion.poll(tiempoSimulacion);
 
         if (siguiente != null) {
-            siguiente.setEstado("atendido");
-            siguiente.registrarCambio("Paciente atendido");
-            pacientesAtendidos.add(siguiente);
+            AreaAtencion area = obtenerArea(siguiente.getArea());
+            retirarDeArea(siguiente);
+            marcarAtendido(siguiente, tiempoSimulacion);
+            if (area != null) politica.atendido(area);
         }
         return siguiente;
     }
 
+    // Un médico libre del área toma al primero de la cola del área, que sale también
+    // de la cola general. Devuelve null si el área no tiene a nadie esperando.
+    public Paciente iniciarAtencion(AreaAtencion area, long tiempoSimulacion) {
+        if (telemetria == null) return tomarDeArea(area, tiempoSimulacion);
+        long inicio = System.nanoTime();
+        Paciente p = tomarDeArea(area, tiempoSimulacion);
+        if (p != null) telemetria.medirAtencion(p, System.nanoTime() - inicio, colaAtencion.size());
+        return p;
+    }
+
+    private Paciente tomarDeArea(AreaAtencion area, long tiempoSimulacion) {
+        this.tiempoActual = tiempoSimulacion;
+        Paciente siguiente = area.atenderPaciente();
+        if (siguiente != null) {
+            colaAtencion.remove(siguiente);
+            marcarAtendido(siguiente, tiempoSimulacion);
+            politica.atendido(area);
+            admitirDiferidos(area);
+        }
+        return siguiente;
+    }
+
+    private void marcarAtendido(Paciente p, long tiempoSimulacion) {
+        p.setEstado("atendido");
+        p.registrarEvento(BitacoraEventos.ATENDIDO, tiempoSimulacion, p.getCategoria(), p.getCategoria(), 0);
+        if (conservarAtendidos) {
+            pacientesAtendidos.add(p);
+        } else {
+            olvidar(p);
+        }
+    }
+
+    // Devuelve false si no estaba en la cola de su área
+    private boolean retirarDeArea(Paciente p) {
+        AreaAtencion area = obtenerArea(p.getArea());
+        if (area == null || !area.retirarPaciente(p)) return false;
+        admitirDiferidos(area);
+        return true;
+    }
+
+    // Consultas sobre los que esperan en cola (no incluyen a los diferidos en el desborde).
+    // La cola general ya está separada por categoría y cada área lleva sus propios
+    // conteos, así que nada recorre la cola completa.
+
+    // Los k pacientes de la categoría, en O(k)
     public List<Paciente> obtenerPacientesPorCategoria(int categoria) {
-        List<Paciente> resultado = new ArrayList<>();
-        for (Paciente p : colaAtencion) {
-            if (p.getCategoria() == categoria) {
-                resultado.add(p);
-            }
+        List<Paciente> resultado = new ArrayList<>(colaAtencion.cantidadPorCategoria(categoria));
+        if (categoria < 1 || categoria > ColaEnvejecimiento.MAX_CATEGORIA) return resultado;
+        for (Iterator<Paciente> it = colaAtencion.deCategoria(categoria); it.hasNext(); ) {
+            resultado.add(it.next());
         }
         return resultado;
     }
 
+    public int contarPorCategoria(int categoria) {
+        return colaAtencion.cantidadPorCategoria(categoria);
+    }
+
+    public int contarEnArea(String area) {
+        AreaAtencion a = obtenerArea(area);
+        return a == null ? 0 : a.getCantidadPacientes();
+    }
+
+    public int contarEnArea(String area, int categoria) {
+        AreaAtencion a = obtenerArea(area);
+        return a == null ? 0 : a.getCantidadPorCategoria(categoria);
+    }
+
+    // Los del área en el orden en que el área los atendería
+    public List<Paciente> obtenerPacientesEnArea(String area) {
+        AreaAtencion a = obtenerArea(area);
+        return a == null ? new ArrayList<>() : a.obtenerPacientesPorHeapSort();
+    }
+
+    // Los próximos k en ser atendidos desde la cola general, en O(k log k)
+    public List<Paciente> primerosEnEspera(int k) {
+        return HeapIndexado.primeros(colaAtencion.enOrden(), k);
+    }
+
+    // Los primeros k de la categoría, por orden de llegada
+    public List<Paciente> primerosPorCategoria(int categoria, int k) {
+        if (categoria < 1 || categoria > ColaEnvejecimiento.MAX_CATEGORIA) return new ArrayList<>();
+        return HeapIndexado.primeros(colaAtencion.enOrden(categoria), k);
+    }
+
+    // Recorrido perezoso de toda la cola en orden de atención; no admite cambios en la cola mientras se usa
+    public Iterator<Paciente> enOrden() {
+        return colaAtencion.enOrden();
+    }
+
+    // En la cola de atención o esperando lugar en el desborde de su grupo
+    public boolean estaEnEspera(Paciente p) {
+        if (colaAtencion.contains(p)) return true;
+        AreaAtencion area = obtenerArea(p.getArea());
+        return area != null && area.grupo.contieneDiferido(p);
+    }
+
     public AreaAtencion obtenerArea(String nombre) {
         return areasAtencion.get(nombre.toLowerCase());
     }
 
+    // El área con ese nombre, creándola (con la capacidad por defecto y en un grupo propio) si no existe
+    public final AreaAtencion obtenerOCrearArea(String nombre) {
+        String clave = nombre.toLowerCase();
+        AreaAtencion area = areasAtencion.get(clave);
+        if (area == null) {
+            area = new AreaAtencion(clave, capacidadAreas, politica);
+            new GrupoAreas(capacidadDesborde).agregar(area);
+            areasAtencion.put(clave, area);
+        }
+        return area;
+    }
+
+    public Collection<AreaAtencion> getAreas() {
+        return areasAtencion.values();
+    }
+
     public Collection<Paciente> getColaAtencion() {
         return this.colaAtencion;
     }
@@ -118,10 +370,131 @@ public class Hospital {
     }
 
     public boolean eliminarDeCola(Paciente p) {
+        if (!conservarAtendidos) {
+            olvidar(p);
+        }
+        if (!retirarDeArea(p)) {
+            // Puede estar esperando lugar en el desborde
+            AreaAtencion area = obtenerArea(p.getArea());
+            if (area != null && area.grupo.retirarDiferido(p)) {
+                diferidos--;
+                return true;
+            }
+        }
         return colaAtencion.remove(p);
     }
 
-    public void setTiempoActual(int tiempoActual) {
+    // Sin conservar atendidos, el hospital olvida a cada paciente al sacarlo de la
+    // cola: la memoria depende de cuántos esperan y no de cuántos pasaron.
+    public void setConservarAtendidos(boolean conservarAtendidos) {
+        this.conservarAtendidos = conservarAtendidos;
+    }
+
+    // Deja el hospital vacío para otra corrida, conservando las áreas con su
+    // configuración, los grupos y la memoria ya reservada por las colas
+    public void reiniciar() {
+        colaAtencion.clear();
+        pacientesTotales.clear();
+        pacientesPorId.clear();
+        pacientesAtendidos.clear();
+        tiempoActual = 0;
+        Arrays.fill(admisiones, 0);
+        admitidosDesdeDesborde = 0;
+        maximoDiferidos = 0;
+        diferidos = 0;
+        politica.reiniciar();
+        for (AreaAtencion area : areasAtencion.values()) {
+            area.reiniciar();
+            area.grupo.vaciarDesborde();
+        }
+    }
+
+    // Colas, desbordes y contadores para una instantánea (ver InstantaneaSimulacion).
+    // Sin conservar atendidos, los que siguen en el hospital son solo los que esperan.
+    void escribirEstado(InstantaneaSimulacion.Salida out) throws IOException {
+        out.writeLong(tiempoActual);
+        for (long cantidad : admisiones) {
+            out.writeLong(cantidad);
+        }
+        out.writeLong(admitidosDesdeDesborde);
+        out.writeInt(maximoDiferidos);
+        out.writeInt(areasAtencion.size());
+        for (AreaAtencion area : areasAtencion.values()) {
+            out.writeUTF(area.getNombre());
+            area.escribirEstado(out);
+        }
+        // Por categoría, cada una en el orden de su heap
+        out.writeInt(colaAtencion.size());
+        for (Paciente p : colaAtencion) {
+            out.escribirPaciente(p);
+        }
+        // Cada desborde una vez, con el nombre de una de las áreas de su grupo
+        List<AreaAtencion> conDiferidos = new ArrayList<>();
+        Set<GrupoAreas> vistos = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (AreaAtencion area : areasAtencion.values()) {
+            if (area.grupo.hayDiferidos() && vistos.add(area.grupo)) conDiferidos.add(area);
+        }
+        out.writeInt(conDiferidos.size());
+        for (AreaAtencion area : conDiferidos) {
+            out.writeUTF(area.getNombre());
+            out.writeInt(area.grupo.getDiferidos());
+            for (Paciente p : area.grupo.diferidos()) {
+                out.escribirPaciente(p);
+            }
+        }
+    }
+
+    // Las áreas que falten en esta configuración se crean con los valores por omisión
+    void leerEstado(InstantaneaSimulacion.Entrada in) throws IOException {
+        reiniciar();
+        tiempoActual = in.readLong();
+        for (int resultado = 0; resultado <= RECHAZADO; resultado++) {
+            admisiones[resultado] = in.readLong();
+        }
+        admitidosDesdeDesborde = in.readLong();
+        maximoDiferidos = in.readInt();
+        for (int k = in.readInt(); k > 0; k--) {
+            obtenerOCrearArea(in.readUTF()).leerEstado(in);
+        }
+        for (int k = in.readInt(); k > 0; k--) {
+            Paciente p = in.leerPaciente();
+            colaAtencion.add(p);
+            recordar(p);
+        }
+        for (int g = in.readInt(); g > 0; g--) {
+            GrupoAreas grupo = obtenerOCrearArea(in.readUTF()).grupo;
+            for (int k = in.readInt(); k > 0; k--) {
+                Paciente p = in.leerPaciente();
+                grupo.reponerDiferido(p);
+                recordar(p);
+                diferidos++;
+            }
+        }
+    }
+
+    public PoliticaAtencion getPolitica() {
+        return politica;
+    }
+
+    // Solo con el hospital vacío (antes de registrar pacientes o después de reiniciar)
+    public void setPolitica(PoliticaAtencion politica) {
+        if (!colaAtencion.isEmpty() || diferidos > 0) {
+            throw new IllegalStateException("No se puede cambiar la política con pacientes en espera");
+        }
+        this.politica = politica;
+        this.colaAtencion = new ColaEnvejecimiento(politica);
+        for (AreaAtencion area : areasAtencion.values()) {
+            area.setPolitica(politica);
+        }
+    }
+
+    // Con telemetría se mide cada ingreso, atención y reasignación; null la desactiva
+    void setTelemetria(Telemetria telemetria) {
+        this.telemetria = telemetria;
+    }
+
+    // Instante de simulación con que se registran las reasignaciones
+    public void setTiempoActual(long tiempoActual) {
         this.tiempoActual = tiempoActual;
     }
 
@@ -161,5 +534,80 @@ public class Hospital {
         if (area != null) {
             System.out.println("Área encontrada: " + area.getNombre());
         }
+
+        System.out.println("\n--- Prueba de Control de Admisión ---");
+        Hospital lleno = new Hospital(true);
+        lleno.setCapacidadAreas(2);
+        lleno.setCapacidadDesborde(1);
+        String[] nombres = {"aceptado", "redirigido", "diferido", "rechazado"};
+        for (int i = 1; i <= 6; i++) {
+            Paciente p = new Paciente("Adulto", "" + i, "A00" + i, 3, i * 60L, "sapu");
+            int resultado = lleno.registrarPaciente(p);
+            System.out.println(p.getId() + ": " + nombres[resultado] + " (área " + p.getArea() + ")");
+        }
+        System.out.println("Infantil con su área libre: "
+            + nombres[lleno.registrarPaciente(new Paciente("Niño", "1", "N001", 4, 400, "infantil"))]);
+        Paciente atendidoLleno = lleno.atenderSiguiente(600);
+        Paciente admitido = lleno.buscarPaciente("A005");
+        System.out.println("Tras atender a " + atendidoLleno.getId() + ", A005 entra a " + admitido.getArea()
+            + "; diferidos: " + lleno.getDiferidos() + ", historial: " + admitido.getHistorialCambios());
+
+        // La elección del área con más lugar no depende de cuántas áreas compatibles haya:
+        // con area_0 llena, cada paciente se redirige y luego se retira
+        for (int cantidad : new int[]{4, 200}) {
+            Hospital grande = new Hospital(true);
+            String[] areas = new String[cantidad];
+            for (int k = 0; k < cantidad; k++) areas[k] = "area_" + k;
+            grande.definirCompatibles(areas);
+            grande.setCapacidadAreas(20);
+            for (int k = 0; k < 20; k++) {
+                grande.registrarPaciente(new Paciente("P", "Q", "L" + k, 5, k, "area_0"));
+            }
+            Paciente[] pacientes = new Paciente[200_000];
+            for (int k = 0; k < pacientes.length; k++) {
+                pacientes[k] = new Paciente("P", "Q", "G" + k, 1 + k % 5, k, "area_0");
+            }
+            long inicio = System.nanoTime();
+            for (Paciente p : pacientes) {
+                if (grande.registrarPaciente(p) != RECHAZADO) grande.eliminarDeCola(p);
+            }
+            System.out.printf("%d áreas compatibles: %.0f ns por admisión y retiro (redirigidos: %d)\n", cantidad,
+                (System.nanoTime() - inicio) / (double) pacientes.length, grande.getAdmisiones(REDIRIGIDO));
+        }
+
+        System.out.println("\n--- Prueba de Índices por Categoría y Área ---");
+        Random rand = new Random(3);
+        Hospital indexado = new Hospital(true);
+        indexado.setCapacidadAreas(Integer.MAX_VALUE);
+        String[] areasPrueba = {"sapu", "urgencia_adulto", "infantil"};
+        int errores = 0;
+        for (int i = 0; i < 20000; i++) {
+            int op = rand.nextInt(4);
+            if (op < 2) {
+                indexado.registrarPaciente(new Paciente("N", "A", "I" + i, 1 + rand.nextInt(5), i * 30L,
+                    areasPrueba[rand.nextInt(areasPrueba.length)]));
+            } else if (op == 2) {
+                indexado.atenderSiguiente(i * 30L);
+            } else {
+                indexado.reasignarCategoria("I" + rand.nextInt(i + 1), 1 + rand.nextInt(5));
+            }
+            if (i % 1000 != 999) continue;
+            // Se compara cada consulta con un recorrido completo de la cola
+            List<Paciente> todos = new ArrayList<>(indexado.colaAtencion);
+            for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) {
+                final int c = cat;
+                long esperados = todos.stream().filter(p -> p.getCategoria() == c).count();
+                if (indexado.contarPorCategoria(cat) != esperados) errores++;
+                if (indexado.obtenerPacientesPorCategoria(cat).size() != esperados) errores++;
+                for (String nombre : areasPrueba) {
+                    long enArea = todos.stream().filter(p -> p.getCategoria() == c && p.getArea().equals(nombre)).count();
+                    if (indexado.contarEnArea(nombre, cat) != enArea) errores++;
+                }
+            }
+            List<Paciente> primeros = indexado.primerosEnEspera(10);
+            todos.sort(Comparator.comparingLong(ColaEnvejecimiento::clave).thenComparingLong(Paciente::getTiempoLlegada));
+            if (!primeros.equals(todos.subList(0, Math.min(10, todos.size())))) errores++;
+        }
+        System.out.println("Diferencias de los índices respecto a recorrer la cola: " + errores);
     }
 }
@@ -0,0 +1,360 @@
+package src;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// Hospital para ingreso en vivo desde varios mesones mientras los médicos atienden.
+// Registrar o reasignar no toca las colas: el pedido se encadena en una cola de
+// ingreso MPSC sin bloqueo (un getAndSet sobre el último nodo, como la de Vyukov)
+// y quien toma el candado del hospital para atender o consultar aplica antes los
+// pedidos pendientes, en el orden en que llegaron. Los mesones no esperan a un
+// médico ni entre ellos, y el Hospital de adentro sigue siendo el código
+// secuencial de siempre, con un solo hilo a la vez.
+//
+// La cola de ingreso está acotada: si ya hay 'capacidadIngreso' pedidos sin
+// aplicar, el mesón que encola toma él mismo el candado y los aplica, así que
+// los mesones se frenan al ritmo del hospital en vez de acumular pedidos sin
+// límite (el tope se puede pasar por unos pocos pedidos, uno por mesón).
+//
+// Cada registro devuelve un futuro con el resultado de la admisión (ACEPTADO,
+// REDIRIGIDO, DIFERIDO o RECHAZADO de Hospital). Se completa al aplicarse el
+// pedido, ya fuera del candado, en el hilo que lo aplicó: lo que se le encadene
+// no corre con el hospital tomado, pero sí atrasa a ese médico o mesón.
+//
+// El orden entre pacientes no depende de un tiempo actual mutable (la clave de
+// ColaEnvejecimiento es fija), así que aplicar un registro un poco más tarde no
+// cambia a quién se atiende primero.
+public class HospitalConcurrente {
+    // Pedido de la cola de ingreso: registrar (paciente != null) o reasignar
+    private static final class Pedido {
+        final Paciente paciente;
+        final String id;
+        final int categoria;
+        final CompletableFuture<Integer> admision; // solo en los registros
+        int resultado; // lo escribe y lo lee quien aplica el pedido
+        volatile Pedido siguiente;
+
+        Pedido(Paciente paciente, String id, int categoria) {
+            this.paciente = paciente;
+            this.id = id;
+            this.categoria = categoria;
+            this.admision = paciente != null ? new CompletableFuture<>() : null;
+        }
+    }
+
+    public static final int CAPACIDAD_INGRESO_POR_DEFECTO = 1 << 16;
+
+    private final Hospital hospital;
+    private final int capacidadIngreso;
+    private final ReentrantLock candado = new ReentrantLock();
+    private final AtomicReference<Pedido> ultimo;
+    private Pedido primero; // nodo ya aplicado; su siguiente es el próximo pendiente (solo con el candado)
+    private final AtomicLong encolados = new AtomicLong();
+    private volatile long aplicados = 0; // se escribe solo con el candado
+
+    public HospitalConcurrente(Hospital hospital) {
+        this(hospital, CAPACIDAD_INGRESO_POR_DEFECTO);
+    }
+
+    public HospitalConcurrente(Hospital hospital, int capacidadIngreso) {
+        if (capacidadIngreso < 1) {
+            throw new IllegalArgumentException("La capacidad de ingreso debe ser positiva: " + capacidadIngreso);
+        }
+        this.hospital = hospital;
+        this.capacidadIngreso = capacidadIngreso;
+        this.primero = new Pedido(null, null, 0);
+        this.ultimo = new AtomicReference<>(primero);
+    }
+
+    public HospitalConcurrente(boolean prioridadDinamica) {
+        this(new Hospital(prioridadDinamica));
+    }
+
+    // No espera a los médicos salvo con la cola de ingreso llena: el paciente entra a la
+    // cola al próximo atenderSiguiente o consulta, y entonces se completa el futuro con
+    // el resultado de la admisión (también queda contado en getAdmisiones)
+    public CompletableFuture<Integer> registrarPaciente(Paciente p) {
+        Pedido pedido = new Pedido(p, null, 0);
+        encolar(pedido);
+        return pedido.admision;
+    }
+
+    // Igual que registrarPaciente; se aplica después de los registros encolados antes,
+    // incluido el del paciente
+    public void reasignarCategoria(String id, int nuevaCategoria) {
+        encolar(new Pedido(null, id, nuevaCategoria));
+    }
+
+    private void encolar(Pedido pedido) {
+        long n = encolados.incrementAndGet();
+        Pedido anterior = ultimo.getAndSet(pedido);
+        anterior.siguiente = pedido; // hasta aquí el pedido no es visible para quien aplica
+        if (n - aplicados > capacidadIngreso) {
+            // Cola llena: este mesón espera el candado y aplica lo pendiente
+            candado.lock();
+            Pedido desde = primero;
+            try {
+                aplicarPendientes();
+            } finally {
+                soltarCandado(desde);
+            }
+        }
+    }
+
+    // Con el candado tomado
+    private void aplicarPendientes() {
+        Pedido pedido;
+        while ((pedido = primero.siguiente) != null) {
+            if (pedido.paciente != null) {
+                pedido.resultado = hospital.registrarPaciente(pedido.paciente);
+            } else {
+                hospital.reasignarCategoria(pedido.id, pedido.categoria);
+            }
+            primero = pedido;
+            aplicados++;
+        }
+    }
+
+    // Suelta el candado tomado cuando el último aplicado era 'desde' y completa, ya sin
+    // él, los futuros de los registros aplicados mientras tanto
+    private void soltarCandado(Pedido desde) {
+        Pedido hasta = primero;
+        candado.unlock();
+        for (Pedido pedido = desde; pedido != hasta; ) {
+            pedido = pedido.siguiente;
+            if (pedido.admision != null) pedido.admision.complete(pedido.resultado);
+        }
+    }
+
+    public Paciente atenderSiguiente(long tiempoSimulacion) {
+        candado.lock();
+        Pedido desde = primero;
+        try {
+            aplicarPendientes();
+            return hospital.atenderSiguiente(tiempoSimulacion);
+        } finally {
+            soltarCandado(desde);
+        }
+    }
+
+    public Paciente iniciarAtencion(String area, long tiempoSimulacion) {
+        candado.lock();
+        Pedido desde = primero;
+        try {
+            aplicarPendientes();
+            AreaAtencion a = hospital.obtenerArea(area);
+            return a == null ? null : hospital.iniciarAtencion(a, tiempoSimulacion);
+        } finally {
+            soltarCandado(desde);
+        }
+    }
+
+    // Cualquier otra operación sobre el hospital, con los pedidos ya aplicados y sin
+    // otros hilos adentro. Lo que devuelva no debe guardar referencias a sus colas.
+    public <T> T consultar(Function<Hospital, T> consulta) {
+        candado.lock();
+        Pedido desde = primero;
+        try {
+            aplicarPendientes();
+            return consulta.apply(hospital);
+        } finally {
+            soltarCandado(desde);
+        }
+    }
+
+    public int contarPorCategoria(int categoria) {
+        return consultar(h -> h.contarPorCategoria(categoria));
+    }
+
+    public List<Paciente> primerosEnEspera(int k) {
+        return consultar(h -> h.primerosEnEspera(k));
+    }
+
+    public int getCantidadEnEspera() {
+        return consultar(h -> h.getColaAtencion().size() + h.getDiferidos());
+    }
+
+    public long getAdmisiones(int resultado) {
+        return consultar(h -> h.getAdmisiones(resultado));
+    }
+
+    // Pedidos encolados que todavía no se aplican (aproximado mientras hay productores)
+    public long getPendientes() {
+        candado.lock();
+        try {
+            return encolados.get() - aplicados;
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    // Solo para comparar en la prueba de carga: registra tomando el candado, como
+    // haría un Hospital sincronizado
+    void registrarConCandado(Paciente p) {
+        candado.lock();
+        Pedido desde = primero;
+        try {
+            aplicarPendientes();
+            hospital.registrarPaciente(p);
+        } finally {
+            soltarCandado(desde);
+        }
+    }
+
+    // Prueba de carga: 'productores' mesones registran (y cada tanto reasignan) mientras
+    // 'consumidores' médicos atienden, hasta que todos fueron atendidos. Verifica que
+    // cada paciente se atienda exactamente una vez e informa el rendimiento.
+    //
+    //   java -cp bin src.HospitalConcurrente [--pacientes 400000] [--productores 1,2,4,8]
+    //                                        [--consumidores 1,2,4]
+    public static void main(String[] args) throws InterruptedException {
+        int pacientes = 400_000;
+        int[] productores = {1, 2, 4, 8};
+        int[] consumidores = {1, 2, 4};
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equalsIgnoreCase("--pacientes")) {
+                pacientes = Integer.parseInt(args[++i]);
+            } else if (args[i].equalsIgnoreCase("--productores")) {
+                productores = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+            } else if (args[i].equalsIgnoreCase("--consumidores")) {
+                consumidores = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+            }
+        }
+
+        System.out.printf("%-8s %5s %5s %14s %14s %10s %8s\n",
+            "Ingreso", "Prod.", "Cons.", "registros/s", "atenciones/s", "total ms", "errores");
+        // Una ronda sin informar para calentar el JIT
+        probarCarga(false, 2, 2, Math.min(pacientes, 100_000), false);
+        int errores = 0;
+        for (boolean sinBloqueo : new boolean[] {true, false}) {
+            for (int p : productores) {
+                for (int c : consumidores) {
+                    errores += probarCarga(sinBloqueo, p, c, pacientes, true);
+                }
+            }
+        }
+        System.out.println("Errores totales: " + errores);
+
+        // Sin médicos la cola de ingreso no pasa de su capacidad (los mesones aplican lo
+        // pendiente), y cada registro sabe si se rechazó
+        Hospital chico = new Hospital(true);
+        chico.setCapacidadAreas(10);
+        chico.setCapacidadDesborde(5);
+        HospitalConcurrente acotado = new HospitalConcurrente(chico, 1000);
+        List<CompletableFuture<Integer>> admisiones = new ArrayList<>();
+        long maximoPendientes = 0;
+        for (int k = 0; k < 100_000; k++) {
+            admisiones.add(acotado.registrarPaciente(
+                new Paciente("N", "A", GeneradorPacientes.formatearId(k), 3, k, "sapu")));
+            maximoPendientes = Math.max(maximoPendientes, acotado.getPendientes());
+        }
+        acotado.getCantidadEnEspera();
+        long rechazados = admisiones.stream().filter(f -> f.isDone() && f.join() == Hospital.RECHAZADO).count();
+        System.out.println("Cola de ingreso con capacidad 1000: máximo pendiente " + maximoPendientes
+            + ", rechazados según los futuros " + rechazados + " y según el hospital "
+            + acotado.getAdmisiones(Hospital.RECHAZADO));
+    }
+
+    private static int probarCarga(boolean sinBloqueo, int productores, int consumidores, int pacientes,
+                                   boolean informar) throws InterruptedException {
+        Hospital base = new Hospital(true);
+        base.setCapacidadAreas(Integer.MAX_VALUE);
+        base.setConservarAtendidos(false);
+        HospitalConcurrente hospital = new HospitalConcurrente(base);
+        String[] areas = {"sapu", "urgencia_adulto", "infantil"};
+
+        AtomicIntegerArray vecesAtendido = new AtomicIntegerArray(pacientes);
+        CountDownLatch listos = new CountDownLatch(productores + consumidores);
+        CountDownLatch partida = new CountDownLatch(1);
+        CountDownLatch ingresoTerminado = new CountDownLatch(productores);
+        CountDownLatch atencionTerminada = new CountDownLatch(consumidores);
+        AtomicLong admisionesMal = new AtomicLong();
+        AtomicLong finIngreso = new AtomicLong();
+        AtomicLong reloj = new AtomicLong();
+        List<Thread> hilos = new ArrayList<>();
+
+        for (int t = 0; t < productores; t++) {
+            final int desde = (int) ((long) pacientes * t / productores);
+            final int hasta = (int) ((long) pacientes * (t + 1) / productores);
+            hilos.add(new Thread(() -> {
+                SplittableRandom rand = new SplittableRandom(desde);
+                Paciente[] propios = new Paciente[hasta - desde];
+                List<CompletableFuture<Integer>> resultados = new ArrayList<>(propios.length);
+                for (int k = desde; k < hasta; k++) {
+                    propios[k - desde] = new Paciente("N", "A", GeneradorPacientes.formatearId(k),
+                        1 + rand.nextInt(5), k, areas[rand.nextInt(areas.length)]);
+                }
+                listos.countDown();
+                esperar(partida);
+                for (int k = 0; k < propios.length; k++) {
+                    if (sinBloqueo) {
+                        resultados.add(hospital.registrarPaciente(propios[k]));
+                    } else {
+                        hospital.registrarConCandado(propios[k]);
+                    }
+                    if (k % 8 == 7) {
+                        hospital.reasignarCategoria(propios[rand.nextInt(k + 1)].getId(), 1 + rand.nextInt(5));
+                    }
+                }
+                finIngreso.accumulateAndGet(System.nanoTime(), Math::max);
+                ingresoTerminado.countDown();
+                esperar(atencionTerminada);
+                for (CompletableFuture<Integer> r : resultados) {
+                    if (!r.isDone() || r.join() != Hospital.ACEPTADO) admisionesMal.incrementAndGet();
+                }
+            }));
+        }
+        for (int t = 0; t < consumidores; t++) {
+            hilos.add(new Thread(() -> {
+                listos.countDown();
+                esperar(partida);
+                while (true) {
+                    Paciente p = hospital.atenderSiguiente(reloj.incrementAndGet());
+                    if (p != null) {
+                        vecesAtendido.incrementAndGet(AlmacenPacientes.numeroCanonico(p.getId()));
+                    } else if (ingresoTerminado.getCount() == 0 && hospital.getCantidadEnEspera() == 0) {
+                        atencionTerminada.countDown();
+                        return;
+                    } else {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+
+        for (Thread hilo : hilos) hilo.start();
+        listos.await();
+        long inicio = System.nanoTime();
+        partida.countDown();
+        for (Thread hilo : hilos) hilo.join();
+        long fin = System.nanoTime();
+
+        int errores = 0;
+        for (int k = 0; k < pacientes; k++) {
+            if (vecesAtendido.get(k) != 1) errores++;
+        }
+        if (hospital.getPendientes() != 0 || hospital.getAdmisiones(Hospital.ACEPTADO) != pacientes) errores++;
+        errores += (int) admisionesMal.get();
+
+        if (informar) {
+            System.out.printf("%-8s %5d %5d %14.0f %14.0f %10.1f %8d\n", sinBloqueo ? "mpsc" : "candado",
+                productores, consumidores, pacientes / ((finIngreso.get() - inicio) / 1e9),
+                pacientes / ((fin - inicio) / 1e9), (fin - inicio) / 1e6, errores);
+        }
+        return errores;
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
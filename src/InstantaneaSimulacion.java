@@ -0,0 +1,317 @@
+package src;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+// Instantánea del estado completo de una simulación con memoria acotada, entre
+// dos eventos: reloj, contadores y estadísticas, colas del hospital y de cada
+// área (en el orden exacto de sus heaps), desbordes, médicos ocupados, el
+// calendario de eventos, la rueda de plazos, el estado del generador de tiempos
+// de servicio y, si es un FlujoPacientes con AleatorioRestaurable, el de las
+// llegadas. Restaurarla y seguir da el mismo resultado que no haberse detenido.
+//
+// La configuración (áreas, médicos, distribuciones, capacidades, grupos de
+// compatibles, política) no se guarda: se restaura sobre un simulador ya
+// configurado, que puede ser distinto del original para probar variantes desde
+// el mismo punto. Tampoco se guardan el historial de la bitácora de cada paciente
+// ni el estado acumulado de una política con memoria (reparto), que parte de cero.
+//
+// Capturar copia solo el estado vivo (los que esperan o están en atención, no
+// los ya atendidos, y las casillas no vacías de los histogramas) a un arreglo de
+// bytes; comprimirlo y escribirlo a disco puede hacerse en otro hilo
+// (guardarAsincrono) mientras la simulación sigue.
+//
+//   archivo: "INS2" (int), largo (int), luego el estado comprimido con deflate
+//   pacientes: la primera vez se escribe el registro completo; después, su número
+public final class InstantaneaSimulacion {
+    private static final int MAGICO = 0x494E5332; // "INS2"
+
+    private static final ExecutorService ESCRITOR = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "escritor-instantaneas");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    private final byte[] datos;
+    private final long reloj;
+
+    private InstantaneaSimulacion(byte[] datos, long reloj) {
+        this.datos = datos;
+        this.reloj = reloj;
+    }
+
+    // Copia el estado actual; la simulación no cambia
+    public static InstantaneaSimulacion capturar(SimuladorUrgencia simulador) {
+        Salida salida = new Salida();
+        try {
+            simulador.escribirEstado(salida);
+            salida.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // no ocurre escribiendo a memoria
+        }
+        return new InstantaneaSimulacion(salida.bytes.toByteArray(), simulador.getReloj());
+    }
+
+    // Deja al simulador (ya configurado) en el estado guardado, con las llegadas
+    // guardadas en la instantánea
+    public void restaurarEn(SimuladorUrgencia simulador) {
+        restaurarEn(simulador, null);
+    }
+
+    // Con 'llegadas' como el resto de las llegadas si el flujo original no se pudo guardar
+    // (una lista o una traza ya posicionada después del último paciente ingresado)
+    public void restaurarEn(SimuladorUrgencia simulador, Iterator<Paciente> llegadas) {
+        try {
+            simulador.leerEstado(new Entrada(datos), llegadas);
+        } catch (IOException e) {
+            throw new IllegalStateException("Instantánea dañada", e);
+        }
+    }
+
+    public long getReloj() {
+        return reloj;
+    }
+
+    // Bytes del estado sin comprimir
+    public int getTamano() {
+        return datos.length;
+    }
+
+    public void guardar(String archivo) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(archivo))))) {
+            out.writeInt(MAGICO);
+            out.writeInt(datos.length);
+            out.writeLong(reloj);
+            DeflaterOutputStream comprimido = new DeflaterOutputStream(out, new Deflater(Deflater.BEST_SPEED));
+            comprimido.write(datos);
+            comprimido.finish();
+        }
+    }
+
+    // Comprime y escribe en el hilo de instantáneas; la simulación puede seguir mientras tanto
+    public Future<?> guardarAsincrono(String archivo) {
+        return ESCRITOR.submit(() -> {
+            guardar(archivo);
+            return null;
+        });
+    }
+
+    public static InstantaneaSimulacion leer(String archivo) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Paths.get(archivo))))) {
+            if (in.readInt() != MAGICO) throw new IOException("No es una instantánea de simulación: " + archivo);
+            byte[] datos = new byte[in.readInt()];
+            long reloj = in.readLong();
+            new DataInputStream(new InflaterInputStream(in)).readFully(datos);
+            return new InstantaneaSimulacion(datos, reloj);
+        }
+    }
+
+    // Prueba de funcionamiento: un mes con llegadas por hora del día y colas que se
+    // llenan en las horas punta. Se captura al mediodía del día 20 y se sigue simulando,
+    // se restaura desde el archivo y se comprueba que el final es idéntico al de una
+    // corrida sin detenerse; luego se prueban variantes desde el mismo punto.
+    //   java -cp bin src.InstantaneaSimulacion [días] [día de la instantánea]
+    public static void main(String[] args) throws Exception {
+        long dia = SimuladorUrgencia.HORIZONTE_DIA;
+        long horizonte = (args.length > 0 ? Long.parseLong(args[0]) : 30) * dia;
+        long corte = (long) ((args.length > 1 ? Double.parseDouble(args[1]) : 20.5) * dia);
+        String archivo = "Simulaciones/instantanea.ins";
+        new File("Simulaciones").mkdirs();
+
+        long inicio = System.nanoTime();
+        SimuladorUrgencia continua = nuevoEscenario(horizonte, 0);
+        continua.avanzarHasta(horizonte);
+        double msContinua = (System.nanoTime() - inicio) / 1e6;
+        String esperada = firma(continua);
+
+        // La misma corrida, capturada a mitad de camino; se escribe mientras sigue
+        SimuladorUrgencia original = nuevoEscenario(horizonte, 0);
+        original.avanzarHasta(corte);
+        int enEspera = original.getCantidadEnEspera();
+        inicio = System.nanoTime();
+        InstantaneaSimulacion instantanea = capturar(original);
+        double msCaptura = (System.nanoTime() - inicio) / 1e6;
+        // Ya compilada, la pausa es la de copiar el estado vivo
+        inicio = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            capturar(original);
+        }
+        double msCapturaCaliente = (System.nanoTime() - inicio) / 1e6 / 20;
+        Future<?> escritura = instantanea.guardarAsincrono(archivo);
+        original.avanzarHasta(horizonte);
+        escritura.get();
+        inicio = System.nanoTime();
+        instantanea.guardar(archivo);
+        double msEscritura = (System.nanoTime() - inicio) / 1e6;
+
+        inicio = System.nanoTime();
+        SimuladorUrgencia restaurada = nuevoEscenario(horizonte, 0);
+        leer(archivo).restaurarEn(restaurada);
+        double msLectura = (System.nanoTime() - inicio) / 1e6;
+        restaurada.avanzarHasta(horizonte);
+
+        System.out.printf("Instantánea del día %.1f: %d pacientes en espera, %d bytes (%d comprimidos)\n",
+            (double) corte / dia, enEspera, instantanea.getTamano(), new File(archivo).length());
+        System.out.printf("  captura %.2f ms la primera vez y %.3f ms ya compilada (la simulación se detiene)\n",
+            msCaptura, msCapturaCaliente);
+        System.out.printf("  compresión y escritura %.2f ms (en otro hilo), lectura y restauración %.2f ms\n",
+            msEscritura, msLectura);
+        System.out.println("  Corrida capturada igual a la continua: " + firma(original).equals(esperada));
+        System.out.println("  Restaurada igual a la continua:        " + firma(restaurada).equals(esperada));
+
+        // Variantes desde el mismo punto, en paralelo: solo se simula lo que falta
+        int[] medicosExtra = {0, 1, 2, 3};
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(medicosExtra.length,
+            Runtime.getRuntime().availableProcessors()));
+        List<Future<String>> variantes = new ArrayList<>();
+        for (int extra : medicosExtra) {
+            variantes.add(pool.submit(() -> {
+                long t0 = System.nanoTime();
+                SimuladorUrgencia s = nuevoEscenario(horizonte, extra);
+                instantanea.restaurarEn(s);
+                s.avanzarHasta(horizonte);
+                long excedidos = s.getCantidadExcedidos();
+                return String.format("%14s  %9d  %9d  %8d  %8d  %9.0f", "+" + extra + " en adultos", excedidos,
+                    s.getEstadistica(3).percentil(90), s.getEstadistica(5).percentil(90), s.getCantidadEnEspera(),
+                    (System.nanoTime() - t0) / 1e6);
+            }));
+        }
+        System.out.printf("\nVariantes desde el día %.1f (la corrida completa tarda %.0f ms):\n", (double) corte / dia,
+            msContinua);
+        System.out.println("      Variante  Excedidos  p90 C3(s)  p90 C5(s)  En espera  ms");
+        for (Future<String> variante : variantes) {
+            System.out.println(variante.get());
+        }
+        pool.shutdown();
+    }
+
+    // Tres áreas con tres médicos cada una (más 'extra' en urgencia_adulto) y llegadas
+    // con el perfil horario de FlujoPacientes al doble de intensidad
+    private static SimuladorUrgencia nuevoEscenario(long horizonte, int extra) {
+        double[] perfil = {
+            6, 4, 4, 2, 2, 4, 6, 10, 16, 20, 22, 22,
+            20, 18, 18, 18, 20, 22, 24, 22, 18, 14, 10, 8
+        };
+        SimuladorUrgencia s = new SimuladorUrgencia(
+            FlujoPacientes.porHoraDelDia(new AleatorioRestaurable(7), 0, perfil, Long.MAX_VALUE, horizonte));
+        s.setSilencioso(true);
+        s.setMemoriaAcotada(true);
+        s.setIntervaloLlegada(0);
+        for (String area : new String[] {"urgencia_adulto", "infantil", "sapu"}) {
+            s.configurarArea(area, area.equals("urgencia_adulto") ? 3 + extra : 3, DistribucionServicio.exponencial(1500));
+        }
+        s.setSemillaServicio(11);
+        s.iniciar(Integer.MAX_VALUE, horizonte);
+        return s;
+    }
+
+    private static String firma(SimuladorUrgencia s) {
+        StringBuilder firma = new StringBuilder();
+        firma.append(s.getReloj()).append(' ').append(s.getEventosProcesados()).append(' ')
+            .append(s.getCantidadExcedidos()).append(' ').append(s.getCantidadEnEspera());
+        for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) {
+            EstadisticaEspera e = s.getEstadistica(cat);
+            firma.append(' ').append(s.getCantidadAtendidos(cat)).append('/').append(s.getSumaTiemposEspera(cat))
+                .append('/').append(e.getMedia()).append('/').append(e.percentil(99));
+        }
+        for (int resultado = Hospital.ACEPTADO; resultado <= Hospital.RECHAZADO; resultado++) {
+            firma.append(' ').append(s.getAdmisiones(resultado));
+        }
+        for (AreaAtencion area : s.getAreas()) {
+            firma.append(' ').append(area.getAtenciones()).append('/').append(area.getUtilizacion(1));
+        }
+        return firma.toString();
+    }
+
+    // Escritura del estado: los pacientes se identifican por su número dentro de la instantánea
+    static final class Salida extends DataOutputStream {
+        private final ByteArrayOutputStream bytes;
+        private final IdentityHashMap<Paciente, Integer> pacientes = new IdentityHashMap<>();
+        private final Map<String, Integer> textos = new HashMap<>();
+
+        Salida() {
+            this(new ByteArrayOutputStream(1 << 16));
+        }
+
+        private Salida(ByteArrayOutputStream bytes) {
+            super(bytes);
+            this.bytes = bytes;
+        }
+
+        // -2 si no hay paciente, su número si ya se escribió, o -1 y el registro completo
+        void escribirPaciente(Paciente p) throws IOException {
+            if (p == null) {
+                writeInt(-2);
+                return;
+            }
+            Integer numero = pacientes.get(p);
+            if (numero != null) {
+                writeInt(numero);
+                return;
+            }
+            pacientes.put(p, pacientes.size());
+            writeInt(-1);
+            int clave = p.getClave();
+            writeInt(clave);
+            if (clave < 0) writeUTF(p.getId());
+            escribirTexto(p.getNombre());
+            escribirTexto(p.getApellido());
+            escribirTexto(p.getArea());
+            escribirTexto(p.getEstado());
+            writeByte(p.getCategoria());
+            writeLong(p.getTiempoLlegada());
+            writeLong(p.getTiempoAtencion());
+            writeBoolean(p.isExcedido());
+        }
+
+        private void escribirTexto(String texto) throws IOException {
+            Integer numero = textos.get(texto);
+            if (numero != null) {
+                writeInt(numero);
+            } else {
+                textos.put(texto, textos.size());
+                writeInt(-1);
+                writeUTF(texto);
+            }
+        }
+    }
+
+    static final class Entrada extends DataInputStream {
+        private final List<Paciente> pacientes = new ArrayList<>();
+        private final List<String> textos = new ArrayList<>();
+
+        Entrada(byte[] datos) {
+            super(new ByteArrayInputStream(datos));
+        }
+
+        Paciente leerPaciente() throws IOException {
+            int numero = readInt();
+            if (numero == -2) return null;
+            if (numero >= 0) return pacientes.get(numero);
+            int clave = readInt();
+            String id = clave >= 0 ? GeneradorPacientes.formatearId(clave) : readUTF();
+            String nombre = leerTexto();
+            String apellido = leerTexto();
+            String area = leerTexto();
+            String estado = leerTexto();
+            int categoria = readByte();
+            Paciente p = new Paciente(nombre, apellido, id, categoria, readLong(), area);
+            p.setEstado(estado);
+            p.setTiempoAtencion(readLong());
+            p.setExcedido(readBoolean());
+            pacientes.add(p);
+            return p;
+        }
+
+        private String leerTexto() throws IOException {
+            int numero = readInt();
+            if (numero >= 0) return textos.get(numero);
+            String texto = readUTF();
+            textos.add(texto);
+            return texto;
+        }
+    }
+}
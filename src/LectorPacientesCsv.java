@@ -0,0 +1,344 @@
+package src;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+import java.util.*;
+
+// Lee un archivo de pacientes en el formato de GeneradorPacientes.guardarPacientes
+// (id,nombre,apellido,categoría,área,llegada,estado,historial) directamente
+// desde el archivo mapeado en memoria. Los números se leen de los bytes, los ids
+// P%04d se convierten a su clave numérica sin pasar por String, y los nombres,
+// apellidos y áreas se buscan por sus bytes en un caché que guarda el código de
+// diccionario: solo la primera aparición de cada texto crea un String.
+//
+// Se recorre de a un paciente (es un Iterator), así que sirve como fuente de
+// SimuladorUrgencia. Los archivos de más de 1 GB se mapean por ventanas.
+public class LectorPacientesCsv implements Iterator<Paciente>, Closeable {
+    private static final long VENTANA = 1L << 30;
+
+    private final FileChannel canal;
+    private final long tamano;
+    private MappedByteBuffer buffer;
+    private long base;      // posición en el archivo del inicio de la ventana
+    private int pos;        // posición dentro de la ventana
+    private boolean cerrado = false;
+
+    private final CacheCadenas nombres = new CacheCadenas(AlmacenPacientes.NOMBRES);
+    private final CacheCadenas apellidos = new CacheCadenas(AlmacenPacientes.APELLIDOS);
+    private final CacheCadenas areas = new CacheCadenas(AlmacenPacientes.AREAS);
+
+    // Campos del registro ya leído y todavía no entregado
+    private boolean hayRegistro = false;
+    private int clave;       // -1 si el id no tiene el formato P%04d: el texto queda en 'id'
+    private String id;
+    private int nombre;
+    private int apellido;
+    private int categoria;
+    private int area;
+    private long llegada;
+    private int inicioCampo;  // inicio y hash del último campo de texto escaneado
+    private int hashCampo;
+    private long numero;      // último entero leído
+
+    public LectorPacientesCsv(String archivo) throws IOException {
+        canal = FileChannel.open(Paths.get(archivo), StandardOpenOption.READ);
+        tamano = canal.size();
+        mapear(0);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (hayRegistro) return true;
+        if (cerrado) return false;
+        try {
+            hayRegistro = leerRegistro();
+            if (!hayRegistro) close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return hayRegistro;
+    }
+
+    @Override
+    public Paciente next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        hayRegistro = false;
+        return clave >= 0 ? new Paciente(clave, nombre, apellido, categoria, llegada, area)
+            : new Paciente(id, nombre, apellido, categoria, llegada, area);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!cerrado) {
+            cerrado = true;
+            buffer = null;
+            canal.close();
+        }
+    }
+
+    private void mapear(long desde) throws IOException {
+        base = desde;
+        pos = 0;
+        buffer = canal.map(FileChannel.MapMode.READ_ONLY, desde, Math.min(VENTANA, tamano - desde));
+    }
+
+    // Lee el siguiente registro en una sola pasada; false al final del archivo
+    private boolean leerRegistro() throws IOException {
+        while (true) {
+            int limite = buffer.limit();
+            while (pos < limite && (buffer.get(pos) == '\n' || buffer.get(pos) == '\r')) pos++; // líneas vacías
+            if (base + pos >= tamano) return false;
+            if (pos == limite) {
+                mapear(base + pos);
+                continue;
+            }
+            int fin = parsear(pos);
+            if (fin >= 0) {
+                pos = fin;
+                return true;
+            }
+            // El registro cruza el borde de la ventana: se vuelve a mapear desde su inicio
+            if (pos == 0) throw new IOException("Línea de más de " + VENTANA + " bytes en la posición " + base);
+            mapear(base + pos);
+        }
+    }
+
+    // Interpreta el registro que empieza en i y devuelve la posición siguiente a su
+    // salto de línea, o -1 si la ventana termina antes que el registro
+    private int parsear(int i) throws IOException {
+        i = leerClave(i);
+        if (i < 0) return -1;
+        i = escanear(i + 1);
+        if (i < 0) return -1;
+        nombre = nombres.codigo(buffer, inicioCampo, i - inicioCampo, hashCampo);
+        i = escanear(i + 1);
+        if (i < 0) return -1;
+        apellido = apellidos.codigo(buffer, inicioCampo, i - inicioCampo, hashCampo);
+        i = leerEntero(i + 1);
+        if (i < 0) return -1;
+        categoria = (int) numero;
+        i = escanear(i + 1);
+        if (i < 0) return -1;
+        area = areas.codigo(buffer, inicioCampo, i - inicioCampo, hashCampo);
+        i = leerEntero(i + 1);
+        if (i < 0) return -1;
+        llegada = numero;
+        // estado (siempre en_espera al guardar) e historial se ignoran
+        int limite = buffer.limit();
+        while (i < limite && buffer.get(i) != '\n') i++;
+        if (i == limite) return base + limite >= tamano ? limite : -1;
+        return i + 1;
+    }
+
+    // Avanza hasta la coma o el fin de línea que cierra el campo que empieza en i,
+    // calculando su hash; -1 si la ventana termina antes (y el archivo no)
+    private int escanear(int i) throws IOException {
+        int limite = buffer.limit();
+        if (i > limite) throw new IOException("Registro incompleto en la posición " + (base + limite));
+        inicioCampo = i;
+        int h = 1;
+        while (i < limite) {
+            byte b = buffer.get(i);
+            if (b == ',' || b == '\n' || b == '\r') {
+                if (b != ',') throw new IOException("Registro incompleto en la posición " + (base + i));
+                hashCampo = h;
+                return i;
+            }
+            h = 31 * h + b;
+            i++;
+        }
+        return terminaEnVentana(i);
+    }
+
+    private int terminaEnVentana(int i) throws IOException {
+        if (base + i < tamano) return -1;
+        throw new IOException("Registro incompleto al final del archivo");
+    }
+
+    private int leerClave(int i) throws IOException {
+        int fin = escanear(i);
+        if (fin < 0) return -1;
+        int largo = fin - i;
+        // Formato P%04d: el número es la clave, sin crear el String
+        if (largo >= 5 && largo <= 11 && buffer.get(i) == 'P' && (largo == 5 || buffer.get(i + 1) != '0')) {
+            long valor = 0;
+            int k = i + 1;
+            while (k < fin) {
+                int c = buffer.get(k) - '0';
+                if (c < 0 || c > 9) break;
+                valor = valor * 10 + c;
+                k++;
+            }
+            if (k == fin && valor <= Integer.MAX_VALUE) {
+                clave = (int) valor;
+                return fin;
+            }
+        }
+        byte[] bytes = new byte[largo];
+        buffer.get(i, bytes);
+        clave = -1;
+        id = new String(bytes, Charset.defaultCharset());
+        return fin;
+    }
+
+    // Lee un entero (con signo) que termina en coma, fin de línea o fin de archivo;
+    // deja el valor en 'numero' y devuelve la posición del terminador
+    private int leerEntero(int i) throws IOException {
+        int limite = buffer.limit();
+        int inicio = i;
+        boolean negativo = i < limite && buffer.get(i) == '-';
+        if (negativo) i++;
+        long valor = 0;
+        while (i < limite) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                if (i == inicio || (b != ',' && b != '\n' && b != '\r')) {
+                    throw new IOException("Número inválido en la posición " + (base + inicio));
+                }
+                numero = negativo ? -valor : valor;
+                return i;
+            }
+            valor = valor * 10 + (b - '0');
+            i++;
+        }
+        if (base + i < tamano) return -1;
+        numero = negativo ? -valor : valor;
+        return i;
+    }
+
+    // Caché de textos por sus bytes (direccionamiento abierto): evita crear un String
+    // por registro para textos que se repiten. Se asume la codificación por defecto,
+    // la misma con que escribe FileWriter.
+    static final class CacheCadenas {
+        private final DiccionarioCadenas diccionario;
+        private byte[][] bytes = new byte[64][];
+        private int[] codigos = new int[64];
+        private int[] hashes = new int[64];
+        private int cantidad = 0;
+
+        CacheCadenas(DiccionarioCadenas diccionario) {
+            this.diccionario = diccionario;
+        }
+
+        // h: hash de los bytes calculado al escanear el campo (31 * h + byte, desde 1)
+        int codigo(java.nio.ByteBuffer origen, int inicio, int largo, int h) {
+            int mascara = bytes.length - 1;
+            for (int i = h & mascara; bytes[i] != null; i = (i + 1) & mascara) {
+                if (hashes[i] == h && iguales(bytes[i], origen, inicio, largo)) return codigos[i];
+            }
+            byte[] copia = new byte[largo];
+            origen.get(inicio, copia);
+            int codigo = diccionario.codigo(new String(copia, Charset.defaultCharset()));
+            agregar(h, copia, codigo);
+            return codigo;
+        }
+
+        private static boolean iguales(byte[] a, java.nio.ByteBuffer origen, int inicio, int largo) {
+            if (a.length != largo) return false;
+            for (int k = 0; k < largo; k++) {
+                if (a[k] != origen.get(inicio + k)) return false;
+            }
+            return true;
+        }
+
+        private void agregar(int h, byte[] texto, int codigo) {
+            if (++cantidad * 2 > bytes.length) {
+                byte[][] viejosBytes = bytes;
+                int[] viejosCodigos = codigos;
+                int[] viejosHashes = hashes;
+                bytes = new byte[viejosBytes.length * 2][];
+                codigos = new int[bytes.length];
+                hashes = new int[bytes.length];
+                for (int k = 0; k < viejosBytes.length; k++) {
+                    if (viejosBytes[k] != null) colocar(viejosHashes[k], viejosBytes[k], viejosCodigos[k]);
+                }
+            }
+            colocar(h, texto, codigo);
+        }
+
+        private void colocar(int h, byte[] texto, int codigo) {
+            int mascara = bytes.length - 1;
+            int i = h & mascara;
+            while (bytes[i] != null) i = (i + 1) & mascara;
+            bytes[i] = texto;
+            codigos[i] = codigo;
+            hashes[i] = h;
+        }
+    }
+
+    // Test de funcionamiento: escribe una traza en CSV y en formato binario, las
+    // vuelve a leer comparando cada paciente, y compara la velocidad de carga con
+    // la de solo leer los bytes del archivo
+    // (java -Xmx512m -cp bin src.LectorPacientesCsv 10000000 para 10 millones)
+    public static void main(String[] args) throws IOException {
+        int cantidad = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        File csv = File.createTempFile("pacientes", ".txt");
+        File binario = File.createTempFile("pacientes", ".trz");
+        csv.deleteOnExit();
+        binario.deleteOnExit();
+
+        long inicio = System.nanoTime();
+        GeneradorPacientes.guardarPacientes(
+            FlujoPacientes.periodico(new SplittableRandom(8), 0, 600, cantidad, Long.MAX_VALUE), csv.getPath());
+        TrazaPacientes.escribir(
+            FlujoPacientes.periodico(new SplittableRandom(8), 0, 600, cantidad, Long.MAX_VALUE), binario.getPath());
+        System.out.printf("Escritura de %d pacientes: %.1f s (CSV %.1f MB, binario %.1f MB)\n", cantidad,
+            (System.nanoTime() - inicio) / 1e9, csv.length() / 1e6, binario.length() / 1e6);
+
+        // Cada paciente leído del CSV debe coincidir con el del formato binario
+        int diferencias = 0;
+        try (LectorPacientesCsv lectorCsv = new LectorPacientesCsv(csv.getPath());
+             TrazaPacientes lectorBinario = TrazaPacientes.leer(binario.getPath())) {
+            FlujoPacientes original = FlujoPacientes.periodico(new SplittableRandom(8), 0, 600, cantidad, Long.MAX_VALUE);
+            while (original.hasNext()) {
+                Paciente o = original.next();
+                for (Paciente p : new Paciente[] {lectorCsv.next(), lectorBinario.next()}) {
+                    if (p.getClave() != o.getClave() || p.getCodigoNombre() != o.getCodigoNombre()
+                        || p.getCodigoApellido() != o.getCodigoApellido() || p.getCategoria() != o.getCategoria()
+                        || p.getCodigoArea() != o.getCodigoArea() || p.getTiempoLlegada() != o.getTiempoLlegada()) {
+                        diferencias++;
+                    }
+                }
+            }
+            if (lectorCsv.hasNext() || lectorBinario.hasNext()) diferencias++;
+        }
+        System.out.println("Pacientes distintos al releer: " + diferencias);
+
+        for (int vuelta = 0; vuelta < 3; vuelta++) {
+            double soloBytes = medirLecturaCruda(csv);
+            long t0 = System.nanoTime();
+            long suma = 0;
+            try (LectorPacientesCsv lector = new LectorPacientesCsv(csv.getPath())) {
+                while (lector.hasNext()) suma += lector.next().getTiempoLlegada();
+            }
+            double segundosCsv = (System.nanoTime() - t0) / 1e9;
+            double soloBytesBinario = medirLecturaCruda(binario);
+            t0 = System.nanoTime();
+            try (TrazaPacientes lector = TrazaPacientes.leer(binario.getPath())) {
+                while (lector.hasNext()) suma -= lector.next().getTiempoLlegada();
+            }
+            double segundosBinario = (System.nanoTime() - t0) / 1e9;
+            System.out.printf("CSV: %.2f s (%.0f MB/s; leer los bytes: %.2f s)  binario: %.2f s (leer los bytes: %.2f s)%s\n",
+                segundosCsv, csv.length() / 1e6 / segundosCsv, soloBytes, segundosBinario, soloBytesBinario,
+                suma == 0 ? "" : " ¡sumas distintas!");
+        }
+    }
+
+    // Segundos en recorrer el archivo completo sin interpretarlo
+    private static double medirLecturaCruda(File archivo) throws IOException {
+        long t0 = System.nanoTime();
+        long suma = 0;
+        try (FileChannel canal = FileChannel.open(archivo.toPath(), StandardOpenOption.READ)) {
+            java.nio.ByteBuffer buffer = java.nio.ByteBuffer.allocateDirect(1 << 20);
+            while (canal.read(buffer) > 0) {
+                buffer.flip();
+                while (buffer.remaining() >= 8) suma += buffer.getLong();
+                buffer.clear();
+            }
+        }
+        return (System.nanoTime() - t0) / 1e9 + (suma == 42 ? 1e-9 : 0);
+    }
+}
@@ -0,0 +1,138 @@
+package src;
+
+import java.util.*;
+
+// Mapa de claves int con direccionamiento abierto (sondeo lineal): sin nodos
+// ni Integer por entrada, así que agregar y buscar no reservan memoria salvo
+// al crecer. Al borrar se corren hacia atrás las entradas siguientes del mismo
+// grupo, sin lápidas. Los valores no pueden ser null.
+public class MapaEnteros<V> {
+    private int[] claves;
+    private Object[] valores;
+    private int cantidad = 0;
+    private int mascara;
+
+    public MapaEnteros() {
+        this(16);
+    }
+
+    public MapaEnteros(int capacidadInicial) {
+        int capacidad = Integer.highestOneBit(Math.max(4, capacidadInicial * 2 - 1)) << 1;
+        claves = new int[capacidad];
+        valores = new Object[capacidad];
+        mascara = capacidad - 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int clave) {
+        for (int i = posicion(clave); valores[i] != null; i = (i + 1) & mascara) {
+            if (claves[i] == clave) return (V) valores[i];
+        }
+        return null;
+    }
+
+    public boolean containsKey(int clave) {
+        return get(clave) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(int clave, V valor) {
+        if (valor == null) throw new NullPointerException("MapaEnteros no admite valores null");
+        int i = posicion(clave);
+        for (; valores[i] != null; i = (i + 1) & mascara) {
+            if (claves[i] == clave) {
+                V anterior = (V) valores[i];
+                valores[i] = valor;
+                return anterior;
+            }
+        }
+        claves[i] = clave;
+        valores[i] = valor;
+        if (++cantidad * 2 > claves.length) crecer();
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(int clave) {
+        int i = posicion(clave);
+        for (; valores[i] != null; i = (i + 1) & mascara) {
+            if (claves[i] == clave) {
+                V anterior = (V) valores[i];
+                borrarEn(i);
+                cantidad--;
+                return anterior;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return cantidad;
+    }
+
+    public boolean isEmpty() {
+        return cantidad == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(valores, null);
+        cantidad = 0;
+    }
+
+    // Corre hacia atrás las entradas que quedarían inalcanzables tras vaciar la posición i
+    private void borrarEn(int i) {
+        int hueco = i;
+        for (int j = (i + 1) & mascara; valores[j] != null; j = (j + 1) & mascara) {
+            int ideal = posicion(claves[j]);
+            // j puede ocupar el hueco si su posición ideal no está entre el hueco y j (circularmente)
+            if (((j - ideal) & mascara) >= ((j - hueco) & mascara)) {
+                claves[hueco] = claves[j];
+                valores[hueco] = valores[j];
+                hueco = j;
+            }
+        }
+        valores[hueco] = null;
+    }
+
+    private void crecer() {
+        int[] clavesViejas = claves;
+        Object[] valoresViejos = valores;
+        claves = new int[clavesViejas.length * 2];
+        valores = new Object[valoresViejos.length * 2];
+        mascara = claves.length - 1;
+        for (int k = 0; k < clavesViejas.length; k++) {
+            if (valoresViejos[k] != null) {
+                int i = posicion(clavesViejas[k]);
+                while (valores[i] != null) i = (i + 1) & mascara;
+                claves[i] = clavesViejas[k];
+                valores[i] = valoresViejos[k];
+            }
+        }
+    }
+
+    private int posicion(int clave) {
+        int h = clave * 0x9E3779B9; // Fibonacci: las claves consecutivas quedan repartidas
+        return (h ^ (h >>> 16)) & mascara;
+    }
+
+    // Test de funcionamiento: operaciones al azar comparadas con un HashMap
+    public static void main(String[] args) {
+        Random rand = new Random(11);
+        MapaEnteros<Integer> mapa = new MapaEnteros<>();
+        Map<Integer, Integer> referencia = new HashMap<>();
+        int errores = 0;
+        for (int i = 0; i < 1_000_000; i++) {
+            int clave = rand.nextInt(20_000) - 10_000;
+            int operacion = rand.nextInt(3);
+            if (operacion == 0) {
+                if (!Objects.equals(mapa.put(clave, i), referencia.put(clave, i))) errores++;
+            } else if (operacion == 1) {
+                if (!Objects.equals(mapa.remove(clave), referencia.remove(clave))) errores++;
+            } else if (!Objects.equals(mapa.get(clave), referencia.get(clave))) {
+                errores++;
+            }
+            if (mapa.size() != referencia.size()) errores++;
+        }
+        System.out.println("Diferencias con HashMap: " + errores + ", tamaño final: " + mapa.size());
+    }
+}
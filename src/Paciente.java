@@ -2,111 +2,187 @@ package src;
 
 import java.util.Stack;
 
+// Vista liviana sobre una posición de AlmacenPacientes: los datos viven en las
+// columnas del almacén y este objeto solo sabe dónde están. Los historiales se
+// leen de la cadena de eventos del paciente en BitacoraEventos.
 public class Paciente {
-    private String nombre;
-    private String apellido;
-    private String id;
-    private int categoria; // 1:Vital, 2:Urgencia, 3:Mediana, 4:Baja, 5:Atencion general
-    private long tiempoLlegada;
-    private String estado; // "en_espera", "en_atencion", "atendido"
-    private String area; // "SAPU", "urgencia_adulto", "infantil"
-    private Stack<String> historialCambios;
-    private Stack<String> historial = new Stack<>();
-    private long tiempoAtencion = -1; // -1 si no ha sido atendido
+    private final AlmacenPacientes.Segmento datos;
+    private final int i;
 
     // Constructor
+    // categoria: 1:Vital, 2:Urgencia, 3:Mediana, 4:Baja, 5:Atencion general
+    // area: "SAPU", "urgencia_adulto", "infantil"
     public Paciente(String nombre, String apellido, String id, int categoria, long tiempoLlegada, String area) {
-        this.nombre = nombre;
-        this.apellido = apellido;
-        this.id = id;
-        this.categoria = categoria;
-        this.tiempoLlegada = tiempoLlegada;
-        this.estado = "en_espera"; // Valor por defecto
-        this.area = area;
-        this.historialCambios = new Stack<>();
+        this.datos = AlmacenPacientes.segmentoConEspacio();
+        this.i = datos.agregar(nombre, apellido, id, categoria, tiempoLlegada, area);
+    }
+
+    // Con clave y textos ya codificados en los diccionarios de AlmacenPacientes
+    Paciente(int clave, int nombre, int apellido, int categoria, long tiempoLlegada, int area) {
+        this.datos = AlmacenPacientes.segmentoConEspacio();
+        this.i = datos.agregar(clave, nombre, apellido, categoria, tiempoLlegada, area);
+    }
+
+    // Igual, pero con el id como texto (para ids que pueden no tener el formato P%04d)
+    Paciente(String id, int nombre, int apellido, int categoria, long tiempoLlegada, int area) {
+        this.datos = AlmacenPacientes.segmentoConEspacio();
+        this.i = datos.agregar(id, nombre, apellido, categoria, tiempoLlegada, area);
     }
 
     // Getters y Setters
     public String getNombre() {
-        return nombre;
+        return AlmacenPacientes.NOMBRES.texto(datos.nombre[i]);
     }
 
     public String getApellido() {
-        return apellido;
+        return AlmacenPacientes.APELLIDOS.texto(datos.apellido[i]);
     }
 
     public String getId() {
-        return id;
+        return datos.id(i);
     }
 
     public int getCategoria() {
-        return categoria;
+        return datos.categoria[i];
     }
 
     public long getTiempoLlegada() {
-        return tiempoLlegada;
+        return datos.llegada[i];
     }
 
+    // "en_espera", "en_atencion", "atendido"
     public String getEstado() {
-        return estado;
+        return AlmacenPacientes.ESTADOS.texto(datos.estado[i] & 0xFF);
     }
 
     public String getArea() {
-        return area;
+        return AlmacenPacientes.AREAS.texto(datos.area[i]);
     }
 
+    // Cambios registrados, del más viejo al más nuevo (una copia armada desde la bitácora)
     public Stack<String> getHistorialCambios() {
-        return historialCambios;
+        Stack<String> historial = new Stack<>();
+        datos.bitacora.recorrer(datos.ultimoEvento[i], (tipo, tiempo, anterior, nueva, nota) -> {
+            if (tipo != BitacoraEventos.REGISTRADO) {
+                historial.add(0, BitacoraEventos.describir(tipo, tiempo, anterior, nueva, nota));
+            }
+        });
+        return historial;
     }
 
     public void setEstado(String estado) {
-        this.estado = estado;
+        datos.estado[i] = (byte) AlmacenPacientes.ESTADOS.codigo(estado);
     }
 
     public void setArea(String area) {
-        this.area = area;
+        datos.area[i] = (char) AlmacenPacientes.AREAS.codigo(area);
     }
 
     public void setCategoria(int categoria) {
-        this.categoria = categoria;
+        datos.categoria[i] = AlmacenPacientes.aByte(categoria);
     }
 
     public void setTiempoAtencion(long tiempoAtencion) {
-        this.tiempoAtencion = tiempoAtencion;
+        datos.atencion[i] = tiempoAtencion;
     }
 
     public long getTiempoAtencion() {
-        return tiempoAtencion;
+        return datos.atencion[i]; // -1 si no ha sido atendido
+    }
+
+    public boolean isExcedido() {
+        return datos.isExcedido(i); // ya superó su tiempo máximo de espera
+    }
+
+    public void setExcedido(boolean excedido) {
+        datos.setExcedido(i, excedido);
+    }
+
+    // Clave numérica del paciente para mapas sin cadenas: el número de un id P%04d, o una
+    // negativa propia del paciente (ver AlmacenPacientes.claveSuelta)
+    int getClave() {
+        return datos.clave[i];
+    }
+
+    // Códigos de los textos en los diccionarios de AlmacenPacientes
+    int getCodigoNombre() {
+        return datos.nombre[i];
+    }
+
+    int getCodigoApellido() {
+        return datos.apellido[i];
+    }
+
+    int getCodigoArea() {
+        return datos.area[i];
+    }
+
+    // Posición en el HeapIndexado que lo contiene por ese canal, -1 si no está en ninguno.
+    // Un paciente puede estar a la vez en la cola general (CANAL_COLA) y en la de su área (CANAL_AREA).
+    int getIndiceHeap(int canal) {
+        return canal == HeapIndexado.CANAL_COLA ? datos.indiceHeap[i] : datos.indiceArea[i];
+    }
+
+    void setIndiceHeap(int canal, int indiceHeap) {
+        if (canal == HeapIndexado.CANAL_COLA) {
+            datos.indiceHeap[i] = indiceHeap;
+        } else {
+            datos.indiceArea[i] = indiceHeap;
+        }
+    }
+
+    // Agrega un evento a la bitácora del paciente y lo encadena al historial del paciente (sin reservar memoria)
+    void registrarEvento(int tipo, long tiempoSimulacion, int categoriaAnterior, int categoriaNueva, int nota) {
+        datos.ultimoEvento[i] = datos.bitacora.registrar(tipo, datos.clave[i], datos.ultimoEvento[i],
+            tiempoSimulacion, categoriaAnterior, categoriaNueva, nota);
     }
 
     // Métodos
     public long tiempoEsperaActual() {
         long ahora = System.currentTimeMillis() / 1000L; // en segundos
-        return (ahora - this.tiempoLlegada) / 60; // en minutos
+        return (ahora - getTiempoLlegada()) / 60; // en minutos
     }
 
+    // Nota libre en el historial, sin tiempo de simulación
     public void registrarCambio(String descripcion) {
-        historialCambios.push(descripcion);
+        int categoria = getCategoria();
+        registrarEvento(BitacoraEventos.NOTA, -1, categoria, categoria, datos.bitacora.codigoNota(descripcion));
     }
 
     public String obtenerUltimoCambio() {
-        if (!historialCambios.isEmpty()) {
-            return historialCambios.peek();
-        }
-        return "No hay cambios registrados.";
+        String[] ultimo = {null};
+        datos.bitacora.recorrer(datos.ultimoEvento[i], (tipo, tiempo, anterior, nueva, nota) -> {
+            if (ultimo[0] == null && tipo != BitacoraEventos.REGISTRADO) {
+                ultimo[0] = BitacoraEventos.describir(tipo, tiempo, anterior, nueva, nota);
+            }
+        });
+        return ultimo[0] != null ? ultimo[0] : "No hay cambios registrados.";
     }
 
     public void cambiarCategoria(int nuevaCategoria) {
-        historial.push("Cambio de " + this.categoria + " a " + nuevaCategoria + " en " + System.currentTimeMillis());
-        this.categoria = nuevaCategoria;
+        cambiarCategoria(nuevaCategoria, -1);
+    }
+
+    // Cambio de categoría en el instante de simulación indicado (-1 si no se conoce)
+    public void cambiarCategoria(int nuevaCategoria, long tiempoSimulacion) {
+        int anterior = getCategoria();
+        setCategoria(nuevaCategoria);
+        registrarEvento(BitacoraEventos.REASIGNADO, tiempoSimulacion, anterior, nuevaCategoria, 0);
     }
 
     public Stack<String> getHistorialCategorias() {
+        Stack<String> historial = new Stack<>();
+        datos.bitacora.recorrer(datos.ultimoEvento[i], (tipo, tiempo, anterior, nueva, nota) -> {
+            if (tipo == BitacoraEventos.REASIGNADO) {
+                historial.add(0, "Cambio de " + anterior + " a " + nueva + (tiempo >= 0 ? " en " + tiempo : ""));
+            }
+        });
         return historial;
     }
 
     public long getTiempoEspera() {
+        long tiempoAtencion = getTiempoAtencion();
         if (tiempoAtencion < 0) return -1;
-        return tiempoAtencion - tiempoLlegada;
+        return tiempoAtencion - getTiempoLlegada();
     }
 }
@@ -0,0 +1,201 @@
+package src;
+
+import java.util.*;
+
+// Política de atención: en qué orden atiende el hospital a los que esperan.
+//
+// Las políticas de clave fija ordenan por desfase(categoría) + llegada, así que
+// dentro de una categoría se atiende por orden de llegada y entre categorías basta
+// con comparar las cabezas (ver ColaEnvejecimiento): prioridad estática, el
+// envejecimiento lineal y el plazo más cercano (EDF contra los tiempos máximos)
+// son todas de esta forma. Una política puede además elegir de qué área sale el
+// próximo paciente de la cola general (reparto ponderado entre áreas).
+//
+// Las instancias con estado (reparto) son de un solo hospital: cada fábrica
+// devuelve una nueva.
+public interface PoliticaAtencion {
+    // Un desfase mayor que cualquier llegada: la categoría manda sobre la espera
+    long SIN_ENVEJECIMIENTO = 1L << 40;
+
+    String getNombre();
+
+    // Costo de las operaciones del planificador, con n pacientes en espera,
+    // C categorías y A áreas
+    String getComplejidad();
+
+    // Menor desfase + llegada = se atiende antes. No puede depender del instante.
+    long desfase(int categoria);
+
+    // Área de la que sale el próximo paciente de la cola general, entre las que tienen
+    // a alguien esperando; null = el primero de la cola general, sin mirar el área.
+    // Solo se consulta con la cadencia clásica: en modo estaciones cada área tiene
+    // sus propios médicos y el reparto entre áreas lo fija la dotación.
+    default AreaAtencion elegirArea(Collection<AreaAtencion> areas) {
+        return null;
+    }
+
+    // true si la política reparte entre áreas con elegirArea (sin efecto en modo estaciones)
+    default boolean eligeArea() {
+        return false;
+    }
+
+    // Aviso de que se atendió a un paciente del área (con cualquiera de las dos colas)
+    default void atendido(AreaAtencion area) {
+    }
+
+    // Con la cadencia clásica, si un paciente que excede su plazo se atiende en ese
+    // mismo instante sin esperar a la siguiente atención
+    default boolean atencionInmediata(Paciente p) {
+        return p.getCategoria() == 1;
+    }
+
+    // Olvida el estado acumulado, para otra corrida
+    default void reiniciar() {
+    }
+
+    // Categoría y luego llegada (la prioridad estática de siempre)
+    static PoliticaAtencion estatica() {
+        return new PoliticaAtencion() {
+            public String getNombre() {
+                return "estatica";
+            }
+
+            public String getComplejidad() {
+                return "elegir O(C), ingresar O(1) en orden de llegada, retirar O(log n)";
+            }
+
+            public long desfase(int categoria) {
+                return categoria * SIN_ENVEJECIMIENTO;
+            }
+        };
+    }
+
+    // prioridad = categoría - espera / 30 min (ver ColaEnvejecimiento)
+    static PoliticaAtencion envejecimiento() {
+        return new PoliticaAtencion() {
+            public String getNombre() {
+                return "envejecimiento";
+            }
+
+            public String getComplejidad() {
+                return "elegir O(C), ingresar O(1) en orden de llegada, retirar O(log n)";
+            }
+
+            public long desfase(int categoria) {
+                return categoria * ColaEnvejecimiento.SEGUNDOS_POR_NIVEL;
+            }
+        };
+    }
+
+    // Plazo más cercano primero: llegada + tiempo máximo de la categoría
+    static PoliticaAtencion plazoMasCercano() {
+        return new PoliticaAtencion() {
+            public String getNombre() {
+                return "plazo";
+            }
+
+            public String getComplejidad() {
+                return "elegir O(C), ingresar O(1) en orden de llegada, retirar O(log n)";
+            }
+
+            public long desfase(int categoria) {
+                return SimuladorUrgencia.tiempoMaximo(categoria);
+            }
+        };
+    }
+
+    // Reparto ponderado entre áreas: cada área lleva un tiempo virtual que avanza
+    // 1 / peso por atendido, y se atiende al área con espera de menor tiempo virtual
+    // (dentro del área, en el orden de 'base'). Un área que vuelve a tener pacientes
+    // no arrastra crédito de cuando estuvo vacía: parte del menor tiempo virtual de
+    // las que esperan. Sin peso, un área pesa 1.
+    static PoliticaAtencion repartoPonderado(Map<String, Double> pesos, PoliticaAtencion base) {
+        return new PoliticaAtencion() {
+            private final Map<String, double[]> virtuales = new HashMap<>(); // {tiempo, ya esperaba}
+
+            public String getNombre() {
+                return "reparto";
+            }
+
+            public String getComplejidad() {
+                return "elegir O(A + C), ingresar O(1) en orden de llegada, retirar O(log n)";
+            }
+
+            public long desfase(int categoria) {
+                return base.desfase(categoria);
+            }
+
+            public boolean eligeArea() {
+                return true;
+            }
+
+            public AreaAtencion elegirArea(Collection<AreaAtencion> areas) {
+                double minimo = Double.MAX_VALUE;
+                for (AreaAtencion area : areas) {
+                    double[] v = virtuales.get(area.getNombre());
+                    if (v != null && v[1] != 0 && area.getCantidadPacientes() > 0) minimo = Math.min(minimo, v[0]);
+                }
+                AreaAtencion mejor = null;
+                double mejorTiempo = 0;
+                for (AreaAtencion area : areas) {
+                    double[] v = virtuales.computeIfAbsent(area.getNombre(), k -> new double[2]);
+                    if (area.getCantidadPacientes() == 0) {
+                        v[1] = 0;
+                        continue;
+                    }
+                    if (v[1] == 0) {
+                        v[0] = Math.max(v[0], minimo == Double.MAX_VALUE ? v[0] : minimo);
+                        v[1] = 1;
+                    }
+                    if (mejor == null || v[0] < mejorTiempo) {
+                        mejor = area;
+                        mejorTiempo = v[0];
+                    }
+                }
+                return mejor;
+            }
+
+            public void atendido(AreaAtencion area) {
+                double[] v = virtuales.computeIfAbsent(area.getNombre(), k -> new double[2]);
+                v[0] += 1 / pesos.getOrDefault(area.getNombre(), 1.0);
+            }
+
+            public boolean atencionInmediata(Paciente p) {
+                return base.atencionInmediata(p);
+            }
+
+            public void reiniciar() {
+                virtuales.clear();
+            }
+        };
+    }
+
+    // "estatica", "envejecimiento", "plazo" o "reparto[:area=peso,...]" (reparto sobre envejecimiento)
+    static PoliticaAtencion parsear(String texto) {
+        String[] partes = texto.split(":", 2);
+        switch (partes[0]) {
+            case "estatica":
+                return estatica();
+            case "envejecimiento":
+                return envejecimiento();
+            case "plazo":
+                return plazoMasCercano();
+            case "reparto":
+                Map<String, Double> pesos = new HashMap<>();
+                if (partes.length > 1) {
+                    for (String par : partes[1].split(",")) {
+                        String[] kv = par.split("=");
+                        try {
+                            pesos.put(kv[0].toLowerCase(), Double.parseDouble(kv[1]));
+                        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                            throw new IllegalArgumentException("Peso inválido: " + par + " (se espera area=peso)");
+                        }
+                    }
+                }
+                return repartoPonderado(pesos, envejecimiento());
+            default:
+                throw new IllegalArgumentException("Política desconocida: " + texto
+                    + " (se espera estatica, envejecimiento, plazo o reparto[:area=peso,...])");
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package src;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+// Red regional de hospitales: cada hospital es un SimuladorUrgencia con sus propias
+// llegadas y médicos, y los pacientes pasan de uno a otro cuando su área está
+// saturada (rechazo por áreas y desborde llenos) o cuando un C1 excede su plazo y
+// en otro hospital lo atenderían antes, contando el viaje.
+//
+// Sincronización conservadora por ventanas: un traslado tarda al menos el traslado
+// más corto de la red (la anticipación), así que lo que un hospital envía durante
+// una ventana de ese largo llega recién en la siguiente. Dentro de la ventana cada
+// hospital avanza solo, en su propio hilo, y en la barrera se entregan los
+// traslados, en el orden de los hospitales: el resultado no depende de cuántos
+// hilos haya.
+//
+// Para elegir destino, un hospital mira una instantánea de los demás tomada en la
+// última barrera (lugares libres y espera estimada por área) más los traslados que
+// él mismo ya mandó en la ventana; durante la ventana nadie escribe la instantánea.
+public class RedHospitales {
+    private static final String[] AREAS = {"sapu", "urgencia_adulto", "infantil"};
+    private static final double SEGUNDOS_POR_KM = 60; // ambulancia a 60 km/h
+
+    // Perfil de llegadas por hora del día (el de FlujoPacientes), escalado a cada hospital
+    private static final double[] PERFIL = {
+        3, 2, 2, 1, 1, 2, 3, 5, 8, 10, 11, 11,
+        10, 9, 9, 9, 10, 11, 12, 11, 9, 7, 5, 4
+    };
+
+    private static final class Traslado {
+        final Paciente paciente;
+        final int destino;
+        final long llegada;
+
+        Traslado(Paciente paciente, int destino, long llegada) {
+            this.paciente = paciente;
+            this.destino = destino;
+            this.llegada = llegada;
+        }
+    }
+
+    private final class Sitio implements SimuladorUrgencia.Derivacion {
+        final int numero;
+        final double x;
+        final double y;
+        final double pacientesPorDia;
+        final int[] medicos = new int[AREAS.length];
+        final AreaAtencion[] areas = new AreaAtencion[AREAS.length];
+        SimuladorUrgencia simulador;
+        final List<Traslado> salientes = new ArrayList<>();
+        int[] reservados; // lugares pedidos en cada destino y área durante esta ventana
+
+        // Instantánea de la última barrera
+        final int[] lugaresLibres = new int[AREAS.length];
+        final double[] espera = new double[AREAS.length];   // de un paciente más en la cola del área
+        final double[] esperaC1 = new double[AREAS.length]; // de un C1 más
+        final double[] servicioPorMedico = new double[AREAS.length];
+
+        long nanos;      // cómputo propio en la última ventana
+        long nanosTotal; // y en toda la corrida
+
+        Sitio(int numero, double x, double y, double pacientesPorDia) {
+            this.numero = numero;
+            this.x = x;
+            this.y = y;
+            this.pacientesPorDia = pacientesPorDia;
+        }
+
+        void tomarInstantanea() {
+            for (int a = 0; a < AREAS.length; a++) {
+                AreaAtencion area = areas[a];
+                lugaresLibres[a] = area.getLugaresLibres();
+                boolean libre = area.hayMedicoLibre();
+                espera[a] = libre ? 0 : (area.getCantidadPacientes() + 1) * servicioPorMedico[a];
+                esperaC1[a] = libre ? 0 : (area.getCantidadPorCategoria(1) + 1) * servicioPorMedico[a];
+            }
+        }
+
+        @Override
+        public boolean derivar(Paciente p, long tiempo, int motivo) {
+            int a = indiceArea(p.getArea());
+            if (a < 0) return false;
+            // Un C1 solo se va si el viaje más la espera allá es menos de lo que le falta aquí
+            double mejorCosto = motivo == SimuladorUrgencia.DERIVADO_POR_PLAZO
+                ? areas[a].getCantidadPorCategoria(1) * servicioPorMedico[a]
+                : Double.MAX_VALUE;
+            int mejor = -1;
+            for (Sitio d : sitios) {
+                if (d == this) continue;
+                int pedidos = reservados[d.numero * AREAS.length + a];
+                double costo = retrasos[numero][d.numero] + pedidos * d.servicioPorMedico[a];
+                if (motivo == SimuladorUrgencia.DERIVADO_POR_SATURACION) {
+                    if (d.lugaresLibres[a] - pedidos <= 0) continue;
+                    costo += d.espera[a];
+                } else {
+                    costo += d.esperaC1[a];
+                }
+                if (costo < mejorCosto) {
+                    mejorCosto = costo;
+                    mejor = d.numero;
+                }
+            }
+            if (mejor < 0) return false;
+            reservados[mejor * AREAS.length + a]++;
+            salientes.add(new Traslado(p, mejor, tiempo + retrasos[numero][mejor]));
+            p.setEstado("trasladado");
+            p.registrarEvento(BitacoraEventos.TRASLADADO, tiempo, numero, mejor, 0);
+            return true;
+        }
+    }
+
+    private final Sitio[] sitios;
+    private final long[][] retrasos; // segundos de viaje entre hospitales
+    private final long anticipacion;
+    private final long semilla;
+    private long horizonte = SimuladorUrgencia.HORIZONTE_DIA;
+    private long ventana;
+    private double servicioMedio = 30 * 60;
+    private double utilizacion = 0.7;
+    private double dispersion = 0.4;
+    private double lugaresPorMedico = 1;
+    private boolean traslados = true;
+
+    // Estado de la última corrida
+    private long finVentana; // lo leen las tareas de la ventana en curso (publicado por invokeAll)
+    private long enTransito = 0;
+    private long ventanas = 0;
+    private long[] nanosPorVentana = new long[0]; // cómputo de todos los hospitales en cada ventana
+    private long[] nanosCriticos = new long[0];   // y del más lento
+
+    // 'sitios' hospitales repartidos al azar en un cuadrado de 'ladoKm', con tamaños
+    // distintos y 'pacientesPorDia' llegadas diarias entre todos. Ningún traslado
+    // dura menos que 'trasladoMinimo' segundos (preparar al paciente y la ambulancia).
+    public RedHospitales(int sitios, double pacientesPorDia, double ladoKm, long trasladoMinimo, long semilla) {
+        if (sitios < 2 || sitios > 256) {
+            throw new IllegalArgumentException("La red necesita entre 2 y 256 hospitales");
+        }
+        if (trasladoMinimo <= 0) {
+            throw new IllegalArgumentException("El traslado mínimo debe ser positivo: es la ventana de sincronización");
+        }
+        this.semilla = semilla;
+        SplittableRandom rand = new SplittableRandom(semilla);
+        double[] pesos = new double[sitios];
+        double suma = 0;
+        for (int k = 0; k < sitios; k++) {
+            pesos[k] = 0.5 + rand.nextDouble();
+            suma += pesos[k];
+        }
+        this.sitios = new Sitio[sitios];
+        for (int k = 0; k < sitios; k++) {
+            this.sitios[k] = new Sitio(k, rand.nextDouble() * ladoKm, rand.nextDouble() * ladoKm,
+                pacientesPorDia * pesos[k] / suma);
+        }
+        this.retrasos = new long[sitios][sitios];
+        long minimo = Long.MAX_VALUE;
+        for (Sitio a : this.sitios) {
+            for (Sitio b : this.sitios) {
+                if (a == b) continue;
+                long viaje = trasladoMinimo + Math.round(Math.hypot(a.x - b.x, a.y - b.y) * SEGUNDOS_POR_KM);
+                retrasos[a.numero][b.numero] = viaje;
+                minimo = Math.min(minimo, viaje);
+            }
+        }
+        this.anticipacion = minimo;
+        this.ventana = minimo;
+    }
+
+    public void setHorizonte(long segundos) {
+        this.horizonte = segundos;
+    }
+
+    // Más corta que la anticipación solo agrega barreras; más larga rompería la causalidad
+    public void setVentana(long segundos) {
+        if (segundos <= 0 || segundos > anticipacion) {
+            throw new IllegalArgumentException("La ventana debe estar entre 1 y " + anticipacion + " s (el traslado más corto)");
+        }
+        this.ventana = segundos;
+    }
+
+    public long getAnticipacion() {
+        return anticipacion;
+    }
+
+    // Tiempo medio de atención de un médico, en segundos
+    public void setServicioMedio(double segundos) {
+        this.servicioMedio = segundos;
+    }
+
+    // Ocupación media de los médicos con que se dota a cada hospital (antes de la
+    // variación al azar entre hospitales y de los peores momentos del día)
+    public void setUtilizacion(double utilizacion) {
+        this.utilizacion = utilizacion;
+    }
+
+    // Cada área recibe entre (1 - dispersion) y (1 + dispersion) veces la dotación media
+    public void setDispersion(double dispersion) {
+        this.dispersion = dispersion;
+    }
+
+    // Lugares en la cola de cada área por cada médico del área más dotada del hospital
+    public void setLugaresPorMedico(double lugaresPorMedico) {
+        this.lugaresPorMedico = lugaresPorMedico;
+    }
+
+    public void setTraslados(boolean traslados) {
+        this.traslados = traslados;
+    }
+
+    private static int indiceArea(String area) {
+        for (int a = 0; a < AREAS.length; a++) {
+            if (AREAS[a].equals(area)) return a;
+        }
+        return -1;
+    }
+
+    // Corre el horizonte completo con 'hilos' hilos (1 = todo en el hilo que llama)
+    public void simular(int hilos) throws InterruptedException {
+        preparar();
+        List<Callable<Void>> tareas = new ArrayList<>();
+        for (Sitio s : sitios) {
+            tareas.add(() -> {
+                avanzar(s);
+                return null;
+            });
+        }
+        ExecutorService pool = hilos > 1 ? Executors.newFixedThreadPool(hilos) : null;
+        int cantidadVentanas = (int) ((horizonte + ventana - 1) / ventana);
+        nanosPorVentana = new long[cantidadVentanas];
+        nanosCriticos = new long[cantidadVentanas];
+        try {
+            for (int v = 0; v < cantidadVentanas; v++) {
+                finVentana = Math.min((v + 1) * ventana, horizonte);
+                for (Sitio s : sitios) {
+                    s.tomarInstantanea();
+                    Arrays.fill(s.reservados, 0);
+                }
+                if (pool == null) {
+                    for (Sitio s : sitios) avanzar(s);
+                } else {
+                    for (Future<Void> f : pool.invokeAll(tareas)) f.get();
+                }
+                for (Sitio s : sitios) {
+                    s.nanosTotal += s.nanos;
+                    nanosPorVentana[v] += s.nanos;
+                    nanosCriticos[v] = Math.max(nanosCriticos[v], s.nanos);
+                }
+                entregarTraslados();
+            }
+            ventanas = cantidadVentanas;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falló la simulación de un hospital", e.getCause());
+        } finally {
+            if (pool != null) pool.shutdown();
+        }
+    }
+
+    private void avanzar(Sitio s) {
+        long inicio = System.nanoTime();
+        s.simulador.avanzarHasta(finVentana);
+        s.nanos = System.nanoTime() - inicio;
+    }
+
+    private void preparar() {
+        enTransito = 0;
+        double dia = SimuladorUrgencia.HORIZONTE_DIA / 3600.0;
+        double sumaPerfil = Arrays.stream(PERFIL).sum();
+        long bloqueIds = 1;
+        while (bloqueIds * 10 <= Integer.MAX_VALUE / sitios.length) bloqueIds *= 10;
+        SplittableRandom randDotacion = new SplittableRandom(semilla ^ 0x5DEECE66DL);
+        for (Sitio s : sitios) {
+            double[] tasas = new double[24];
+            for (int h = 0; h < 24; h++) tasas[h] = PERFIL[h] * s.pacientesPorDia / sumaPerfil;
+            FlujoPacientes flujo = FlujoPacientes.porHoraDelDia(new SplittableRandom(semilla + 7919L * (s.numero + 1)), 0,
+                tasas, bloqueIds - 1, horizonte);
+            flujo.setPrimerId(s.numero * bloqueIds + 1); // ids únicos en toda la red
+            s.simulador = new SimuladorUrgencia(flujo);
+            s.simulador.setSilencioso(true);
+            s.simulador.setMemoriaAcotada(true);
+            s.simulador.setIntervaloLlegada(0);
+            s.simulador.setSemillaServicio(semilla + 104729L * (s.numero + 1));
+            double ocupadosPorArea = s.pacientesPorDia / AREAS.length * servicioMedio / (dia * 3600);
+            for (int a = 0; a < AREAS.length; a++) {
+                double variacion = 1 - dispersion + 2 * dispersion * randDotacion.nextDouble();
+                s.medicos[a] = Math.max(1, (int) Math.ceil(ocupadosPorArea / utilizacion * variacion));
+                s.simulador.configurarArea(AREAS[a], s.medicos[a], DistribucionServicio.exponencial(servicioMedio));
+                s.servicioPorMedico[a] = servicioMedio / s.medicos[a];
+            }
+            s.simulador.setCapacidadAreas((int) Math.ceil(Arrays.stream(s.medicos).max().getAsInt() * lugaresPorMedico));
+            for (AreaAtencion area : s.simulador.getAreas()) {
+                s.areas[indiceArea(area.getNombre())] = area;
+            }
+            s.simulador.setDerivacion(traslados ? s : null);
+            s.reservados = new int[sitios.length * AREAS.length];
+            s.salientes.clear();
+            s.nanosTotal = 0;
+            s.simulador.iniciar(Integer.MAX_VALUE, horizonte);
+        }
+    }
+
+    private void entregarTraslados() {
+        for (Sitio s : sitios) {
+            for (Traslado t : s.salientes) {
+                if (t.llegada >= horizonte) {
+                    enTransito++;
+                } else {
+                    sitios[t.destino].simulador.recibirTraslado(t.paciente, t.llegada);
+                }
+            }
+            s.salientes.clear();
+        }
+    }
+
+    // Resumen numérico de la corrida, para comprobar que no depende de los hilos
+    public long firma() {
+        long h = enTransito;
+        for (Sitio s : sitios) {
+            SimuladorUrgencia sim = s.simulador;
+            for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) {
+                h = h * 31 + sim.getCantidadAtendidos(cat);
+                h = h * 31 + sim.getSumaTiemposEspera(cat);
+            }
+            h = h * 31 + sim.getTrasladosRecibidos();
+            h = h * 31 + sim.getCantidadExcedidos();
+            h = h * 31 + sim.getCantidadEnEspera();
+        }
+        return h;
+    }
+
+    public long getLlegadas() {
+        long total = 0;
+        for (Sitio s : sitios) total += s.simulador.getPacientesIngresados();
+        return total;
+    }
+
+    // Aceleración que permitiría el cómputo medido por hospital en la última corrida
+    // con un núcleo por hilo: cada ventana dura al menos lo del hospital más lento y
+    // al menos su total repartido entre los hilos (las barreras no se cuentan)
+    public double aceleracionEstimada(int hilos) {
+        long total = 0;
+        long conHilos = 0;
+        for (int v = 0; v < nanosPorVentana.length; v++) {
+            total += nanosPorVentana[v];
+            conHilos += Math.max(nanosCriticos[v], nanosPorVentana[v] / hilos);
+        }
+        return conHilos == 0 ? 1 : (double) total / conHilos;
+    }
+
+    public void mostrarResultados() {
+        System.out.printf("%d hospitales, %d llegadas en %.1f h; ventana %d s (traslado más corto %d s), %d ventanas%s\n",
+            sitios.length, getLlegadas(), horizonte / 3600.0, ventana, anticipacion, ventanas,
+            traslados ? "" : ", sin traslados");
+        System.out.printf("%4s %8s %7s %9s %9s %9s %9s %8s %8s %8s %9s %8s %6s %8s\n", "Hosp", "Llegadas", "Médicos",
+            "Atendidos", "Media (s)", "C1 p90", "Excedidos", "Env.sat", "Env.C1", "Recib.", "Rechazos", "Espera", "Util.",
+            "ms");
+        EstadisticaEspera[] red = new EstadisticaEspera[ColaEnvejecimiento.MAX_CATEGORIA + 1];
+        for (int cat = 1; cat < red.length; cat++) red[cat] = new EstadisticaEspera();
+        Map<String, EstadisticaEspera> porArea = new LinkedHashMap<>();
+        long atendidosRed = 0, excedidosRed = 0, rechazosRed = 0, enviadosRed = 0, esperaRed = 0;
+        for (Sitio s : sitios) {
+            SimuladorUrgencia sim = s.simulador;
+            EstadisticaEspera todas = new EstadisticaEspera();
+            long atendidos = 0;
+            for (int cat = 1; cat < red.length; cat++) {
+                todas.combinar(sim.getEstadistica(cat));
+                red[cat].combinar(sim.getEstadistica(cat));
+                atendidos += sim.getCantidadAtendidos(cat);
+            }
+            for (Map.Entry<String, EstadisticaEspera> e : sim.getEstadisticasPorArea().entrySet()) {
+                porArea.computeIfAbsent(e.getKey(), k -> new EstadisticaEspera()).combinar(e.getValue());
+            }
+            double util = 0;
+            for (AreaAtencion area : s.areas) util += area.getUtilizacion(horizonte) / s.areas.length;
+            long porSaturacion = sim.getTrasladosEnviados(SimuladorUrgencia.DERIVADO_POR_SATURACION);
+            long porPlazo = sim.getTrasladosEnviados(SimuladorUrgencia.DERIVADO_POR_PLAZO);
+            long rechazos = sim.getAdmisiones(Hospital.RECHAZADO) - porSaturacion;
+            EstadisticaEspera c1 = sim.getEstadistica(1);
+            System.out.printf("%4d %8d %7d %9d %9.0f %9s %9d %8d %8d %8d %9d %8d %5.0f%% %8.1f\n", s.numero,
+                sim.getPacientesIngresados(), Arrays.stream(s.medicos).sum(), atendidos, todas.getMedia(),
+                c1.getCantidad() > 0 ? String.valueOf(c1.percentil(90)) : "-", sim.getCantidadExcedidos(),
+                porSaturacion, porPlazo, sim.getTrasladosRecibidos(), rechazos, sim.getCantidadEnEspera(), 100 * util,
+                s.nanosTotal / 1e6);
+            atendidosRed += atendidos;
+            excedidosRed += sim.getCantidadExcedidos();
+            rechazosRed += rechazos;
+            enviadosRed += porSaturacion + porPlazo;
+            esperaRed += sim.getCantidadEnEspera();
+        }
+        System.out.printf("Red: %d atendidos, %d excedidos, %d traslados (%d aún en camino), %d rechazados, %d en espera\n",
+            atendidosRed, excedidosRed, enviadosRed, enTransito, rechazosRed, esperaRed);
+        SimuladorUrgencia.mostrarPercentiles(red, porArea);
+    }
+
+    // Prueba de funcionamiento y de escala: la misma red con distinto número de hilos
+    // debe dar exactamente lo mismo; se informa el tiempo de cada corrida y luego se
+    // compara con la red sin traslados (cada hospital por su cuenta).
+    //
+    //   java -cp bin src.RedHospitales [--hospitales 40] [--pacientes 240000] [--dias 1]
+    //                                  [--servicio 1800] [--utilizacion 0.7] [--dispersion 0.4]
+    //                                  [--lugares-por-medico 1]
+    //                                  [--traslado-minimo 900] [--lado-km 120] [--hilos 1,2,4,8]
+    //                                  [--semilla 42]
+    public static void main(String[] args) throws InterruptedException {
+        int hospitales = 40;
+        double pacientes = 240_000;
+        int dias = 1;
+        double servicio = 30 * 60;
+        double utilizacion = 0.7;
+        double dispersion = 0.4;
+        double lugaresPorMedico = 1;
+        long trasladoMinimo = 15 * 60;
+        double ladoKm = 120;
+        int[] hilos = {1, 2, 4, 8};
+        long semilla = 42;
+        for (int i = 0; i + 1 < args.length; i++) {
+            switch (args[i].toLowerCase()) {
+                case "--hospitales": hospitales = Integer.parseInt(args[++i]); break;
+                case "--pacientes": pacientes = Double.parseDouble(args[++i]); break;
+                case "--dias": dias = Integer.parseInt(args[++i]); break;
+                case "--servicio": servicio = Double.parseDouble(args[++i]); break;
+                case "--utilizacion": utilizacion = Double.parseDouble(args[++i]); break;
+                case "--dispersion": dispersion = Double.parseDouble(args[++i]); break;
+                case "--lugares-por-medico": lugaresPorMedico = Double.parseDouble(args[++i]); break;
+                case "--traslado-minimo": trasladoMinimo = Long.parseLong(args[++i]); break;
+                case "--lado-km": ladoKm = Double.parseDouble(args[++i]); break;
+                case "--hilos": hilos = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray(); break;
+                case "--semilla": semilla = Long.parseLong(args[++i]); break;
+                default: System.err.println("Opción desconocida: " + args[i]);
+            }
+        }
+        RedHospitales red = new RedHospitales(hospitales, pacientes, ladoKm, trasladoMinimo, semilla);
+        red.setHorizonte(dias * SimuladorUrgencia.HORIZONTE_DIA);
+        red.setServicioMedio(servicio);
+        red.setUtilizacion(utilizacion);
+        red.setDispersion(dispersion);
+        red.setLugaresPorMedico(lugaresPorMedico);
+
+        red.simular(hilos[hilos.length - 1]); // calentar el JIT
+        System.out.println("Núcleos disponibles: " + Runtime.getRuntime().availableProcessors());
+        System.out.printf("%6s %10s %12s %12s %10s\n", "Hilos", "ms", "Aceleración", "Estimada", "Idéntica");
+        long firma = 0;
+        double base = 0;
+        int errores = 0;
+        for (int k = 0; k < hilos.length; k++) {
+            long inicio = System.nanoTime();
+            red.simular(hilos[k]);
+            double ms = (System.nanoTime() - inicio) / 1e6;
+            if (k == 0) {
+                firma = red.firma();
+                base = ms;
+            }
+            boolean igual = red.firma() == firma;
+            if (!igual) errores++;
+            System.out.printf("%6d %10.1f %11.2fx %11.2fx %10s\n", hilos[k], ms, base / ms,
+                red.aceleracionEstimada(hilos[k]), igual ? "sí" : "NO");
+        }
+        System.out.println("(Estimada: la que permitiría el reparto por ventana medido, con un núcleo por hilo)");
+        System.out.println();
+        red.mostrarResultados();
+
+        System.out.println();
+        red.setTraslados(false);
+        red.simular(hilos[hilos.length - 1]);
+        red.mostrarResultados();
+        System.out.println("Corridas con resultado distinto según los hilos: " + errores);
+    }
+}
@@ -0,0 +1,398 @@
+package src;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Ejecuta réplicas independientes de la simulación repartidas en un ForkJoinPool.
+// Cada réplica usa su propio flujo SplittableRandom, derivado de la semilla en
+// orden de réplica y antes de lanzar los hilos, así que el resultado depende solo
+// de la semilla y no de cuántos hilos se usen. Cada tarea acumula sus sumas y
+// conteos por categoría en arreglos propios y se combinan al juntar las tareas,
+// sin estructuras compartidas.
+// La réplica i usa siempre el mismo flujo para una semilla dada, de modo que dos
+// configuraciones corridas con la misma semilla comparten números aleatorios
+// (números aleatorios comunes).
+public class ReplicadorSimulaciones {
+    private static final int CATEGORIAS = 5;
+    private static final ThreadMXBean HILOS = ManagementFactory.getThreadMXBean();
+
+    private final int numeroDePacientes;
+    private final long semilla;
+    private long intervaloMedio = 0; // 0: una llegada cada 10 min; > 0: llegadas de Poisson con esa media
+
+    public static class Resultado {
+        private final long[] sumaEspera = new long[CATEGORIAS + 1];
+        private final long[] cantidad = new long[CATEGORIAS + 1];
+        private final EstadisticaEspera[] estadisticas = new EstadisticaEspera[CATEGORIAS + 1];
+        private final Map<String, EstadisticaEspera> porArea = new TreeMap<>();
+        private int replicas = 0;
+
+        private Resultado() {
+            for (int cat = 1; cat <= CATEGORIAS; cat++) {
+                estadisticas[cat] = new EstadisticaEspera();
+            }
+        }
+
+        private void agregar(SimuladorUrgencia simulador) {
+            for (int cat = 1; cat <= CATEGORIAS; cat++) {
+                sumaEspera[cat] += simulador.getSumaTiemposEspera(cat);
+                cantidad[cat] += simulador.getCantidadAtendidos(cat);
+                estadisticas[cat].combinar(simulador.getEstadistica(cat));
+            }
+            combinarAreas(simulador.getEstadisticasPorArea());
+            replicas++;
+        }
+
+        private void combinar(Resultado otro) {
+            for (int cat = 1; cat <= CATEGORIAS; cat++) {
+                sumaEspera[cat] += otro.sumaEspera[cat];
+                cantidad[cat] += otro.cantidad[cat];
+                estadisticas[cat].combinar(otro.estadisticas[cat]);
+            }
+            combinarAreas(otro.porArea);
+            replicas += otro.replicas;
+        }
+
+        private void combinarAreas(Map<String, EstadisticaEspera> areas) {
+            for (Map.Entry<String, EstadisticaEspera> e : areas.entrySet()) {
+                porArea.computeIfAbsent(e.getKey(), a -> new EstadisticaEspera()).combinar(e.getValue());
+            }
+        }
+
+        // Esperas de todas las réplicas juntas (histograma combinado, para los percentiles)
+        public EstadisticaEspera getEstadistica(int categoria) {
+            return estadisticas[categoria];
+        }
+
+        public Map<String, EstadisticaEspera> getEstadisticasPorArea() {
+            return porArea;
+        }
+
+        public long getSumaEspera(int categoria) {
+            return sumaEspera[categoria];
+        }
+
+        public long getCantidad(int categoria) {
+            return cantidad[categoria];
+        }
+
+        public int getReplicas() {
+            return replicas;
+        }
+
+        public double getPromedioEspera(int categoria) {
+            return cantidad[categoria] > 0 ? (double) sumaEspera[categoria] / cantidad[categoria] : 0;
+        }
+    }
+
+    public ReplicadorSimulaciones(int numeroDePacientes, long semilla) {
+        this.numeroDePacientes = numeroDePacientes;
+        this.semilla = semilla;
+    }
+
+    // Llegadas de Poisson con 'intervaloMedio' segundos entre pacientes en promedio, cada uno
+    // en su propio tiempo de llegada; es lo que permite usar variables antitéticas
+    public void setLlegadasPoisson(long intervaloMedio) {
+        this.intervaloMedio = intervaloMedio;
+    }
+
+    // Resultado de la regla de detención secuencial
+    public static class ResultadoSecuencial {
+        private final double[] media = new double[CATEGORIAS + 1];
+        private final double[] semiancho = new double[CATEGORIAS + 1];
+        private int replicas;
+        private int descartadas; // del último lote, corridas después de alcanzar el objetivo
+        private long tiempoCpuNanos; // de todas las corridas, también las descartadas
+        private boolean alcanzado;
+
+        public double getMedia(int categoria) {
+            return media[categoria];
+        }
+
+        public double getSemiancho(int categoria) {
+            return semiancho[categoria];
+        }
+
+        public int getReplicas() {
+            return replicas;
+        }
+
+        public int getDescartadas() {
+            return descartadas;
+        }
+
+        public long getTiempoCpuNanos() {
+            return tiempoCpuNanos;
+        }
+
+        public boolean isAlcanzado() {
+            return alcanzado;
+        }
+    }
+
+    public Resultado ejecutar(int replicas, int hilos) {
+        SplittableRandom raiz = new SplittableRandom(semilla);
+        long[] semillas = new long[replicas];
+        for (int i = 0; i < replicas; i++) {
+            semillas[i] = raiz.nextLong();
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, hilos));
+        try {
+            return pool.invoke(new TareaReplicas(semillas, 0, replicas));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Una sola réplica con el flujo indicado
+    public SimuladorUrgencia ejecutarReplica(SplittableRandom flujo) {
+        return ejecutarReplica(flujo, false);
+    }
+
+    // Con antitetica = true, los mismos pacientes que con false pero con las llegadas espejadas
+    public SimuladorUrgencia ejecutarReplica(SplittableRandom flujo, boolean antitetica) {
+        List<Paciente> pacientes;
+        if (intervaloMedio > 0) {
+            // Los intervalos salen de un flujo aparte, así la réplica antitética comparte los datos de cada paciente
+            SplittableRandom tiempos = flujo.split();
+            pacientes = GeneradorPacientes.generarPacientes(numeroDePacientes, 0, intervaloMedio, flujo, tiempos, antitetica);
+        } else {
+            if (antitetica) throw new IllegalArgumentException(SIN_TIEMPOS_AL_AZAR);
+            pacientes = GeneradorPacientes.generarPacientes(numeroDePacientes, 0, flujo);
+        }
+        SimuladorUrgencia simulador = new SimuladorUrgencia(pacientes);
+        simulador.setSilencioso(true);
+        if (intervaloMedio > 0) simulador.setIntervaloLlegada(0);
+        simulador.simular(pacientes.size());
+        return simulador;
+    }
+
+    private static final String SIN_TIEMPOS_AL_AZAR = "Las variables antitéticas necesitan llegadas al azar"
+        + " (setLlegadasPoisson): con una llegada cada 10 min y la categoría común las dos réplicas del par son iguales";
+
+    // Regla de detención secuencial: agrega réplicas (en lotes paralelos) hasta que el
+    // intervalo de confianza de la espera media de cada categoría tenga un semiancho
+    // menor o igual al objetivo, en segundos. Cada observación es la espera media de
+    // una réplica; con variables antitéticas es el promedio de un par (normal, antitética)
+    // generado con la misma semilla. El criterio se evalúa réplica a réplica en orden,
+    // así que el punto de detención no depende del número de hilos. Las réplicas del
+    // último lote que terminan después de alcanzar el objetivo no entran al intervalo,
+    // pero su CPU se cuenta y se informan aparte (getDescartadas).
+    public ResultadoSecuencial ejecutarHastaPrecision(double semianchoObjetivo, double confianza,
+                                                      int minimoObservaciones, int maximoObservaciones,
+                                                      int hilos, boolean antitetica) {
+        if (antitetica && intervaloMedio <= 0) throw new IllegalArgumentException(SIN_TIEMPOS_AL_AZAR);
+        SplittableRandom raiz = new SplittableRandom(semilla);
+        double[] n = new double[CATEGORIAS + 1];
+        double[] media = new double[CATEGORIAS + 1];
+        double[] m2 = new double[CATEGORIAS + 1];
+        ResultadoSecuencial resultado = new ResultadoSecuencial();
+        int lote = Math.max(1, hilos);
+        int observaciones = 0;
+
+        ExecutorService pool = Executors.newFixedThreadPool(lote);
+        try {
+            while (observaciones < maximoObservaciones && !resultado.alcanzado) {
+                List<Callable<double[]>> tareas = new ArrayList<>();
+                for (int i = 0; i < lote && observaciones + i < maximoObservaciones; i++) {
+                    long s = raiz.nextLong();
+                    tareas.add(() -> observar(s, antitetica));
+                }
+                for (Future<double[]> f : pool.invokeAll(tareas)) {
+                    double[] obs = f.get();
+                    resultado.tiempoCpuNanos += (long) obs[0];
+                    if (resultado.alcanzado) {
+                        resultado.descartadas += antitetica ? 2 : 1; // sobrantes del último lote
+                        continue;
+                    }
+                    observaciones++;
+                    resultado.replicas += antitetica ? 2 : 1;
+                    for (int cat = 1; cat <= CATEGORIAS; cat++) {
+                        if (Double.isNaN(obs[cat])) continue; // sin pacientes de esa categoría
+                        n[cat]++;
+                        double delta = obs[cat] - media[cat];
+                        media[cat] += delta / n[cat];
+                        m2[cat] += delta * (obs[cat] - media[cat]);
+                    }
+                    boolean todas = observaciones >= minimoObservaciones;
+                    for (int cat = 1; cat <= CATEGORIAS; cat++) {
+                        resultado.media[cat] = media[cat];
+                        resultado.semiancho[cat] = n[cat] > 1
+                            ? cuantilT(confianza, n[cat] - 1) * Math.sqrt(m2[cat] / (n[cat] - 1) / n[cat])
+                            : Double.POSITIVE_INFINITY;
+                        todas &= resultado.semiancho[cat] <= semianchoObjetivo;
+                    }
+                    resultado.alcanzado = todas;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falló una réplica", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return resultado;
+    }
+
+    // Posición 0: tiempo de CPU en ns; 1..5: espera media por categoría (NaN si no hubo pacientes)
+    private double[] observar(long semillaReplica, boolean antitetica) {
+        long cpu = HILOS.getCurrentThreadCpuTime();
+        double[] obs = mediasPorCategoria(ejecutarReplica(new SplittableRandom(semillaReplica), false));
+        if (antitetica) {
+            double[] espejo = mediasPorCategoria(ejecutarReplica(new SplittableRandom(semillaReplica), true));
+            for (int cat = 1; cat <= CATEGORIAS; cat++) {
+                if (Double.isNaN(obs[cat])) obs[cat] = espejo[cat];
+                else if (!Double.isNaN(espejo[cat])) obs[cat] = (obs[cat] + espejo[cat]) / 2;
+            }
+        }
+        obs[0] = HILOS.getCurrentThreadCpuTime() - cpu;
+        return obs;
+    }
+
+    private static double[] promedio(double[] a, double[] b) {
+        double[] p = new double[CATEGORIAS + 1];
+        for (int cat = 1; cat <= CATEGORIAS; cat++) {
+            p[cat] = Double.isNaN(a[cat]) ? b[cat] : Double.isNaN(b[cat]) ? a[cat] : (a[cat] + b[cat]) / 2;
+        }
+        return p;
+    }
+
+    private static double varianza(double[][] observaciones, int cat) {
+        double n = 0, media = 0, m2 = 0;
+        for (double[] obs : observaciones) {
+            if (Double.isNaN(obs[cat])) continue;
+            n++;
+            double delta = obs[cat] - media;
+            media += delta / n;
+            m2 += delta * (obs[cat] - media);
+        }
+        return n > 1 ? m2 / (n - 1) : Double.NaN;
+    }
+
+    private static double[] mediasPorCategoria(SimuladorUrgencia simulador) {
+        double[] medias = new double[CATEGORIAS + 1];
+        for (int cat = 1; cat <= CATEGORIAS; cat++) {
+            int cantidad = simulador.getCantidadAtendidos(cat);
+            medias[cat] = cantidad > 0 ? (double) simulador.getSumaTiemposEspera(cat) / cantidad : Double.NaN;
+        }
+        return medias;
+    }
+
+    // Cuantil bilateral de la t de Student (expansión de Cornish-Fisher sobre la normal)
+    static double cuantilT(double confianza, double gradosLibertad) {
+        double z = cuantilNormal(1 - (1 - confianza) / 2);
+        double v = gradosLibertad;
+        double z3 = z * z * z, z5 = z3 * z * z, z7 = z5 * z * z;
+        return z + (z3 + z) / (4 * v) + (5 * z5 + 16 * z3 + 3 * z) / (96 * v * v)
+            + (3 * z7 + 19 * z5 + 17 * z3 - 15 * z) / (384 * v * v * v);
+    }
+
+    // Aproximación racional de Abramowitz y Stegun (26.2.23), error < 4.5e-4
+    static double cuantilNormal(double p) {
+        double q = p < 0.5 ? p : 1 - p;
+        double t = Math.sqrt(-2 * Math.log(q));
+        double x = t - (2.515517 + 0.802853 * t + 0.010328 * t * t)
+            / (1 + 1.432788 * t + 0.189269 * t * t + 0.001308 * t * t * t);
+        return p < 0.5 ? -x : x;
+    }
+
+    // Divide el rango de réplicas por la mitad hasta llegar a una sola
+    private class TareaReplicas extends RecursiveTask<Resultado> {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] semillas;
+        private final int desde;
+        private final int hasta;
+
+        TareaReplicas(long[] semillas, int desde, int hasta) {
+            this.semillas = semillas;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected Resultado compute() {
+            if (hasta - desde <= 1) {
+                Resultado r = new Resultado();
+                if (desde < hasta) r.agregar(ejecutarReplica(new SplittableRandom(semillas[desde])));
+                return r;
+            }
+            int mitad = (desde + hasta) >>> 1;
+            TareaReplicas izquierda = new TareaReplicas(semillas, desde, mitad);
+            izquierda.fork();
+            Resultado derecha = new TareaReplicas(semillas, mitad, hasta).compute();
+            Resultado r = izquierda.join();
+            r.combinar(derecha);
+            return r;
+        }
+    }
+
+    // Test de funcionamiento: misma semilla con distinta cantidad de hilos, y escalamiento
+    public static void main(String[] args) {
+        ReplicadorSimulaciones replicador = new ReplicadorSimulaciones(400, 2024L);
+        int replicas = 64;
+        Resultado base = null;
+        long tiempoBase = 0;
+        int maxHilos = Math.max(4, Runtime.getRuntime().availableProcessors());
+        replicador.ejecutar(replicas, 1); // calentamiento del JIT
+        for (int hilos = 1; hilos <= maxHilos; hilos *= 2) {
+            long inicio = System.nanoTime();
+            Resultado r = replicador.ejecutar(replicas, hilos);
+            long tiempo = System.nanoTime() - inicio;
+            boolean iguales = true;
+            if (base == null) {
+                base = r;
+                tiempoBase = tiempo;
+            } else {
+                for (int cat = 1; cat <= CATEGORIAS; cat++) {
+                    iguales &= r.getSumaEspera(cat) == base.getSumaEspera(cat) && r.getCantidad(cat) == base.getCantidad(cat);
+                }
+            }
+            System.out.printf("Hilos: %2d  tiempo: %7.1f ms  aceleración: %.2fx  igual a 1 hilo: %s\n",
+                hilos, tiempo / 1e6, (double) tiempoBase / tiempo, iguales);
+        }
+
+        // Regla de detención: réplicas y CPU necesarias para cada objetivo de semiancho, con
+        // llegadas de Poisson de la misma media (las antitéticas espejan los intervalos).
+        // La CPU incluye las réplicas descartadas del último lote.
+        ReplicadorSimulaciones poisson = new ReplicadorSimulaciones(400, 2024L);
+        poisson.setLlegadasPoisson(600);
+        System.out.println("\nLlegadas de Poisson, una cada 600 s en promedio:");
+        System.out.println("Objetivo (s)  Variante     Réplicas  Descartadas  CPU (ms)  Semiancho máx (s)");
+        for (double objetivo : new double[] {1200, 900, 600}) {
+            for (boolean antitetica : new boolean[] {false, true}) {
+                ResultadoSecuencial r = poisson.ejecutarHastaPrecision(objetivo, 0.95, 5, 2000, maxHilos, antitetica);
+                double peor = 0;
+                for (int cat = 1; cat <= CATEGORIAS; cat++) peor = Math.max(peor, r.getSemiancho(cat));
+                System.out.printf("%12.0f  %-11s  %8d  %11d  %8.1f  %17.1f%s\n", objetivo,
+                    antitetica ? "antitética" : "independ.", r.getReplicas(), r.getDescartadas(),
+                    r.getTiempoCpuNanos() / 1e6, peor, r.isAlcanzado() ? "" : "  (no alcanzado)");
+            }
+        }
+
+        // Varianza de la espera media de cada categoría entre observaciones de dos réplicas:
+        // el promedio de dos independientes contra el de un par antitético
+        int pares = 200;
+        SplittableRandom raiz = new SplittableRandom(7);
+        double[][] independientes = new double[pares][];
+        double[][] antiteticas = new double[pares][];
+        for (int i = 0; i < pares; i++) {
+            long a = raiz.nextLong();
+            long b = raiz.nextLong();
+            independientes[i] = promedio(mediasPorCategoria(poisson.ejecutarReplica(new SplittableRandom(a), false)),
+                mediasPorCategoria(poisson.ejecutarReplica(new SplittableRandom(b), false)));
+            antiteticas[i] = promedio(mediasPorCategoria(poisson.ejecutarReplica(new SplittableRandom(a), false)),
+                mediasPorCategoria(poisson.ejecutarReplica(new SplittableRandom(a), true)));
+        }
+        System.out.println("\nVarianza del promedio de dos réplicas (" + pares + " observaciones, s²):");
+        System.out.println("Categoría  Independientes   Antitéticas  Reducción");
+        for (int cat = 1; cat <= CATEGORIAS; cat++) {
+            double vi = varianza(independientes, cat);
+            double va = varianza(antiteticas, cat);
+            System.out.printf("%9d  %14.0f  %12.0f  %8.0f%%\n", cat, vi, va, 100 * (1 - va / vi));
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package src;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+// Rueda de temporizadores jerárquica para los plazos máximos de espera.
+// Cada nivel tiene 64 casillas; el nivel k agrupa bloques de 64^k ticks. Un
+// mapa de bits por nivel permite saltar directamente a la siguiente casilla
+// ocupada, así que avanzar el reloj cuesta lo que cuesten los plazos que
+// vencen (más alguna redistribución entre niveles), no el tiempo transcurrido.
+// Quien ya no necesita un temporizador (cancelado o vencido) puede devolverlo con
+// liberar(), y programar() lo reutiliza en vez de crear otro.
+// Los de un mismo tick vencen en el orden en que se programaron (o reprogramaron),
+// como los eventos de igual instante del calendario.
+public class RuedaTemporizadores {
+    private static final int BITS_POR_NIVEL = 6;
+    private static final int CASILLAS = 1 << BITS_POR_NIVEL;
+    private static final int NIVELES = 7; // 2^42 ticks
+
+    // Se llama una vez por cada plazo vencido, en orden de tick
+    public interface AccionVencimiento {
+        void vencer(Paciente p, long tick);
+    }
+
+    public static class Temporizador {
+        private Paciente paciente;
+        private long tick;
+        private long orden; // secuencia de programación: desempata los de un mismo tick
+        private int nivel = -1;
+        private int casilla;
+        private Temporizador anterior;
+        private Temporizador siguiente;
+
+        private Temporizador(Paciente paciente, long tick) {
+            this.paciente = paciente;
+            this.tick = tick;
+        }
+
+        public Paciente getPaciente() {
+            return paciente;
+        }
+
+        public long getTick() {
+            return tick;
+        }
+
+        public boolean estaActivo() {
+            return nivel >= 0;
+        }
+    }
+
+    private final Temporizador[][] casillas = new Temporizador[NIVELES][CASILLAS];
+    private final Temporizador[][] ultimos = new Temporizador[NIVELES][CASILLAS]; // cola de cada lista
+    private final long[] ocupadas = new long[NIVELES];
+    private long actual = 0; // próximo tick a procesar
+    private int cantidad = 0;
+    private long secuencia = 0;
+    private Temporizador libres; // devueltos con liberar(), enlazados por 'siguiente'
+
+    public Temporizador programar(long tick, Paciente p) {
+        Temporizador t = nuevo(tick, p);
+        insertar(t);
+        cantidad++;
+        return t;
+    }
+
+    public void reprogramar(Temporizador t, long tick) {
+        if (t.estaActivo()) {
+            desenlazar(t);
+        } else {
+            cantidad++;
+        }
+        t.tick = tick;
+        t.orden = secuencia++;
+        insertar(t);
+    }
+
+    public void cancelar(Temporizador t) {
+        if (t != null && t.estaActivo()) {
+            desenlazar(t);
+            cantidad--;
+        }
+    }
+
+    private Temporizador nuevo(long tick, Paciente p) {
+        Temporizador t = libres;
+        if (t == null) {
+            t = new Temporizador(p, tick);
+        } else {
+            libres = t.siguiente;
+            t.siguiente = null;
+            t.paciente = p;
+            t.tick = tick;
+        }
+        t.orden = secuencia++;
+        return t;
+    }
+
+    // Devuelve un temporizador inactivo para reutilizarlo; quien lo libera no debe
+    // volver a usarlo
+    public void liberar(Temporizador t) {
+        if (t == null || t.estaActivo()) return;
+        t.paciente = null;
+        t.siguiente = libres;
+        libres = t;
+    }
+
+    // Descarta todos los plazos y vuelve al tick 0, conservando las casillas
+    public void vaciar() {
+        for (int nivel = 0; nivel < NIVELES; nivel++) {
+            for (long resto = ocupadas[nivel]; resto != 0; resto &= resto - 1) {
+                int casilla = Long.numberOfTrailingZeros(resto);
+                for (Temporizador t = casillas[nivel][casilla]; t != null; ) {
+                    Temporizador siguiente = t.siguiente;
+                    t.nivel = -1;
+                    t.anterior = null;
+                    t.siguiente = null;
+                    t = siguiente;
+                }
+                casillas[nivel][casilla] = null;
+                ultimos[nivel][casilla] = null;
+            }
+            ocupadas[nivel] = 0;
+        }
+        actual = 0;
+        cantidad = 0;
+        secuencia = 0;
+    }
+
+    // Cada casilla ocupada con su lista tal cual, para que tras restaurar los plazos
+    // de un mismo tick venzan en el mismo orden (ver InstantaneaSimulacion)
+    void escribirEstado(InstantaneaSimulacion.Salida out) throws IOException {
+        out.writeLong(actual);
+        out.writeLong(secuencia);
+        int listas = 0;
+        for (long o : ocupadas) listas += Long.bitCount(o);
+        out.writeInt(listas);
+        for (int nivel = 0; nivel < NIVELES; nivel++) {
+            for (long resto = ocupadas[nivel]; resto != 0; resto &= resto - 1) {
+                int casilla = Long.numberOfTrailingZeros(resto);
+                int largo = 0;
+                for (Temporizador t = casillas[nivel][casilla]; t != null; t = t.siguiente) largo++;
+                out.writeByte(nivel);
+                out.writeByte(casilla);
+                out.writeInt(largo);
+                for (Temporizador t = casillas[nivel][casilla]; t != null; t = t.siguiente) {
+                    out.writeLong(t.tick);
+                    out.writeLong(t.orden);
+                    out.escribirPaciente(t.paciente);
+                }
+            }
+        }
+    }
+
+    // Sobre la rueda vaciada; 'repuesto' recibe cada temporizador activo
+    void leerEstado(InstantaneaSimulacion.Entrada in, Consumer<Temporizador> repuesto) throws IOException {
+        vaciar();
+        actual = in.readLong();
+        long siguienteOrden = in.readLong();
+        for (int listas = in.readInt(); listas > 0; listas--) {
+            int nivel = in.readByte();
+            int casilla = in.readByte();
+            Temporizador ultimo = null;
+            for (int k = in.readInt(); k > 0; k--) {
+                long tick = in.readLong();
+                long orden = in.readLong();
+                Temporizador t = nuevo(tick, in.leerPaciente());
+                t.orden = orden;
+                t.nivel = nivel;
+                t.casilla = casilla;
+                t.anterior = ultimo;
+                if (ultimo == null) {
+                    casillas[nivel][casilla] = t;
+                } else {
+                    ultimo.siguiente = t;
+                }
+                ultimo = t;
+                cantidad++;
+                repuesto.accept(t);
+            }
+            ultimos[nivel][casilla] = ultimo;
+            ocupadas[nivel] |= 1L << casilla;
+        }
+        secuencia = siguienteOrden;
+    }
+
+    public int size() {
+        return cantidad;
+    }
+
+    public long getTickActual() {
+        return actual;
+    }
+
+    // Hace vencer, en orden, todos los temporizadores con tick <= hasta
+    public void avanzar(long hasta, AccionVencimiento accion) {
+        while (actual <= hasta && cantidad > 0) {
+            int casilla = (int) (actual & (CASILLAS - 1));
+            long pendientes = ocupadas[0] & (-1L << casilla);
+            if (pendientes != 0) {
+                long tick = (actual & ~(long) (CASILLAS - 1)) | Long.numberOfTrailingZeros(pendientes);
+                if (tick > hasta) break;
+                actual = tick + 1;
+                vencerCasilla(Long.numberOfTrailingZeros(pendientes), tick, accion);
+                if ((actual & (CASILLAS - 1)) == 0) redistribuir();
+                continue;
+            }
+            // Nivel 0 vacío en este bloque: se salta al inicio del siguiente bloque ocupado
+            long inicio = siguienteBloqueOcupado();
+            if (inicio < 0 || inicio > hasta) break;
+            actual = inicio;
+            redistribuir();
+        }
+        if (actual <= hasta) {
+            actual = hasta + 1;
+            if (cantidad > 0 && (actual & (CASILLAS - 1)) == 0) redistribuir();
+        }
+    }
+
+    private void vencerCasilla(int casilla, long tick, AccionVencimiento accion) {
+        Temporizador t = casillas[0][casilla];
+        casillas[0][casilla] = null;
+        ultimos[0][casilla] = null;
+        ocupadas[0] &= ~(1L << casilla);
+        while (t != null) {
+            Temporizador siguiente = t.siguiente;
+            t.nivel = -1;
+            t.anterior = null;
+            t.siguiente = null;
+            cantidad--;
+            accion.vencer(t.paciente, tick);
+            t = siguiente;
+        }
+    }
+
+    // Inicio del bloque de la casilla ocupada más cercana en los niveles superiores, o -1
+    private long siguienteBloqueOcupado() {
+        for (int nivel = 1; nivel < NIVELES; nivel++) {
+            int desplazamiento = BITS_POR_NIVEL * nivel;
+            int casilla = (int) ((actual >>> desplazamiento) & (CASILLAS - 1));
+            long mascara = casilla == CASILLAS - 1 ? 0 : ocupadas[nivel] & (-1L << (casilla + 1));
+            if (mascara != 0) {
+                long alto = actual >>> (desplazamiento + BITS_POR_NIVEL) << (desplazamiento + BITS_POR_NIVEL);
+                return alto | ((long) Long.numberOfTrailingZeros(mascara) << desplazamiento);
+            }
+        }
+        return -1;
+    }
+
+    // Al entrar en un bloque nuevo se reparten sus temporizadores en los niveles inferiores
+    private void redistribuir() {
+        for (int nivel = 1; nivel < NIVELES; nivel++) {
+            int desplazamiento = BITS_POR_NIVEL * nivel;
+            if ((actual & ((1L << desplazamiento) - 1)) != 0) break;
+            int casilla = (int) ((actual >>> desplazamiento) & (CASILLAS - 1));
+            Temporizador t = casillas[nivel][casilla];
+            casillas[nivel][casilla] = null;
+            ultimos[nivel][casilla] = null;
+            ocupadas[nivel] &= ~(1L << casilla);
+            while (t != null) {
+                Temporizador siguiente = t.siguiente;
+                t.anterior = null;
+                t.siguiente = null;
+                insertar(t);
+                t = siguiente;
+            }
+        }
+    }
+
+    private void insertar(Temporizador t) {
+        long tick = Math.max(t.tick, actual); // un plazo ya vencido se atiende en el tick actual
+        long diferencia = tick ^ actual;
+        int nivel = diferencia == 0 ? 0 : (63 - Long.numberOfLeadingZeros(diferencia)) / BITS_POR_NIVEL;
+        if (nivel >= NIVELES) {
+            throw new IllegalArgumentException("Plazo fuera del alcance de la rueda: " + t.tick);
+        }
+        int casilla = (int) ((tick >>> (BITS_POR_NIVEL * nivel)) & (CASILLAS - 1));
+        t.tick = tick;
+        t.nivel = nivel;
+        t.casilla = casilla;
+        // Cada lista queda ordenada por 'orden'. Casi siempre se agrega al final: se
+        // programa en orden y las listas de arriba bajan en orden al redistribuir.
+        Temporizador previo = ultimos[nivel][casilla];
+        while (previo != null && previo.orden > t.orden) previo = previo.anterior;
+        t.anterior = previo;
+        t.siguiente = previo == null ? casillas[nivel][casilla] : previo.siguiente;
+        if (previo == null) {
+            casillas[nivel][casilla] = t;
+        } else {
+            previo.siguiente = t;
+        }
+        if (t.siguiente == null) {
+            ultimos[nivel][casilla] = t;
+        } else {
+            t.siguiente.anterior = t;
+        }
+        ocupadas[nivel] |= 1L << casilla;
+    }
+
+    private void desenlazar(Temporizador t) {
+        if (ultimos[t.nivel][t.casilla] == t) ultimos[t.nivel][t.casilla] = t.anterior;
+        if (t.anterior != null) {
+            t.anterior.siguiente = t.siguiente;
+        } else {
+            casillas[t.nivel][t.casilla] = t.siguiente;
+            if (t.siguiente == null) ocupadas[t.nivel] &= ~(1L << t.casilla);
+        }
+        if (t.siguiente != null) t.siguiente.anterior = t.anterior;
+        t.anterior = null;
+        t.siguiente = null;
+        t.nivel = -1;
+    }
+
+    // Test de funcionamiento: los vencimientos salen en orden y los cancelados no salen
+    public static void main(String[] args) {
+        java.util.Random rand = new java.util.Random(3);
+        RuedaTemporizadores rueda = new RuedaTemporizadores();
+        java.util.List<Temporizador> activos = new java.util.ArrayList<>();
+        long[] ultimo = {-1};
+        int[] errores = {0};
+        int[] vencidos = {0};
+        long reloj = 0;
+        for (int i = 0; i < 100000; i++) {
+            long tick = reloj + (rand.nextInt(10) == 0 ? rand.nextInt(5_000_000) : rand.nextInt(200));
+            activos.add(rueda.programar(tick, null));
+            if (rand.nextInt(4) == 0) {
+                rueda.cancelar(activos.remove(rand.nextInt(activos.size())));
+            }
+            if (rand.nextInt(8) == 0) {
+                reloj += rand.nextInt(500);
+                final long limite = reloj;
+                rueda.avanzar(limite, (p, t) -> {
+                    if (t < ultimo[0] || t > limite) errores[0]++;
+                    ultimo[0] = t;
+                    vencidos[0]++;
+                });
+            }
+        }
+        rueda.avanzar(Long.MAX_VALUE >>> 22, (p, t) -> vencidos[0]++);
+        System.out.println("Vencimientos fuera de orden: " + errores[0] + ", vencidos: " + vencidos[0]
+            + ", pendientes: " + rueda.size());
+
+        // Los de un mismo tick, programados desde lejos y desde cerca (bajan de nivel
+        // en distintos momentos), vencen en el orden en que se programaron
+        RuedaTemporizadores mismoTick = new RuedaTemporizadores();
+        java.util.List<Paciente> programados = new java.util.ArrayList<>();
+        long objetivo = 300_000;
+        for (long ahora = 0; ahora < objetivo; ahora += 1 + rand.nextInt(20_000)) {
+            mismoTick.avanzar(ahora, (p, t) -> { });
+            Paciente p = new Paciente("N", "A", "P" + programados.size(), 3, ahora, "sapu");
+            programados.add(p);
+            mismoTick.programar(objetivo, p);
+        }
+        java.util.List<Paciente> vencidosEnOrden = new java.util.ArrayList<>();
+        mismoTick.avanzar(objetivo, (p, t) -> vencidosEnOrden.add(p));
+        System.out.println("Mismo tick en el orden de programación: " + vencidosEnOrden.equals(programados)
+            + " (" + programados.size() + " plazos)");
+    }
+}
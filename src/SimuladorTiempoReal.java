@@ -0,0 +1,416 @@
+package src;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Modo en tiempo real: el hospital corre contra el reloj de pared en lugar de un
+// calendario de eventos. Los pacientes llegan por un socket TCP local (una línea
+// por paciente, ver procesarLinea) y cada médico es un hilo virtual que saca al
+// siguiente de la cola de prioridad y "atiende" durmiendo el tiempo de servicio.
+// El tiempo simulado avanza 'escala' segundos por cada segundo real.
+//
+// Cada 'periodo' se publica una línea ESTADO (profundidad de la cola por
+// categoría, llegadas por segundo, atendidos, esperas) en la salida estándar y
+// en las conexiones que enviaron SUSCRIBIR. A estas últimas también se les envía
+// una línea EXCEDIDO por cada paciente que supera la espera máxima de su categoría.
+//
+// Protocolo (UTF-8, una orden por línea):
+//   id,nombre,apellido,categoria,area   registra un paciente (llega ahora)
+//   R,id,categoria                      reasigna la categoría
+//   SUSCRIBIR                           recibe ESTADO y EXCEDIDO por esta conexión
+//   FIN                                 cierra la conexión
+//
+// Los textos del cliente no se agregan a los diccionarios de AlmacenPacientes, que
+// viven lo que el proceso: el id debe tener el formato P%04d, el área debe ser una
+// de las que ya tiene el hospital y los nombres que no estén en los diccionarios se
+// guardan vacíos (el servidor no los publica).
+public class SimuladorTiempoReal {
+    public static final int PUERTO_POR_DEFECTO = 7070;
+
+    private static final long ESPERA_MEDICO_MS = 100;   // un médico libre revisa la cola al menos así de seguido
+    private static final long REVISION_PLAZOS_MS = 100;
+
+    private final HospitalConcurrente hospital;
+    private final int medicos;
+    private final DistribucionServicio servicio;
+    private final double escala;
+    private final Map<String, Integer> codigosArea = new HashMap<>(); // nombre en minúsculas -> código en AREAS
+    private long periodoMs = 1000;
+    private boolean silencioso = false;
+    private long semilla = 15;
+
+    // Despierta a los médicos libres; no lleva la cuenta de pacientes (eso lo sabe la cola)
+    private final Semaphore aviso = new Semaphore(0);
+    private final ConcurrentLinkedQueue<Paciente> porVigilar = new ConcurrentLinkedQueue<>();
+    private final CopyOnWriteArrayList<PrintWriter> suscriptores = new CopyOnWriteArrayList<>();
+    private final Set<Socket> conexiones = ConcurrentHashMap.newKeySet();
+    private final List<Thread> hilos = new ArrayList<>();
+
+    private final LongAdder llegadas = new LongAdder();
+    private final LongAdder atendidos = new LongAdder();
+    private final LongAdder excedidos = new LongAdder();
+    private final LongAdder invalidas = new LongAdder();
+    private final EstadisticaEspera esperas = new EstadisticaEspera(); // con su propio monitor
+
+    private volatile boolean activo = false;
+    private ServerSocket servidor;
+    private long inicioNanos;
+
+    public SimuladorTiempoReal(HospitalConcurrente hospital, int medicos, DistribucionServicio servicio, double escala) {
+        if (medicos < 1) throw new IllegalArgumentException("Se necesita al menos un médico: " + medicos);
+        if (escala <= 0) throw new IllegalArgumentException("La escala de tiempo debe ser positiva: " + escala);
+        this.hospital = hospital;
+        this.medicos = medicos;
+        this.servicio = servicio;
+        this.escala = escala;
+        hospital.consultar(h -> {
+            for (AreaAtencion area : h.getAreas()) {
+                codigosArea.put(area.getNombre(), AlmacenPacientes.AREAS.codigo(area.getNombre()));
+            }
+            return null;
+        });
+    }
+
+    public void setPeriodoMs(long periodoMs) {
+        this.periodoMs = periodoMs;
+    }
+
+    public void setSilencioso(boolean silencioso) {
+        this.silencioso = silencioso;
+    }
+
+    public void setSemilla(long semilla) {
+        this.semilla = semilla;
+    }
+
+    // Segundos simulados desde que se inició
+    public long ahora() {
+        return (long) ((System.nanoTime() - inicioNanos) * escala / 1e9);
+    }
+
+    // Abre el puerto (0 = cualquiera libre) en la interfaz local y arranca los hilos; devuelve el puerto
+    public int iniciar(int puerto) throws IOException {
+        servidor = new ServerSocket(puerto, 128, InetAddress.getLoopbackAddress());
+        inicioNanos = System.nanoTime();
+        activo = true;
+        hilos.add(Thread.ofVirtual().name("ingreso").start(this::aceptarConexiones));
+        for (int i = 0; i < medicos; i++) {
+            final int n = i;
+            hilos.add(Thread.ofVirtual().name("medico-" + i).start(() -> atender(n)));
+        }
+        hilos.add(Thread.ofVirtual().name("plazos").start(this::vigilarPlazos));
+        hilos.add(Thread.ofVirtual().name("estado").start(this::publicarEstado));
+        return servidor.getLocalPort();
+    }
+
+    public void detener() throws InterruptedException {
+        activo = false;
+        try {
+            servidor.close();
+        } catch (IOException e) {
+            // ya estaba cerrado
+        }
+        for (Socket s : conexiones) {
+            try {
+                s.close();
+            } catch (IOException e) {
+                // se descarta la conexión igual
+            }
+        }
+        for (Thread hilo : hilos) {
+            hilo.interrupt();
+        }
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+    }
+
+    public long getLlegadas() {
+        return llegadas.sum();
+    }
+
+    public long getAtendidos() {
+        return atendidos.sum();
+    }
+
+    public long getExcedidos() {
+        return excedidos.sum();
+    }
+
+    public long getLineasInvalidas() {
+        return invalidas.sum();
+    }
+
+    private void aceptarConexiones() {
+        while (activo) {
+            try {
+                Socket s = servidor.accept();
+                conexiones.add(s);
+                Thread.ofVirtual().name("conexion").start(() -> leerConexion(s));
+            } catch (IOException e) {
+                if (activo) System.err.println("Error al aceptar una conexión: " + e.getMessage());
+            }
+        }
+    }
+
+    private void leerConexion(Socket s) {
+        PrintWriter salida = null;
+        try (s; BufferedReader entrada = new BufferedReader(
+                new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8), 1 << 16)) {
+            String linea;
+            while ((linea = entrada.readLine()) != null) {
+                if (linea.isEmpty()) continue;
+                if (linea.equals("FIN")) break;
+                if (linea.equals("SUSCRIBIR")) {
+                    if (salida == null) {
+                        salida = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), true);
+                        suscriptores.add(salida);
+                    }
+                } else if (!procesarLinea(linea)) {
+                    invalidas.increment();
+                }
+            }
+        } catch (IOException e) {
+            if (activo) System.err.println("Conexión interrumpida: " + e.getMessage());
+        } finally {
+            if (salida != null) suscriptores.remove(salida);
+            conexiones.remove(s);
+        }
+    }
+
+    // Devuelve false si la línea no es una orden válida
+    boolean procesarLinea(String linea) {
+        String[] campos = linea.split(",");
+        try {
+            if (campos[0].equals("R")) {
+                if (campos.length < 3) return false;
+                int categoria = Integer.parseInt(campos[2].trim());
+                if (categoria < 1 || categoria > ColaEnvejecimiento.MAX_CATEGORIA) return false;
+                hospital.reasignarCategoria(campos[1].trim(), categoria);
+                return true;
+            }
+            if (campos.length < 5) return false;
+            int categoria = Integer.parseInt(campos[3].trim());
+            if (categoria < 1 || categoria > ColaEnvejecimiento.MAX_CATEGORIA) return false;
+            int clave = AlmacenPacientes.numeroCanonico(campos[0].trim());
+            Integer area = codigosArea.get(campos[4].trim().toLowerCase());
+            if (clave < 0 || area == null) return false;
+            Paciente p = new Paciente(clave, Math.max(0, AlmacenPacientes.NOMBRES.buscar(campos[1])),
+                Math.max(0, AlmacenPacientes.APELLIDOS.buscar(campos[2])), categoria, ahora(), area);
+            hospital.registrarPaciente(p);
+            porVigilar.add(p);
+            llegadas.increment();
+            if (aviso.hasQueuedThreads()) aviso.release();
+            return true;
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return false; // número mal escrito
+        }
+    }
+
+    private void atender(int numero) {
+        SplittableRandom rand = new SplittableRandom(semilla + numero);
+        try {
+            while (activo) {
+                long t = ahora();
+                Paciente p = hospital.atenderSiguiente(t);
+                if (p == null) {
+                    // Un aviso perdido (llegó justo antes de esperar) solo retrasa hasta el siguiente intento
+                    aviso.tryAcquire(ESPERA_MEDICO_MS, TimeUnit.MILLISECONDS);
+                    continue;
+                }
+                long espera = t - p.getTiempoLlegada();
+                synchronized (esperas) {
+                    esperas.registrar(espera);
+                }
+                atendidos.increment();
+                Thread.sleep(Duration.ofNanos((long) (servicio.muestrear(rand) * 1e9 / escala)));
+            }
+        } catch (InterruptedException e) {
+            // detener()
+        }
+    }
+
+    // Los plazos se llevan en una rueda de temporizadores propia (en segundos simulados):
+    // al vencer uno se confirma, con el candado del hospital, que el paciente siga en
+    // espera y que su plazo no haya cambiado por una reasignación.
+    private void vigilarPlazos() {
+        RuedaTemporizadores rueda = new RuedaTemporizadores();
+        List<Paciente> vencidos = new ArrayList<>();
+        List<Paciente> nuevosExcedidos = new ArrayList<>();
+        List<Paciente> postergados = new ArrayList<>();
+        try {
+            while (activo) {
+                Thread.sleep(REVISION_PLAZOS_MS);
+                Paciente nuevo;
+                while ((nuevo = porVigilar.poll()) != null) {
+                    rueda.programar(Math.max(limite(nuevo), rueda.getTickActual()), nuevo);
+                }
+                long t = ahora();
+                rueda.avanzar(t, (p, tick) -> vencidos.add(p));
+                if (vencidos.isEmpty()) continue;
+                hospital.consultar(h -> {
+                    for (Paciente p : vencidos) {
+                        if (!h.estaEnEspera(p) || p.isExcedido()) continue;
+                        if (limite(p) > t) {
+                            postergados.add(p);
+                        } else {
+                            p.setExcedido(true);
+                            nuevosExcedidos.add(p);
+                        }
+                    }
+                    return null;
+                });
+                for (Paciente p : postergados) {
+                    rueda.programar(Math.max(limite(p), rueda.getTickActual()), p);
+                }
+                for (Paciente p : nuevosExcedidos) {
+                    excedidos.increment();
+                    publicar("EXCEDIDO " + p.getId() + " C" + p.getCategoria() + " espera=" + (t - p.getTiempoLlegada()), false);
+                }
+                vencidos.clear();
+                postergados.clear();
+                nuevosExcedidos.clear();
+            }
+        } catch (InterruptedException e) {
+            // detener()
+        }
+    }
+
+    private static long limite(Paciente p) {
+        return p.getTiempoLlegada() + SimuladorUrgencia.tiempoMaximo(p.getCategoria());
+    }
+
+    private void publicarEstado() {
+        long llegadasAnteriores = 0;
+        long instanteAnterior = System.nanoTime();
+        try {
+            while (activo) {
+                Thread.sleep(periodoMs);
+                long instante = System.nanoTime();
+                long llegadasAhora = llegadas.sum();
+                double porSegundo = (llegadasAhora - llegadasAnteriores) / ((instante - instanteAnterior) / 1e9);
+                llegadasAnteriores = llegadasAhora;
+                instanteAnterior = instante;
+                publicar(lineaEstado(porSegundo), !silencioso);
+            }
+        } catch (InterruptedException e) {
+            // detener()
+        }
+    }
+
+    String lineaEstado(double llegadasPorSegundo) {
+        int[] cola = hospital.consultar(h -> {
+            int[] c = new int[ColaEnvejecimiento.MAX_CATEGORIA + 2];
+            for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) {
+                c[cat] = h.contarPorCategoria(cat);
+                c[0] += c[cat];
+            }
+            c[ColaEnvejecimiento.MAX_CATEGORIA + 1] = h.getDiferidos();
+            return c;
+        });
+        long mediana;
+        long p95;
+        synchronized (esperas) {
+            mediana = esperas.percentil(50);
+            p95 = esperas.percentil(95);
+        }
+        return String.format("ESTADO t=%d en_espera=%d C1=%d C2=%d C3=%d C4=%d C5=%d diferidos=%d"
+                + " llegadas=%d llegadas/s=%.0f atendidos=%d excedidos=%d espera_p50=%d espera_p95=%d",
+            ahora(), cola[0], cola[1], cola[2], cola[3], cola[4], cola[5], cola[6],
+            llegadas.sum(), llegadasPorSegundo, atendidos.sum(), excedidos.sum(), mediana, p95);
+    }
+
+    private void publicar(String linea, boolean enSalidaEstandar) {
+        if (enSalidaEstandar) System.out.println(linea);
+        for (PrintWriter salida : suscriptores) {
+            synchronized (salida) {
+                salida.println(linea);
+                if (salida.checkError()) suscriptores.remove(salida);
+            }
+        }
+    }
+
+    // java -cp bin src.SimuladorTiempoReal [--puerto 7070] [--medicos 8] [--servicio exp:900]
+    //        [--escala 60] [--periodo-ms 1000] [--capacidad N] [--silencioso]
+    //        [--demo-tasa 20000 --demo-segundos 10 --demo-conexiones 4]
+    //
+    // Con --demo-tasa se levanta en un puerto libre, se le envía carga con GeneradorCarga
+    // durante --demo-segundos y se informa cuántas llegadas por segundo sostuvo.
+    public static void main(String[] args) throws Exception {
+        int puerto = PUERTO_POR_DEFECTO;
+        int medicos = 8;
+        DistribucionServicio servicio = DistribucionServicio.exponencial(15 * 60);
+        double escala = 60;
+        long periodoMs = 1000;
+        int capacidad = -1;
+        boolean silencioso = false;
+        double demoTasa = 0;
+        int demoSegundos = 10;
+        int demoConexiones = 4;
+        for (int i = 0; i < args.length; i++) {
+            String opcion = args[i].toLowerCase();
+            if (opcion.equals("--silencioso")) {
+                silencioso = true;
+                continue;
+            }
+            if (i + 1 >= args.length) break;
+            String valor = args[++i];
+            switch (opcion) {
+                case "--puerto": puerto = Integer.parseInt(valor); break;
+                case "--medicos": medicos = Integer.parseInt(valor); break;
+                case "--servicio": servicio = DistribucionServicio.parsear(valor); break;
+                case "--escala": escala = Double.parseDouble(valor); break;
+                case "--periodo-ms": periodoMs = Long.parseLong(valor); break;
+                case "--capacidad": capacidad = Integer.parseInt(valor); break;
+                case "--demo-tasa": demoTasa = Double.parseDouble(valor); break;
+                case "--demo-segundos": demoSegundos = Integer.parseInt(valor); break;
+                case "--demo-conexiones": demoConexiones = Integer.parseInt(valor); break;
+                default: System.err.println("Opción desconocida: " + args[i - 1]);
+            }
+        }
+
+        Hospital base = new Hospital(true);
+        base.setConservarAtendidos(false);
+        // En la demostración no se rechaza a nadie: interesa medir el ingreso
+        if (capacidad > 0 || demoTasa > 0) base.setCapacidadAreas(capacidad > 0 ? capacidad : Integer.MAX_VALUE);
+        SimuladorTiempoReal simulador = new SimuladorTiempoReal(new HospitalConcurrente(base), medicos, servicio, escala);
+        simulador.setPeriodoMs(periodoMs);
+        simulador.setSilencioso(silencioso);
+
+        if (demoTasa <= 0) {
+            int abierto = simulador.iniciar(puerto);
+            System.out.println("Escuchando en localhost:" + abierto + " con " + medicos + " médicos (" + servicio
+                + ", escala " + escala + "x)");
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    simulador.detener();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            Thread.currentThread().join(); // hasta Ctrl-C
+            return;
+        }
+
+        int abierto = simulador.iniciar(0);
+        long inicio = System.nanoTime();
+        long enviados = GeneradorCarga.enviar("localhost", abierto, demoTasa, demoSegundos, demoConexiones, 42);
+        // Se espera a que el servidor termine de leer lo enviado
+        long limite = System.nanoTime() + 10_000_000_000L;
+        while (simulador.getLlegadas() + simulador.getLineasInvalidas() < enviados && System.nanoTime() < limite) {
+            Thread.sleep(10);
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.println(simulador.lineaEstado(simulador.getLlegadas() / segundos));
+        simulador.detener();
+        System.out.printf("Enviados: %d, recibidos: %d, inválidos: %d, llegadas sostenidas: %.0f por segundo (objetivo %.0f)\n",
+            enviados, simulador.getLlegadas(), simulador.getLineasInvalidas(), simulador.getLlegadas() / segundos, demoTasa);
+    }
+}
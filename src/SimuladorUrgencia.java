@@ -8,156 +8,846 @@ public class SimuladorUrgencia {
 
     private Hospital hospital;
     private List<Paciente> pacientesDia;
-    private Map<Integer, Integer> pacientesAtendidosPorCategoria = new HashMap<>();
-    private Map<Integer, Long> sumaTiemposEsperaPorCategoria = new HashMap<>();
-    private Map<Integer, Integer> cantidadPorCategoria = new HashMap<>();
+    private Iterator<Paciente> fuente; // si no es null, se usa en vez de pacientesDia
+    // Por categoría (1..MAX_CATEGORIA); atender a alguien no reserva memoria
+    private final int[] cantidadPorCategoria = new int[ColaEnvejecimiento.MAX_CATEGORIA + 1];
+    private final long[] sumaTiemposEsperaPorCategoria = new long[ColaEnvejecimiento.MAX_CATEGORIA + 1];
     private List<Paciente> pacientesExcedidos = new ArrayList<>();
-    private Set<String> idsExcedidos = new HashSet<>();
-    private Map<String, Long> tiemposAtencion = new HashMap<>();
+    private final EstadisticaEspera[] estadisticasPorCategoria = new EstadisticaEspera[ColaEnvejecimiento.MAX_CATEGORIA + 1];
 
-    private final Map<Integer, Integer> tiemposMaximos = Map.of(
-        1, 10 * 60,  // 10 minutos
-        2, 20 * 60,  // 20 minutos
-        3, 30 * 60,  // 30 minutos
-        4, 60 * 60,  // 60 minutos
-        5, 120 * 60 // 120 minutos
-    );
+    // Memoria acotada: las filas de tiempos_atencion y los excedidos se escriben a disco
+    // a medida que ocurren y no se guarda ningún paciente ya atendido
+    private boolean memoriaAcotada = false;
+    private String archivoTiempos = "Simulaciones/tiempos_atencion.txt";
+    private String archivoHistogramas = "Simulaciones/histogramas_espera.csv";
+    private EscritorTiempos escritorTiempos;
+    private int formatoTiempos = EscritorTiempos.CSV;
+    private boolean escrituraAsincrona = false; // las filas se escriben a disco en otro hilo
+    private File archivoExcedidos;
+    private BufferedWriter escritorExcedidos;
+    private long cantidadExcedidos = 0;
+    // Excedidos de la revisión de plazos en curso; al terminarla se informan por instante
+    // de detección y luego por id, como los listaba el recorrido minuto a minuto
+    private Paciente[] porInformar = new Paciente[16];
+    private long[] instantesPorInformar = new long[16];
+    private int cantidadPorInformar = 0;
+
+    public static final long HORIZONTE_DIA = 24 * 60 * 60;
+
+    // Cadencias de la simulación (en segundos) y resolución con que se revisan los plazos.
+    // Con intervaloLlegada <= 0 cada paciente entra en su propio tiempo de llegada.
+    private long intervaloLlegada = 10 * 60;
+    private long intervaloAtencion = 15 * 60;
+    private long resolucion = 60;
+
+    // Estado del motor de eventos
+    private CalendarioEventos calendario;
+    private RuedaTemporizadores plazos;
+    private MapaEnteros<RuedaTemporizadores.Temporizador> temporizadores = new MapaEnteros<>(); // por clave del id
+    private long eventosProcesados = 0;
+    private final RuedaTemporizadores.AccionVencimiento accionPlazo = this::plazoVencido;
+    private Iterator<Paciente> colaPacientes;
+    private long reloj = 0;
+    private long horizonte = HORIZONTE_DIA;
+    private int pacientesPorIngresar = 0;
+    private int pacientesIngresados = 0;
+    private boolean atencionProgramada = false;
+    private boolean silencioso = false; // sin alertas, informe ni archivo (réplicas en paralelo)
+
+    // Estaciones: cada área atiende con sus propios médicos, que toman pacientes de
+    // la cola del área apenas se liberan, con tiempos de servicio aleatorios, en vez
+    // de atender a un paciente de todo el hospital cada intervaloAtencion
+    private boolean modoEstaciones = false;
+    private AleatorioRestaurable randServicio = new AleatorioRestaurable(15); // como SplittableRandom(15)
+
+    // Red de hospitales: a quién se ofrecen los pacientes que este hospital no puede
+    // recibir o que no alcanza a atender a tiempo (ver RedHospitales)
+    public interface Derivacion {
+        // true si el paciente se va a otro hospital; se llama en el hilo de este simulador
+        boolean derivar(Paciente p, long tiempo, int motivo);
+    }
+
+    public static final int DERIVADO_POR_SATURACION = 0; // rechazado por áreas y desborde llenos
+    public static final int DERIVADO_POR_PLAZO = 1;      // C1 que excedió su plazo sin médico libre
+
+    private Derivacion derivacion;
+    private Telemetria telemetria; // null: sin telemetría
+    private final long[] trasladosEnviados = new long[2];
+    private long trasladosRecibidos = 0;
+
+    private static final long[] TIEMPOS_MAXIMOS = {
+        0,
+        10 * 60,  // 10 minutos
+        20 * 60,  // 20 minutos
+        30 * 60,  // 30 minutos
+        60 * 60,  // 60 minutos
+        120 * 60 // 120 minutos
+    };
+
+    // Espera máxima aceptable de la categoría, en segundos
+    static long tiempoMaximo(int categoria) {
+        return categoria >= 1 && categoria < TIEMPOS_MAXIMOS.length ? TIEMPOS_MAXIMOS[categoria] : 120 * 60;
+    }
 
     public SimuladorUrgencia(List<Paciente> pacientesDia) {
         this.hospital = new Hospital(true);
         this.pacientesDia = pacientesDia;
+        for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) {
+            estadisticasPorCategoria[cat] = new EstadisticaEspera();
+        }
+    }
+
+    // Los pacientes se toman de a uno desde el iterador (p. ej. un FlujoPacientes)
+    public SimuladorUrgencia(Iterator<Paciente> llegadas) {
+        this(Collections.emptyList());
+        this.fuente = llegadas;
+    }
+
+    // Prepara el simulador para otra corrida con otros pacientes, reutilizando el
+    // hospital, el calendario, la rueda de plazos y las estadísticas ya reservados.
+    // Se conserva la configuración (cadencias, áreas, capacidades, modo).
+    public void reiniciar(Iterator<Paciente> llegadas) {
+        this.fuente = llegadas;
+        this.pacientesDia = Collections.emptyList();
+        hospital.reiniciar();
+        Arrays.fill(cantidadPorCategoria, 0);
+        Arrays.fill(sumaTiemposEsperaPorCategoria, 0);
+        pacientesExcedidos.clear();
+        temporizadores.clear();
+        eventosProcesados = 0;
+        cantidadExcedidos = 0;
+        trasladosEnviados[DERIVADO_POR_SATURACION] = 0;
+        trasladosEnviados[DERIVADO_POR_PLAZO] = 0;
+        trasladosRecibidos = 0;
+        for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) {
+            estadisticasPorCategoria[cat].reiniciar();
+        }
+    }
+
+    public void setIntervaloLlegada(long segundos) {
+        this.intervaloLlegada = segundos;
+    }
+
+    public void setIntervaloAtencion(long segundos) {
+        this.intervaloAtencion = segundos;
+    }
+
+    public void setResolucion(long segundos) {
+        this.resolucion = segundos;
+    }
+
+    public void setSilencioso(boolean silencioso) {
+        this.silencioso = silencioso;
+    }
+
+    public void setModoEstaciones(boolean modoEstaciones) {
+        this.modoEstaciones = modoEstaciones;
+    }
+
+    // Médicos y tiempos de servicio de un área (se crea si no existe); activa el modo estaciones
+    public void configurarArea(String nombre, int medicos, DistribucionServicio servicio) {
+        AreaAtencion area = hospital.obtenerOCrearArea(nombre);
+        area.setMedicos(medicos);
+        area.setServicio(servicio);
+        this.modoEstaciones = true;
+    }
+
+    // Lugares en la cola de cada área; con más pacientes se redirigen, difieren o rechazan
+    public void setCapacidadAreas(int capacidad) {
+        hospital.setCapacidadAreas(capacidad);
+    }
+
+    // Orden de atención (por omisión, envejecimiento); solo antes de iniciar o tras reiniciar
+    public void setPolitica(PoliticaAtencion politica) {
+        hospital.setPolitica(politica);
+    }
+
+    // Contadores y medidores por intervalo y latencias de la cola (ver Telemetria); null la quita
+    public void setTelemetria(Telemetria telemetria) {
+        this.telemetria = telemetria;
+        hospital.setTelemetria(telemetria);
+        if (telemetria != null) telemetria.comenzar(reloj, hospital.getAreas());
+    }
+
+    public Telemetria getTelemetria() {
+        return telemetria;
+    }
+
+    Hospital getHospital() {
+        return hospital;
+    }
+
+    public void setDerivacion(Derivacion derivacion) {
+        this.derivacion = derivacion;
+    }
+
+    // Paciente que llega trasladado desde otro hospital en el instante indicado (no antes
+    // del reloj de este simulador). No se vuelve a derivar: si tampoco cabe aquí, se rechaza.
+    public void recibirTraslado(Paciente p, long llegada) {
+        calendario.programar(llegada, CalendarioEventos.TRASLADO, p);
+    }
+
+    public long getTrasladosEnviados(int motivo) {
+        return trasladosEnviados[motivo];
+    }
+
+    public long getTrasladosRecibidos() {
+        return trasladosRecibidos;
+    }
+
+    public int getPacientesIngresados() {
+        return pacientesIngresados;
+    }
+
+    public long getReloj() {
+        return reloj;
+    }
+
+    public void setSemillaServicio(long semilla) {
+        this.randServicio = new AleatorioRestaurable(semilla);
+    }
+
+    public Collection<AreaAtencion> getAreas() {
+        return hospital.getAreas();
+    }
+
+    // Pacientes con cada resultado de admisión (Hospital.ACEPTADO, REDIRIGIDO, DIFERIDO o RECHAZADO)
+    public long getAdmisiones(int resultado) {
+        return hospital.getAdmisiones(resultado);
+    }
+
+    public void setMemoriaAcotada(boolean memoriaAcotada) {
+        this.memoriaAcotada = memoriaAcotada;
+        hospital.setConservarAtendidos(!memoriaAcotada);
+    }
+
+    // EscritorTiempos.CSV (tiempos_atencion.txt) o EscritorTiempos.BINARIO (tiempos_atencion.bin)
+    public void setFormatoTiempos(int formato) {
+        this.formatoTiempos = formato;
+        this.archivoTiempos = formato == EscritorTiempos.BINARIO
+            ? "Simulaciones/tiempos_atencion.bin"
+            : "Simulaciones/tiempos_atencion.txt";
+    }
+
+    public void setEscrituraAsincrona(boolean escrituraAsincrona) {
+        this.escrituraAsincrona = escrituraAsincrona;
+    }
+
+    public EstadisticaEspera getEstadistica(int categoria) {
+        return estadisticasPorCategoria[categoria];
+    }
+
+    // Estadística de espera de cada área (en el orden en que el hospital las conoce)
+    public Map<String, EstadisticaEspera> getEstadisticasPorArea() {
+        Map<String, EstadisticaEspera> porArea = new LinkedHashMap<>();
+        for (AreaAtencion area : hospital.getAreas()) {
+            porArea.put(area.getNombre(), area.getEstadisticaEspera());
+        }
+        return porArea;
+    }
+
+    // Esperas de la categoría contando también a los que siguen en la cola, con la
+    // espera que llevan hasta ahora (una cota inferior): con el hospital saturado
+    // los atendidos solos subestiman la espera
+    public EstadisticaEspera getEsperaConPendientes(int categoria) {
+        EstadisticaEspera total = new EstadisticaEspera();
+        total.combinar(estadisticasPorCategoria[categoria]);
+        for (Paciente p : hospital.obtenerPacientesPorCategoria(categoria)) {
+            total.registrar(Math.max(0, reloj - p.getTiempoLlegada()));
+        }
+        return total;
+    }
+
+    public int getCantidadEnEspera() {
+        return hospital.getColaAtencion().size() + hospital.getDiferidos();
+    }
+
+    public long getCantidadExcedidos() {
+        return cantidadExcedidos;
+    }
+
+    public int getCantidadAtendidos(int categoria) {
+        return enRango(categoria) ? cantidadPorCategoria[categoria] : 0;
+    }
+
+    public long getSumaTiemposEspera(int categoria) {
+        return enRango(categoria) ? sumaTiemposEsperaPorCategoria[categoria] : 0;
+    }
+
+    private static boolean enRango(int categoria) {
+        return categoria >= 1 && categoria <= ColaEnvejecimiento.MAX_CATEGORIA;
+    }
+
+    // Eventos del calendario procesados desde que se inició la corrida
+    public long getEventosProcesados() {
+        return eventosProcesados;
     }
 
     public void simular(int pacientesPorDia) {
-        int minutoActual = 0;
-        int pacientesIngresados = 0;
-        /*
-        int nuevosPacientesRecientes = 0; // Funciona con el que se atienden en ráfaga.
-        */
-        Queue<Paciente> colaPacientes = new LinkedList<>(pacientesDia);
-
-        while (minutoActual < 24 * 60) {
-            long tiempoSimulacionSegundos = (long) minutoActual * 60;
-
-            // 1. LLEGADA DE PACIENTES
-            // Un nuevo paciente llega cada 10 minutos.
-            if (minutoActual % 10 == 0 && pacientesIngresados < pacientesPorDia && !colaPacientes.isEmpty()) {
-                Paciente nuevo = colaPacientes.poll();
-                hospital.registrarPaciente(nuevo);
-                pacientesIngresados++;
-                /*
-                nuevosPacientesRecientes++; // atienden en ráfaga.
-                */
-            }
-            
-            // === 2. ATENCIÓN EN RÁFAGA SI HAY 3 NUEVOS PACIENTES ===
-            // Esta sección implementa un comportamiento poco realista en el contexto de un sistema de urgencias:
-            // cada vez que llegan 3 pacientes nuevos, se los atiende inmediatamente en una "ráfaga".
-            // Este enfoque no considera la disponibilidad de médicos, tiempos de espera previos, ni prioridades reales.
-            // Por esa razón, he dejado esta parte comentada. Si quieres probar cómo funciona, puedes activarla,
-            // pero personalmente no recomiendo su uso ya que simula un hospital utópico con atención instantánea.
-
-            /*
-            if (nuevosPacientesRecientes >= 3) {
-            for (int i = 0; i < 2; i++) {
-            atenderPacientePrioritario(tiempoSimulacionSegundos);
-            }
-            nuevosPacientesRecientes = 0;
-        }
-        */
-            // 3. REVISIÓN DE EMERGENCIAS Y TIEMPOS EXCEDIDOS (se ejecuta cada minuto)
-            Iterator<Paciente> it = hospital.getColaAtencion().iterator();
-            while (it.hasNext()) {
-                Paciente p = it.next();
-                long espera = tiempoSimulacionSegundos - p.getTiempoLlegada();
-                int maxEspera = tiemposMaximos.getOrDefault(p.getCategoria(), 120 * 60);
-
-                if (espera > maxEspera && !idsExcedidos.contains(p.getId())) {
-                    // ATENCIÓN DE EMERGENCIA: Si un C1 excede su tiempo, se atiende INMEDIATAMENTE.
-                    if (p.getCategoria() == 1) {
-                        System.out.println("¡ALERTA! Paciente C1 (" + p.getId() + ") excediendo tiempo. Atención inmediata.");
-                        registrarAtencion(p, tiempoSimulacionSegundos);
-                        it.remove(); // Elimina al paciente de la cola de espera de forma segura.
-                    } else {
-                        // REGISTRO DE EXCEDIDOS: Para C2-C5, solo se registran en la lista para el informe.
-                        pacientesExcedidos.add(p);
-                        idsExcedidos.add(p.getId());
-                    }
-                }
+        simular(pacientesPorDia, HORIZONTE_DIA);
+    }
+
+    // Simulación por eventos discretos: el reloj salta de un evento al siguiente
+    // (llegada, atención regular o vencimiento de un plazo) en vez de recorrer
+    // cada minuto del horizonte.
+    public void simular(int pacientesPorDia, long horizonteSegundos) {
+        iniciar(pacientesPorDia, horizonteSegundos);
+        avanzarHasta(horizonteSegundos);
+        informar();
+    }
+
+    // Sigue hasta el horizonte desde donde quedó (p. ej. tras restaurar una instantánea)
+    // y muestra el informe como simular
+    public void continuar() {
+        avanzarHasta(horizonte);
+        informar();
+    }
+
+    private void informar() {
+        if (!silencioso) {
+            if (memoriaAcotada) {
+                cerrarEscritores();
+                mostrarEstadisticas();
+            } else {
+                mostrarEstadisticas();
+                guardarTiemposAtencion(archivoTiempos);
+            }
+            mostrarPercentiles(estadisticasPorCategoria, getEstadisticasPorArea());
+            if (modoEstaciones) {
+                mostrarEstaciones();
             }
+            mostrarAdmision();
+            exportarHistogramas(archivoHistogramas);
+        }
+    }
+
+    public void iniciar(int pacientesPorDia, long horizonteSegundos) {
+        this.pacientesPorIngresar = pacientesPorDia;
+        this.pacientesIngresados = 0;
+        this.horizonte = horizonteSegundos;
+        this.reloj = 0;
+        this.colaPacientes = fuente != null ? fuente : pacientesDia.iterator();
+        if (calendario == null) {
+            this.calendario = new CalendarioEventos();
+            this.plazos = new RuedaTemporizadores();
+        } else {
+            calendario.vaciar();
+            plazos.vaciar();
+        }
+        this.temporizadores.clear();
+        this.atencionProgramada = false;
+        if (telemetria != null) {
+            telemetria.comenzar(0, hospital.getAreas());
+        }
+        if (memoriaAcotada && !silencioso) {
+            abrirEscritores();
+        }
+
+        // 1. LLEGADA DE PACIENTES: un nuevo paciente llega cada 10 minutos.
+        programarSiguienteLlegada(0);
+        // 4. ATENCIÓN REGULAR DEL HOSPITAL: cada 15 minutos se atiende a UN solo paciente,
+        // el más prioritario en ese momento. Esta cadencia (llegada cada 10 min vs atención
+        // cada 15 min) garantiza que la cola crezca, forzando al sistema a usar su lógica
+        // de priorización. En modo estaciones atienden los médicos de cada área.
+        if (!modoEstaciones) {
+            programarAtencion(0);
+        }
+    }
+
+    // Estado para una instantánea (ver InstantaneaSimulacion): entre dos llamadas a
+    // avanzarHasta y con memoria acotada, porque los ya atendidos no se guardan
+    void escribirEstado(InstantaneaSimulacion.Salida out) throws IOException {
+        if (!memoriaAcotada) {
+            throw new IllegalStateException("Las instantáneas requieren memoria acotada: no se guardan los atendidos");
+        }
+        if (calendario == null) throw new IllegalStateException("La simulación no se ha iniciado");
+        out.writeLong(intervaloLlegada);
+        out.writeLong(intervaloAtencion);
+        out.writeLong(resolucion);
+        out.writeBoolean(modoEstaciones);
+        out.writeLong(horizonte);
+        out.writeLong(reloj);
+        out.writeInt(pacientesPorIngresar);
+        out.writeInt(pacientesIngresados);
+        out.writeBoolean(atencionProgramada);
+        out.writeLong(eventosProcesados);
+        out.writeLong(cantidadExcedidos);
+        out.writeLong(trasladosEnviados[DERIVADO_POR_SATURACION]);
+        out.writeLong(trasladosEnviados[DERIVADO_POR_PLAZO]);
+        out.writeLong(trasladosRecibidos);
+        for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) {
+            out.writeInt(cantidadPorCategoria[cat]);
+            out.writeLong(sumaTiemposEsperaPorCategoria[cat]);
+            estadisticasPorCategoria[cat].escribirEstado(out);
+        }
+        out.writeLong(randServicio.getEstado());
+        hospital.escribirEstado(out);
+        calendario.escribirEstado(out);
+        plazos.escribirEstado(out);
+        boolean conFlujo = colaPacientes instanceof FlujoPacientes && ((FlujoPacientes) colaPacientes).esRestaurable();
+        out.writeBoolean(conFlujo);
+        if (conFlujo) {
+            ((FlujoPacientes) colaPacientes).escribirEstado(out);
+        }
+    }
 
-            // 4. ATENCIÓN REGULAR DEL HOSPITAL
-            // Se establece una tasa de atención base y predecible. Cada 15 minutos,
-            // el sistema atenderá a UN solo paciente: el más prioritario en ese momento.
-            // Esta cadencia (llegada cada 10 min vs atención cada 15 min) garantiza
-            // que la cola crezca, forzando al sistema a usar su lógica de priorización.
-            if (minutoActual % 15 == 0) {
-                atenderPacientePrioritario(tiempoSimulacionSegundos);
+    // Reemplaza el estado por el guardado y conserva la configuración de este simulador.
+    // 'llegadas' (puede ser null) tiene prioridad sobre el flujo guardado.
+    void leerEstado(InstantaneaSimulacion.Entrada in, Iterator<Paciente> llegadas) throws IOException {
+        setMemoriaAcotada(true);
+        reiniciar(Collections.emptyIterator());
+        if (calendario == null) {
+            calendario = new CalendarioEventos();
+            plazos = new RuedaTemporizadores();
+        }
+        intervaloLlegada = in.readLong();
+        intervaloAtencion = in.readLong();
+        resolucion = in.readLong();
+        modoEstaciones = in.readBoolean();
+        horizonte = in.readLong();
+        reloj = in.readLong();
+        pacientesPorIngresar = in.readInt();
+        pacientesIngresados = in.readInt();
+        atencionProgramada = in.readBoolean();
+        eventosProcesados = in.readLong();
+        cantidadExcedidos = in.readLong();
+        trasladosEnviados[DERIVADO_POR_SATURACION] = in.readLong();
+        trasladosEnviados[DERIVADO_POR_PLAZO] = in.readLong();
+        trasladosRecibidos = in.readLong();
+        for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) {
+            cantidadPorCategoria[cat] = in.readInt();
+            sumaTiemposEsperaPorCategoria[cat] = in.readLong();
+            estadisticasPorCategoria[cat].leerEstado(in);
+        }
+        randServicio.setEstado(in.readLong());
+        hospital.leerEstado(in);
+        calendario.leerEstado(in);
+        plazos.leerEstado(in, t -> temporizadores.put(t.getPaciente().getClave(), t));
+        if (in.readBoolean()) {
+            FlujoPacientes flujo = FlujoPacientes.leerEstado(in);
+            if (llegadas == null) llegadas = flujo;
+        }
+        if (llegadas == null) {
+            throw new IllegalArgumentException("La instantánea no trae las llegadas (el flujo no era restaurable):"
+                + " hay que indicar el resto de las llegadas");
+        }
+        this.fuente = llegadas;
+        this.colaPacientes = llegadas;
+        if (telemetria != null) {
+            telemetria.comenzar(reloj, hospital.getAreas());
+        }
+        if (!silencioso) {
+            abrirEscritores();
+        }
+    }
+
+    // Procesa todos los eventos anteriores al instante indicado (sin pasar del horizonte)
+    public void avanzarHasta(long tiempo) {
+        long limite = Math.min(tiempo, horizonte);
+        while (calendario.tiempoSiguiente() < limite) {
+            if (telemetria != null) muestrearHasta(calendario.tiempoSiguiente());
+            CalendarioEventos.Evento e = calendario.siguiente();
+            eventosProcesados++;
+            // Dentro de un mismo instante los plazos se revisan después de las llegadas
+            // y antes de la atención regular, como en la simulación por minutos
+            boolean llegada = e.getTipo() == CalendarioEventos.LLEGADA || e.getTipo() == CalendarioEventos.TRASLADO;
+            revisarPlazos(llegada ? e.getTiempo() - 1 : e.getTiempo());
+            reloj = e.getTiempo();
+            hospital.setTiempoActual(reloj);
+            if (e.getTipo() == CalendarioEventos.LLEGADA) {
+                procesarLlegada(e.getPaciente());
+            } else if (e.getTipo() == CalendarioEventos.TRASLADO) {
+                procesarTraslado(e.getPaciente());
+            } else if (e.getTipo() == CalendarioEventos.ATENCION) {
+                procesarAtencion();
+            } else {
+                terminarAtencion(e.getPaciente());
+            }
+        }
+        if (telemetria != null) muestrearHasta(limite);
+        revisarPlazos(limite - 1);
+        reloj = Math.max(reloj, limite);
+    }
+
+    // Cierra los intervalos de la telemetría que terminan a más tardar en 'tiempo',
+    // con los plazos vencidos dentro de cada uno ya contados
+    private void muestrearHasta(long tiempo) {
+        while (telemetria.getFinIntervalo() <= tiempo) {
+            revisarPlazos(telemetria.getFinIntervalo() - 1);
+            telemetria.cerrarIntervalo(hospital);
+        }
+    }
+
+    // Reasigna la categoría de un paciente en espera y mueve su plazo máximo
+    public void reasignarCategoria(String id, int nuevaCategoria) {
+        hospital.reasignarCategoria(id, nuevaCategoria);
+        Paciente p = hospital.buscarPaciente(id);
+        RuedaTemporizadores.Temporizador t = p != null ? temporizadores.get(p.getClave()) : null;
+        if (t != null && t.estaActivo()) {
+            plazos.reprogramar(t, tickRevisionPlazo(t.getPaciente()));
+        }
+    }
+
+    private void procesarLlegada(Paciente nuevo) {
+        pacientesIngresados++;
+        int admision = admitir(nuevo);
+        if (admision == Hospital.RECHAZADO && derivacion != null
+                && derivacion.derivar(nuevo, reloj, DERIVADO_POR_SATURACION)) {
+            trasladosEnviados[DERIVADO_POR_SATURACION]++;
+        }
+        programarSiguienteLlegada(reloj + Math.max(intervaloLlegada, 0));
+    }
+
+    private void procesarTraslado(Paciente p) {
+        trasladosRecibidos++;
+        p.setEstado("en_espera");
+        admitir(p);
+    }
+
+    private int admitir(Paciente p) {
+        int admision = hospital.registrarPaciente(p);
+        if (telemetria != null) telemetria.admision(admision, getCantidadEnEspera());
+        if (admision != Hospital.RECHAZADO) {
+            // Un diferido también espera, aunque todavía sin lugar en la cola de un área.
+            // Un trasladado que ya excedió su plazo no vuelve a vencer.
+            if (!p.isExcedido()) {
+                long tick = Math.max(tickRevisionPlazo(p), plazos.getTickActual());
+                temporizadores.put(p.getClave(), plazos.programar(tick, p));
+            }
+            if (modoEstaciones) {
+                if (admision != Hospital.DIFERIDO) despachar(hospital.obtenerArea(p.getArea()));
+            } else if (!atencionProgramada) {
+                programarAtencion(reloj);
+            }
+        }
+        return admision;
+    }
+
+    // Asigna pacientes de la cola del área a sus médicos libres
+    private void despachar(AreaAtencion area) {
+        while (area.hayMedicoLibre()) {
+            Paciente p = hospital.iniciarAtencion(area, reloj);
+            if (p == null) return;
+            cancelarPlazo(p);
+            escribirFilaTiempos(p, registrarAtencion(p, reloj));
+            p.setEstado("en_atencion");
+            long duracion = area.getServicio().muestrear(randServicio);
+            area.ocuparMedico(Math.min(duracion, horizonte - reloj)); // la utilización se mide dentro del horizonte
+            calendario.programar(reloj + duracion, CalendarioEventos.FIN_ATENCION, p);
+        }
+    }
+
+    private void terminarAtencion(Paciente p) {
+        p.setEstado("atendido");
+        AreaAtencion area = hospital.obtenerArea(p.getArea());
+        area.liberarMedico();
+        despachar(area);
+    }
+
+    private void procesarAtencion() {
+        atencionProgramada = false;
+        atenderPacientePrioritario(reloj);
+        // Con la cola vacía no se programa la siguiente: la reactiva la próxima llegada
+        if (!hospital.getColaAtencion().isEmpty()) {
+            programarAtencion(reloj + intervaloAtencion);
+        }
+    }
+
+    // 3. REVISIÓN DE EMERGENCIAS Y TIEMPOS EXCEDIDOS: solo se tocan los plazos que vencen
+    private void revisarPlazos(long hasta) {
+        plazos.avanzar(Math.floorDiv(hasta, resolucion), accionPlazo);
+        if (cantidadPorInformar > 0) informarExcedidos();
+    }
+
+    // Los plazos vencen tick a tick, así que los instantes ya vienen en orden: basta
+    // ordenar por id cada tramo con el mismo instante
+    private void informarExcedidos() {
+        for (int desde = 0, hasta; desde < cantidadPorInformar; desde = hasta) {
+            hasta = desde + 1;
+            while (hasta < cantidadPorInformar && instantesPorInformar[hasta] == instantesPorInformar[desde]) hasta++;
+            if (hasta - desde > 1) Arrays.sort(porInformar, desde, hasta, POR_ID);
+        }
+        for (int i = 0; i < cantidadPorInformar; i++) {
+            if (!memoriaAcotada) {
+                pacientesExcedidos.add(porInformar[i]);
+            } else if (escritorExcedidos != null) {
+                escribir(escritorExcedidos, lineaExcedido(porInformar[i]));
+            }
+            porInformar[i] = null;
+        }
+        cantidadPorInformar = 0;
+    }
+
+    // Ids de GeneradorPacientes por número (P10000 va después de P9999) y luego los demás por texto
+    private static final Comparator<Paciente> POR_ID = (a, b) -> {
+        if ((a.getClave() >= 0) != (b.getClave() >= 0)) return a.getClave() >= 0 ? -1 : 1;
+        return a.getClave() >= 0 ? Integer.compare(a.getClave(), b.getClave()) : a.getId().compareTo(b.getId());
+    };
+
+    private void cancelarPlazo(Paciente p) {
+        RuedaTemporizadores.Temporizador t = temporizadores.remove(p.getClave());
+        if (t != null) {
+            plazos.cancelar(t);
+            plazos.liberar(t);
+        }
+    }
+
+    private void plazoVencido(Paciente p, long tick) {
+        plazos.liberar(temporizadores.remove(p.getClave()));
+        if (p.isExcedido()) {
+            return; // ya estaba registrado como excedido antes de una reasignación
+        }
+        if (telemetria != null) telemetria.excedido();
+        long instante = Math.max(reloj, tick * resolucion);
+        p.registrarEvento(BitacoraEventos.EXCEDIDO, instante, p.getCategoria(), p.getCategoria(), 0);
+        // ATENCIÓN DE EMERGENCIA: Si un C1 excede su tiempo, se atiende INMEDIATAMENTE
+        // (lo decide la política). En modo estaciones también espera a un médico de su
+        // área (ya es el primero de la cola).
+        if (!modoEstaciones && hospital.getPolitica().atencionInmediata(p)) {
+            if (!silencioso) {
+                System.out.println("¡ALERTA! Paciente C1 (" + p.getId() + ") excediendo tiempo. Atención inmediata.");
             }
-            
-            minutoActual++;
+            registrarAtencion(p, instante);
+            hospital.eliminarDeCola(p);
+            p.registrarEvento(BitacoraEventos.ATENDIDO, instante, p.getCategoria(), p.getCategoria(), 0);
+        } else {
+            // REGISTRO DE EXCEDIDOS: Para C2-C5, solo se registran en la lista para el informe.
+            p.setExcedido(true);
+            cantidadExcedidos++;
+            if (cantidadPorInformar == porInformar.length) {
+                porInformar = Arrays.copyOf(porInformar, 2 * cantidadPorInformar);
+                instantesPorInformar = Arrays.copyOf(instantesPorInformar, 2 * cantidadPorInformar);
+            }
+            porInformar[cantidadPorInformar] = p;
+            instantesPorInformar[cantidadPorInformar++] = instante;
+            // En una red, el C1 que sigue sin médico en su área puede seguir en otro hospital
+            if (p.getCategoria() == 1 && derivacion != null && derivacion.derivar(p, instante, DERIVADO_POR_PLAZO)) {
+                hospital.eliminarDeCola(p);
+                trasladosEnviados[DERIVADO_POR_PLAZO]++;
+            }
+        }
+    }
+
+    private void programarSiguienteLlegada(long tiempo) {
+        if (pacientesIngresados >= pacientesPorIngresar || !colaPacientes.hasNext()) return;
+        if (intervaloLlegada > 0) {
+            if (tiempo < horizonte) {
+                calendario.programar(tiempo, CalendarioEventos.LLEGADA, colaPacientes.next());
+            }
+            return;
         }
+        // Llegada en el tiempo propio del paciente (nunca antes del reloj actual)
+        Paciente siguiente = colaPacientes.next();
+        long llegada = Math.max(siguiente.getTiempoLlegada(), reloj);
+        if (llegada < horizonte) {
+            calendario.programar(llegada, CalendarioEventos.LLEGADA, siguiente);
+        }
+    }
 
-        mostrarEstadisticas();
-        guardarTiemposAtencion("Simulaciones/tiempos_atencion.txt");
+    // Programa la atención en el siguiente múltiplo de la cadencia a partir de 'desde'
+    private void programarAtencion(long desde) {
+        long tiempo = (desde + intervaloAtencion - 1) / intervaloAtencion * intervaloAtencion;
+        if (tiempo < horizonte) {
+            calendario.programar(tiempo, CalendarioEventos.ATENCION, null);
+            atencionProgramada = true;
+        }
+    }
+
+    // Primera revisión (en ticks de la resolución de la simulación) en que la espera supera el máximo
+    private long tickRevisionPlazo(Paciente p) {
+        long limite = p.getTiempoLlegada() + tiempoMaximo(p.getCategoria());
+        return Math.floorDiv(limite, resolucion) + 1;
     }
 
     // Atiende al siguiente paciente de la cola principal.
     private void atenderPacientePrioritario(long tiempoActual) {
         Paciente pacienteAtendido = hospital.atenderSiguiente(tiempoActual);
         if (pacienteAtendido != null) {
-            registrarAtencion(pacienteAtendido, tiempoActual);
+            cancelarPlazo(pacienteAtendido);
+            long espera = registrarAtencion(pacienteAtendido, tiempoActual);
+            escribirFilaTiempos(pacienteAtendido, espera);
+        }
+    }
+
+    private void escribirFilaTiempos(Paciente p, long espera) {
+        if (escritorTiempos != null) {
+            try {
+                escritorTiempos.escribir(p, espera);
+            } catch (IOException e) {
+                System.err.println("Error al escribir resultados: " + e.getMessage());
+                cerrarEscritorTiempos();
+            }
         }
     }
     
     // Método de ayuda para no duplicar el código de registro de estadísticas.
-    private void registrarAtencion(Paciente p, long tiempoDeAtencion) {
+    private long registrarAtencion(Paciente p, long tiempoDeAtencion) {
         long espera = tiempoDeAtencion - p.getTiempoLlegada();
         if (espera < 0) espera = 0;
+        if (telemetria != null) telemetria.atencion();
 
         int cat = p.getCategoria();
-        cantidadPorCategoria.put(cat, cantidadPorCategoria.getOrDefault(cat, 0) + 1);
-        sumaTiemposEsperaPorCategoria.put(cat, sumaTiemposEsperaPorCategoria.getOrDefault(cat, 0L) + espera);
+        if (enRango(cat)) {
+            cantidadPorCategoria[cat]++;
+            sumaTiemposEsperaPorCategoria[cat] += espera;
+            estadisticasPorCategoria[cat].registrar(espera);
+        }
+        AreaAtencion area = hospital.obtenerArea(p.getArea());
+        if (area != null) {
+            area.registrarEspera(espera);
+        }
 
         p.setEstado("atendido");
         p.setTiempoAtencion(tiempoDeAtencion);
-        tiemposAtencion.put(p.getId(), espera);
+        return espera;
     }
 
     private void mostrarEstadisticas() {
         System.out.println("\n===== Estadísticas Finales de la Simulación =====");
         System.out.println("\n1. Total de Pacientes Atendidos por Categoría:");
         for (int cat = 1; cat <= 5; cat++) {
-            System.out.println("  - Categoría " + cat + ": " + cantidadPorCategoria.getOrDefault(cat, 0));
+            System.out.println("  - Categoría " + cat + ": " + cantidadPorCategoria[cat]);
         }
 
         System.out.println("\n2. Tiempo de Espera Promedio por Categoría:");
         for (int cat = 1; cat <= 5; cat++) {
-            int cantidad = cantidadPorCategoria.getOrDefault(cat, 0);
-            long suma = sumaTiemposEsperaPorCategoria.getOrDefault(cat, 0L);
+            int cantidad = cantidadPorCategoria[cat];
+            long suma = sumaTiemposEsperaPorCategoria[cat];
             double promedio = cantidad > 0 ? (double) suma / cantidad : 0;
             System.out.printf("  - Categoría %d: %.2f segundos (%.1f minutos)\n", cat, promedio, promedio / 60.0);
         }
 
         System.out.println("\n3. Pacientes que Excedieron el Tiempo Máximo de Espera (no C1):");
-        if (pacientesExcedidos.isEmpty()) {
+        if (cantidadExcedidos == 0) {
             System.out.println("  - Ningún paciente de categoría 2-5 excedió su tiempo máximo.");
+        } else if (archivoExcedidos != null) {
+            // Se releen desde disco en vez de haberlos guardado en memoria
+            try (BufferedReader lector = new BufferedReader(new FileReader(archivoExcedidos))) {
+                String linea;
+                while ((linea = lector.readLine()) != null) {
+                    System.out.print(linea + "\n");
+                }
+            } catch (IOException e) {
+                System.err.println("Error al leer los pacientes excedidos: " + e.getMessage());
+            }
+            archivoExcedidos.delete();
+            archivoExcedidos = null;
         } else {
             for (Paciente p : pacientesExcedidos) {
-                System.out.printf("  - ID: %s (%s %s), Cat: %d\n", p.getId(), p.getNombre(), p.getApellido(), p.getCategoria());
+                System.out.print(lineaExcedido(p));
             }
         }
     }
 
+    // 4. Cola de la distribución: la media esconde los pocos pacientes que esperan mucho.
+    // Se usa también para el informe combinado de las réplicas.
+    static void mostrarPercentiles(EstadisticaEspera[] porCategoria, Map<String, EstadisticaEspera> porArea) {
+        System.out.println("\n4. Percentiles del Tiempo de Espera (segundos):");
+        System.out.println("                         p50      p90      p99    p99.9      Máx");
+        for (int cat = 1; cat <= 5; cat++) {
+            filaPercentiles("Categoría " + cat, porCategoria[cat]);
+        }
+        for (Map.Entry<String, EstadisticaEspera> e : porArea.entrySet()) {
+            filaPercentiles("Área " + e.getKey(), e.getValue());
+        }
+    }
+
+    // 5. Estaciones: médicos, atenciones y utilización de cada área
+    private void mostrarEstaciones() {
+        System.out.println("\n5. Estaciones de Atención:");
+        List<AreaAtencion> areas = new ArrayList<>(hospital.getAreas());
+        areas.sort(Comparator.comparing(AreaAtencion::getNombre));
+        for (AreaAtencion area : areas) {
+            System.out.printf("  - %-16s %d médico(s), servicio %s: %d atendidos, %d en espera, utilización %.1f%%\n",
+                area.getNombre(), area.getMedicos(), area.getServicio(), area.getEstadisticaEspera().getCantidad(),
+                area.getCantidadPacientes(), 100 * area.getUtilizacion(horizonte));
+        }
+    }
+
+    // Solo si alguna área se saturó: redirigidos a otra área, diferidos y rechazados
+    private void mostrarAdmision() {
+        long aceptados = hospital.getAdmisiones(Hospital.ACEPTADO);
+        long redirigidos = hospital.getAdmisiones(Hospital.REDIRIGIDO);
+        long diferidos = hospital.getAdmisiones(Hospital.DIFERIDO);
+        long rechazados = hospital.getAdmisiones(Hospital.RECHAZADO);
+        if (redirigidos + diferidos + rechazados == 0) return;
+        System.out.println("\nControl de Admisión (áreas saturadas):");
+        System.out.println("  - Aceptados en su área: " + aceptados);
+        System.out.println("  - Redirigidos a un área compatible: " + redirigidos);
+        System.out.println("  - Diferidos al desborde: " + diferidos + " (admitidos después: "
+            + hospital.getAdmitidosDesdeDesborde() + ", aún esperando: " + hospital.getDiferidos()
+            + ", máximo a la vez: " + hospital.getMaximoDiferidos() + ")");
+        System.out.println("  - Rechazados con el desborde lleno: " + rechazados);
+    }
+
+    private static void filaPercentiles(String grupo, EstadisticaEspera e) {
+        System.out.printf("  - %-20s %7d  %7d  %7d  %7d  %7d\n", grupo,
+            e.percentil(50), e.percentil(90), e.percentil(99), e.percentil(99.9), e.getMaximo());
+    }
+
+    // Exporta los histogramas (categoría y área) para comparar corridas o combinarlas después
+    public void exportarHistogramas(String archivo) {
+        new java.io.File("Simulaciones").mkdirs();
+        Map<String, HistogramaLatencia> histogramas = new LinkedHashMap<>();
+        for (int cat = 1; cat <= 5; cat++) {
+            histogramas.put("categoria_" + cat, estadisticasPorCategoria[cat].getHistograma());
+        }
+        for (Map.Entry<String, EstadisticaEspera> e : getEstadisticasPorArea().entrySet()) {
+            histogramas.put("area_" + e.getKey(), e.getValue().getHistograma());
+        }
+        HistogramaLatencia.exportar(histogramas, archivo);
+    }
+
+    private static String lineaExcedido(Paciente p) {
+        return String.format("  - ID: %s (%s %s), Cat: %d\n", p.getId(), p.getNombre(), p.getApellido(), p.getCategoria());
+    }
+
+    private void abrirEscritores() {
+        try {
+            new java.io.File("Simulaciones").mkdirs();
+            escritorTiempos = new EscritorTiempos(archivoTiempos, formatoTiempos, escrituraAsincrona);
+            archivoExcedidos = File.createTempFile("excedidos", ".txt");
+            archivoExcedidos.deleteOnExit();
+            escritorExcedidos = new BufferedWriter(new FileWriter(archivoExcedidos));
+        } catch (IOException e) {
+            System.err.println("Error al abrir los archivos de la simulación: " + e.getMessage());
+        }
+    }
+
+    private void cerrarEscritores() {
+        cerrarEscritorTiempos();
+        try {
+            if (escritorExcedidos != null) escritorExcedidos.close();
+        } catch (IOException e) {
+            System.err.println("Error al cerrar los archivos de la simulación: " + e.getMessage());
+        }
+        escritorExcedidos = null;
+    }
+
+    private void cerrarEscritorTiempos() {
+        try {
+            if (escritorTiempos != null) escritorTiempos.close();
+        } catch (IOException e) {
+            System.err.println("Error al cerrar los archivos de la simulación: " + e.getMessage());
+        }
+        escritorTiempos = null;
+    }
+
+    private void escribir(BufferedWriter escritor, String linea) {
+        try {
+            escritor.write(linea);
+        } catch (IOException e) {
+            System.err.println("Error al escribir resultados: " + e.getMessage());
+        }
+    }
+
     public void guardarTiemposAtencion(String archivo) {
         new java.io.File("Simulaciones").mkdirs();
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(archivo))) {
-            writer.write("ID,Nombre,Apellido,Categoría,TiempoLlegada,TiempoEsperaSegundos\n");
+        try (EscritorTiempos writer = new EscritorTiempos(archivo, formatoTiempos, escrituraAsincrona)) {
             for (Paciente p : hospital.getPacientesAtendidos()) {
-                if(tiemposAtencion.containsKey(p.getId())) {
-                    long espera = tiemposAtencion.get(p.getId());
-                    writer.write(String.format("%s,%s,%s,%d,%d,%d\n",
-                        p.getId(), p.getNombre(), p.getApellido(), p.getCategoria(), p.getTiempoLlegada(), espera));
+                // La espera sale de la atención guardada en el paciente (ver registrarAtencion)
+                if (p.getTiempoAtencion() >= 0) {
+                    writer.escribir(p, Math.max(0, p.getTiempoAtencion() - p.getTiempoLlegada()));
                 }
             }
         } catch (IOException e) {
@@ -165,6 +855,45 @@ public class SimuladorUrgencia {
         }
     }
     
+    // Escalamiento con la dotación: el mismo día de pacientes (llegadas de Poisson con
+    // 'llegada' segundos entre pacientes en promedio) con 1, 2, ... médicos en cada área
+    private static void estudiarDotacion(String listaMedicos, DistribucionServicio servicio, long llegada, int pacientes) {
+        System.out.println("--- Escalamiento con la dotación: " + pacientes + " pacientes, uno cada " + llegada
+            + " s en promedio, servicio " + servicio + " ---");
+        System.out.println("Médicos/área  Atendidos  Espera media (s)      p90      p99  Utilización  En espera  Redirigidos  Diferidos  Rechazados");
+        for (String texto : listaMedicos.split(",")) {
+            int medicos = Integer.parseInt(texto.trim());
+            SplittableRandom rand = new SplittableRandom(2024);
+            List<Paciente> dia = new ArrayList<>(pacientes);
+            double tiempo = 0;
+            for (int i = 1; i <= pacientes; i++) {
+                tiempo += -llegada * Math.log(1.0 - rand.nextDouble());
+                dia.add(GeneradorPacientes.generarPaciente(rand, GeneradorPacientes.formatearId(i), (long) tiempo));
+            }
+            SimuladorUrgencia simulador = new SimuladorUrgencia(dia);
+            simulador.setSilencioso(true);
+            simulador.setIntervaloLlegada(0); // cada uno en su propio tiempo de llegada
+            for (AreaAtencion area : simulador.getAreas()) {
+                simulador.configurarArea(area.getNombre(), medicos, servicio);
+            }
+            simulador.simular(dia.size());
+
+            EstadisticaEspera total = new EstadisticaEspera();
+            double utilizacion = 0;
+            int enEspera = 0;
+            for (AreaAtencion area : simulador.getAreas()) {
+                total.combinar(area.getEstadisticaEspera());
+                utilizacion += area.getUtilizacion(HORIZONTE_DIA);
+                enEspera += area.getCantidadPacientes();
+            }
+            utilizacion /= simulador.getAreas().size();
+            System.out.printf("%12d  %9d  %16.1f  %7d  %7d  %10.1f%%  %9d  %11d  %9d  %10d\n", medicos,
+                total.getCantidad(), total.getMedia(), total.percentil(90), total.percentil(99), 100 * utilizacion,
+                enEspera, simulador.getAdmisiones(Hospital.REDIRIGIDO), simulador.getAdmisiones(Hospital.DIFERIDO),
+                simulador.getAdmisiones(Hospital.RECHAZADO));
+        }
+    }
+
     public static void main(String[] args) {
         boolean modoPromedio = false;
         if (args.length > 0 && args[0].equalsIgnoreCase("--average")) {
@@ -172,38 +901,100 @@ public class SimuladorUrgencia {
         }
 
         int numeroDePacientes = 400;
+        // Escritura de tiempos_atencion: --binario (tiempos_atencion.bin) y --asincrono (en otro hilo)
+        List<String> opciones = Arrays.asList(args);
+        boolean binario = opciones.contains("--binario");
+        boolean asincrono = opciones.contains("--asincrono");
 
         if (modoPromedio) {
-            System.out.println("--- Ejecutando prueba de promedios (15 simulaciones con " + numeroDePacientes + " pacientes) ---");
+            // Opciones: --replicas N, --hilos N, --semilla N (misma semilla = mismo resultado),
+            // --precision S (réplicas hasta semiancho del IC 95% <= S segundos), --poisson S (llegadas
+            // al azar cada S segundos en promedio), --antitetica (pares espejados; usa --poisson 600 si falta)
             int repeticiones = 15;
-            Map<Integer, Long> sumaTotalPorCategoria = new HashMap<>();
-            Map<Integer, Integer> cantidadTotalPorCategoria = new HashMap<>();
-
-            for (int i = 0; i < repeticiones; i++) {
-                System.out.printf("Iniciando simulación %d de %d...\n", i + 1, repeticiones);
-                List<Paciente> pacientes = GeneradorPacientes.generarPacientes(numeroDePacientes, 0);
-                SimuladorUrgencia simulador = new SimuladorUrgencia(pacientes);
-                simulador.simular(pacientes.size());
+            int hilos = Runtime.getRuntime().availableProcessors();
+            long semilla = System.nanoTime();
+            double precision = 0;
+            boolean antitetica = false;
+            long llegadaMedia = 0;
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equalsIgnoreCase("--antitetica")) antitetica = true;
+                else if (i + 1 >= args.length) break;
+                else if (args[i].equalsIgnoreCase("--replicas")) repeticiones = Integer.parseInt(args[++i]);
+                else if (args[i].equalsIgnoreCase("--hilos")) hilos = Integer.parseInt(args[++i]);
+                else if (args[i].equalsIgnoreCase("--semilla")) semilla = Long.parseLong(args[++i]);
+                else if (args[i].equalsIgnoreCase("--precision")) precision = Double.parseDouble(args[++i]);
+                else if (args[i].equalsIgnoreCase("--poisson")) llegadaMedia = Long.parseLong(args[++i]);
+            }
+            if (antitetica && llegadaMedia <= 0) llegadaMedia = 600;
 
+            if (precision > 0) {
+                System.out.println("--- Ejecutando réplicas hasta semiancho de " + precision + " s (" + numeroDePacientes + " pacientes) ---");
+                ReplicadorSimulaciones replicador = new ReplicadorSimulaciones(numeroDePacientes, semilla);
+                if (llegadaMedia > 0) replicador.setLlegadasPoisson(llegadaMedia);
+                ReplicadorSimulaciones.ResultadoSecuencial r =
+                    replicador.ejecutarHastaPrecision(precision, 0.95, 5, 10000, hilos, antitetica);
+                System.out.println("\n===== Espera media con IC 95% tras " + r.getReplicas() + " simulaciones =====");
                 for (int cat = 1; cat <= 5; cat++) {
-                    long suma = simulador.sumaTiemposEsperaPorCategoria.getOrDefault(cat, 0L);
-                    int cantidad = simulador.cantidadPorCategoria.getOrDefault(cat, 0);
-                    sumaTotalPorCategoria.put(cat, sumaTotalPorCategoria.getOrDefault(cat, 0L) + suma);
-                    cantidadTotalPorCategoria.put(cat, cantidadTotalPorCategoria.getOrDefault(cat, 0) + cantidad);
+                    System.out.printf("  - Categoría %d: %.2f ± %.2f segundos\n", cat, r.getMedia(cat), r.getSemiancho(cat));
                 }
+                System.out.printf("Objetivo %s, tiempo de CPU: %.1f ms (incluye %d réplicas descartadas del último lote)\n",
+                    r.isAlcanzado() ? "alcanzado" : "NO alcanzado", r.getTiempoCpuNanos() / 1e6, r.getDescartadas());
+                return;
             }
+            System.out.println("--- Ejecutando prueba de promedios (" + repeticiones + " simulaciones con " + numeroDePacientes + " pacientes) ---");
+            System.out.println("Semilla: " + semilla + ", hilos: " + hilos);
+
+            long inicio = System.nanoTime();
+            ReplicadorSimulaciones replicador = new ReplicadorSimulaciones(numeroDePacientes, semilla);
+            if (llegadaMedia > 0) replicador.setLlegadasPoisson(llegadaMedia);
+            ReplicadorSimulaciones.Resultado resultado = replicador.ejecutar(repeticiones, hilos);
+            double segundos = (System.nanoTime() - inicio) / 1e9;
 
             System.out.println("\n===== Promedio de espera final en " + repeticiones + " simulaciones =====");
             for (int cat = 1; cat <= 5; cat++) {
-                int cantidadTotal = cantidadTotalPorCategoria.getOrDefault(cat, 0);
-                long sumaTotal = sumaTotalPorCategoria.getOrDefault(cat, 0L);
-                double promedio = cantidadTotal > 0 ? (double) sumaTotal / cantidadTotal : 0;
+                double promedio = resultado.getPromedioEspera(cat);
                 System.out.printf("  - Categoría %d: %.2f segundos (aprox. %.1f minutos)\n", cat, promedio, promedio / 60.0);
             }
+            EstadisticaEspera[] porCategoria = new EstadisticaEspera[6];
+            for (int cat = 1; cat <= 5; cat++) {
+                porCategoria[cat] = resultado.getEstadistica(cat);
+            }
+            mostrarPercentiles(porCategoria, resultado.getEstadisticasPorArea());
+            System.out.printf("Tiempo total: %.3f s (%.1f simulaciones/s)\n", segundos, repeticiones / segundos);
+        } else if (args.length > 1 && args[0].equalsIgnoreCase("--medicos")) {
+            // Opciones: --servicio DIST (const:S, exp:MEDIA, lognormal:MEDIA:CV), --llegada S, --pacientes N
+            DistribucionServicio servicio = DistribucionServicio.exponencial(30 * 60);
+            long llegada = 2 * 60;
+            int pacientes = 0;
+            for (int i = 2; i + 1 < args.length; i += 2) {
+                if (args[i].equalsIgnoreCase("--servicio")) servicio = DistribucionServicio.parsear(args[i + 1]);
+                else if (args[i].equalsIgnoreCase("--llegada")) llegada = Long.parseLong(args[i + 1]);
+                else if (args[i].equalsIgnoreCase("--pacientes")) pacientes = Integer.parseInt(args[i + 1]);
+            }
+            if (pacientes <= 0) pacientes = (int) (HORIZONTE_DIA / llegada); // los que alcanzan a llegar en 24h
+            estudiarDotacion(args[1], servicio, llegada, pacientes);
+        } else if (args.length > 1 && args[0].equalsIgnoreCase("--archivo")) {
+            // Repite un escenario guardado: CSV de GeneradorPacientes o traza binaria (.trz)
+            String archivo = args[1];
+            System.out.println("--- Ejecutando análisis de una simulación de 24h con los pacientes de " + archivo + " ---");
+            try {
+                Iterator<Paciente> llegadas = archivo.endsWith(".trz")
+                    ? TrazaPacientes.leer(archivo)
+                    : new LectorPacientesCsv(archivo);
+                SimuladorUrgencia simulador = new SimuladorUrgencia(llegadas);
+                if (binario) simulador.setFormatoTiempos(EscritorTiempos.BINARIO);
+                simulador.setEscrituraAsincrona(asincrono);
+                simulador.simular(Integer.MAX_VALUE);
+                ((Closeable) llegadas).close();
+            } catch (IOException e) {
+                System.err.println("Error al leer los pacientes: " + e.getMessage());
+            }
         } else {
             System.out.println("--- Ejecutando análisis de una simulación de 24h con " + numeroDePacientes + " pacientes ---");
             List<Paciente> pacientesDelDia = GeneradorPacientes.generarPacientes(numeroDePacientes, 0);
             SimuladorUrgencia simulador = new SimuladorUrgencia(pacientesDelDia);
+            if (binario) simulador.setFormatoTiempos(EscritorTiempos.BINARIO);
+            simulador.setEscrituraAsincrona(asincrono);
             simulador.simular(pacientesDelDia.size());
         }
     }
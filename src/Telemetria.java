@@ -0,0 +1,482 @@
+package src;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import jdk.jfr.*;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+// Telemetría de una simulación, activada con SimuladorUrgencia.setTelemetria:
+//
+//  - Contadores por intervalo de tiempo simulado (llegadas, atendidos, plazos
+//    excedidos, rechazados y la mayor cantidad en espera) y medidores de la cola
+//    por categoría y por área al cierre de cada intervalo. Las muestras van a un
+//    búfer circular de tamaño fijo en columnas de arreglos primitivos: se guardan
+//    las últimas 'capacidad' y la memoria no crece con el horizonte.
+//  - Latencia real (en ns) de cada ingreso, atención y reasignación del hospital,
+//    en histogramas propios y como eventos de JFR (src.Ingreso, src.Atencion,
+//    src.Reasignacion) cuando una grabación los tiene habilitados.
+//
+// Sin telemetría cada operación cuesta una comparación con null. Con ella, dos
+// lecturas de System.nanoTime, un registro en el histograma y unos incrementos;
+// el evento de JFR solo se crea si una grabación lo tiene habilitado, así que sin
+// grabar no se reserva memoria (0 B/op en BenchmarkColas, caso "telemetría").
+// No es gratis: en la medición de main el costo por evento del simulador sube
+// entre 20% y 90% según la máquina, y entre 95% y 180% con JFR grabando, porque
+// un evento del simulador cuesta poco más que esas lecturas del reloj. Conviene
+// activarla para diagnosticar, no en barridos largos.
+//
+//   java -XX:StartFlightRecording=filename=s.jfr,settings=profile ...
+// o con una grabación abierta desde el programa (ver main) los eventos quedan en
+// la categoría "Simulador de urgencias" de JDK Mission Control.
+public class Telemetria {
+    public static final long INTERVALO_POR_DEFECTO = 15 * 60;
+    public static final int CAPACIDAD_POR_DEFECTO = 4 * 24 * 31; // un mes de intervalos de 15 min
+
+    private static final String[] RESULTADOS = {"aceptado", "redirigido", "diferido", "rechazado"};
+
+    private final long intervalo;
+    private final int capacidad;
+
+    // Búfer circular: la muestra k (desde comenzar) está en la posición k % capacidad
+    private final long[] inicios;
+    private final int[] llegadas;
+    private final int[] atendidos;
+    private final int[] excedidos;
+    private final int[] rechazados;
+    private final int[] maximoEnEspera;
+    private final int[] enEsperaPorCategoria; // capacidad × MAX_CATEGORIA
+    private int[] enEsperaPorArea = new int[0]; // capacidad × áreas
+    private AreaAtencion[] areas = new AreaAtencion[0];
+    private long muestras = 0;
+
+    // Intervalo en curso
+    private long inicioIntervalo = 0;
+    private int llegadasActual;
+    private int atendidosActual;
+    private int excedidosActual;
+    private int rechazadosActual;
+    private int maximoActual;
+
+    private final HistogramaLatencia latenciaIngreso = new HistogramaLatencia();
+    private final HistogramaLatencia latenciaAtencion = new HistogramaLatencia();
+    private final HistogramaLatencia latenciaReasignacion = new HistogramaLatencia();
+
+    @Name("src.Ingreso")
+    @Label("Ingreso a la cola")
+    @Category({"Simulador de urgencias", "Colas"})
+    @StackTrace(false)
+    static class EventoIngreso extends Event {
+        @Label("Categoría")
+        int categoria;
+        @Label("Área")
+        String area;
+        @Label("Resultado")
+        String resultado;
+        @Label("Latencia")
+        @Timespan(Timespan.NANOSECONDS)
+        long latencia;
+        @Label("En cola")
+        int profundidad;
+    }
+
+    @Name("src.Atencion")
+    @Label("Salida de la cola a atención")
+    @Category({"Simulador de urgencias", "Colas"})
+    @StackTrace(false)
+    static class EventoAtencion extends Event {
+        @Label("Categoría")
+        int categoria;
+        @Label("Área")
+        String area;
+        @Label("Latencia")
+        @Timespan(Timespan.NANOSECONDS)
+        long latencia;
+        @Label("En cola")
+        int profundidad;
+    }
+
+    @Name("src.Reasignacion")
+    @Label("Reasignación de categoría")
+    @Category({"Simulador de urgencias", "Colas"})
+    @StackTrace(false)
+    static class EventoReasignacion extends Event {
+        @Label("Categoría anterior")
+        int anterior;
+        @Label("Categoría nueva")
+        int nueva;
+        @Label("Latencia")
+        @Timespan(Timespan.NANOSECONDS)
+        long latencia;
+        @Label("En cola")
+        int profundidad;
+    }
+
+    // Se consultan antes de crear el evento: sin una grabación que lo habilite no se reserva nada
+    private static final EventType TIPO_INGRESO = EventType.getEventType(EventoIngreso.class);
+    private static final EventType TIPO_ATENCION = EventType.getEventType(EventoAtencion.class);
+    private static final EventType TIPO_REASIGNACION = EventType.getEventType(EventoReasignacion.class);
+
+    public Telemetria() {
+        this(INTERVALO_POR_DEFECTO, CAPACIDAD_POR_DEFECTO);
+    }
+
+    // Una muestra cada 'intervalo' segundos simulados; se guardan las últimas 'capacidad'
+    public Telemetria(long intervalo, int capacidad) {
+        if (intervalo <= 0 || capacidad <= 0) {
+            throw new IllegalArgumentException("Intervalo y capacidad deben ser positivos: " + intervalo + ", " + capacidad);
+        }
+        this.intervalo = intervalo;
+        this.capacidad = capacidad;
+        inicios = new long[capacidad];
+        llegadas = new int[capacidad];
+        atendidos = new int[capacidad];
+        excedidos = new int[capacidad];
+        rechazados = new int[capacidad];
+        maximoEnEspera = new int[capacidad];
+        enEsperaPorCategoria = new int[capacidad * ColaEnvejecimiento.MAX_CATEGORIA];
+    }
+
+    // Empieza una serie nueva en 'tiempo'; las áreas que se creen después no se miden
+    void comenzar(long tiempo, Collection<AreaAtencion> areasHospital) {
+        muestras = 0;
+        inicioIntervalo = Math.floorDiv(tiempo, intervalo) * intervalo;
+        llegadasActual = 0;
+        atendidosActual = 0;
+        excedidosActual = 0;
+        rechazadosActual = 0;
+        maximoActual = 0;
+        latenciaIngreso.reiniciar();
+        latenciaAtencion.reiniciar();
+        latenciaReasignacion.reiniciar();
+        areas = areasHospital.toArray(new AreaAtencion[0]);
+        Arrays.sort(areas, Comparator.comparing(AreaAtencion::getNombre));
+        if (enEsperaPorArea.length != capacidad * areas.length) {
+            enEsperaPorArea = new int[capacidad * areas.length];
+        }
+    }
+
+    // Fin (exclusivo) del intervalo en curso
+    long getFinIntervalo() {
+        return inicioIntervalo + intervalo;
+    }
+
+    // Cierra el intervalo en curso con los medidores del hospital en ese instante
+    void cerrarIntervalo(Hospital hospital) {
+        int k = (int) (muestras % capacidad);
+        inicios[k] = inicioIntervalo;
+        llegadas[k] = llegadasActual;
+        atendidos[k] = atendidosActual;
+        excedidos[k] = excedidosActual;
+        rechazados[k] = rechazadosActual;
+        int enEspera = hospital.getColaAtencion().size() + hospital.getDiferidos();
+        maximoEnEspera[k] = Math.max(maximoActual, enEspera);
+        for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) {
+            enEsperaPorCategoria[k * ColaEnvejecimiento.MAX_CATEGORIA + cat - 1] = hospital.contarPorCategoria(cat);
+        }
+        for (int a = 0; a < areas.length; a++) {
+            enEsperaPorArea[k * areas.length + a] = areas[a].getCantidadPacientes();
+        }
+        muestras++;
+        inicioIntervalo += intervalo;
+        llegadasActual = 0;
+        atendidosActual = 0;
+        excedidosActual = 0;
+        rechazadosActual = 0;
+        maximoActual = enEspera;
+    }
+
+    // Contadores del intervalo en curso
+
+    void admision(int resultado, int enEspera) {
+        llegadasActual++;
+        if (resultado == Hospital.RECHAZADO) rechazadosActual++;
+        if (enEspera > maximoActual) maximoActual = enEspera;
+    }
+
+    void atencion() {
+        atendidosActual++;
+    }
+
+    void excedido() {
+        excedidosActual++;
+    }
+
+    // Latencias del hospital
+
+    void medirIngreso(Paciente p, int resultado, long nanos, int profundidad) {
+        latenciaIngreso.registrar(nanos);
+        if (TIPO_INGRESO.isEnabled()) {
+            EventoIngreso evento = new EventoIngreso();
+            evento.categoria = p.getCategoria();
+            evento.area = p.getArea();
+            evento.resultado = RESULTADOS[resultado];
+            evento.latencia = nanos;
+            evento.profundidad = profundidad;
+            evento.commit();
+        }
+    }
+
+    void medirAtencion(Paciente p, long nanos, int profundidad) {
+        latenciaAtencion.registrar(nanos);
+        if (TIPO_ATENCION.isEnabled()) {
+            EventoAtencion evento = new EventoAtencion();
+            evento.categoria = p.getCategoria();
+            evento.area = p.getArea();
+            evento.latencia = nanos;
+            evento.profundidad = profundidad;
+            evento.commit();
+        }
+    }
+
+    void medirReasignacion(Paciente p, int anterior, long nanos, int profundidad) {
+        latenciaReasignacion.registrar(nanos);
+        if (TIPO_REASIGNACION.isEnabled()) {
+            EventoReasignacion evento = new EventoReasignacion();
+            evento.anterior = anterior;
+            evento.nueva = p.getCategoria();
+            evento.latencia = nanos;
+            evento.profundidad = profundidad;
+            evento.commit();
+        }
+    }
+
+    // Consultas: la muestra 0 es la más antigua que sigue en el búfer
+
+    public long getIntervalo() {
+        return intervalo;
+    }
+
+    public int getMuestras() {
+        return (int) Math.min(muestras, capacidad);
+    }
+
+    private int posicion(int i) {
+        if (i < 0 || i >= getMuestras()) throw new IndexOutOfBoundsException("Muestra " + i + " de " + getMuestras());
+        return (int) ((muestras - getMuestras() + i) % capacidad);
+    }
+
+    public long getInicio(int i) {
+        return inicios[posicion(i)];
+    }
+
+    public int getLlegadas(int i) {
+        return llegadas[posicion(i)];
+    }
+
+    public int getAtendidos(int i) {
+        return atendidos[posicion(i)];
+    }
+
+    public int getExcedidos(int i) {
+        return excedidos[posicion(i)];
+    }
+
+    public int getRechazados(int i) {
+        return rechazados[posicion(i)];
+    }
+
+    // La mayor cantidad en espera (cola y desbordes) durante el intervalo
+    public int getMaximoEnEspera(int i) {
+        return maximoEnEspera[posicion(i)];
+    }
+
+    // En cola al cierre del intervalo
+    public int getEnEspera(int i, int categoria) {
+        return enEsperaPorCategoria[posicion(i) * ColaEnvejecimiento.MAX_CATEGORIA + categoria - 1];
+    }
+
+    public int getEnArea(int i, int area) {
+        return enEsperaPorArea[posicion(i) * areas.length + area];
+    }
+
+    public List<String> getNombresAreas() {
+        List<String> nombres = new ArrayList<>();
+        for (AreaAtencion area : areas) nombres.add(area.getNombre());
+        return nombres;
+    }
+
+    public HistogramaLatencia getLatenciaIngreso() {
+        return latenciaIngreso;
+    }
+
+    public HistogramaLatencia getLatenciaAtencion() {
+        return latenciaAtencion;
+    }
+
+    public HistogramaLatencia getLatenciaReasignacion() {
+        return latenciaReasignacion;
+    }
+
+    // Serie como CSV: una fila por intervalo
+    public void exportar(String archivo) {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(archivo))) {
+            writer.write("Inicio,Llegadas,Atendidos,Excedidos,Rechazados,MaximoEnEspera");
+            for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) writer.write(",C" + cat);
+            for (AreaAtencion area : areas) writer.write("," + area.getNombre());
+            writer.write("\n");
+            StringBuilder fila = new StringBuilder();
+            for (int i = 0; i < getMuestras(); i++) {
+                fila.setLength(0);
+                fila.append(getInicio(i)).append(',').append(getLlegadas(i)).append(',').append(getAtendidos(i))
+                    .append(',').append(getExcedidos(i)).append(',').append(getRechazados(i))
+                    .append(',').append(getMaximoEnEspera(i));
+                for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) fila.append(',').append(getEnEspera(i, cat));
+                for (int a = 0; a < areas.length; a++) fila.append(',').append(getEnArea(i, a));
+                writer.write(fila.append('\n').toString());
+            }
+        } catch (IOException e) {
+            System.err.println("Error al exportar la telemetría: " + e.getMessage());
+        }
+    }
+
+    public void mostrarLatencias() {
+        System.out.println("Operación         Cantidad   p50 (ns)   p99 (ns)  p99.9 (ns)   Máx (ns)");
+        mostrarLatencia("ingreso", latenciaIngreso);
+        mostrarLatencia("atención", latenciaAtencion);
+        mostrarLatencia("reasignación", latenciaReasignacion);
+    }
+
+    private static void mostrarLatencia(String nombre, HistogramaLatencia h) {
+        System.out.printf("%-14s %11d %10d %10d %11d %10d\n", nombre, h.getTotal(), h.percentil(50), h.percentil(99),
+            h.percentil(99.9), h.getMaximo());
+    }
+
+    // Prueba de funcionamiento: una semana con llegadas por hora del día. Comprueba
+    // que medir no cambia la simulación, muestra cuándo se forma la cola y las
+    // latencias, lee de vuelta los eventos de una grabación JFR y mide el costo de
+    // la telemetría por evento del simulador.
+    //   java -cp bin src.Telemetria [días]
+    public static void main(String[] args) throws Exception {
+        long dias = args.length > 0 ? Long.parseLong(args[0]) : 7;
+        long horizonte = dias * SimuladorUrgencia.HORIZONTE_DIA;
+        new File("Simulaciones").mkdirs();
+
+        SimuladorUrgencia sin = escenario(horizonte, null);
+        correr(sin, horizonte);
+        Telemetria telemetria = new Telemetria();
+        SimuladorUrgencia con = escenario(horizonte, telemetria);
+        correr(con, horizonte);
+        System.out.println("Mismo resultado con y sin telemetría: " + firma(sin).equals(firma(con)));
+
+        // Cuándo se forma la cola: promedio por hora del día de la mayor espera en cada intervalo
+        double[] suma = new double[24];
+        int[] cuenta = new int[24];
+        int pico = 0;
+        for (int i = 0; i < telemetria.getMuestras(); i++) {
+            int hora = (int) (telemetria.getInicio(i) / 3600 % 24);
+            suma[hora] += telemetria.getMaximoEnEspera(i);
+            cuenta[hora]++;
+            if (telemetria.getMaximoEnEspera(i) > telemetria.getMaximoEnEspera(pico)) pico = i;
+        }
+        System.out.println("\nEn espera (máximo por intervalo de " + telemetria.getIntervalo() / 60 + " min, promedio por hora):");
+        for (int h = 0; h < 24; h++) {
+            double promedio = cuenta[h] > 0 ? suma[h] / cuenta[h] : 0;
+            System.out.printf("  %02d:00 %6.1f %s\n", h, promedio, "#".repeat((int) Math.round(promedio / 2)));
+        }
+        System.out.printf("Pico: %d en espera el día %d a las %02d:%02d (C1..C5 al cierre:",
+            telemetria.getMaximoEnEspera(pico), telemetria.getInicio(pico) / SimuladorUrgencia.HORIZONTE_DIA,
+            telemetria.getInicio(pico) / 3600 % 24, telemetria.getInicio(pico) / 60 % 60);
+        for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) {
+            System.out.print(" " + telemetria.getEnEspera(pico, cat));
+        }
+        System.out.println(")");
+        telemetria.exportar("Simulaciones/telemetria.csv");
+        System.out.println("Serie exportada a Simulaciones/telemetria.csv (" + telemetria.getMuestras() + " intervalos)\n");
+        telemetria.mostrarLatencias();
+
+        // Los mismos eventos en una grabación JFR, leída de vuelta
+        Path archivoJfr = Paths.get("Simulaciones/telemetria.jfr");
+        try (Recording grabacion = new Recording()) {
+            grabacion.enable(EventoIngreso.class);
+            grabacion.enable(EventoAtencion.class);
+            grabacion.enable(EventoReasignacion.class);
+            grabacion.start();
+            correr(escenario(horizonte, new Telemetria()), horizonte);
+            grabacion.stop();
+            grabacion.dump(archivoJfr);
+        }
+        Map<String, long[]> porTipo = new TreeMap<>();
+        for (RecordedEvent evento : RecordingFile.readAllEvents(archivoJfr)) {
+            long[] c = porTipo.computeIfAbsent(evento.getEventType().getName(), k -> new long[2]);
+            c[0]++;
+            c[1] = Math.max(c[1], evento.getLong("latencia"));
+        }
+        System.out.println("\nEventos JFR en " + archivoJfr + ":");
+        porTipo.forEach((tipo, c) -> System.out.printf("  %-18s %8d (latencia máxima %d ns)\n", tipo, c[0], c[1]));
+
+        // Costo por evento del simulador: sin telemetría, con ella y con JFR grabando
+        // (sobre 60 días, para que el JIT ya haya compilado el simulador)
+        long horizonteMedicion = 60 * SimuladorUrgencia.HORIZONTE_DIA;
+        System.out.println("\nCosto por evento del simulador (60 días, mejor de 5 corridas, ns):");
+        String[] modos = {"sin telemetría", "con telemetría", "con telemetría y JFR"};
+        double[] mejores = new double[modos.length];
+        Arrays.fill(mejores, Double.MAX_VALUE);
+        for (int ronda = 0; ronda < 5; ronda++) {
+            for (int modo = 0; modo < modos.length; modo++) {
+                Recording grabacion = null;
+                if (modo == 2) {
+                    grabacion = new Recording();
+                    grabacion.enable(EventoIngreso.class);
+                    grabacion.enable(EventoAtencion.class);
+                    grabacion.enable(EventoReasignacion.class);
+                    grabacion.setToDisk(false);
+                    grabacion.start();
+                }
+                SimuladorUrgencia s = escenario(horizonteMedicion, modo == 0 ? null : new Telemetria());
+                long inicio = System.nanoTime();
+                correr(s, horizonteMedicion);
+                double porEvento = (double) (System.nanoTime() - inicio) / s.getEventosProcesados();
+                mejores[modo] = Math.min(mejores[modo], porEvento);
+                if (grabacion != null) grabacion.close();
+            }
+        }
+        for (int modo = 0; modo < modos.length; modo++) {
+            System.out.printf("  %-22s %7.1f  (%+.1f%%)\n", modos[modo], mejores[modo],
+                100 * (mejores[modo] / mejores[0] - 1));
+        }
+    }
+
+    // Tres áreas con tres médicos cada una y un perfil horario con punta al mediodía y en la tarde
+    private static SimuladorUrgencia escenario(long horizonte, Telemetria telemetria) {
+        double[] perfil = {
+            6, 4, 4, 2, 2, 4, 6, 10, 16, 20, 22, 22,
+            20, 18, 18, 18, 20, 22, 24, 22, 18, 14, 10, 8
+        };
+        SimuladorUrgencia s = new SimuladorUrgencia(
+            FlujoPacientes.porHoraDelDia(new SplittableRandom(7), 0, perfil, Long.MAX_VALUE, horizonte));
+        s.setSilencioso(true);
+        s.setMemoriaAcotada(true);
+        s.setIntervaloLlegada(0);
+        for (String area : new String[] {"urgencia_adulto", "infantil", "sapu"}) {
+            s.configurarArea(area, 3, DistribucionServicio.exponencial(1500));
+        }
+        s.setTelemetria(telemetria);
+        return s;
+    }
+
+    // Cada hora se recategoriza a un C3 de la cola como C2, como haría un re-triage
+    private static void correr(SimuladorUrgencia s, long horizonte) {
+        s.iniciar(Integer.MAX_VALUE, horizonte);
+        for (long t = 3600; t <= horizonte; t += 3600) {
+            s.avanzarHasta(t);
+            for (Paciente p : s.getHospital().getColaAtencion()) {
+                if (p.getCategoria() == 3) {
+                    s.reasignarCategoria(p.getId(), 2);
+                    break;
+                }
+            }
+        }
+    }
+
+    private static String firma(SimuladorUrgencia s) {
+        StringBuilder firma = new StringBuilder();
+        firma.append(s.getEventosProcesados()).append(' ').append(s.getCantidadExcedidos()).append(' ')
+            .append(s.getCantidadEnEspera());
+        for (int cat = 1; cat <= ColaEnvejecimiento.MAX_CATEGORIA; cat++) {
+            firma.append(' ').append(s.getCantidadAtendidos(cat)).append('/').append(s.getSumaTiemposEspera(cat));
+        }
+        return firma.toString();
+    }
+}
@@ -0,0 +1,337 @@
+package src;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Formato binario por columnas para trazas de llegadas grandes (extensión .trz).
+// El archivo es una cabecera y una serie de bloques de hasta BLOQUE pacientes.
+// Cada bloque declara primero los textos nuevos que usa y luego trae sus
+// columnas completas, así que se puede escribir y leer en streaming:
+//
+//   cabecera: "TRZ2" (int)
+//   bloque:   int cantidad (0 = fin)
+//             declaraciones de nombres, apellidos y áreas: int n, luego n × (int código, texto)
+//             ids fuera del formato P%04d: int n, luego n × texto (la clave -(k+1) es el k-ésimo)
+//             long[cantidad] llegada, int[cantidad] clave, int[cantidad] nombre,
+//             int[cantidad] apellido, byte[cantidad] categoría, short[cantidad] área
+//   texto:    int largo + bytes UTF-8
+//
+// Las trazas "TRZ1" (área en un byte) se siguen pudiendo leer.
+// Todo en little endian. Los códigos de texto son los del proceso que escribió
+// la traza; al leer se traducen a los diccionarios del proceso actual.
+public class TrazaPacientes implements Iterator<Paciente>, Closeable {
+    private static final int MAGICO = 0x325A5254; // "TRZ2" en little endian
+    private static final int MAGICO_V1 = 0x315A5254; // "TRZ1": área en un byte
+    private static final int BLOQUE = 1 << 16;
+
+    private final FileChannel canal;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+    private boolean cerrado = false;
+    private boolean areaEnByte = false;
+
+    // Traducción de los códigos de la traza a los de AlmacenPacientes
+    private int[] nombres = new int[64];
+    private int[] apellidos = new int[64];
+    private int[] areas = new int[64];
+
+    // Columnas del bloque actual
+    private final long[] llegada = new long[BLOQUE];
+    private final int[] clave = new int[BLOQUE];
+    private final int[] nombre = new int[BLOQUE];
+    private final int[] apellido = new int[BLOQUE];
+    private final byte[] categoria = new byte[BLOQUE];
+    private final short[] area = new short[BLOQUE];
+    private final byte[] areaV1 = new byte[BLOQUE];
+    private String[] idsTexto = new String[0];
+    private int cantidad = 0;
+    private int siguiente = 0;
+
+    private TrazaPacientes(FileChannel canal) {
+        this.canal = canal;
+        buffer.limit(0); // vacío: se llena al primer asegurar
+    }
+
+    public static TrazaPacientes leer(String archivo) throws IOException {
+        TrazaPacientes traza = new TrazaPacientes(FileChannel.open(Paths.get(archivo), StandardOpenOption.READ));
+        traza.asegurar(4);
+        int magico = traza.buffer.getInt();
+        if (magico != MAGICO && magico != MAGICO_V1) {
+            traza.close();
+            throw new IOException("No es una traza de pacientes: " + archivo);
+        }
+        traza.areaEnByte = magico == MAGICO_V1;
+        return traza;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (siguiente < cantidad) return true;
+        if (cerrado) return false;
+        try {
+            leerBloque();
+            if (cantidad == 0) close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return siguiente < cantidad;
+    }
+
+    @Override
+    public Paciente next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        int i = siguiente++;
+        int c = clave[i];
+        int a = areas[areaEnByte ? areaV1[i] & 0xFF : area[i] & 0xFFFF];
+        if (c >= 0) {
+            return new Paciente(c, nombres[nombre[i]], apellidos[apellido[i]], categoria[i], llegada[i], a);
+        }
+        return new Paciente(idsTexto[-c - 1], nombres[nombre[i]], apellidos[apellido[i]], categoria[i], llegada[i], a);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!cerrado) {
+            cerrado = true;
+            canal.close();
+        }
+    }
+
+    private void leerBloque() throws IOException {
+        siguiente = 0;
+        cantidad = 0;
+        asegurar(4);
+        int n = buffer.getInt();
+        if (n == 0) return;
+        if (n < 0 || n > BLOQUE) throw new IOException("Bloque inválido en la traza: " + n);
+        nombres = leerDeclaraciones(nombres, AlmacenPacientes.NOMBRES);
+        apellidos = leerDeclaraciones(apellidos, AlmacenPacientes.APELLIDOS);
+        areas = leerDeclaraciones(areas, AlmacenPacientes.AREAS);
+        asegurar(4);
+        int textos = buffer.getInt();
+        idsTexto = new String[textos];
+        for (int k = 0; k < textos; k++) {
+            idsTexto[k] = leerTexto();
+        }
+
+        asegurar(n * 8);
+        buffer.asLongBuffer().get(llegada, 0, n);
+        buffer.position(buffer.position() + n * 8);
+        asegurar(n * 12);
+        buffer.asIntBuffer().get(clave, 0, n);
+        buffer.position(buffer.position() + n * 4);
+        buffer.asIntBuffer().get(nombre, 0, n);
+        buffer.position(buffer.position() + n * 4);
+        buffer.asIntBuffer().get(apellido, 0, n);
+        buffer.position(buffer.position() + n * 4);
+        asegurar(n * (areaEnByte ? 2 : 3));
+        buffer.get(categoria, 0, n);
+        if (areaEnByte) {
+            buffer.get(areaV1, 0, n);
+        } else {
+            buffer.asShortBuffer().get(area, 0, n);
+            buffer.position(buffer.position() + n * 2);
+        }
+        cantidad = n;
+    }
+
+    private int[] leerDeclaraciones(int[] traduccion, DiccionarioCadenas diccionario) throws IOException {
+        asegurar(4);
+        int n = buffer.getInt();
+        for (int k = 0; k < n; k++) {
+            asegurar(4);
+            int codigo = buffer.getInt();
+            if (codigo >= traduccion.length) {
+                traduccion = Arrays.copyOf(traduccion, Math.max(codigo + 1, traduccion.length * 2));
+            }
+            traduccion[codigo] = diccionario.codigo(leerTexto());
+        }
+        return traduccion;
+    }
+
+    private String leerTexto() throws IOException {
+        asegurar(4);
+        int largo = buffer.getInt();
+        if (largo < 0) return null;
+        asegurar(largo);
+        byte[] bytes = new byte[largo];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Deja al menos 'bytes' bytes sin leer en el buffer, leyendo más del archivo si hace falta
+    private void asegurar(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) return;
+        if (bytes > buffer.capacity()) {
+            ByteBuffer mayor = ByteBuffer.allocateDirect(Integer.highestOneBit(bytes) << 1).order(ByteOrder.LITTLE_ENDIAN);
+            mayor.put(buffer);
+            buffer = mayor;
+        } else {
+            buffer.compact();
+        }
+        while (buffer.position() < bytes) {
+            if (canal.read(buffer) < 0) throw new EOFException("La traza terminó antes de tiempo");
+        }
+        buffer.flip();
+    }
+
+    // Escribe la traza completa a partir de un flujo de pacientes, de a un bloque
+    public static void escribir(Iterator<Paciente> pacientes, String archivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(Paths.get(archivo),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            new Escritor(canal).escribir(pacientes);
+        }
+    }
+
+    private static final class Escritor {
+        private final FileChannel canal;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        private final BitSet nombresDeclarados = new BitSet();
+        private final BitSet apellidosDeclarados = new BitSet();
+        private final BitSet areasDeclaradas = new BitSet();
+
+        private final long[] llegada = new long[BLOQUE];
+        private final int[] clave = new int[BLOQUE];
+        private final int[] nombre = new int[BLOQUE];
+        private final int[] apellido = new int[BLOQUE];
+        private final byte[] categoria = new byte[BLOQUE];
+        private final short[] area = new short[BLOQUE];
+        private final List<String> idsTexto = new ArrayList<>();
+        private final IntLista nuevosNombres = new IntLista();
+        private final IntLista nuevosApellidos = new IntLista();
+        private final IntLista nuevasAreas = new IntLista();
+        private int cantidad = 0;
+
+        Escritor(FileChannel canal) {
+            this.canal = canal;
+        }
+
+        void escribir(Iterator<Paciente> pacientes) throws IOException {
+            reservar(4);
+            buffer.putInt(MAGICO);
+            while (pacientes.hasNext()) {
+                Paciente p = pacientes.next();
+                int i = cantidad++;
+                llegada[i] = p.getTiempoLlegada();
+                int c = p.getClave();
+                if (c < 0) {
+                    idsTexto.add(p.getId());
+                    c = -idsTexto.size();
+                }
+                clave[i] = c;
+                nombre[i] = declarar(p.getCodigoNombre(), nombresDeclarados, nuevosNombres);
+                apellido[i] = declarar(p.getCodigoApellido(), apellidosDeclarados, nuevosApellidos);
+                categoria[i] = (byte) p.getCategoria();
+                area[i] = (short) declarar(p.getCodigoArea(), areasDeclaradas, nuevasAreas);
+                if (cantidad == BLOQUE) escribirBloque();
+            }
+            if (cantidad > 0) escribirBloque();
+            reservar(4);
+            buffer.putInt(0);
+            vaciar();
+        }
+
+        private static int declarar(int codigo, BitSet declarados, IntLista nuevos) {
+            if (!declarados.get(codigo)) {
+                declarados.set(codigo);
+                nuevos.agregar(codigo);
+            }
+            return codigo;
+        }
+
+        private void escribirBloque() throws IOException {
+            int n = cantidad;
+            reservar(4);
+            buffer.putInt(n);
+            escribirDeclaraciones(nuevosNombres, AlmacenPacientes.NOMBRES);
+            escribirDeclaraciones(nuevosApellidos, AlmacenPacientes.APELLIDOS);
+            escribirDeclaraciones(nuevasAreas, AlmacenPacientes.AREAS);
+            reservar(4);
+            buffer.putInt(idsTexto.size());
+            for (String id : idsTexto) escribirTexto(id);
+            idsTexto.clear();
+
+            reservar(n * 27);
+            buffer.asLongBuffer().put(llegada, 0, n);
+            buffer.position(buffer.position() + n * 8);
+            buffer.asIntBuffer().put(clave, 0, n);
+            buffer.position(buffer.position() + n * 4);
+            buffer.asIntBuffer().put(nombre, 0, n);
+            buffer.position(buffer.position() + n * 4);
+            buffer.asIntBuffer().put(apellido, 0, n);
+            buffer.position(buffer.position() + n * 4);
+            buffer.put(categoria, 0, n);
+            buffer.asShortBuffer().put(area, 0, n);
+            buffer.position(buffer.position() + n * 2);
+            cantidad = 0;
+        }
+
+        private void escribirDeclaraciones(IntLista nuevos, DiccionarioCadenas diccionario) throws IOException {
+            reservar(4);
+            buffer.putInt(nuevos.cantidad);
+            for (int k = 0; k < nuevos.cantidad; k++) {
+                reservar(4);
+                buffer.putInt(nuevos.valores[k]);
+                escribirTexto(diccionario.texto(nuevos.valores[k]));
+            }
+            nuevos.cantidad = 0;
+        }
+
+        private void escribirTexto(String texto) throws IOException {
+            if (texto == null) {
+                reservar(4);
+                buffer.putInt(-1);
+                return;
+            }
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            reservar(4 + bytes.length);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+
+        // Deja espacio para 'bytes' bytes más, vaciando el buffer al archivo si hace falta
+        private void reservar(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return;
+            vaciar();
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(bytes) << 1).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        private void vaciar() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) canal.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    // Convierte un archivo de pacientes en CSV (el de GeneradorPacientes) a traza binaria:
+    // java -cp bin src.TrazaPacientes Simulaciones/Pacientes_24h.txt Simulaciones/Pacientes_24h.trz
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Uso: TrazaPacientes <pacientes.txt> <salida.trz>");
+            return;
+        }
+        long inicio = System.nanoTime();
+        try (LectorPacientesCsv lector = new LectorPacientesCsv(args[0])) {
+            escribir(lector, args[1]);
+        }
+        System.out.printf("Traza escrita en %s (%.1f MB) en %.2f s\n", args[1],
+            Files.size(Paths.get(args[1])) / 1e6, (System.nanoTime() - inicio) / 1e9);
+    }
+
+    // Lista de int que crece sin encajonar
+    private static final class IntLista {
+        int[] valores = new int[16];
+        int cantidad = 0;
+
+        void agregar(int valor) {
+            if (cantidad == valores.length) valores = Arrays.copyOf(valores, cantidad * 2);
+            valores[cantidad++] = valor;
+        }
+    }
+}